@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.mediator.cache.json;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Adapts the timeout of each key to how often its response changes. Every time an expired response is fetched
+ * again, the fingerprint of the new payload is compared with the fingerprint of the previous one. The timeout of a
+ * key whose response did not change grows by half, and the timeout of a key whose response changed is halved, so
+ * stable keys are fetched less often while volatile keys are not served stale for long. Timeouts are kept within
+ * the configured bounds.
+ * <p/>
+ * Expired responses are removed from their store by the {@link ExpiryTask} within a tick, so the fingerprint and
+ * the timeout of the last response of a key are also kept in a bounded history, least recently stored first out,
+ * which seeds the placeholder of the next request of the key.
+ */
+public class AdaptiveTimeout {
+
+    /**
+     * Lower bound of the timeouts in milliseconds
+     */
+    private final long minTimeout;
+
+    /**
+     * Upper bound of the timeouts in milliseconds
+     */
+    private final long maxTimeout;
+
+    /**
+     * The fingerprint and timeout of the last response of the recently stored keys
+     */
+    private final Map<String, History> history;
+
+    /**
+     * Creates the adaptive timeout with the given bounds
+     *
+     * @param minTimeout  - lower bound of the timeouts in milliseconds
+     * @param maxTimeout  - upper bound of the timeouts in milliseconds
+     * @param historySize - maximum number of keys whose last response is remembered
+     */
+    public AdaptiveTimeout(long minTimeout, long maxTimeout, final int historySize) {
+        if (minTimeout <= 0 || maxTimeout < minTimeout) {
+            throw new IllegalArgumentException("Invalid timeout bounds : " + minTimeout + " - " + maxTimeout);
+        }
+        this.minTimeout = minTimeout;
+        this.maxTimeout = maxTimeout;
+        this.history = new LinkedHashMap<String, History>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, History> eldest) {
+                return size() > historySize;
+            }
+        };
+    }
+
+    /**
+     * This method gives the given timeout within the bounds, used for the keys without a previous response
+     *
+     * @param timeout - the configured timeout in milliseconds
+     * @return long timeout within the bounds
+     */
+    public long bound(long timeout) {
+        return Math.min(Math.max(timeout, minTimeout), maxTimeout);
+    }
+
+    /**
+     * This method gives the timeout of a key fetched again
+     *
+     * @param previousTimeout - timeout of the previous response of the key in milliseconds
+     * @param changed         - whether the payload differs from the previous response
+     * @return long timeout of the new response in milliseconds
+     */
+    public long next(long previousTimeout, boolean changed) {
+        long timeout = changed ? previousTimeout / 2 : previousTimeout + Math.max(previousTimeout / 2, 1L);
+        return bound(timeout);
+    }
+
+    /**
+     * This method remembers the fingerprint and the timeout of the response stored for a key
+     *
+     * @param key         - request hash of the response
+     * @param fingerprint - fingerprint of the payload of the response
+     * @param timeout     - timeout of the response in milliseconds
+     */
+    public void remember(String key, long fingerprint, long timeout) {
+        synchronized (history) {
+            history.put(key, new History(fingerprint, timeout));
+        }
+    }
+
+    /**
+     * This method copies the fingerprint and the timeout of the last response of a key to the placeholder of a new
+     * request of the key, so that the response of the request is compared with it. The placeholder is left as it
+     * is if the last response of the key is not remembered.
+     *
+     * @param placeholder - placeholder of the request, holding its request hash
+     */
+    public void recall(CachableResponse placeholder) {
+        History last;
+        synchronized (history) {
+            last = history.get(placeholder.getRequestHash());
+        }
+        if (last != null) {
+            placeholder.setFingerprint(last.fingerprint);
+            placeholder.setTimeout(last.timeout);
+        }
+    }
+
+    /**
+     * This method gives the fingerprint of a payload, which is never 0
+     *
+     * @param payload - the response payload
+     * @return long fingerprint of the payload
+     */
+    public static long fingerprint(String payload) {
+        long hash = ConsistentHashRing.hash(payload);
+        return hash != 0 ? hash : 1L;
+    }
+
+    /**
+     * The fingerprint and the timeout of the last response of a key
+     */
+    private static final class History {
+
+        private final long fingerprint;
+
+        private final long timeout;
+
+        private History(long fingerprint, long timeout) {
+            this.fingerprint = fingerprint;
+            this.timeout = timeout;
+        }
+    }
+}
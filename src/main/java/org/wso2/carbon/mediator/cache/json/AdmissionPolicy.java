@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.mediator.cache.json;
+
+/**
+ * Decides whether the response of a request is worth caching before the mediator creates the placeholder of the
+ * request. Keys which are requested only once, like the ones of crawlers or long tail identifiers, are then not
+ * collected and do not push reused responses out of the cache.
+ */
+public interface AdmissionPolicy {
+
+    /**
+     * This method records a request of the given key which is not in the cache and decides whether its response
+     * is cached
+     *
+     * @param key - request hash of the request
+     * @return boolean true if the response is to be cached and false if not
+     */
+    boolean admit(String key);
+}
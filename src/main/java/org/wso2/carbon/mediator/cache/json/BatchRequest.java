@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The items of a batch request, which are cached one by one. Each item is cached against a key derived from the
+ * request hash and the compacted text of the item, and the rest of the response, holding the headers and the
+ * document around the array of items, is cached as the envelope of the batch. The finder looks up the envelope and
+ * the items at once, forwards only the missing items to the backend and hands this object to the collector through
+ * the operation context. The collector caches the returned items and merges them with the cached ones in the
+ * order of the request.
+ */
+public class BatchRequest {
+
+    /**
+     * Separator between the request hash and the digest of an item in the key of the item
+     */
+    private static final char KEY_SEPARATOR = '#';
+
+    /**
+     * Key of the envelope of the batch
+     */
+    private final String envelopeKey;
+
+    /**
+     * Path of the array of items in the response
+     */
+    private final JsonArrayPath responsePath;
+
+    /**
+     * The items of the request as JSON text
+     */
+    private final List<String> items;
+
+    /**
+     * The keys of the items, in the order of the request
+     */
+    private final String[] keys;
+
+    /**
+     * The cached payloads of the items, or null for the missing items
+     */
+    private final String[] cached;
+
+    /**
+     * The indexes of the missing items, in the order of the request
+     */
+    private final List<Integer> missing = new ArrayList<Integer>();
+
+    /**
+     * Creates a batch of the given items
+     *
+     * @param requestHash  - hash of the batch request
+     * @param items        - the items of the request as JSON text
+     * @param responsePath - path of the array of items in the response
+     */
+    public BatchRequest(String requestHash, List<String> items, JsonArrayPath responsePath) {
+        this.envelopeKey = requestHash + KEY_SEPARATOR;
+        this.responsePath = responsePath;
+        this.items = items;
+        this.keys = new String[items.size()];
+        this.cached = new String[items.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = envelopeKey + PayloadPool.digest(JsonScanner.compact(items.get(i)));
+        }
+    }
+
+    /**
+     * This method looks up the envelope and the items of the batch with a single multi-get where the store
+     * supports it, and records the missing items. If the envelope is missing, every item is missing, since the
+     * response cannot be built without it.
+     *
+     * @param store - the store of the cache
+     * @return CachableResponse the live envelope, or null if it is not cached
+     */
+    public CachableResponse lookup(CacheStore store) {
+        List<String> lookedUp = new ArrayList<String>(keys.length + 1);
+        lookedUp.add(envelopeKey);
+        lookedUp.addAll(Arrays.asList(keys));
+        Map<String, CachableResponse> found = getAll(store, lookedUp);
+        CachableResponse envelope = found.get(envelopeKey);
+        if (envelope == null) {
+            for (int i = 0; i < keys.length; i++) {
+                missing.add(i);
+            }
+            return null;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            CachableResponse item = found.get(keys[i]);
+            if (item != null) {
+                item.recordHit();
+                cached[i] = item.getResponsePayload();
+            }
+            if (cached[i] == null) {
+                missing.add(i);
+            }
+        }
+        return envelope;
+    }
+
+    /**
+     * This method gives the number of items of the batch
+     *
+     * @return int number of items
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * This method gives the key of the envelope of the batch
+     *
+     * @return String key of the envelope
+     */
+    public String getEnvelopeKey() {
+        return envelopeKey;
+    }
+
+    /**
+     * This method gives the path of the array of items in the response
+     *
+     * @return JsonArrayPath path of the items
+     */
+    public JsonArrayPath getResponsePath() {
+        return responsePath;
+    }
+
+    /**
+     * This method gives the number of items which were not found in the cache
+     *
+     * @return int number of missing items
+     */
+    public int getMissingCount() {
+        return missing.size();
+    }
+
+    /**
+     * This method gives the items which were not found in the cache, in the order of the request
+     *
+     * @return List of the missing items as JSON text
+     */
+    public List<String> getMissingItems() {
+        List<String> missingItems = new ArrayList<String>(missing.size());
+        for (int i : missing) {
+            missingItems.add(items.get(i));
+        }
+        return missingItems;
+    }
+
+    /**
+     * This method gives the key of a missing item
+     *
+     * @param n - position of the item among the missing items
+     * @return String key of the item
+     */
+    public String getMissingKey(int n) {
+        return keys[missing.get(n)];
+    }
+
+    /**
+     * This method merges the cached items with the items returned for the missing items
+     *
+     * @param fetched - the items returned by the backend, in the order of the missing items
+     * @return List of all the items of the batch in the order of the request
+     */
+    public List<String> merge(List<String> fetched) {
+        List<String> merged = new ArrayList<String>(Arrays.asList(cached));
+        for (int n = 0; n < missing.size(); n++) {
+            merged.set(missing.get(n), fetched.get(n));
+        }
+        return merged;
+    }
+
+    /**
+     * Looks up the live responses of the given keys
+     *
+     * @param store - the store of the cache
+     * @param keys  - the keys to be looked up
+     * @return Map of the live responses indexed by key
+     */
+    private static Map<String, CachableResponse> getAll(CacheStore store, List<String> keys) {
+        Map<String, CachableResponse> found = new HashMap<String, CachableResponse>();
+        if (store instanceof MultiGetCacheStore) {
+            found.putAll(((MultiGetCacheStore) store).getAll(keys));
+        } else {
+            for (String key : keys) {
+                CachableResponse response = store.get(key);
+                if (response != null) {
+                    found.put(key, response);
+                }
+            }
+        }
+        for (Iterator<CachableResponse> it = found.values().iterator(); it.hasNext(); ) {
+            CachableResponse response = it.next();
+            if (response.getResponsePayload() == null || response.isExpired()) {
+                it.remove();
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.mediator.cache.json;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.StreamCorruptedException;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Primitive encodings of the binary form of the cached responses. Integers are written as unsigned LEB128 varints,
+ * strings as a varint length followed by their UTF-8 bytes, and the names and values of the header properties are
+ * coded against a fixed dictionary of common headers, which is part of the format and may only be appended to.
+ */
+final class BinaryCodec {
+
+    /**
+     * Charset of the encoded strings
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Code of a null header value
+     */
+    private static final int NULL_CODE = 0;
+
+    /**
+     * Code of a string which is written literally
+     */
+    private static final int LITERAL_CODE = 1;
+
+    /**
+     * Code of a value which is not a string, written with Java serialization
+     */
+    private static final int OBJECT_CODE = 2;
+
+    /**
+     * Code of the first dictionary entry
+     */
+    private static final int DICTIONARY_BASE = 3;
+
+    /**
+     * Common header names and values, indexed by their code minus {@link #DICTIONARY_BASE}
+     */
+    private static final String[] DICTIONARY = {
+            "messageType", "Content-Type", "Content-Length", "Content-Encoding", "Transfer-Encoding", "Connection",
+            "Date", "Server", "ETag", "Last-Modified", "Expires", "Cache-Control", "Vary", "Pragma",
+            "Access-Control-Allow-Origin", "Access-Control-Allow-Headers", "Access-Control-Allow-Methods",
+            CachingConstants.CACHE_TAGS_HEADER, "application/json", "application/json; charset=UTF-8",
+            "application/json;charset=UTF-8", "text/plain", "application/xml", "text/xml", "keep-alive", "close",
+            "chunked", "gzip", "no-cache", "*", "Accept-Encoding", "Origin", "Accept"
+    };
+
+    /**
+     * The dictionary codes indexed by the dictionary entries
+     */
+    private static final Map<String, Integer> CODES = new HashMap<String, Integer>();
+
+    static {
+        for (int i = 0; i < DICTIONARY.length; i++) {
+            CODES.put(DICTIONARY[i], DICTIONARY_BASE + i);
+        }
+    }
+
+    private BinaryCodec() {
+    }
+
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Malformed varint");
+    }
+
+    /**
+     * Writes a string which must not be null
+     *
+     * @param out   the output
+     * @param value the string
+     * @throws IOException if the string cannot be written
+     */
+    static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        long length = readVarLong(in);
+        if (length < 0 || length > Integer.MAX_VALUE) {
+            throw new StreamCorruptedException("Invalid string length : " + length);
+        }
+        byte[] bytes = new byte[(int) length];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Writes a header name or value, coded against the dictionary when it is a common one
+     *
+     * @param out   the output
+     * @param value the header name or value
+     * @throws IOException if the value cannot be written
+     */
+    static void writeHeaderValue(ObjectOutput out, Object value) throws IOException {
+        if (value == null) {
+            writeVarLong(out, NULL_CODE);
+        } else if (value instanceof String) {
+            Integer code = CODES.get(value);
+            if (code != null) {
+                writeVarLong(out, code);
+            } else {
+                writeVarLong(out, LITERAL_CODE);
+                writeString(out, (String) value);
+            }
+        } else {
+            writeVarLong(out, OBJECT_CODE);
+            out.writeObject(value);
+        }
+    }
+
+    static Object readHeaderValue(ObjectInput in) throws IOException, ClassNotFoundException {
+        long code = readVarLong(in);
+        if (code == NULL_CODE) {
+            return null;
+        } else if (code == LITERAL_CODE) {
+            return readString(in);
+        } else if (code == OBJECT_CODE) {
+            return in.readObject();
+        } else if (code - DICTIONARY_BASE < DICTIONARY.length) {
+            return DICTIONARY[(int) (code - DICTIONARY_BASE)];
+        }
+        throw new StreamCorruptedException("Unknown header code : " + code);
+    }
+}
@@ -18,30 +18,55 @@
 
 package org.wso2.carbon.mediator.cache.json;
 
-import java.io.Serializable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.Set;
 
 /**
  * This object holds the cached response and the related properties of the cache
  * per request and will be stored in to the cache. This holds the response envelope
  * together with the request hash and the response hash. Apart from that this object
  * holds the refresh time of the cache and the timeout period. This implements the
- * Serializable interface to support the clustered caching.
+ * Externalizable interface to support the clustered caching with a compact binary form,
+ * which starts with a format version and a set of flags telling which of the optional
+ * fields follow. Times are written as varints, strings as length prefixed UTF-8 bytes,
+ * and the header properties are coded against the dictionary of {@link BinaryCodec}.
  *
- * @see Serializable
+ * A response is an immutable snapshot once it has been stored: readers share it without
+ * locks and always see a consistent payload and headers. A response is updated by storing
+ * a new response with {@link CacheStore#replace(String, CachableResponse, CachableResponse)},
+ * so that a writer holding an outdated response cannot overwrite a newer one. A response
+ * without a payload is the placeholder of a request waiting for the backend. Only the local
+ * bookkeeping of the node, like the hit count and the expiry task, changes after storing.
+ *
+ * @see Externalizable
  */
-public class CachableResponse implements Serializable {
+public class CachableResponse implements Externalizable {
 
-	private String responsePayload;
+	private static final long serialVersionUID = 2L;
 
 	/**
-	 * This boolean value defines whether this cached object is in use or not
-	 * Cache cleanup method will not remove cached object if cached object is in use
-	 * Upon cache hit, cached object will set inUse as true and set inUse as false after response
-	 * is served by cached object
+	 * Version of the binary form written by this class
 	 */
-	private AtomicBoolean inUse = new AtomicBoolean(false);
+	private static final int FORMAT_VERSION = 1;
+
+	private static final int HAS_REQUEST_HASH = 1;
+
+	private static final int HAS_PAYLOAD = 1 << 1;
+
+	private static final int HAS_HEADERS = 1 << 2;
+
+	private static final int HAS_TAGS = 1 << 3;
+
+	private static final int HAS_VARIANTS = 1 << 4;
+
+	private String responsePayload;
 
 	/**
 	 * This holds the hash value of the request payload which is calculated form
@@ -62,35 +87,165 @@ public class CachableResponse implements Serializable {
 	private long timeout;
 
 	/**
-	 * This holds the HTTP Header Properties of the response.
+	 * This holds the time taken by the backend to produce the response in milliseconds,
+	 * which is the cost of fetching it again once it has been evicted
+	 */
+	private long fetchCost;
+
+	/**
+	 * This holds the fingerprint of the payload, which tells whether the payload changed when
+	 * the response is fetched again, or 0 if the fingerprint was not taken
+	 */
+	private long fingerprint;
+
+	/**
+	 * This holds the variants of a response which varies on request headers, in which case this
+	 * response holds no payload of its own
+	 */
+	private VariantTable variants;
+
+	/**
+	 * This holds the version of the cached response, which orders the updates of the same
+	 * request hash replicated among the cluster
+	 */
+	private long version;
+
+	/**
+	 * This holds the tags of the cached response, by which it can be invalidated
+	 */
+	private Set<String> tags;
+
+	/**
+	 * This holds the HTTP Header Properties of the response. Responses stored by the mediator
+	 * hold an immutable {@link HeaderSet} shared with the responses having the same headers.
 	 * */
 	private Map<String,Object> headerProperties;
 
+	/**
+	 * This holds the number of times the cached response was served on this node. It is used to
+	 * order the responses by popularity and is not replicated.
+	 */
+	private transient volatile int hits;
+
+	/**
+	 * This holds the pooled payload backing the response payload, if the payload was pooled.
+	 * It is local to the node and is not replicated.
+	 */
+	private transient PayloadPool.Payload pooledPayload;
+
+	/**
+	 * This holds the spool file of the response payload, if the payload was too large to be kept
+	 * on the heap. It is local to the node and is not replicated. It is kept once the response is
+	 * published, as readers may still hold the response after it has been discarded.
+	 */
+	private transient volatile SpooledPayload spooledPayload;
+
+	/**
+	 * This holds the store the heap taken by the payload is charged to while the response is in it.
+	 * It is local to the node and is not replicated.
+	 */
+	private transient HeapGuardedCacheStore chargedStore;
+
+	/**
+	 * This holds the number of bytes charged to the store.
+	 */
+	private transient long chargedBytes;
+
+	/**
+	 * This holds the timer wheel entry which removes this response from the cache on expiry.
+	 * It is local to the node and is not replicated.
+	 */
+	private transient ExpiryTask expiryTask;
+
+	/**
+	 * This holds whether a request has been forwarded to refresh this response ahead of its
+	 * expiry. It is local to the node and is not replicated.
+	 */
+	private transient boolean refreshing;
+
+	/**
+	 * This holds the output of the onCacheHit sequence for this response, if it was memoized.
+	 * It is local to the node and is not replicated.
+	 */
+	private transient volatile MemoizedHit memoizedHit;
+
+	/**
+	 * This holds the representations of this response in other message types, by message type.
+	 * They are local to the node and are not replicated.
+	 */
+	private transient volatile Map<String, Representation> representations;
+
+	/**
+	 * Creates an empty response, which is the placeholder of a request until its payload is set
+	 */
+	public CachableResponse() {
+	}
+
+	/**
+	 * Creates a copy of the given response holding every field of it, including its expiry, version,
+	 * fetch cost, fingerprint and tags, along with the memoized hit and the representations derived
+	 * from it. The payload of the copy is the in-memory payload of the given response: the copy does
+	 * not take a reference to a pooled or spooled payload, which stays owned by the given response,
+	 * and the copy of a spooled response holds no payload. The hit count and the expiry task of the
+	 * given response are not copied.
+	 *
+	 * @param response   - the response to be copied
+	 */
+	public CachableResponse(CachableResponse response) {
+		this.responsePayload = response.responsePayload;
+		this.requestHash = response.requestHash;
+		this.expireTimeMillis = response.expireTimeMillis;
+		this.timeout = response.timeout;
+		this.fetchCost = response.fetchCost;
+		this.fingerprint = response.fingerprint;
+		this.variants = response.variants;
+		this.version = response.version;
+		this.tags = response.tags;
+		this.headerProperties = response.headerProperties;
+		this.memoizedHit = response.memoizedHit;
+		this.representations = response.representations;
+	}
+
+	/**
+	 * This method checks whether this cached response holds content to be served, which is a payload
+	 * or a table of variants, as opposed to a placeholder of a request in progress
+	 *
+	 * @return boolean true if the response holds content and false if it is a placeholder
+	 */
+	public boolean hasContent() {
+		return responsePayload != null || spooledPayload != null || variants != null;
+	}
+
 	/**
 	 * This method checks whether this cached response is expired or not
 	 *
 	 * @return boolean true if expired and false if not
 	 */
 	public boolean isExpired() {
-		return timeout <= 0 || expireTimeMillis < System.currentTimeMillis();
+		return timeout <= 0 || expireTimeMillis < CoarseClock.currentTimeMillis();
 	}
 
 	/**
-	 * This method will refresh the cached response stored in this object.
-	 * If further explained this method will set the response envelope and the
-	 * response hash to null and set the new refresh time as timeout + current time
+	 * This method gives a placeholder which replaces this expired response in the cache.
+	 * The placeholder has the request hash of this response, no payload and headers, and
+	 * the new refresh time as timeout + current time. The placeholder keeps the fingerprint of
+	 * this response. This response is left unchanged for the readers still holding it.
 	 *
 	 * This is how an expired response is brought back to life
-	 * @param timeout The period for which this object is reincarnated
+	 * @param timeout The period for which the placeholder is reincarnated
+	 * @return CachableResponse placeholder of the request
 	 */
-	public void reincarnate(long timeout) {
+	public CachableResponse reincarnate(long timeout) {
 		if(!isExpired()){
 			throw new IllegalStateException("Unexpired Cached Responses cannot be reincarnated");
 		}
-		responsePayload = null;
-		headerProperties = null;
-		expireTimeMillis = System.currentTimeMillis() + timeout;
-		setTimeout(timeout);
+		CachableResponse placeholder = new CachableResponse();
+		placeholder.setRequestHash(requestHash);
+		placeholder.setTags(tags);
+		placeholder.setTimeout(timeout);
+		placeholder.setFingerprint(fingerprint);
+		placeholder.setExpireTimeMillis(CoarseClock.currentTimeMillis() + timeout);
+		return placeholder;
 	}
 
 	public String getResponsePayload() {
@@ -98,9 +253,65 @@ public class CachableResponse implements Serializable {
 	}
 
 	public void setResponsePayload(String responsePayload) {
+		releasePayload();
+		synchronized (this) {
+			this.spooledPayload = null;
+		}
 		this.responsePayload = responsePayload;
 	}
 
+	/**
+	 * This method sets a payload of a payload pool as the response payload. The response holds
+	 * the reference to the pooled payload given by the caller until it leaves its store.
+	 *
+	 * @param payload   - pooled payload to be set
+	 */
+	public void setPooledPayload(PayloadPool.Payload payload) {
+		releasePayload();
+		synchronized (this) {
+			this.pooledPayload = payload;
+			this.spooledPayload = null;
+		}
+		this.responsePayload = payload.getBody();
+	}
+
+	/**
+	 * This method gives the spooled payload of the response
+	 *
+	 * @return SpooledPayload the spooled payload, or null if the payload is not spooled
+	 */
+	public SpooledPayload getSpooledPayload() {
+		return spooledPayload;
+	}
+
+	/**
+	 * This method sets a spooled payload as the payload of the response, in place of the response
+	 * payload. The response owns the spool file, which is released once the response leaves its store.
+	 *
+	 * @param payload   - spooled payload to be set
+	 */
+	public void setSpooledPayload(SpooledPayload payload) {
+		releasePayload();
+		synchronized (this) {
+			this.spooledPayload = payload;
+		}
+		this.responsePayload = null;
+	}
+
+	/**
+	 * This method releases the pooled payload and the spooled payload of the response, if any. The
+	 * spooled payload is left in place, its file is deleted once the readers holding it are done.
+	 */
+	private synchronized void releasePayload() {
+		if (pooledPayload != null) {
+			pooledPayload.release();
+			pooledPayload = null;
+		}
+		if (spooledPayload != null) {
+			spooledPayload.release();
+		}
+	}
+
 	/**
 	 * This method gives the hash value of the request payload stored in the cache
 	 *
@@ -156,19 +367,175 @@ public class CachableResponse implements Serializable {
 	}
 
 	/**
-	 * This method sets referred cache object is in used
+	 * This method gives the version of the cached response
+	 *
+	 * @return long version of the cached response
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * This method sets the version of the cached response
+	 *
+	 * @param version   - version to be set
+	 */
+	public void setVersion(long version) {
+		this.version = version;
+	}
+
+	/**
+	 * This method gives the time taken by the backend to produce the response
+	 *
+	 * @return long fetch cost in milliseconds
+	 */
+	public long getFetchCost() {
+		return fetchCost;
+	}
+
+	/**
+	 * This method sets the time taken by the backend to produce the response
+	 *
+	 * @param fetchCost   - fetch cost in milliseconds to be set
+	 */
+	public void setFetchCost(long fetchCost) {
+		this.fetchCost = fetchCost;
+	}
+
+	/**
+	 * This method gives the variants of the response, if it varies on request headers
+	 *
+	 * @return VariantTable the variants, or null if the response does not vary
+	 */
+	public VariantTable getVariants() {
+		return variants;
+	}
+
+	/**
+	 * This method sets the variants of the response
+	 *
+	 * @param variants   - the variants to be set
+	 */
+	public void setVariants(VariantTable variants) {
+		this.variants = variants;
+	}
+
+	/**
+	 * This method gives the fingerprint of the payload
+	 *
+	 * @return long fingerprint of the payload, or 0 if it was not taken
+	 */
+	public long getFingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * This method sets the fingerprint of the payload
+	 *
+	 * @param fingerprint   - fingerprint to be set
+	 */
+	public void setFingerprint(long fingerprint) {
+		this.fingerprint = fingerprint;
+	}
+
+	/**
+	 * This method gives the tags of the cached response
+	 *
+	 * @return Set of tags, or null if the response is not tagged
+	 */
+	public Set<String> getTags() {
+		return tags;
+	}
+
+	/**
+	 * This method sets the tags of the cached response
+	 *
+	 * @param tags   - tags to be set
+	 */
+	public void setTags(Set<String> tags) {
+		this.tags = tags;
+	}
+
+	/**
+	 * This method records that the cached response was served. Concurrent hits may be lost,
+	 * which is acceptable for an estimate of the popularity.
+	 */
+	public void recordHit() {
+		hits++;
+	}
+
+	/**
+	 * This method claims the refresh of this response ahead of its expiry, so that a single
+	 * request is forwarded to the backend while the others are still served from the cache.
+	 * A claim is never released, a refresh which fails leaves the response to expire as usual.
+	 *
+	 * @return boolean true if the refresh was claimed by the caller and false if not
+	 */
+	public synchronized boolean claimRefresh() {
+		if (refreshing) {
+			return false;
+		}
+		refreshing = true;
+		return true;
+	}
+
+	/**
+	 * This method gives the memoized output of the onCacheHit sequence for this response
+	 *
+	 * @return MemoizedHit the memoized output, or null if there is none
+	 */
+	public MemoizedHit getMemoizedHit() {
+		return memoizedHit;
+	}
+
+	/**
+	 * This method sets the memoized output of the onCacheHit sequence for this response
+	 *
+	 * @param memoizedHit   - the memoized output to be set
+	 */
+	public void setMemoizedHit(MemoizedHit memoizedHit) {
+		this.memoizedHit = memoizedHit;
+	}
+
+	/**
+	 * This method gives the representation of this response in the given message type
 	 *
-	 * @param inUse - boolean value inUse to be set
+	 * @param messageType   - the message type of the representation
+	 * @return Representation the representation, or null if it has not been produced
 	 */
-	public void setInUse(boolean inUse) { this.inUse.getAndSet(inUse); }
+	public Representation getRepresentation(String messageType) {
+		Map<String, Representation> current = representations;
+		return current != null ? current.get(messageType) : null;
+	}
+
+	/**
+	 * This method adds a representation of this response, replacing the one of the same message type
+	 *
+	 * @param representation    - the representation to be added
+	 */
+	public synchronized void addRepresentation(Representation representation) {
+		Map<String, Representation> updated = representations != null ?
+				new HashMap<String, Representation>(representations) : new HashMap<String, Representation>();
+		updated.put(representation.getMessageType(), representation);
+		representations = updated;
+	}
+
+	/**
+	 * This method gives the number of times the cached response was served on this node
+	 *
+	 * @return int number of hits
+	 */
+	public int getHits() {
+		return hits;
+	}
 
 	/**
-	 * This method gives the referred cache object is in used or not
+	 * This method sets the number of times the cached response was served on this node
 	 *
-	 * @return inUse status as a boolean value
+	 * @param hits   - number of hits to be set
 	 */
-	public boolean isInUse() {
-		return inUse.get();
+	public void setHits(int hits) {
+		this.hits = hits;
 	}
 
 	/**
@@ -189,4 +556,161 @@ public class CachableResponse implements Serializable {
 		this.headerProperties = headerProperties;
 	}
 
+	public void writeExternal(ObjectOutput out) throws IOException {
+		String payload = responsePayload;
+		Map<String, Object> headers = headerProperties;
+		Set<String> responseTags = tags;
+		VariantTable table = variants;
+		int flags = (requestHash != null ? HAS_REQUEST_HASH : 0) | (payload != null ? HAS_PAYLOAD : 0) |
+				(headers != null ? HAS_HEADERS : 0) | (responseTags != null ? HAS_TAGS : 0) |
+				(table != null ? HAS_VARIANTS : 0);
+		out.writeByte(FORMAT_VERSION);
+		out.writeByte(flags);
+		if (requestHash != null) {
+			BinaryCodec.writeString(out, requestHash);
+		}
+		BinaryCodec.writeVarLong(out, expireTimeMillis);
+		BinaryCodec.writeVarLong(out, timeout);
+		BinaryCodec.writeVarLong(out, version);
+		BinaryCodec.writeVarLong(out, fetchCost);
+		out.writeLong(fingerprint);
+		if (payload != null) {
+			BinaryCodec.writeString(out, payload);
+		}
+		if (headers != null) {
+			BinaryCodec.writeVarLong(out, headers.size());
+			for (Map.Entry<String, Object> header : headers.entrySet()) {
+				BinaryCodec.writeHeaderValue(out, header.getKey());
+				BinaryCodec.writeHeaderValue(out, header.getValue());
+			}
+		}
+		if (responseTags != null) {
+			BinaryCodec.writeVarLong(out, responseTags.size());
+			for (String tag : responseTags) {
+				BinaryCodec.writeString(out, tag);
+			}
+		}
+		if (table != null) {
+			BinaryCodec.writeVarLong(out, table.getVary().length);
+			for (String name : table.getVary()) {
+				BinaryCodec.writeString(out, name);
+			}
+			BinaryCodec.writeVarLong(out, table.getKeys().length);
+			for (int i = 0; i < table.getKeys().length; i++) {
+				BinaryCodec.writeString(out, table.getKeys()[i]);
+				table.getVariants()[i].writeExternal(out);
+			}
+		}
+	}
+
+	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+		int formatVersion = in.readUnsignedByte();
+		if (formatVersion > FORMAT_VERSION) {
+			throw new InvalidClassException(CachableResponse.class.getName(),
+					"Unsupported format version : " + formatVersion);
+		}
+		int flags = in.readUnsignedByte();
+		if ((flags & HAS_REQUEST_HASH) != 0) {
+			requestHash = BinaryCodec.readString(in);
+		}
+		expireTimeMillis = BinaryCodec.readVarLong(in);
+		timeout = BinaryCodec.readVarLong(in);
+		version = BinaryCodec.readVarLong(in);
+		fetchCost = BinaryCodec.readVarLong(in);
+		fingerprint = in.readLong();
+		if ((flags & HAS_PAYLOAD) != 0) {
+			responsePayload = BinaryCodec.readString(in);
+		}
+		if ((flags & HAS_HEADERS) != 0) {
+			int size = (int) BinaryCodec.readVarLong(in);
+			Map<String, Object> headers = new HashMap<String, Object>();
+			for (int i = 0; i < size; i++) {
+				headers.put((String) BinaryCodec.readHeaderValue(in), BinaryCodec.readHeaderValue(in));
+			}
+			headerProperties = HeaderSet.of(headers);
+		}
+		if ((flags & HAS_TAGS) != 0) {
+			int size = (int) BinaryCodec.readVarLong(in);
+			Set<String> responseTags = new HashSet<String>();
+			for (int i = 0; i < size; i++) {
+				responseTags.add(BinaryCodec.readString(in));
+			}
+			tags = responseTags;
+		}
+		if ((flags & HAS_VARIANTS) != 0) {
+			String[] vary = new String[(int) BinaryCodec.readVarLong(in)];
+			for (int i = 0; i < vary.length; i++) {
+				vary[i] = BinaryCodec.readString(in);
+			}
+			int size = (int) BinaryCodec.readVarLong(in);
+			String[] keys = new String[size];
+			CachableResponse[] variantResponses = new CachableResponse[size];
+			for (int i = 0; i < size; i++) {
+				keys[i] = BinaryCodec.readString(in);
+				variantResponses[i] = new CachableResponse();
+				variantResponses[i].readExternal(in);
+			}
+			variants = new VariantTable(vary, keys, variantResponses);
+		}
+	}
+
+	/**
+	 * This method gives the timer wheel entry of this response, creating it on first use
+	 *
+	 * @param store - the store holding this response
+	 * @return ExpiryTask which removes this response from the cache on expiry
+	 */
+	synchronized ExpiryTask getExpiryTask(CacheStore store) {
+		if (expiryTask == null) {
+			expiryTask = new ExpiryTask(store, this);
+		}
+		return expiryTask;
+	}
+
+	/**
+	 * This method charges the heap taken by the payload to the store the response is handed to
+	 *
+	 * @param store - the store holding the response
+	 * @param bytes - the number of bytes taken by the payload
+	 */
+	synchronized void charge(HeapGuardedCacheStore store, long bytes) {
+		if (chargedStore == null) {
+			chargedStore = store;
+			chargedBytes = bytes;
+			store.account(bytes);
+		}
+	}
+
+	/**
+	 * This method gives the heap charged to the given store by this response
+	 *
+	 * @param store - the store holding the response
+	 * @return long the number of bytes charged to the store, or 0 if the response is not charged to it
+	 */
+	synchronized long chargedTo(HeapGuardedCacheStore store) {
+		return chargedStore == store ? chargedBytes : 0;
+	}
+
+	/**
+	 * This method releases the heap charged to the store holding the response, if any
+	 */
+	synchronized void uncharge() {
+		if (chargedStore != null) {
+			chargedStore.account(-chargedBytes);
+			chargedStore = null;
+		}
+	}
+
+	/**
+	 * This method cancels the scheduled removal of this response, if any, and releases its payload
+	 * and its heap charge once the response has left the store holding it
+	 */
+	synchronized void discard() {
+		if (expiryTask != null) {
+			expiryTask.cancel();
+		}
+		releasePayload();
+		uncharge();
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * The programmatic API to invalidate the responses of a cache by tag. The responses are tagged by the cache
+ * mediator from the tags attribute of its configuration and from the {@link CachingConstants#CACHE_TAGS_HEADER}
+ * header of the backend response. Only caches in use by a deployed mediator can be invalidated. The responses are
+ * removed through the decorators of the store, and the invalidation is forwarded to the other nodes sharing the
+ * cache.
+ */
+public final class CacheInvalidator {
+
+    private CacheInvalidator() {
+    }
+
+    /**
+     * This method removes the responses carrying any of the given tags from the given cache
+     *
+     * @param cacheName - name of the cache
+     * @param tags      - the tags to be invalidated
+     * @return int number of responses removed
+     */
+    public static int invalidateTags(String cacheName, Collection<String> tags) {
+        return invalidate(cacheName, CacheStoreManager.getStore(cacheName), CacheStoreManager.getTagIndex(cacheName),
+                          tags, Collections.<String>emptyList());
+    }
+
+    /**
+     * This method removes the responses carrying any tag starting with the given prefix from the given cache
+     *
+     * @param cacheName - name of the cache
+     * @param prefix    - prefix of the tags to be invalidated
+     * @return int number of responses removed
+     */
+    public static int invalidateTagPrefix(String cacheName, String prefix) {
+        return invalidate(cacheName, CacheStoreManager.getStore(cacheName), CacheStoreManager.getTagIndex(cacheName),
+                          Collections.<String>emptyList(), Collections.singletonList(prefix));
+    }
+
+    /**
+     * This method removes the responses carrying any of the given tags, or any tag starting with one of the given
+     * prefixes, from the given store and forwards the invalidation to the other nodes sharing the cache
+     *
+     * @param cacheName - name of the cache
+     * @param store     - the store of the cache, as used by the mediators
+     * @param tagIndex  - the tag index of the cache
+     * @param tags      - the tags to be invalidated
+     * @param prefixes  - the prefixes of the tags to be invalidated
+     * @return int number of responses removed on this node
+     */
+    static int invalidate(String cacheName, CacheStore store, TagIndex tagIndex, Collection<String> tags,
+                          Collection<String> prefixes) {
+        if (store == null || tagIndex == null) {
+            return 0;
+        }
+        int removed = tagIndex.invalidate(store, tags);
+        for (String prefix : prefixes) {
+            removed += tagIndex.invalidatePrefix(store, prefix);
+        }
+        ClusteredCacheStore clustered = CacheStoreManager.getClusteredStore(cacheName);
+        if (clustered != null) {
+            clustered.invalidateTags(tags, prefixes);
+        }
+        return removed;
+    }
+}
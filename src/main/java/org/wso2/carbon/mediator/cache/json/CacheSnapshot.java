@@ -0,0 +1,355 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.mediator.cache.json;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the unexpired responses of a cache into a compressed binary file when the mediator is destroyed and
+ * restores them in the background when it is initialized again, so that a restarted server does not begin with an
+ * empty cache. Entries are written in the order of their hits, which lets the restore stop at its byte budget after
+ * loading the most popular responses. Expiry times are kept as absolute times, so the downtime of the server counts
+ * against the time to live of the restored responses.
+ * <p/>
+ * The file starts with a magic number, the format version and the number of entries. Each entry holds the request
+ * hash, the expiry time, the timeout, the hits, the fetch cost, the payload, the header properties, the tags and
+ * the variant table. A variant table is written as the names of its varying headers followed by the key and the
+ * entry of each variant, and a response which does not vary has a table of -1 headers. Strings are written as
+ * length prefixed UTF-8 bytes, and a length of -1 stands for null. Spooled payloads are not written, they are
+ * dropped with the spool files of the server.
+ */
+public final class CacheSnapshot {
+
+    /**
+     * Log object to use when logging is required in this class.
+     */
+    private static final Log log = LogFactory.getLog(CacheSnapshot.class);
+
+    /**
+     * Magic number identifying a snapshot file
+     */
+    private static final int MAGIC = 0x4a435348;
+
+    /**
+     * Version of the snapshot format
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Charset of the strings written into the snapshot
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private CacheSnapshot() {
+    }
+
+    /**
+     * This method writes the unexpired responses among the given ones into the snapshot file. The file is written
+     * next to the target and moved over it once complete, so an interrupted write leaves the previous snapshot.
+     *
+     * @param file      - the snapshot file
+     * @param responses - the responses of the cache
+     * @return int number of responses written
+     * @throws IOException if the snapshot cannot be written
+     */
+    public static int write(File file, Iterable<CachableResponse> responses) throws IOException {
+        List<CachableResponse> entries = new ArrayList<CachableResponse>();
+        for (CachableResponse response : responses) {
+            if (response != null && (response.getResponsePayload() != null || response.getVariants() != null) &&
+                    !response.isExpired()) {
+                entries.add(response);
+            }
+        }
+        Collections.sort(entries, new Comparator<CachableResponse>() {
+            public int compare(CachableResponse r1, CachableResponse r2) {
+                return r1.getHits() > r2.getHits() ? -1 : (r1.getHits() == r2.getHits() ? 0 : 1);
+            }
+        });
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Unable to create the directory of the cache snapshot : " + parent);
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(
+                new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(temp))));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(entries.size());
+            for (CachableResponse response : entries) {
+                writeEntry(out, response);
+            }
+        } finally {
+            out.close();
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return entries.size();
+    }
+
+    /**
+     * This method starts a daemon thread loading the responses of the snapshot file into the given store. Responses
+     * which have expired in the meantime are skipped, and responses already in the store are kept. The restore
+     * stops once the given number of uncompressed bytes has been read.
+     *
+     * @param file      - the snapshot file
+     * @param store     - the store the responses are loaded into
+     * @param tagIndex  - the tag index of the cache, or null if tags are not indexed
+     * @param maxBytes  - maximum number of uncompressed bytes to be read
+     * @return Thread running the restore, or null if there is no snapshot file
+     */
+    public static Thread restore(final File file, final CacheStore store, final TagIndex tagIndex,
+                                 final long maxBytes) {
+        if (!file.isFile()) {
+            return null;
+        }
+        Thread restorer = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    int restored = read(file, store, tagIndex, maxBytes);
+                    if (log.isDebugEnabled()) {
+                        log.debug("Restored " + restored + " cached responses from the snapshot : " + file);
+                    }
+                } catch (IOException e) {
+                    log.warn("Unable to restore the cache snapshot : " + file, e);
+                }
+            }
+        }, "json-cache-restore-" + file.getName());
+        restorer.setDaemon(true);
+        restorer.start();
+        return restorer;
+    }
+
+    /**
+     * Loads the responses of the snapshot file into the given store until the budget is spent or the current
+     * thread is interrupted
+     *
+     * @param file     the snapshot file
+     * @param store    the store the responses are loaded into
+     * @param tagIndex the tag index of the cache, or null if tags are not indexed
+     * @param maxBytes maximum number of uncompressed bytes to be read
+     * @return int number of responses loaded
+     * @throws IOException if the snapshot cannot be read
+     */
+    static int read(File file, CacheStore store, TagIndex tagIndex, long maxBytes) throws IOException {
+        CountingInputStream counter = new CountingInputStream(
+                new GZIPInputStream(new BufferedInputStream(new FileInputStream(file))));
+        DataInputStream in = new DataInputStream(counter);
+        int restored = 0;
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a cache snapshot file : " + file);
+            }
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported cache snapshot version : " + version);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count && !Thread.currentThread().isInterrupted(); i++) {
+                CachableResponse response = readEntry(in);
+                if (counter.count > maxBytes) {
+                    break;
+                }
+                if (response.isExpired() || !response.hasContent() ||
+                        !store.putIfAbsent(response.getRequestHash(), response)) {
+                    continue;
+                }
+                if (tagIndex != null && response.getTags() != null && !response.getTags().isEmpty()) {
+                    tagIndex.tag(response.getRequestHash(), response);
+                }
+                restored++;
+            }
+        } catch (EOFException e) {
+            log.warn("Cache snapshot is truncated : " + file);
+        } finally {
+            in.close();
+        }
+        return restored;
+    }
+
+    private static void writeEntry(DataOutputStream out, CachableResponse response) throws IOException {
+        writeString(out, response.getRequestHash());
+        out.writeLong(response.getExpireTimeMillis());
+        out.writeLong(response.getTimeout());
+        out.writeInt(response.getHits());
+        out.writeLong(response.getFetchCost());
+        writeString(out, response.getResponsePayload());
+        Map<String, Object> headers = response.getHeaderProperties();
+        if (headers == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(headers.size());
+            for (Map.Entry<String, Object> header : headers.entrySet()) {
+                writeString(out, header.getKey());
+                writeString(out, header.getValue() != null ? header.getValue().toString() : null);
+            }
+        }
+        Set<String> tags = response.getTags();
+        if (tags == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(tags.size());
+            for (String tag : tags) {
+                writeString(out, tag);
+            }
+        }
+        VariantTable variants = response.getVariants();
+        if (variants == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(variants.getVary().length);
+            for (String name : variants.getVary()) {
+                writeString(out, name);
+            }
+            String[] keys = variants.getKeys();
+            out.writeInt(keys.length);
+            for (int i = 0; i < keys.length; i++) {
+                writeString(out, keys[i]);
+                writeEntry(out, variants.getVariants()[i]);
+            }
+        }
+    }
+
+    private static CachableResponse readEntry(DataInputStream in) throws IOException {
+        CachableResponse response = new CachableResponse();
+        response.setRequestHash(readString(in));
+        response.setExpireTimeMillis(in.readLong());
+        response.setTimeout(in.readLong());
+        response.setHits(in.readInt());
+        response.setFetchCost(in.readLong());
+        response.setResponsePayload(readString(in));
+        int headerCount = in.readInt();
+        if (headerCount >= 0) {
+            Map<String, Object> headers = new HashMap<String, Object>();
+            for (int i = 0; i < headerCount; i++) {
+                headers.put(readString(in), readString(in));
+            }
+            response.setHeaderProperties(HeaderSet.of(headers));
+        }
+        int tagCount = in.readInt();
+        if (tagCount >= 0) {
+            Set<String> tags = new HashSet<String>();
+            for (int i = 0; i < tagCount; i++) {
+                tags.add(readString(in));
+            }
+            response.setTags(tags);
+        }
+        int varyCount = in.readInt();
+        if (varyCount >= 0) {
+            String[] vary = new String[varyCount];
+            for (int i = 0; i < varyCount; i++) {
+                vary[i] = readString(in);
+            }
+            int variantCount = in.readInt();
+            List<String> keys = new ArrayList<String>(variantCount);
+            List<CachableResponse> variants = new ArrayList<CachableResponse>(variantCount);
+            for (int i = 0; i < variantCount; i++) {
+                String key = readString(in);
+                CachableResponse variant = readEntry(in);
+                // the variants which have expired in the meantime are dropped, a table left empty is skipped
+                if (!variant.isExpired()) {
+                    keys.add(key);
+                    variants.add(variant);
+                }
+            }
+            if (!variants.isEmpty()) {
+                response.setVariants(new VariantTable(vary, keys.toArray(new String[keys.size()]),
+                                                      variants.toArray(new CachableResponse[variants.size()])));
+            }
+        }
+        return response;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Counts the bytes read through it, which is the uncompressed size of the snapshot read so far
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+}
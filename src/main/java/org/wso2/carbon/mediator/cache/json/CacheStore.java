@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import org.apache.axis2.context.ConfigurationContext;
+
+/**
+ * This is the service provider interface of the storage engine behind the cache mediator. A store is selected
+ * with the class attribute of the implementation element of the mediator configuration and is resolved once, when
+ * the mediator is initialized, through the {@link CacheStoreManager}. Implementations have to be thread safe and
+ * must provide a public no argument constructor. A store removes the responses it retains once they expire,
+ * which can be done by scheduling them with {@link ExpiryTask#schedule(CacheStore, CachableResponse)}.
+ */
+public interface CacheStore {
+
+    /**
+     * This method initializes the store before it is handed to any mediator
+     *
+     * @param cacheName - name of the cache which is backed by this store
+     * @param maxSize   - maximum number of entries to be kept in memory, or 0 if not bounded
+     * @param cfgCtx    - axis2 configuration context of the server, or null if not available
+     * @throws CachingException if the store cannot be initialized
+     */
+    void init(String cacheName, int maxSize, ConfigurationContext cfgCtx) throws CachingException;
+
+    /**
+     * This method gives the cached response stored against the given key
+     *
+     * @param key - request hash of the cached response
+     * @return CachableResponse stored against the key or null if there is none
+     */
+    CachableResponse get(String key);
+
+    /**
+     * This method stores the given cached response replacing any existing response of the key
+     *
+     * @param key      - request hash of the cached response
+     * @param response - cached response to be stored
+     */
+    void put(String key, CachableResponse response);
+
+    /**
+     * This method stores the given cached response only if there is no response stored against the key
+     *
+     * @param key      - request hash of the cached response
+     * @param response - cached response to be stored
+     * @return boolean true if the response was stored and false if not
+     */
+    boolean putIfAbsent(String key, CachableResponse response);
+
+    /**
+     * This method replaces the cached response of the key only if it is currently the expected response
+     *
+     * @param key      - request hash of the cached response
+     * @param expected - cached response expected to be stored against the key
+     * @param response - cached response to be stored
+     * @return boolean true if the response was replaced and false if not
+     */
+    boolean replace(String key, CachableResponse expected, CachableResponse response);
+
+    /**
+     * This method removes the cached response stored against the given key
+     *
+     * @param key - request hash of the cached response
+     * @return boolean true if a response was removed and false if not
+     */
+    boolean remove(String key);
+
+    /**
+     * This method removes the cached response of the key only if it is currently the given response
+     *
+     * @param key      - request hash of the cached response
+     * @param response - cached response expected to be stored against the key
+     * @return boolean true if the response was removed and false if not
+     */
+    boolean remove(String key, CachableResponse response);
+
+    /**
+     * This method removes all the cached responses from the store
+     */
+    void clear();
+
+    /**
+     * This method releases the resources held by the store once no mediator is using it
+     */
+    void destroy();
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import org.apache.axis2.context.ConfigurationContext;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * This class keeps the {@link CacheStore} instances shared by the cache mediators, indexed by cache name. Stores
+ * are created on the first acquisition and destroyed when the last mediator using them releases them. Acquiring
+ * and releasing happen on mediator initialization and destruction only, the mediators keep the acquired store.
+ */
+public final class CacheStoreManager {
+
+    /**
+     * Log object to use when logging is required in this class.
+     */
+    private static final Log log = LogFactory.getLog(CacheStoreManager.class);
+
+    /**
+     * The stores in use indexed by cache name
+     */
+    private static final Map<String, Registration> stores = new HashMap<String, Registration>();
+
+    private CacheStoreManager() {
+    }
+
+    /**
+     * This method gives the store of the given cache, creating and initializing it if no mediator is using it yet
+     *
+     * @param cacheName      - name of the cache
+     * @param storeClassName - class name of the store implementation, or null to use the default store
+     * @param maxSize        - maximum number of entries to be kept in memory
+     * @param cfgCtx         - axis2 configuration context of the server, or null if not available
+     * @return CacheStore of the cache
+     * @throws CachingException if the store cannot be created
+     */
+    public static synchronized CacheStore acquire(String cacheName, String storeClassName, int maxSize,
+                                                  ConfigurationContext cfgCtx) throws CachingException {
+        String className = storeClassName != null ? storeClassName : CachingConstants.DEFAULT_CACHE_STORE;
+        Registration registration = stores.get(cacheName);
+        if (registration == null) {
+            CacheStore store = newStore(className);
+            registration = new Registration(store);
+            if (store instanceof ClusteredCacheStore) {
+                ((ClusteredCacheStore) store).setTagIndex(registration.tagIndex);
+            }
+            store.init(cacheName, maxSize, cfgCtx);
+            stores.put(cacheName, registration);
+        } else if (!registration.store.getClass().getName().equals(className)) {
+            log.warn("Cache : " + cacheName + " is already backed by " + registration.store.getClass().getName() +
+                             ", ignoring the requested implementation : " + className);
+        }
+        registration.references++;
+        return registration.store;
+    }
+
+    /**
+     * This method gives the store of the given cache if it is in use, through the hot key replica or the heap guard
+     * decorating it if the mediators of the cache use one
+     *
+     * @param cacheName - name of the cache
+     * @return CacheStore of the cache, or null if no mediator is using it
+     */
+    public static synchronized CacheStore getStore(String cacheName) {
+        Registration registration = stores.get(cacheName);
+        if (registration == null) {
+            return null;
+        } else if (registration.hotKeyStore != null) {
+            return registration.hotKeyStore;
+        } else if (registration.heapGuard != null) {
+            return registration.heapGuard;
+        }
+        return registration.store;
+    }
+
+    /**
+     * This method checks whether the store of the given cache discards every response leaving it, see
+     * {@link DiscardingCacheStore}
+     *
+     * @param cacheName - name of the cache
+     * @return boolean true if the store discards every response leaving it and false if not or it is not in use
+     */
+    public static synchronized boolean discardsResponses(String cacheName) {
+        Registration registration = stores.get(cacheName);
+        return registration != null && registration.store instanceof DiscardingCacheStore;
+    }
+
+    /**
+     * This method gives the store of the given cache if it is in use and shares the cache with other nodes
+     *
+     * @param cacheName - name of the cache
+     * @return ClusteredCacheStore of the cache, or null if no mediator is using it or it is local to this node
+     */
+    public static synchronized ClusteredCacheStore getClusteredStore(String cacheName) {
+        Registration registration = stores.get(cacheName);
+        return registration != null && registration.store instanceof ClusteredCacheStore ?
+                (ClusteredCacheStore) registration.store : null;
+    }
+
+    /**
+     * This method gives the tag index of the given cache if it is in use
+     *
+     * @param cacheName - name of the cache
+     * @return TagIndex of the cache, or null if no mediator is using it
+     */
+    public static synchronized TagIndex getTagIndex(String cacheName) {
+        Registration registration = stores.get(cacheName);
+        return registration != null ? registration.tagIndex : null;
+    }
+
+    /**
+     * This method gives the payload pool of the given cache if it is in use
+     *
+     * @param cacheName - name of the cache
+     * @return PayloadPool of the cache, or null if no mediator is using it
+     */
+    public static synchronized PayloadPool getPayloadPool(String cacheName) {
+        Registration registration = stores.get(cacheName);
+        return registration != null ? registration.payloadPool : null;
+    }
+
+    /**
+     * This method gives the store of the given cache guarded against heap pressure, creating the guard and
+     * registering it with the {@link HeapPressureMonitor} on the first call
+     *
+     * @param cacheName - name of the cache
+     * @return HeapGuardedCacheStore of the cache, or null if no mediator is using it or its store cannot be
+     * enumerated
+     */
+    public static synchronized HeapGuardedCacheStore getHeapGuardedStore(String cacheName) {
+        Registration registration = stores.get(cacheName);
+        if (registration == null || !(registration.store instanceof EnumerableCacheStore)) {
+            return null;
+        }
+        if (registration.heapGuard == null) {
+            registration.heapGuard = new HeapGuardedCacheStore((EnumerableCacheStore) registration.store);
+            HeapPressureMonitor.watch(registration.heapGuard);
+        }
+        return registration.heapGuard;
+    }
+
+    /**
+     * This method gives the store of the given cache decorated with a local replica of its hot keys, creating the
+     * replica on the first call. The capacity of the first call is kept for the cache.
+     *
+     * @param cacheName - name of the cache
+     * @param capacity  - maximum number of hot keys
+     * @return HotKeyCacheStore of the cache, or null if no mediator is using it
+     */
+    public static synchronized HotKeyCacheStore getHotKeyStore(String cacheName, int capacity) {
+        Registration registration = stores.get(cacheName);
+        if (registration == null) {
+            return null;
+        }
+        if (registration.hotKeyStore == null) {
+            registration.hotKeyStore = new HotKeyCacheStore(registration.store, capacity);
+        }
+        return registration.hotKeyStore;
+    }
+
+    /**
+     * This method gives the miss ratio curve of the given cache, creating it and registering it in the platform
+     * MBean server on the first call. The sampling of the first call is kept for the cache.
+     *
+     * @param cacheName    - name of the cache
+     * @param samplingRate - the initial fraction of the keys to be sampled
+     * @param sampleSize   - the maximum number of sampled keys
+     * @return MissRatioCurve of the cache, or null if no mediator is using it
+     */
+    public static synchronized MissRatioCurve getMissRatioCurve(String cacheName, double samplingRate,
+                                                                int sampleSize) {
+        Registration registration = stores.get(cacheName);
+        if (registration == null) {
+            return null;
+        }
+        if (registration.missRatioCurve == null) {
+            registration.missRatioCurve = new MissRatioCurve(samplingRate, sampleSize);
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(registration.missRatioCurve,
+                                                                         missRatioCurveName(cacheName));
+            } catch (JMException e) {
+                log.warn("Unable to register the miss ratio curve of the cache : " + cacheName, e);
+            }
+        }
+        return registration.missRatioCurve;
+    }
+
+    /**
+     * This method gives the miss ratio curve of the given cache if it is being estimated
+     *
+     * @param cacheName - name of the cache
+     * @return MissRatioCurve of the cache, or null if no mediator is using it or it is not being estimated
+     */
+    public static synchronized MissRatioCurve getMissRatioCurve(String cacheName) {
+        Registration registration = stores.get(cacheName);
+        return registration != null ? registration.missRatioCurve : null;
+    }
+
+    /**
+     * This method releases a store acquired by a mediator and destroys it once it is no longer used
+     *
+     * @param cacheName - name of the cache
+     */
+    public static synchronized void release(String cacheName) {
+        Registration registration = stores.get(cacheName);
+        if (registration != null && --registration.references <= 0) {
+            stores.remove(cacheName);
+            if (registration.heapGuard != null) {
+                HeapPressureMonitor.unwatch(registration.heapGuard);
+            }
+            if (registration.hotKeyStore != null) {
+                registration.hotKeyStore.destroy();
+            }
+            if (registration.missRatioCurve != null) {
+                if (log.isInfoEnabled()) {
+                    log.info("Predicted hit ratios of the cache : " + cacheName + " by capacity : "
+                                     + Arrays.toString(registration.missRatioCurve.getCapacityCurve())
+                                     + ", by bytes : " + Arrays.toString(registration.missRatioCurve.getByteCurve()));
+                }
+                try {
+                    ManagementFactory.getPlatformMBeanServer().unregisterMBean(missRatioCurveName(cacheName));
+                } catch (JMException e) {
+                    log.warn("Unable to unregister the miss ratio curve of the cache : " + cacheName, e);
+                }
+            }
+            registration.store.destroy();
+        }
+    }
+
+    /**
+     * Instantiates the store implementation of the given class
+     *
+     * @param className - class name of the store implementation
+     * @return CacheStore new store instance
+     * @throws CachingException if the class cannot be loaded or is not a CacheStore
+     */
+    private static CacheStore newStore(String className) throws CachingException {
+        try {
+            Object o = Class.forName(className).newInstance();
+            if (o instanceof CacheStore) {
+                return (CacheStore) o;
+            }
+            throw new CachingException("Specified class for the cache implementation is not a CacheStore : "
+                                               + className);
+        } catch (ClassNotFoundException e) {
+            throw new CachingException("Unable to load the cache implementation class : " + className, e);
+        } catch (IllegalAccessException e) {
+            throw new CachingException("Unable to access the cache implementation class : " + className, e);
+        } catch (InstantiationException e) {
+            throw new CachingException("Unable to instantiate the cache implementation class : " + className, e);
+        }
+    }
+
+    /**
+     * Gives the name the miss ratio curve of the given cache is registered with in the platform MBean server
+     *
+     * @param cacheName - name of the cache
+     * @return ObjectName of the miss ratio curve
+     * @throws JMException if the name is not valid
+     */
+    private static ObjectName missRatioCurveName(String cacheName) throws JMException {
+        return new ObjectName(CachingConstants.MISS_RATIO_CURVE_DOMAIN + ":type=MissRatioCurve,name="
+                                      + ObjectName.quote(cacheName));
+    }
+
+    /**
+     * A store together with its tag index, its payload pool, its decorators, its miss ratio curve and the number
+     * of mediators using it
+     */
+    private static final class Registration {
+
+        private final CacheStore store;
+
+        private final TagIndex tagIndex = new TagIndex();
+
+        private final PayloadPool payloadPool = new PayloadPool();
+
+        private HeapGuardedCacheStore heapGuard;
+
+        private HotKeyCacheStore hotKeyStore;
+
+        private MissRatioCurve missRatioCurve;
+
+        private int references;
+
+        private Registration(CacheStore store) {
+            this.store = store;
+        }
+    }
+}
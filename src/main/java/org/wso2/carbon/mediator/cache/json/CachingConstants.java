@@ -33,6 +33,54 @@ public final class CachingConstants {
 	/** String key to store the cached response in the message context */
 	public static final String CACHED_OBJECT = "CachableResponse";
 
+	/** String key to store the cache store of the cached response in the operation context */
+	public static final String CACHE_STORE = "CacheStore";
+
+	/** String key to store the tag index of the cache in the operation context */
+	public static final String TAG_INDEX = "TagIndex";
+
+	/** The property name of the payload pool of the cache in the operation context */
+	public static final String PAYLOAD_POOL = "PayloadPool";
+
+	/** The property name of the time the request was forwarded to the backend in the operation context */
+	public static final String REQUEST_TIME = "RequestTime";
+
+	/** The property name of the adaptive timeout of the cache in the operation context */
+	public static final String ADAPTIVE_TIMEOUT = "AdaptiveTimeout";
+
+	/** The property name of the jitter percentage of the timeouts in the operation context */
+	public static final String JITTER = "Jitter";
+
+	/** The property name of the batch request being served in the operation context */
+	public static final String BATCH_REQUEST = "BatchRequest";
+
+	/** The property name of the projection requested by the client in the operation context */
+	public static final String PROJECTION = "Projection";
+
+	/** The property name of the representations of the cache in the operation context */
+	public static final String REPRESENTATIONS = "Representations";
+
+	/** The property name of the spool of large responses in the operation context */
+	public static final String RESPONSE_SPOOL = "ResponseSpool";
+
+	/** The property name of the heap guarded store of the cache in the operation context */
+	public static final String HEAP_GUARD = "HeapGuard";
+
+	/** The property name of the miss ratio curve of the cache in the operation context */
+	public static final String MISS_RATIO_CURVE = "MissRatioCurve";
+
+	/** The property name of the headers of the request in the operation context */
+	public static final String REQUEST_HEADERS = "RequestHeaders";
+
+	/** Response header naming the request headers the response varies on */
+	public static final String VARY_HEADER = "Vary";
+
+	/** Response header listing the tags of the response, separated by commas */
+	public static final String CACHE_TAGS_HEADER = "X-Cache-Tags";
+
+	/** Action attribute value of a mediator invalidating tagged responses */
+	public static final String ACTION_INVALIDATE = "invalidate";
+
 	/** String key to store the cache object */
 	public static final String CACHE_MANAGER = "cacheManager";
 
@@ -60,10 +108,94 @@ public final class CachingConstants {
 	/** Default cache size (in-memory) */
 	public static final int DEFAULT_CACHE_SIZE = 1000;
 
+	/** Default cache store implementation */
+	public static final String DEFAULT_CACHE_STORE = JCacheStore.class.getName();
+
 	/** Primary cache name */
 	public static final String MEDIATOR_CACHE = "mediatorCache";
 
+	/** Name of the cache replicated among the cluster for the distributed scope */
+	public static final String DISTRIBUTED_MEDIATOR_CACHE = "distributedMediatorCache";
+
+	/** Maximum number of updates waiting to be replicated, further updates are dropped */
+	public static final int REPLICATION_QUEUE_SIZE = 10000;
+
+	/** Maximum number of updates sent in a single replication batch */
+	public static final int REPLICATION_BATCH_SIZE = 500;
+
+	/** Time the replicator waits for a batch to fill up in milliseconds */
+	public static final long REPLICATION_LINGER_MILLIS = 20L;
+
+	/** Number of virtual nodes of every member of a partitioned cache */
+	public static final int VIRTUAL_NODES = 128;
+
+	/** Time a lookup of a key owned by another member waits for the reply before it misses, in milliseconds */
+	public static final long REMOTE_LOOKUP_TIMEOUT_MILLIS = 50L;
+
+	/** Time a conditional update of a key owned by another member waits for the reply in milliseconds */
+	public static final long REMOTE_UPDATE_TIMEOUT_MILLIS = 500L;
+
+	/** Interval at which the members of a partitioned cache announce themselves in milliseconds */
+	public static final long MEMBER_HEARTBEAT_MILLIS = 1000L;
+
+	/** Time after which a member of a partitioned cache which has not announced itself is dropped, in milliseconds */
+	public static final long MEMBER_TIMEOUT_MILLIS = 5000L;
+
+	/** Default number of hot keys replicated locally in the distributed scope */
+	public static final int DEFAULT_HOT_KEYS = 64;
+
+	/** Time for which the response of a hot key is served from the local replica in milliseconds */
+	public static final long HOT_KEY_TTL_MILLIS = 2000L;
+
+	/** Default maximum number of uncompressed snapshot bytes restored when the mediator is initialized */
+	public static final long DEFAULT_SNAPSHOT_RESTORE_BUDGET = 64L * 1024 * 1024;
+
+	/** Number of threads storing the responses of asynchronous collectors */
+	public static final int COLLECTOR_THREADS = 2;
+
+	/** Number of responses waiting to be stored before asynchronous collectors stop caching */
+	public static final int COLLECTOR_QUEUE_SIZE = 1000;
+
+	/** Default path of the array of items in the responses to batch requests */
+	public static final String DEFAULT_BATCH_RESPONSE_PATH = "$";
+
+	/** Maximum number of variants kept for a response varying on request headers */
+	public static final int MAX_VARIANTS = 8;
+
+	/** Number of keys per cache entry tracked by the admission policies */
+	public static final int ADMISSION_KEYS_PER_ENTRY = 10;
+
+	/** Number of keys per cache entry whose last response is remembered by the adaptive timeouts */
+	public static final int ADAPTIVE_HISTORY_KEYS_PER_ENTRY = 2;
+
 	/** Default cache invalidation time */
 	public static final Integer CACHE_INVALIDATION_TIME = 1000 * 24 * 3600;
 
+	/** Resolution of the coarse clock used for the expiry checks in milliseconds */
+	public static final long CLOCK_RESOLUTION_MILLIS = 10L;
+
+	/** Fraction of the maximum heap above which the guarded caches shed responses */
+	public static final double HEAP_HIGH_WATER = 0.85;
+
+	/** Fraction of the maximum heap the guarded caches shed responses down to */
+	public static final double HEAP_LOW_WATER = 0.7;
+
+	/** Minimum interval between the checks of the end of a heap pressure in milliseconds */
+	public static final long HEAP_PRESSURE_CHECK_MILLIS = 1000L;
+
+	/** Default size above which responses are not stored while the heap is under pressure, in bytes */
+	public static final long DEFAULT_HEAP_PRESSURE_MAX_MESSAGE_SIZE = 64L * 1024;
+
+	/** Default fraction of the keys initially sampled to estimate the miss ratio curve */
+	public static final double DEFAULT_MISS_RATIO_CURVE_SAMPLING_RATE = 0.01;
+
+	/** Default maximum number of keys sampled to estimate the miss ratio curve */
+	public static final int DEFAULT_MISS_RATIO_CURVE_SAMPLE_SIZE = 8192;
+
+	/** Domain of the names the miss ratio curves are registered with in the platform MBean server */
+	public static final String MISS_RATIO_CURVE_DOMAIN = "org.wso2.carbon.mediator.cache.json";
+
+	/** Tick duration of the timer wheel which removes expired responses in milliseconds */
+	public static final long EXPIRY_TICK_MILLIS = 100L;
+
 }
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import java.util.Collection;
+
+/**
+ * A {@link CacheStore} sharing the cache with the other nodes of a cluster. Tags are indexed on the node which
+ * stores a response, so such a store indexes the responses it receives from the other nodes in the tag index of
+ * the cache, and forwards the tag invalidations of this node to the nodes holding responses it has not indexed.
+ */
+public interface ClusteredCacheStore extends CacheStore {
+
+    /**
+     * This method sets the index in which the responses received from the other nodes are indexed by tag. It is
+     * called by the {@link CacheStoreManager} before the store is initialized.
+     *
+     * @param tagIndex - the tag index of the cache
+     */
+    void setTagIndex(TagIndex tagIndex);
+
+    /**
+     * This method forwards an invalidation made on this node to the other nodes, which remove the responses they
+     * indexed under the tags
+     *
+     * @param tags     - the tags invalidated
+     * @param prefixes - the prefixes of the tags invalidated
+     */
+    void invalidateTags(Collection<String> tags, Collection<String> prefixes);
+}
@@ -0,0 +1,487 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import org.apache.axis2.clustering.ClusteringAgent;
+import org.apache.axis2.clustering.ClusteringCommand;
+import org.apache.axis2.clustering.ClusteringFault;
+import org.apache.axis2.clustering.ClusteringMessage;
+import org.apache.axis2.context.ConfigurationContext;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link PartitionTransport} exchanging the messages of a partitioned cache through the axis2 clustering agent of
+ * the server. The clustering agent broadcasts every message, so a message names the member it is addressed to and
+ * the other members ignore it. Replies are messages as well, matched to the waiting request by a correlation id.
+ * <p/>
+ * The clustering agent has no way of sending a message to a single member, so this transport does not scale with
+ * the cluster like the partitioning does: every lookup, update and reply is delivered to and deserialized by all
+ * the members, and the cluster traffic grows with the number of members times the request rate of the cache. The
+ * partitioning still bounds the memory of a member, but a large cluster should be given a transport which
+ * addresses the owner directly, passed to {@link PartitionedCacheStore#PartitionedCacheStore(PartitionTransport)}.
+ * <p/>
+ * The members of the cache are the nodes on which the cache is started. Every member announces itself every
+ * {@link CachingConstants#MEMBER_HEARTBEAT_MILLIS} milliseconds and when it leaves, and a member which has not
+ * announced itself for {@link CachingConstants#MEMBER_TIMEOUT_MILLIS} milliseconds is dropped. The handler is
+ * notified of every change, so that the ring of the cache follows the members. If clustering is not enabled the
+ * local member is the only member and the cache behaves as a local cache.
+ */
+public class ClusteringPartitionTransport implements PartitionTransport {
+
+    /**
+     * Log object to use when logging is required in this class.
+     */
+    private static final Log log = LogFactory.getLog(ClusteringPartitionTransport.class);
+
+    /**
+     * The started transports indexed by cache name, used to dispatch the received messages
+     */
+    private static final ConcurrentMap<String, List<ClusteringPartitionTransport>> transports =
+            new ConcurrentHashMap<String, List<ClusteringPartitionTransport>>();
+
+    /**
+     * Axis2 configuration context of the server
+     */
+    private final ConfigurationContext cfgCtx;
+
+    /**
+     * Name of the local member, unique to this start of the node
+     */
+    private final String member = UUID.randomUUID().toString();
+
+    /**
+     * The time each of the other members last announced itself, indexed by member name
+     */
+    private final ConcurrentMap<String, Long> members = new ConcurrentHashMap<String, Long>();
+
+    /**
+     * The requests waiting for their reply indexed by correlation id
+     */
+    private final ConcurrentMap<Long, PendingReply> pending = new ConcurrentHashMap<Long, PendingReply>();
+
+    /**
+     * Issues the correlation ids of the requests
+     */
+    private final AtomicLong correlationIds = new AtomicLong();
+
+    /**
+     * Name of the partitioned cache
+     */
+    private String cacheName;
+
+    /**
+     * Handler of the store connected to this transport
+     */
+    private volatile Handler handler;
+
+    /**
+     * Thread announcing the local member and dropping the silent members
+     */
+    private ScheduledExecutorService heartbeat;
+
+    /**
+     * Creates a transport using the clustering agent of the given configuration context
+     *
+     * @param cfgCtx - axis2 configuration context of the server, or null if not available
+     */
+    public ClusteringPartitionTransport(ConfigurationContext cfgCtx) {
+        this.cfgCtx = cfgCtx;
+    }
+
+    public String getLocalMember() {
+        return member;
+    }
+
+    public void start(String cacheName, Handler handler) throws CachingException {
+        this.cacheName = cacheName;
+        this.handler = handler;
+        List<ClusteringPartitionTransport> started = new CopyOnWriteArrayList<ClusteringPartitionTransport>();
+        List<ClusteringPartitionTransport> existing = transports.putIfAbsent(cacheName, started);
+        (existing != null ? existing : started).add(this);
+        handler.onMembershipChange(getMembers());
+        if (getClusteringAgent() == null) {
+            log.warn("Clustering is not enabled, the partitioned cache : " + cacheName + " is local to this node");
+            return;
+        }
+        final String threadName = "json-cache-partition-heartbeat-" + cacheName;
+        heartbeat = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, threadName);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        heartbeat.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                announce(true);
+                dropSilentMembers();
+            }
+        }, 0, CachingConstants.MEMBER_HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @SuppressWarnings("unchecked")
+    public Map<String, CachableResponse> get(String member, Collection<String> keys) throws CachingException {
+        PendingReply reply = request(new GetRequest(cacheName, member, this.member, nextCorrelationId(),
+                                                    new ArrayList<String>(keys)),
+                                     CachingConstants.REMOTE_LOOKUP_TIMEOUT_MILLIS);
+        return (Map<String, CachableResponse>) reply.result;
+    }
+
+    public boolean putIfAbsent(String member, String key, CachableResponse response) throws CachingException {
+        PendingReply reply = request(new UpdateRequest(cacheName, member, this.member, nextCorrelationId(), key,
+                                                       false, 0, response),
+                                     CachingConstants.REMOTE_UPDATE_TIMEOUT_MILLIS);
+        return (Boolean) reply.result;
+    }
+
+    public boolean replace(String member, String key, long expectedVersion, CachableResponse response)
+            throws CachingException {
+        PendingReply reply = request(new UpdateRequest(cacheName, member, this.member, nextCorrelationId(), key,
+                                                       true, expectedVersion, response),
+                                     CachingConstants.REMOTE_UPDATE_TIMEOUT_MILLIS);
+        return (Boolean) reply.result;
+    }
+
+    public void send(String member, ReplicationBatch batch) throws CachingException {
+        checkMember(member);
+        broadcast(new BatchMessage(cacheName, member, this.member, batch));
+    }
+
+    public void stop() {
+        if (heartbeat != null) {
+            heartbeat.shutdownNow();
+            heartbeat = null;
+            try {
+                announce(false);
+            } catch (CachingException e) {
+                log.warn("Unable to announce the departure from the partitioned cache : " + cacheName, e);
+            }
+        }
+        if (cacheName != null) {
+            List<ClusteringPartitionTransport> started = transports.get(cacheName);
+            if (started != null) {
+                started.remove(this);
+            }
+        }
+        handler = null;
+        members.clear();
+    }
+
+    /**
+     * This method gives the names of the current members of the cache
+     *
+     * @return Set of the member names, including the local member
+     */
+    public Set<String> getMembers() {
+        Set<String> names = new HashSet<String>(members.keySet());
+        names.add(member);
+        return names;
+    }
+
+    private ClusteringAgent getClusteringAgent() {
+        return cfgCtx != null ? cfgCtx.getAxisConfiguration().getClusteringAgent() : null;
+    }
+
+    private long nextCorrelationId() {
+        return correlationIds.incrementAndGet();
+    }
+
+    private void checkMember(String name) throws CachingException {
+        if (!members.containsKey(name)) {
+            throw new CachingException("Member : " + name + " of the partitioned cache : " + cacheName +
+                                               " is not reachable");
+        }
+    }
+
+    /**
+     * Sends a request to a member and waits for its reply
+     *
+     * @param request       - the request to be sent
+     * @param timeoutMillis - time to wait for the reply in milliseconds
+     * @return PendingReply holding the result of the request
+     * @throws CachingException if the member cannot be reached or does not reply in time
+     */
+    private PendingReply request(PartitionMessage request, long timeoutMillis) throws CachingException {
+        checkMember(request.target);
+        PendingReply reply = new PendingReply();
+        pending.put(request.correlationId, reply);
+        try {
+            broadcast(request);
+            if (!reply.done.await(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new CachingException("Member : " + request.target + " of the partitioned cache : " +
+                                                   cacheName + " did not reply in " + timeoutMillis + " ms");
+            }
+            return reply;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CachingException("Interrupted while waiting for member : " + request.target, e);
+        } finally {
+            pending.remove(request.correlationId);
+        }
+    }
+
+    private void broadcast(PartitionMessage message) throws CachingException {
+        ClusteringAgent agent = getClusteringAgent();
+        if (agent == null) {
+            throw new CachingException("Clustering is not enabled, member : " + message.target +
+                                               " is not reachable");
+        }
+        try {
+            agent.sendMessage(message, false);
+        } catch (ClusteringFault e) {
+            throw new CachingException("Unable to send a message of the partitioned cache : " + cacheName, e);
+        }
+    }
+
+    private void announce(boolean alive) {
+        try {
+            broadcast(new MemberMessage(cacheName, member, alive));
+        } catch (CachingException e) {
+            log.warn("Unable to announce the local member of the partitioned cache : " + cacheName, e);
+        }
+    }
+
+    private void dropSilentMembers() {
+        long deadline = System.currentTimeMillis() - CachingConstants.MEMBER_TIMEOUT_MILLIS;
+        boolean changed = false;
+        for (Iterator<Map.Entry<String, Long>> itr = members.entrySet().iterator(); itr.hasNext(); ) {
+            if (itr.next().getValue() < deadline) {
+                itr.remove();
+                changed = true;
+            }
+        }
+        if (changed) {
+            notifyMembers();
+        }
+    }
+
+    private void notifyMembers() {
+        Handler target = handler;
+        if (target != null) {
+            target.onMembershipChange(getMembers());
+        }
+    }
+
+    /**
+     * Applies a message received from another member
+     *
+     * @param message - the received message
+     */
+    private void receive(PartitionMessage message) {
+        Handler target = handler;
+        if (target == null || member.equals(message.sender)) {
+            return;
+        }
+        if (message instanceof MemberMessage) {
+            boolean alive = ((MemberMessage) message).alive;
+            Long previous = alive ? members.put(message.sender, System.currentTimeMillis()) :
+                    members.remove(message.sender);
+            if (alive && previous == null) {
+                // a new member learns about this member without waiting for its next announcement
+                announce(true);
+            }
+            if ((previous == null) == alive) {
+                notifyMembers();
+            }
+            return;
+        }
+        if (!member.equals(message.target)) {
+            return;
+        }
+        if (message instanceof ReplyMessage) {
+            PendingReply reply = pending.get(message.correlationId);
+            if (reply != null) {
+                reply.result = ((ReplyMessage) message).result;
+                reply.done.countDown();
+            }
+        } else if (message instanceof BatchMessage) {
+            target.onBatch(((BatchMessage) message).batch);
+        } else if (message instanceof GetRequest) {
+            reply(message, new HashMap<String, CachableResponse>(target.onGet(((GetRequest) message).keys)));
+        } else if (message instanceof UpdateRequest) {
+            UpdateRequest update = (UpdateRequest) message;
+            reply(message, update.replace ?
+                    target.onReplace(update.key, update.expectedVersion, update.response) :
+                    target.onPutIfAbsent(update.key, update.response));
+        }
+    }
+
+    private void reply(PartitionMessage request, Object result) {
+        try {
+            broadcast(new ReplyMessage(cacheName, request.sender, member, request.correlationId, result));
+        } catch (CachingException e) {
+            log.warn("Unable to reply to member : " + request.sender + " of the partitioned cache : " + cacheName, e);
+        }
+    }
+
+    /**
+     * A request waiting for its reply
+     */
+    private static final class PendingReply {
+
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private volatile Object result;
+    }
+
+    /**
+     * A clustering message of a partitioned cache, addressed to a single member or to all the members
+     */
+    public abstract static class PartitionMessage extends ClusteringMessage {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String cacheName;
+
+        private final String target;
+
+        private final String sender;
+
+        private final long correlationId;
+
+        protected PartitionMessage(String cacheName, String target, String sender, long correlationId) {
+            this.cacheName = cacheName;
+            this.target = target;
+            this.sender = sender;
+            this.correlationId = correlationId;
+        }
+
+        @Override
+        public void execute(ConfigurationContext configurationContext) throws ClusteringFault {
+            List<ClusteringPartitionTransport> started = transports.get(cacheName);
+            if (started == null) {
+                return;
+            }
+            for (ClusteringPartitionTransport transport : started) {
+                transport.receive(this);
+            }
+        }
+
+        @Override
+        public ClusteringCommand getResponse() {
+            return null;
+        }
+    }
+
+    /**
+     * Announces that a member joined or is still alive, or that it leaves
+     */
+    public static class MemberMessage extends PartitionMessage {
+
+        private static final long serialVersionUID = 1L;
+
+        private final boolean alive;
+
+        public MemberMessage(String cacheName, String sender, boolean alive) {
+            super(cacheName, null, sender, 0);
+            this.alive = alive;
+        }
+    }
+
+    /**
+     * Carries a batch of updates of keys owned by the target member
+     */
+    public static class BatchMessage extends PartitionMessage {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ReplicationBatch batch;
+
+        public BatchMessage(String cacheName, String target, String sender, ReplicationBatch batch) {
+            super(cacheName, target, sender, 0);
+            this.batch = batch;
+        }
+    }
+
+    /**
+     * Looks up keys owned by the target member
+     */
+    public static class GetRequest extends PartitionMessage {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ArrayList<String> keys;
+
+        public GetRequest(String cacheName, String target, String sender, long correlationId,
+                          ArrayList<String> keys) {
+            super(cacheName, target, sender, correlationId);
+            this.keys = keys;
+        }
+    }
+
+    /**
+     * Conditionally stores the response of a key owned by the target member
+     */
+    public static class UpdateRequest extends PartitionMessage {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String key;
+
+        private final boolean replace;
+
+        private final long expectedVersion;
+
+        private final CachableResponse response;
+
+        public UpdateRequest(String cacheName, String target, String sender, long correlationId, String key,
+                             boolean replace, long expectedVersion, CachableResponse response) {
+            super(cacheName, target, sender, correlationId);
+            this.key = key;
+            this.replace = replace;
+            this.expectedVersion = expectedVersion;
+            this.response = response;
+        }
+    }
+
+    /**
+     * Carries the result of a request back to the member which sent it
+     */
+    public static class ReplyMessage extends PartitionMessage {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Object result;
+
+        public ReplyMessage(String cacheName, String target, String sender, long correlationId, Object result) {
+            super(cacheName, target, sender, correlationId);
+            this.result = result;
+        }
+    }
+}
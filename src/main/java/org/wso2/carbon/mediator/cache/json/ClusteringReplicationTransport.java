@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import org.apache.axis2.clustering.ClusteringAgent;
+import org.apache.axis2.clustering.ClusteringCommand;
+import org.apache.axis2.clustering.ClusteringFault;
+import org.apache.axis2.clustering.ClusteringMessage;
+import org.apache.axis2.context.ConfigurationContext;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link ReplicationTransport} sending the replication batches as messages of the axis2 clustering agent of the
+ * server. If clustering is not enabled the batches are dropped and the cache behaves as a local cache.
+ */
+public class ClusteringReplicationTransport implements ReplicationTransport {
+
+    /**
+     * Log object to use when logging is required in this class.
+     */
+    private static final Log log = LogFactory.getLog(ClusteringReplicationTransport.class);
+
+    /**
+     * Listeners of the started transports indexed by cache name, used to dispatch the received messages
+     */
+    private static final ConcurrentMap<String, Listener> listeners = new ConcurrentHashMap<String, Listener>();
+
+    /**
+     * Axis2 configuration context of the server
+     */
+    private final ConfigurationContext cfgCtx;
+
+    /**
+     * Name of the replicated cache
+     */
+    private String cacheName;
+
+    /**
+     * Creates a transport using the clustering agent of the given configuration context
+     *
+     * @param cfgCtx - axis2 configuration context of the server, or null if not available
+     */
+    public ClusteringReplicationTransport(ConfigurationContext cfgCtx) {
+        this.cfgCtx = cfgCtx;
+    }
+
+    public void start(String cacheName, Listener listener) throws CachingException {
+        this.cacheName = cacheName;
+        listeners.put(cacheName, listener);
+        if (getClusteringAgent() == null) {
+            log.warn("Clustering is not enabled, the distributed cache : " + cacheName + " is local to this node");
+        }
+    }
+
+    public void send(ReplicationBatch batch) throws CachingException {
+        ClusteringAgent agent = getClusteringAgent();
+        if (agent == null) {
+            return;
+        }
+        try {
+            agent.sendMessage(new CacheReplicationMessage(batch), false);
+        } catch (ClusteringFault e) {
+            throw new CachingException("Unable to replicate the cache : " + batch.getCacheName(), e);
+        }
+    }
+
+    public void stop() {
+        if (cacheName != null) {
+            listeners.remove(cacheName);
+        }
+    }
+
+    private ClusteringAgent getClusteringAgent() {
+        return cfgCtx != null ? cfgCtx.getAxisConfiguration().getClusteringAgent() : null;
+    }
+
+    /**
+     * The clustering message carrying a replication batch to the other nodes
+     */
+    public static class CacheReplicationMessage extends ClusteringMessage {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ReplicationBatch batch;
+
+        public CacheReplicationMessage(ReplicationBatch batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public void execute(ConfigurationContext configurationContext) throws ClusteringFault {
+            Listener listener = listeners.get(batch.getCacheName());
+            if (listener != null) {
+                listener.onBatch(batch);
+            }
+        }
+
+        @Override
+        public ClusteringCommand getResponse() {
+            return null;
+        }
+    }
+}
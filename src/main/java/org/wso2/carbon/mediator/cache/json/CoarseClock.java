@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A clock which is refreshed by a background daemon thread every {@link CachingConstants#CLOCK_RESOLUTION_MILLIS}
+ * milliseconds. Reading it is a single volatile read, which makes it suitable for the expiry check done on every
+ * cache hit where the precision of {@link System#currentTimeMillis()} is not required.
+ */
+public final class CoarseClock {
+
+    /**
+     * The last time observed by the ticker thread, in the standard java system time format
+     */
+    private static volatile long now = System.currentTimeMillis();
+
+    static {
+        ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "json-cache-coarse-clock");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        ticker.scheduleAtFixedRate(new Runnable() {
+            public void run() {
+                now = System.currentTimeMillis();
+            }
+        }, CachingConstants.CLOCK_RESOLUTION_MILLIS, CachingConstants.CLOCK_RESOLUTION_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private CoarseClock() {
+    }
+
+    /**
+     * This method gives the current time with the resolution of the clock
+     *
+     * @return long current time in the standard java system time format
+     */
+    public static long currentTimeMillis() {
+        return now;
+    }
+}
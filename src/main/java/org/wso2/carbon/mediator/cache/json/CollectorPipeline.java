@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.mediator.cache.json;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The background pipeline of the asynchronous collectors. A collector captures the payload and headers of a
+ * response and hands the rest of the work to this pipeline, so the response is sent to the client without waiting
+ * for the cache. The queue of the pipeline is bounded; once it is full, responses are not cached until it drains.
+ */
+public final class CollectorPipeline {
+
+    /**
+     * Log object to use when logging is required in this class.
+     */
+    private static final Log log = LogFactory.getLog(CollectorPipeline.class);
+
+    /**
+     * The threads storing the responses
+     */
+    private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            CachingConstants.COLLECTOR_THREADS, CachingConstants.COLLECTOR_THREADS, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(CachingConstants.COLLECTOR_QUEUE_SIZE), new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "json-cache-collector-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }, new ThreadPoolExecutor.AbortPolicy());
+
+    private CollectorPipeline() {
+    }
+
+    /**
+     * This method queues a task of a collector unless the pipeline is saturated
+     *
+     * @param task - the task storing a response
+     * @return boolean true if the task was queued and false if the pipeline is saturated
+     */
+    public static boolean submit(final Runnable task) {
+        try {
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        log.warn("Error while storing a response in the cache", e);
+                    }
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+}
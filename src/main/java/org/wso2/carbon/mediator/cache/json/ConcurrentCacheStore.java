@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import org.apache.axis2.context.ConfigurationContext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * An in-process {@link CacheStore} backed by a {@link ConcurrentHashMap}. Reads take no locks. When the number of
+ * entries grows over the maximum size, entries are evicted with the CLOCK (second chance) algorithm, which
+ * approximates LRU with a single referenced bit per entry instead of reordering a list on every read.
+ * <p>
+ * The response of a node is swapped in place by {@link #replace(String, CachableResponse, CachableResponse)}, so a
+ * node is unmapped only after its response has been swapped for null. A node holding null is a tombstone: it is
+ * seen as absent, it cannot be replaced any more and whoever swapped its response out discards the response.
+ */
+public class ConcurrentCacheStore implements EnumerableCacheStore, DiscardingCacheStore {
+
+    /**
+     * Minimum number of removed nodes in the clock queue before it is purged
+     */
+    private static final int MIN_PURGE_THRESHOLD = 64;
+
+    /**
+     * The entries of the store indexed by request hash
+     */
+    private final ConcurrentHashMap<String, Node> entries = new ConcurrentHashMap<String, Node>();
+
+    /**
+     * The entries in the order in which the clock hand visits them
+     */
+    private final ConcurrentLinkedQueue<Node> clock = new ConcurrentLinkedQueue<Node>();
+
+    /**
+     * Number of live entries in the store
+     */
+    private final AtomicInteger count = new AtomicInteger();
+
+    /**
+     * Number of removed entries which are still linked in the clock queue
+     */
+    private final AtomicInteger dead = new AtomicInteger();
+
+    /**
+     * Maximum number of entries, or 0 if not bounded
+     */
+    private int maxSize;
+
+    public void init(String cacheName, int maxSize, ConfigurationContext cfgCtx) throws CachingException {
+        this.maxSize = maxSize;
+    }
+
+    public CachableResponse get(String key) {
+        Node node = entries.get(key);
+        if (node == null) {
+            return null;
+        }
+        if (!node.referenced) {
+            node.referenced = true;
+        }
+        return node.value;
+    }
+
+    public void put(String key, CachableResponse response) {
+        Node node = new Node(key, response);
+        Node previous = entries.put(key, node);
+        if (previous == null) {
+            count.incrementAndGet();
+        } else {
+            unlinked(previous);
+            CachableResponse replaced = Node.VALUE.getAndSet(previous, null);
+            if (replaced != null && replaced != response) {
+                replaced.discard();
+            }
+        }
+        clock.offer(node);
+        ExpiryTask.schedule(this, response);
+        evictIfNeeded();
+    }
+
+    public boolean putIfAbsent(String key, CachableResponse response) {
+        Node node = new Node(key, response);
+        Node existing;
+        while ((existing = entries.putIfAbsent(key, node)) != null) {
+            if (existing.value != null) {
+                return false;
+            }
+            // a tombstone whose remover has not unmapped it yet
+            if (entries.remove(key, existing)) {
+                count.decrementAndGet();
+                unlinked(existing);
+            }
+        }
+        count.incrementAndGet();
+        clock.offer(node);
+        ExpiryTask.schedule(this, response);
+        evictIfNeeded();
+        return true;
+    }
+
+    public boolean replace(String key, CachableResponse expected, CachableResponse response) {
+        Node node = entries.get(key);
+        if (node == null || !Node.VALUE.compareAndSet(node, expected, response)) {
+            return false;
+        }
+        if (expected != response) {
+            expected.discard();
+        }
+        ExpiryTask.schedule(this, response);
+        return true;
+    }
+
+    public boolean remove(String key) {
+        Node node = entries.remove(key);
+        if (node == null) {
+            return false;
+        }
+        count.decrementAndGet();
+        unlinked(node);
+        CachableResponse removed = Node.VALUE.getAndSet(node, null);
+        if (removed == null) {
+            return false;
+        }
+        removed.discard();
+        return true;
+    }
+
+    public boolean remove(String key, CachableResponse response) {
+        Node node = entries.get(key);
+        // the response is swapped out first, so a response installed concurrently by replace is never unmapped
+        if (node == null || response == null || !Node.VALUE.compareAndSet(node, response, null)) {
+            return false;
+        }
+        if (entries.remove(key, node)) {
+            count.decrementAndGet();
+            unlinked(node);
+        }
+        response.discard();
+        return true;
+    }
+
+    public void clear() {
+        for (String key : entries.keySet()) {
+            remove(key);
+        }
+    }
+
+    public void destroy() {
+        clear();
+    }
+
+    public Iterable<CachableResponse> localResponses() {
+        List<CachableResponse> responses = new ArrayList<CachableResponse>(count.get());
+        for (Node node : entries.values()) {
+            CachableResponse response = node.value;
+            if (response != null) {
+                responses.add(response);
+            }
+        }
+        return responses;
+    }
+
+    /**
+     * This method applies an update received from another node unless the store holds a response of the key
+     * with the same or a newer version
+     *
+     * @param key      - request hash of the update
+     * @param response - the received response, or null if the key was invalidated
+     * @param version  - version of the update
+     * @return boolean true if the store was changed and false if not
+     */
+    public boolean applyUpdate(String key, CachableResponse response, long version) {
+        while (true) {
+            Node node = entries.get(key);
+            CachableResponse current = node != null ? node.value : null;
+            if (current != null && current.getVersion() >= version) {
+                return false;
+            }
+            if (response == null) {
+                if (current == null) {
+                    return false;
+                } else if (remove(key, current)) {
+                    return true;
+                }
+            } else if (current == null ? putIfAbsent(key, response) : replace(key, current, response)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * This method gives the keys of the entries in the store
+     *
+     * @return Set of the keys, reflecting concurrent changes of the store
+     */
+    public Set<String> keySet() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    /**
+     * This method gives the number of entries in the store
+     *
+     * @return int number of entries
+     */
+    public int size() {
+        return count.get();
+    }
+
+    /**
+     * Marks a node which is no longer mapped and purges the clock queue once it holds more removed nodes than
+     * live ones, so that the queue does not grow when entries leave the store through expiry instead of eviction.
+     *
+     * @param node the node which has been removed from the map
+     */
+    private void unlinked(Node node) {
+        node.removed = true;
+        if (dead.incrementAndGet() > Math.max(count.get(), MIN_PURGE_THRESHOLD)) {
+            dead.set(0);
+            for (Iterator<Node> itr = clock.iterator(); itr.hasNext(); ) {
+                if (itr.next().removed) {
+                    itr.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Advances the clock hand until the store is back within its maximum size. Referenced entries get a second
+     * chance and are moved to the tail with the referenced bit cleared.
+     */
+    private void evictIfNeeded() {
+        if (maxSize <= 0) {
+            return;
+        }
+        while (count.get() > maxSize) {
+            Node node = clock.poll();
+            if (node == null) {
+                return;
+            }
+            if (node.removed) {
+                continue;
+            }
+            CachableResponse response = node.value;
+            if (node.referenced) {
+                node.referenced = false;
+                clock.offer(node);
+            } else if (response != null && Node.VALUE.compareAndSet(node, response, null)) {
+                if (entries.remove(node.key, node)) {
+                    node.removed = true;
+                    count.decrementAndGet();
+                }
+                response.discard();
+            }
+        }
+    }
+
+    /**
+     * An entry of the store
+     */
+    private static final class Node {
+
+        private static final AtomicReferenceFieldUpdater<Node, CachableResponse> VALUE =
+                AtomicReferenceFieldUpdater.newUpdater(Node.class, CachableResponse.class, "value");
+
+        private final String key;
+
+        private volatile CachableResponse value;
+
+        private volatile boolean referenced;
+
+        private volatile boolean removed;
+
+        private Node(String key, CachableResponse value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable consistent hash ring assigning the cache keys to the members of a partitioned cache. Every member
+ * is placed on the ring at a number of virtual node positions, which evens out the share of keys of the members.
+ * When a member joins or leaves, only the keys of the arcs it gains or loses change their owner.
+ */
+public class ConsistentHashRing {
+
+    /**
+     * Positions of the virtual nodes on the ring in ascending order
+     */
+    private final long[] points;
+
+    /**
+     * Owner of the virtual node at the same index of {@link #points}
+     */
+    private final String[] owners;
+
+    /**
+     * The members of the ring
+     */
+    private final List<String> members;
+
+    /**
+     * Creates a ring of the given members
+     *
+     * @param members      - names of the members of the ring
+     * @param virtualNodes - number of virtual nodes of every member
+     */
+    public ConsistentHashRing(Collection<String> members, int virtualNodes) {
+        List<String> sorted = new ArrayList<String>(members);
+        Collections.sort(sorted);
+        this.members = Collections.unmodifiableList(sorted);
+        int size = sorted.size() * virtualNodes;
+        long[] hashes = new long[size];
+        Point[] ring = new Point[size];
+        int i = 0;
+        for (String member : sorted) {
+            for (int v = 0; v < virtualNodes; v++) {
+                ring[i++] = new Point(hash(member + '#' + v), member);
+            }
+        }
+        Arrays.sort(ring);
+        String[] names = new String[size];
+        for (i = 0; i < size; i++) {
+            hashes[i] = ring[i].hash;
+            names[i] = ring[i].member;
+        }
+        this.points = hashes;
+        this.owners = names;
+    }
+
+    /**
+     * This method gives the member owning the given key, which is the member of the first virtual node clockwise
+     * from the position of the key
+     *
+     * @param key - the cache key
+     * @return String name of the owner, or null if the ring has no members
+     */
+    public String ownerOf(String key) {
+        if (points.length == 0) {
+            return null;
+        }
+        int index = Arrays.binarySearch(points, hash(key));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    /**
+     * This method gives the members of the ring
+     *
+     * @return List of member names in ascending order
+     */
+    public List<String> getMembers() {
+        return members;
+    }
+
+    /**
+     * Hashes a string to a position on the ring with 64 bit FNV-1a followed by the murmur3 finalizer
+     *
+     * @param value - the string to be hashed
+     * @return long position on the ring
+     */
+    static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * A virtual node position
+     */
+    private static final class Point implements Comparable<Point> {
+
+        private final long hash;
+
+        private final String member;
+
+        private Point(long hash, String member) {
+            this.hash = hash;
+            this.member = member;
+        }
+
+        public int compareTo(Point other) {
+            return hash < other.hash ? -1 : (hash == other.hash ? member.compareTo(other.member) : 1);
+        }
+    }
+}
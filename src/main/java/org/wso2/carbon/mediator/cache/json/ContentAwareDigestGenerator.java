@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.mediator.cache.json;
+
+/**
+ * A {@link DigestGenerator} which declares whether it reads the payload of the request. The cache mediator asks
+ * Synapse to build the request message only when its digest generator needs the payload, so that requests keyed on
+ * their URL are not parsed. Digest generators which do not implement this interface are assumed to read the
+ * payload.
+ */
+public interface ContentAwareDigestGenerator extends DigestGenerator {
+
+    /**
+     * This method gives whether the digest is computed from the payload of the request
+     *
+     * @return boolean true if the request message has to be built before the digest is computed
+     */
+    boolean isContentAware();
+}
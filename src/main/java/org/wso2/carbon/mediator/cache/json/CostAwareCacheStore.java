@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.mediator.cache.json;
+
+import org.apache.axis2.context.ConfigurationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An in-process {@link CacheStore} evicting with the GreedyDual-Size algorithm, which keeps the responses saving the
+ * most backend time per byte held. Each entry has a priority of L + cost / size, where the cost is the time the
+ * backend took to produce the response and L is the priority of the last evicted entry. The entry with the lowest
+ * priority is evicted first, and raising L on every eviction ages the entries which are not requested again.
+ * <p/>
+ * Reads take no locks: a hit only refreshes the priority of its entry. The priorities are kept in a heap which is
+ * updated lazily by the writers, an entry found at the top of the heap with a refreshed priority is pushed back
+ * with that priority instead of being evicted.
+ */
+public class CostAwareCacheStore implements EnumerableCacheStore, DiscardingCacheStore {
+
+    /**
+     * Minimum number of outdated heap entries before the heap is rebuilt
+     */
+    private static final int MIN_REBUILD_THRESHOLD = 64;
+
+    /**
+     * The entries of the store indexed by request hash
+     */
+    private final ConcurrentHashMap<String, Node> entries = new ConcurrentHashMap<String, Node>();
+
+    /**
+     * The entries ordered by the priority they had when they were last pushed, guarded by itself
+     */
+    private final PriorityQueue<Rank> heap = new PriorityQueue<Rank>();
+
+    /**
+     * Number of live entries in the store
+     */
+    private final AtomicInteger count = new AtomicInteger();
+
+    /**
+     * The inflation value L, the priority of the last evicted entry
+     */
+    private volatile double inflation;
+
+    /**
+     * Maximum number of entries, or 0 if not bounded
+     */
+    private int maxSize;
+
+    public void init(String cacheName, int maxSize, ConfigurationContext cfgCtx) throws CachingException {
+        this.maxSize = maxSize;
+    }
+
+    public CachableResponse get(String key) {
+        Node node = entries.get(key);
+        if (node == null) {
+            return null;
+        }
+        node.priority = inflation + node.weight;
+        return node.value;
+    }
+
+    public void put(String key, CachableResponse response) {
+        Node node = new Node(key, response, inflation);
+        Node previous = entries.put(key, node);
+        if (previous == null) {
+            count.incrementAndGet();
+        } else {
+            previous.removed = true;
+            if (previous.value != response) {
+                previous.value.discard();
+            }
+        }
+        added(node);
+    }
+
+    public boolean putIfAbsent(String key, CachableResponse response) {
+        Node node = new Node(key, response, inflation);
+        if (entries.putIfAbsent(key, node) != null) {
+            return false;
+        }
+        count.incrementAndGet();
+        added(node);
+        return true;
+    }
+
+    public boolean replace(String key, CachableResponse expected, CachableResponse response) {
+        Node node = entries.get(key);
+        if (node == null || node.value != expected) {
+            return false;
+        }
+        Node replacement = new Node(key, response, inflation);
+        if (!entries.replace(key, node, replacement)) {
+            return false;
+        }
+        node.removed = true;
+        if (expected != response) {
+            expected.discard();
+        }
+        added(replacement);
+        return true;
+    }
+
+    public boolean remove(String key) {
+        Node node = entries.remove(key);
+        if (node == null) {
+            return false;
+        }
+        removed(node);
+        return true;
+    }
+
+    public boolean remove(String key, CachableResponse response) {
+        Node node = entries.get(key);
+        if (node == null || node.value != response || !entries.remove(key, node)) {
+            return false;
+        }
+        removed(node);
+        return true;
+    }
+
+    public void clear() {
+        for (String key : entries.keySet()) {
+            remove(key);
+        }
+    }
+
+    public void destroy() {
+        clear();
+        synchronized (heap) {
+            heap.clear();
+        }
+    }
+
+    public Iterable<CachableResponse> localResponses() {
+        List<CachableResponse> responses = new ArrayList<CachableResponse>(count.get());
+        for (Node node : entries.values()) {
+            responses.add(node.value);
+        }
+        return responses;
+    }
+
+    /**
+     * Marks a node which is no longer mapped and releases its response
+     *
+     * @param node the node which has been removed from the map
+     */
+    private void removed(Node node) {
+        node.removed = true;
+        count.decrementAndGet();
+        node.value.discard();
+    }
+
+    /**
+     * Pushes a new node on the heap, schedules its expiry and evicts until the store is back within its size
+     *
+     * @param node the node which has been mapped
+     */
+    private void added(Node node) {
+        ExpiryTask.schedule(this, node.value);
+        synchronized (heap) {
+            heap.offer(new Rank(node, node.priority));
+            if (heap.size() > Math.max(2 * count.get(), MIN_REBUILD_THRESHOLD)) {
+                rebuild();
+            }
+            if (maxSize <= 0) {
+                return;
+            }
+            while (count.get() > maxSize) {
+                Rank rank = heap.poll();
+                if (rank == null) {
+                    return;
+                }
+                Node candidate = rank.node;
+                if (candidate.removed) {
+                    continue;
+                }
+                double priority = candidate.priority;
+                if (priority > rank.priority) {
+                    // requested since it was pushed
+                    heap.offer(new Rank(candidate, priority));
+                } else if (entries.remove(candidate.key, candidate)) {
+                    inflation = rank.priority;
+                    removed(candidate);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops the heap entries of removed nodes, called with the heap lock held
+     */
+    private void rebuild() {
+        List<Rank> live = new ArrayList<Rank>(count.get());
+        for (Rank rank : heap) {
+            if (!rank.node.removed) {
+                live.add(rank);
+            }
+        }
+        heap.clear();
+        heap.addAll(live);
+    }
+
+    /**
+     * An entry of the store
+     */
+    private static final class Node {
+
+        private final String key;
+
+        private final CachableResponse value;
+
+        /**
+         * Backend time saved per byte by keeping the response
+         */
+        private final double weight;
+
+        private volatile double priority;
+
+        private volatile boolean removed;
+
+        private Node(String key, CachableResponse value, double inflation) {
+            this.key = key;
+            this.value = value;
+            String payload = value.getResponsePayload();
+            SpooledPayload spooled = value.getSpooledPayload();
+            long size = payload != null ? payload.length() : spooled != null ? spooled.getLength() : 0;
+            this.weight = (double) Math.max(value.getFetchCost(), 1L) / Math.max(size, 1);
+            this.priority = inflation + weight;
+        }
+    }
+
+    /**
+     * A heap entry holding the priority a node had when it was pushed
+     */
+    private static final class Rank implements Comparable<Rank> {
+
+        private final Node node;
+
+        private final double priority;
+
+        private Rank(Node node, double priority) {
+            this.node = node;
+            this.priority = priority;
+        }
+
+        public int compareTo(Rank other) {
+            return Double.compare(priority, other.priority);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A Count-Min Sketch estimating how often keys occur in a stream within a fixed amount of memory. Estimates never
+ * fall below the true count and overestimate it only by the collisions of the key in its least loaded row. All the
+ * counters are halved after every sample period so that the estimates follow the recent popularity of the keys.
+ */
+public class CountMinSketch {
+
+    /**
+     * Number of rows of the sketch, each indexed by an independent hash of the key
+     */
+    private static final int DEPTH = 4;
+
+    /**
+     * Counters of all the rows, row after row
+     */
+    private final AtomicIntegerArray counters;
+
+    /**
+     * Mask to get a column index from a hash
+     */
+    private final int mask;
+
+    /**
+     * Number of additions after which all the counters are halved
+     */
+    private final long samplePeriod;
+
+    /**
+     * Number of additions since the counters were last halved
+     */
+    private final AtomicLong additions = new AtomicLong();
+
+    /**
+     * Number of times the counters have been halved
+     */
+    private volatile int generation;
+
+    /**
+     * Creates a sketch with the given number of counters per row
+     *
+     * @param width - number of counters per row, rounded up to a power of two
+     */
+    public CountMinSketch(int width) {
+        int columns = Integer.highestOneBit(Math.max(width - 1, 1)) << 1;
+        this.counters = new AtomicIntegerArray(columns * DEPTH);
+        this.mask = columns - 1;
+        this.samplePeriod = 10L * columns;
+    }
+
+    /**
+     * This method counts an occurrence of the given key
+     *
+     * @param key - the key which occurred
+     * @return int estimated number of recent occurrences of the key, including this one
+     */
+    public int add(String key) {
+        long hash = ConsistentHashRing.hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            int index = row * (mask + 1) + ((h1 + row * h2) & mask);
+            estimate = Math.min(estimate, counters.incrementAndGet(index));
+        }
+        if (additions.incrementAndGet() == samplePeriod) {
+            additions.set(0);
+            halve();
+        }
+        return estimate;
+    }
+
+    /**
+     * This method gives the number of times the counters have been halved, so that users keeping estimates of
+     * their own can age them alike
+     *
+     * @return int number of times the counters have been halved
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Halves all the counters
+     */
+    private void halve() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, counters.get(i) >>> 1);
+        }
+        generation++;
+    }
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+/**
+ * A {@link CacheStore} which discards every response leaving it, see {@link CachableResponse#discard()}, including the
+ * responses it evicts or expires on its own. The resources a response holds outside the heap, such as the spool file
+ * of a large payload, are only released on discard, so the cache mediator keeps them only in such stores.
+ */
+public interface DiscardingCacheStore extends CacheStore {
+}
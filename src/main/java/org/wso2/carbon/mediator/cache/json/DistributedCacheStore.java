@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import org.apache.axis2.context.ConfigurationContext;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link CacheStore} of the distributed scope. Every node serves its requests from a local near-cache, and the
+ * responses stored or invalidated on a node are replicated to the other nodes asynchronously. Updates are queued
+ * by the mediation threads and sent in batches by a replicator thread, coalescing the updates of the same key.
+ * Every update carries a version taken from a {@link VersionClock}, and a node only applies an update which is
+ * newer than the response it holds, so that delayed or reordered batches never overwrite newer data.
+ * Responses removed on expiry are not replicated as every node expires its copy on its own. The received responses
+ * are indexed by tag like the ones stored on this node, so every node indexes the whole cache and the removals
+ * made by a tag invalidation are replicated as invalidations of their keys.
+ */
+public class DistributedCacheStore implements EnumerableCacheStore, ClusteredCacheStore,
+                                              ReplicationTransport.Listener {
+
+    /**
+     * Log object to use when logging is required in this class.
+     */
+    private static final Log log = LogFactory.getLog(DistributedCacheStore.class);
+
+    /**
+     * The local copy of the cache
+     */
+    private final ConcurrentCacheStore nearCache = new ConcurrentCacheStore();
+
+    /**
+     * Updates waiting to be sent to the other nodes
+     */
+    private final BlockingQueue<ReplicationBatch.Operation> outbound =
+            new LinkedBlockingQueue<ReplicationBatch.Operation>(CachingConstants.REPLICATION_QUEUE_SIZE);
+
+    /**
+     * Clock issuing the versions of the updates of this node
+     */
+    private final VersionClock versionClock = new VersionClock();
+
+    /**
+     * The index of the received responses by tag, or null if they are not indexed
+     */
+    private volatile TagIndex tagIndex;
+
+    /**
+     * The transport connecting this node to the other nodes
+     */
+    private ReplicationTransport transport;
+
+    /**
+     * Name of the replicated cache
+     */
+    private String cacheName;
+
+    /**
+     * Thread sending the queued updates
+     */
+    private Thread replicator;
+
+    /**
+     * Whether the replicator thread should keep running
+     */
+    private volatile boolean running;
+
+    /**
+     * Creates a store replicating through the axis2 clustering agent of the server
+     */
+    public DistributedCacheStore() {
+    }
+
+    /**
+     * Creates a store replicating through the given transport
+     *
+     * @param transport - transport connecting this node to the other nodes
+     */
+    public DistributedCacheStore(ReplicationTransport transport) {
+        this.transport = transport;
+    }
+
+    public void init(String cacheName, int maxSize, ConfigurationContext cfgCtx) throws CachingException {
+        this.cacheName = cacheName;
+        nearCache.init(cacheName, maxSize, cfgCtx);
+        if (transport == null) {
+            transport = new ClusteringReplicationTransport(cfgCtx);
+        }
+        transport.start(cacheName, this);
+        running = true;
+        replicator = new Thread(new Runnable() {
+            public void run() {
+                replicate();
+            }
+        }, "json-cache-replicator-" + cacheName);
+        replicator.setDaemon(true);
+        replicator.start();
+    }
+
+    public CachableResponse get(String key) {
+        return nearCache.get(key);
+    }
+
+    public void put(String key, CachableResponse response) {
+        response.setVersion(versionClock.next());
+        nearCache.put(key, response);
+        publish(key, response);
+    }
+
+    public boolean putIfAbsent(String key, CachableResponse response) {
+        response.setVersion(versionClock.next());
+        if (!nearCache.putIfAbsent(key, response)) {
+            return false;
+        }
+        publish(key, response);
+        return true;
+    }
+
+    public boolean replace(String key, CachableResponse expected, CachableResponse response) {
+        response.setVersion(versionClock.next());
+        if (!nearCache.replace(key, expected, response)) {
+            return false;
+        }
+        publish(key, response);
+        return true;
+    }
+
+    public boolean remove(String key) {
+        CachableResponse response = nearCache.get(key);
+        if (!nearCache.remove(key)) {
+            return false;
+        }
+        if (response == null || !response.isExpired()) {
+            publish(key, null);
+        }
+        return true;
+    }
+
+    public boolean remove(String key, CachableResponse response) {
+        if (!nearCache.remove(key, response)) {
+            return false;
+        }
+        if (!response.isExpired()) {
+            publish(key, null);
+        }
+        return true;
+    }
+
+    public void clear() {
+        nearCache.clear();
+    }
+
+    public void destroy() {
+        running = false;
+        if (replicator != null) {
+            replicator.interrupt();
+            try {
+                replicator.join(CachingConstants.REPLICATION_LINGER_MILLIS * 10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            replicator = null;
+        }
+        transport.stop();
+        nearCache.destroy();
+    }
+
+    public Iterable<CachableResponse> localResponses() {
+        return nearCache.localResponses();
+    }
+
+    public void setTagIndex(TagIndex tagIndex) {
+        this.tagIndex = tagIndex;
+    }
+
+    public void invalidateTags(Collection<String> tags, Collection<String> prefixes) {
+        // every node indexes the whole cache, the removed keys are replicated
+    }
+
+    public void onBatch(ReplicationBatch batch) {
+        TagIndex index = tagIndex;
+        for (ReplicationBatch.Operation operation : batch.getOperations()) {
+            versionClock.observe(operation.getVersion());
+            CachableResponse response = operation.getResponse();
+            if (nearCache.applyUpdate(operation.getKey(), response, operation.getVersion()) && index != null &&
+                    response != null && response.getTags() != null && !response.getTags().isEmpty()) {
+                index.tag(operation.getKey(), response);
+            }
+        }
+    }
+
+    /**
+     * Queues an update of the given key to be sent to the other nodes. Responses without content are placeholders
+     * of a request in progress on this node and are not replicated.
+     *
+     * @param key      - request hash of the update
+     * @param response - the stored response, or null if the key was invalidated
+     */
+    private void publish(String key, CachableResponse response) {
+        ReplicationBatch.Operation operation;
+        if (response == null) {
+            operation = new ReplicationBatch.Operation(key, versionClock.next(), null);
+        } else if (response.hasContent()) {
+            operation = new ReplicationBatch.Operation(key, response.getVersion(), response);
+        } else {
+            return;
+        }
+        if (!outbound.offer(operation) && log.isDebugEnabled()) {
+            log.debug("Replication queue of the cache : " + cacheName + " is full, dropping the update of : " + key);
+        }
+    }
+
+    /**
+     * Body of the replicator thread, which sends the queued updates in batches until the store is destroyed
+     */
+    private void replicate() {
+        List<ReplicationBatch.Operation> pending =
+                new ArrayList<ReplicationBatch.Operation>(CachingConstants.REPLICATION_BATCH_SIZE);
+        while (running) {
+            try {
+                ReplicationBatch.Operation first = outbound.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                pending.add(first);
+                if (outbound.size() < CachingConstants.REPLICATION_BATCH_SIZE) {
+                    // linger to let the batch fill up
+                    Thread.sleep(CachingConstants.REPLICATION_LINGER_MILLIS);
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+            outbound.drainTo(pending, CachingConstants.REPLICATION_BATCH_SIZE - pending.size());
+            send(pending);
+            pending.clear();
+        }
+        outbound.drainTo(pending);
+        send(pending);
+    }
+
+    /**
+     * Sends the given updates as a single batch, keeping only the latest update of each key
+     *
+     * @param operations - the updates to be sent
+     */
+    private void send(List<ReplicationBatch.Operation> operations) {
+        if (operations.isEmpty()) {
+            return;
+        }
+        Map<String, ReplicationBatch.Operation> latest = new LinkedHashMap<String, ReplicationBatch.Operation>();
+        for (ReplicationBatch.Operation operation : operations) {
+            latest.put(operation.getKey(), operation);
+        }
+        ReplicationBatch batch = new ReplicationBatch(cacheName);
+        for (ReplicationBatch.Operation operation : latest.values()) {
+            batch.add(operation);
+        }
+        try {
+            transport.send(batch);
+        } catch (CachingException e) {
+            log.warn("Unable to replicate " + batch.getOperations().size() + " updates of the cache : " + cacheName,
+                     e);
+        }
+    }
+}
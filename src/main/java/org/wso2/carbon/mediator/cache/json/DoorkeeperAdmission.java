@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.mediator.cache.json;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * An {@link AdmissionPolicy} caching the response of a key on its second request. The keys seen once are recorded
+ * in a Bloom filter, which takes about a byte per key instead of a map entry. The filter is cleared after it has
+ * recorded as many keys as it was sized for, so that its false positive rate stays bounded and keys have to be
+ * requested twice within a window to be admitted.
+ */
+public class DoorkeeperAdmission implements AdmissionPolicy {
+
+    /**
+     * Number of bits set per key
+     */
+    private static final int HASHES = 3;
+
+    /**
+     * Number of bits of the filter per expected key
+     */
+    private static final int BITS_PER_KEY = 8;
+
+    /**
+     * The bits of the filter
+     */
+    private final AtomicLongArray bits;
+
+    /**
+     * Mask to get a bit index from a hash
+     */
+    private final int mask;
+
+    /**
+     * Number of recorded keys after which the filter is cleared
+     */
+    private final int capacity;
+
+    /**
+     * Number of keys recorded since the filter was last cleared
+     */
+    private final AtomicInteger recorded = new AtomicInteger();
+
+    /**
+     * Creates a doorkeeper sized for the given number of keys
+     *
+     * @param capacity - number of keys recorded before the filter is cleared
+     */
+    public DoorkeeperAdmission(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity * BITS_PER_KEY - 1, Long.SIZE)) << 1;
+        this.bits = new AtomicLongArray(size / Long.SIZE);
+        this.mask = size - 1;
+        this.capacity = Math.max(capacity, 1);
+    }
+
+    public boolean admit(String key) {
+        long hash = ConsistentHashRing.hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        boolean seen = true;
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (h1 + i * h2) & mask;
+            int word = bit >>> 6;
+            long flag = 1L << (bit & 63);
+            long current = bits.get(word);
+            while ((current & flag) == 0) {
+                seen = false;
+                if (bits.compareAndSet(word, current, current | flag)) {
+                    break;
+                }
+                current = bits.get(word);
+            }
+        }
+        if (!seen && recorded.incrementAndGet() >= capacity) {
+            recorded.set(0);
+            for (int i = 0; i < bits.length(); i++) {
+                bits.set(i, 0L);
+            }
+        }
+        return seen;
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.mediator.cache.json;
+
+/**
+ * A {@link CacheStore} which can enumerate the responses it holds in the memory of this node. The cache mediator
+ * uses it to write a snapshot of the cache when it is destroyed, see {@link CacheSnapshot}.
+ */
+public interface EnumerableCacheStore extends CacheStore {
+
+    /**
+     * This method gives the cached responses held in the memory of this node
+     *
+     * @return Iterable of the responses, which is not required to reflect later changes of the store
+     */
+    Iterable<CachableResponse> localResponses();
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+/**
+ * Timer wheel entry which removes a cached response from the mediator cache once it has expired, so that the
+ * payload does not stay on the heap until the cache invalidation time of the underlying cache. Stores schedule
+ * the responses they retain, which leaves out the responses a store hands over to other nodes.
+ */
+public class ExpiryTask extends TimerWheel.Timeout {
+
+    /**
+     * Timer wheel which removes cached responses from their stores once they expire
+     */
+    private static final TimerWheel expiryWheel = new TimerWheel(CachingConstants.EXPIRY_TICK_MILLIS);
+
+    /**
+     * The store holding the cached response
+     */
+    private final CacheStore store;
+
+    /**
+     * The cached response to be removed on expiry
+     */
+    private final CachableResponse response;
+
+    /**
+     * Creates the expiry task of the given cached response
+     *
+     * @param store    store holding the cached response
+     * @param response cached response to be removed on expiry
+     */
+    ExpiryTask(CacheStore store, CachableResponse response) {
+        this.store = store;
+        this.response = response;
+    }
+
+    /**
+     * Starts the thread advancing the expiry wheel, if not already started
+     */
+    public static void start() {
+        expiryWheel.start();
+    }
+
+    /**
+     * Schedules the removal of the given cached response from the given store at its expiry time
+     *
+     * @param store    store holding the cached response
+     * @param response cached response to be removed on expiry
+     */
+    public static void schedule(CacheStore store, CachableResponse response) {
+        expiryWheel.schedule(response.getExpiryTask(store), response.getExpireTimeMillis());
+    }
+
+    @Override
+    protected void expire() {
+        if (!response.isExpired()) {
+            // the coarse clock may lag behind the wheel by a tick
+            reschedule(response.getExpireTimeMillis());
+            return;
+        }
+        store.remove(response.getRequestHash(), response);
+    }
+}
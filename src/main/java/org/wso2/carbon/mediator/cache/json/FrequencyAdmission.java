@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.mediator.cache.json;
+
+/**
+ * An {@link AdmissionPolicy} caching the response of a key once it has been requested a given number of times. The
+ * requests are counted in a {@link CountMinSketch}, whose counters are halved periodically, so a key has to be
+ * requested that often recently to be admitted.
+ */
+public class FrequencyAdmission implements AdmissionPolicy {
+
+    /**
+     * Counts of the recent requests of the keys
+     */
+    private final CountMinSketch sketch;
+
+    /**
+     * Number of requests of a key after which its response is cached
+     */
+    private final int threshold;
+
+    /**
+     * Creates a policy admitting the keys requested the given number of times
+     *
+     * @param capacity  - number of keys the sketch is sized for
+     * @param threshold - number of requests of a key after which its response is cached
+     */
+    public FrequencyAdmission(int capacity, int threshold) {
+        this.sketch = new CountMinSketch(capacity);
+        this.threshold = threshold;
+    }
+
+    public boolean admit(String key) {
+        return sketch.add(key) >= threshold;
+    }
+}
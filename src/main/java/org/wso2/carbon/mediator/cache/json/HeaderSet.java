@@ -0,0 +1,344 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.mediator.cache.json;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * An immutable map of the HTTP header properties of a cached response. The names and values are kept in two
+ * sorted arrays instead of hash map entries, and both the header names and the header sets themselves are
+ * interned, so the responses of an API which share the same headers share a single instance. The headers whose
+ * value changes with every response, like the date, are not kept, as the transport writes them anew and they
+ * would make every header set unique; of the values, only those of the headers which repeat across responses are
+ * interned. Header sets received from other nodes are interned again when they are deserialized.
+ * <p/>
+ * The transport may change the headers of the message it sends, so a cache hit hands the header set over through
+ * {@link #view()}, which copies the headers on their first change, including a removal through an iterator.
+ */
+public final class HeaderSet extends AbstractMap<String, Object> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Canonical header sets
+     */
+    private static final WeakInterner<HeaderSet> headerSets = new WeakInterner<HeaderSet>();
+
+    /**
+     * Canonical header names and string values
+     */
+    private static final WeakInterner<String> strings = new WeakInterner<String>();
+
+    /**
+     * Headers whose value changes with every response, which are not kept
+     */
+    private static final Set<String> VOLATILE_HEADERS = caseInsensitiveSet("Date", "Content-Length");
+
+    /**
+     * Headers whose values repeat across responses, which are interned
+     */
+    private static final Set<String> INTERNED_VALUE_HEADERS = caseInsensitiveSet(
+            "messageType", "Content-Type", "Content-Encoding", "Transfer-Encoding", "Connection", "Server",
+            "Cache-Control", "Vary", "Pragma", "Access-Control-Allow-Origin", "Access-Control-Allow-Headers",
+            "Access-Control-Allow-Methods");
+
+    /**
+     * Header names in ascending order
+     */
+    private final String[] names;
+
+    /**
+     * Header values in the order of the names
+     */
+    private final Object[] values;
+
+    /**
+     * Hash code of the map, computed once
+     */
+    private final int hash;
+
+    private HeaderSet(String[] names, Object[] values) {
+        this.names = names;
+        this.values = values;
+        int h = 0;
+        for (int i = 0; i < names.length; i++) {
+            h += names[i].hashCode() ^ (values[i] == null ? 0 : values[i].hashCode());
+        }
+        this.hash = h;
+    }
+
+    /**
+     * This method gives the canonical header set holding the given header properties
+     *
+     * @param headers - header properties to be held, which must not have null names
+     * @return HeaderSet holding the header properties, or null if the headers are null
+     */
+    public static HeaderSet of(Map<String, ?> headers) {
+        if (headers == null) {
+            return null;
+        }
+        if (headers instanceof HeaderSet) {
+            return headerSets.intern((HeaderSet) headers);
+        }
+        String[] names = new String[headers.size()];
+        int i = 0;
+        for (String name : headers.keySet()) {
+            if (!VOLATILE_HEADERS.contains(name)) {
+                names[i++] = strings.intern(name);
+            }
+        }
+        names = Arrays.copyOf(names, i);
+        Arrays.sort(names);
+        Object[] values = new Object[names.length];
+        for (i = 0; i < names.length; i++) {
+            values[i] = internValue(names[i], headers.get(names[i]));
+        }
+        return headerSets.intern(new HeaderSet(names, values));
+    }
+
+    /**
+     * Gives the canonical instance of the given header value if the values of the header repeat across responses
+     *
+     * @param name  - the header name
+     * @param value - the header value
+     * @return Object the canonical value, or the value itself if it is not interned
+     */
+    private static Object internValue(String name, Object value) {
+        return value instanceof String && INTERNED_VALUE_HEADERS.contains(name) ?
+                strings.intern((String) value) : value;
+    }
+
+    private static Set<String> caseInsensitiveSet(String... names) {
+        Set<String> set = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+        Collections.addAll(set, names);
+        return Collections.unmodifiableSet(set);
+    }
+
+    /**
+     * This method gives a map of the same headers which can be handed to the transport. The view reads through to
+     * this header set until it is first changed, when it copies the headers.
+     *
+     * @return Map of the headers
+     */
+    public Map<String, Object> view() {
+        return new View(this);
+    }
+
+    @Override
+    public int size() {
+        return names.length;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String && Arrays.binarySearch(names, key) >= 0;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        int index = Arrays.binarySearch(names, key);
+        return index >= 0 ? values[index] : null;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<Entry<String, Object>>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new Iterator<Entry<String, Object>>() {
+                    private int next = 0;
+
+                    public boolean hasNext() {
+                        return next < names.length;
+                    }
+
+                    public Entry<String, Object> next() {
+                        if (next >= names.length) {
+                            throw new NoSuchElementException();
+                        }
+                        Entry<String, Object> entry = new SimpleImmutableEntry<String, Object>(names[next],
+                                                                                              values[next]);
+                        next++;
+                        return entry;
+                    }
+
+                    public void remove() {
+                        throw new UnsupportedOperationException("Cached header properties cannot be changed");
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return names.length;
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (o instanceof HeaderSet) {
+            HeaderSet other = (HeaderSet) o;
+            return hash == other.hash && Arrays.equals(names, other.names) && Arrays.equals(values, other.values);
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * Replaces a deserialized header set by its canonical instance
+     *
+     * @return Object the canonical header set
+     * @throws ObjectStreamException never
+     */
+    private Object readResolve() throws ObjectStreamException {
+        for (int i = 0; i < names.length; i++) {
+            names[i] = strings.intern(names[i]);
+            values[i] = internValue(names[i], values[i]);
+        }
+        return headerSets.intern(this);
+    }
+
+    /**
+     * A copy on write map of the headers of a cache hit. The transport removes the headers it writes itself through
+     * the iterators of the key set, so a removal through an iterator copies the headers as well.
+     */
+    private static final class View extends AbstractMap<String, Object> {
+
+        private final HeaderSet shared;
+
+        private Map<String, Object> copy;
+
+        private View(HeaderSet shared) {
+            this.shared = shared;
+        }
+
+        private Map<String, Object> current() {
+            return copy != null ? copy : shared;
+        }
+
+        private Map<String, Object> writable() {
+            if (copy == null) {
+                copy = new HashMap<String, Object>(shared);
+            }
+            return copy;
+        }
+
+        @Override
+        public int size() {
+            return current().size();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return current().containsKey(key);
+        }
+
+        @Override
+        public Object get(Object key) {
+            return current().get(key);
+        }
+
+        @Override
+        public Object put(String key, Object value) {
+            return writable().put(key, value);
+        }
+
+        @Override
+        public Object remove(Object key) {
+            return copy == null && !shared.containsKey(key) ? null : writable().remove(key);
+        }
+
+        @Override
+        public void clear() {
+            copy = new HashMap<String, Object>();
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<Entry<String, Object>>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    return copy != null ? copy.entrySet().iterator() : new SharedIterator();
+                }
+
+                @Override
+                public int size() {
+                    return View.this.size();
+                }
+            };
+        }
+
+        /**
+         * An iterator of the shared headers which removes and sets the headers in the copy
+         */
+        private final class SharedIterator implements Iterator<Entry<String, Object>> {
+
+            private final Iterator<Entry<String, Object>> entries = shared.entrySet().iterator();
+
+            private Entry<String, Object> last;
+
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            public Entry<String, Object> next() {
+                final Entry<String, Object> entry = entries.next();
+                last = new SimpleEntry<String, Object>(entry) {
+                    @Override
+                    public Object setValue(Object value) {
+                        super.setValue(value);
+                        return writable().put(entry.getKey(), value);
+                    }
+                };
+                return last;
+            }
+
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                writable().remove(last.getKey());
+                last = null;
+            }
+        }
+    }
+}
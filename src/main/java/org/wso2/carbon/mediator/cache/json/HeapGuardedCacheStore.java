@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import org.apache.axis2.context.ConfigurationContext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link CacheStore} decorator accounting for the heap taken by the payloads of the responses it stores, so that
+ * the cache can give memory back when the heap is under pressure. A response is charged to the store before it is
+ * handed to the decorated store and is released when it leaves it, see {@link CachableResponse#discard()}. When
+ * the {@link HeapPressureMonitor} reports that the heap has crossed its high-water mark, the store sheds its
+ * responses of the least value per byte, and while the pressure lasts the collector does not store responses
+ * larger than the configured limit. Pooled payloads are charged to every response sharing them, which makes the
+ * account an upper bound when payloads are deduplicated.
+ * <p>
+ * A decorated store may also let responses go without discarding them, such as a javax.cache cache expiring its
+ * entries on its own, and their charge is then never released. The account is therefore reconciled with the
+ * responses the store still holds before the heap is relieved, see {@link #reconcile()}.
+ */
+public class HeapGuardedCacheStore implements EnumerableCacheStore {
+
+    /**
+     * The store which is decorated
+     */
+    private final EnumerableCacheStore backing;
+
+    /**
+     * The heap taken by the payloads of the stored responses, in bytes
+     */
+    private final AtomicLong bytes = new AtomicLong();
+
+    /**
+     * The size in bytes above which responses are not stored while the heap is under pressure
+     */
+    private volatile long maxMessageSize = Long.MAX_VALUE;
+
+    /**
+     * Creates a decorator of the given store
+     *
+     * @param backing - the store which is decorated
+     */
+    public HeapGuardedCacheStore(EnumerableCacheStore backing) {
+        this.backing = backing;
+    }
+
+    public void init(String cacheName, int maxSize, ConfigurationContext cfgCtx) throws CachingException {
+        // the decorated store is initialized by the cache store manager
+    }
+
+    public CachableResponse get(String key) {
+        return backing.get(key);
+    }
+
+    public void put(String key, CachableResponse response) {
+        charge(response);
+        backing.put(key, response);
+    }
+
+    public boolean putIfAbsent(String key, CachableResponse response) {
+        charge(response);
+        if (backing.putIfAbsent(key, response)) {
+            return true;
+        }
+        response.uncharge();
+        return false;
+    }
+
+    public boolean replace(String key, CachableResponse expected, CachableResponse response) {
+        charge(response);
+        if (backing.replace(key, expected, response)) {
+            return true;
+        }
+        response.uncharge();
+        return false;
+    }
+
+    public boolean remove(String key) {
+        return backing.remove(key);
+    }
+
+    public boolean remove(String key, CachableResponse response) {
+        return backing.remove(key, response);
+    }
+
+    public void clear() {
+        backing.clear();
+    }
+
+    public void destroy() {
+        // the decorated store is destroyed by the cache store manager
+    }
+
+    public Iterable<CachableResponse> localResponses() {
+        return backing.localResponses();
+    }
+
+    /**
+     * This method gives the heap taken by the payloads of the stored responses
+     *
+     * @return long the number of bytes
+     */
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * This method sets the account of the store to the heap charged by the responses it still holds, dropping the
+     * charge of the responses which left the decorated store without being discarded. A response charged while
+     * the account is reconciled may be missed until the next reconciliation.
+     *
+     * @return long the number of bytes
+     */
+    public long reconcile() {
+        long live = 0;
+        for (CachableResponse response : backing.localResponses()) {
+            live += response.chargedTo(this);
+        }
+        bytes.set(live);
+        return live;
+    }
+
+    /**
+     * This method lowers the size above which responses are not stored while the heap is under pressure. The
+     * lowest limit of the mediators sharing the store applies.
+     *
+     * @param maxMessageSize - the size in bytes
+     */
+    public synchronized void limitMessageSize(long maxMessageSize) {
+        this.maxMessageSize = Math.min(this.maxMessageSize, maxMessageSize);
+    }
+
+    /**
+     * This method checks whether a response of the given size can be stored
+     *
+     * @param size - size of the response payload in bytes
+     * @return boolean true if the response can be stored and false if the heap is under pressure and the response
+     * is larger than the limit
+     */
+    public boolean admits(long size) {
+        return size <= maxMessageSize || !HeapPressureMonitor.isUnderPressure();
+    }
+
+    /**
+     * This method removes the responses of the least value per byte until the given number of bytes is freed. The
+     * value of a response is the backend time saved by its hits.
+     *
+     * @param target - the number of bytes to be freed
+     * @return long the number of bytes freed
+     */
+    public long shed(long target) {
+        List<Candidate> candidates = new ArrayList<Candidate>();
+        for (CachableResponse response : backing.localResponses()) {
+            long size = sizeOf(response);
+            if (size > 0) {
+                candidates.add(new Candidate(response, size));
+            }
+        }
+        Collections.sort(candidates);
+        long freed = 0;
+        for (Candidate candidate : candidates) {
+            if (freed >= target) {
+                break;
+            }
+            if (backing.remove(candidate.response.getRequestHash(), candidate.response)) {
+                freed += candidate.size;
+            }
+        }
+        return freed;
+    }
+
+    /**
+     * Charges the heap taken by the payload of the given response to this store
+     *
+     * @param response - the response to be stored
+     */
+    private void charge(CachableResponse response) {
+        long size = sizeOf(response);
+        if (size > 0) {
+            response.charge(this, size);
+        }
+    }
+
+    /**
+     * This method adds the given number of bytes to the account of the store
+     *
+     * @param delta - the number of bytes, negative for released bytes
+     */
+    void account(long delta) {
+        bytes.addAndGet(delta);
+    }
+
+    /**
+     * This method gives the heap taken by the payload of the given response, which is the payload of each of the
+     * variants for a response varying on request headers. Spooled payloads do not take any heap.
+     *
+     * @param response - the response
+     * @return long the number of bytes
+     */
+    static long sizeOf(CachableResponse response) {
+        String payload = response.getResponsePayload();
+        long size = payload != null ? 2L * payload.length() : 0;
+        if (response.getVariants() != null) {
+            for (CachableResponse variant : response.getVariants().getVariants()) {
+                size += sizeOf(variant);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * A response considered for shedding, ranked by the backend time its hits saved per byte. The rank is taken
+     * once, as the hits of the response keep changing while the candidates are sorted.
+     */
+    private static final class Candidate implements Comparable<Candidate> {
+
+        private final CachableResponse response;
+
+        private final long size;
+
+        private final double value;
+
+        private Candidate(CachableResponse response, long size) {
+            this.response = response;
+            this.size = size;
+            this.value = (double) (response.getHits() + 1) * Math.max(response.getFetchCost(), 1L) / size;
+        }
+
+        public int compareTo(Candidate other) {
+            return Double.compare(value, other.value);
+        }
+    }
+}
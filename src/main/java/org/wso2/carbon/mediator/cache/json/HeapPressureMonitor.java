@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Watches the heap for the caches guarded against heap pressure. The largest heap memory pool, which is the old
+ * generation of the usual collectors, is given a collection usage threshold at
+ * {@link CachingConstants#HEAP_HIGH_WATER} of its maximum size, so the JVM notifies this monitor after every
+ * collection leaving the pool above it. On such a notification the guarded stores shed their least valuable
+ * responses, sharing the heap to be freed down to {@link CachingConstants#HEAP_LOW_WATER} in proportion to their
+ * size, and the heap is considered under pressure until a later collection leaves the pool below the low-water mark.
+ */
+public final class HeapPressureMonitor {
+
+    /**
+     * Log object to use when logging is required in this class.
+     */
+    private static final Log log = LogFactory.getLog(HeapPressureMonitor.class);
+
+    /**
+     * The guarded stores
+     */
+    private static final List<HeapGuardedCacheStore> stores = new CopyOnWriteArrayList<HeapGuardedCacheStore>();
+
+    /**
+     * The watched memory pool, or null if no heap pool supports collection usage thresholds
+     */
+    private static MemoryPoolMXBean pool;
+
+    /**
+     * Whether the notification listener has been registered
+     */
+    private static boolean registered;
+
+    /**
+     * Whether the heap is above its high-water mark since the last collection which left it below the low-water mark
+     */
+    private static volatile boolean underPressure;
+
+    /**
+     * The last time the pressure was checked, in the standard java system time format
+     */
+    private static volatile long lastCheck;
+
+    private HeapPressureMonitor() {
+    }
+
+    /**
+     * This method starts guarding the given store, registering the monitor with the JVM on the first call
+     *
+     * @param store - the guarded store
+     */
+    public static synchronized void watch(HeapGuardedCacheStore store) {
+        if (!stores.contains(store)) {
+            stores.add(store);
+        }
+        if (!registered) {
+            registered = true;
+            register();
+        }
+    }
+
+    /**
+     * This method stops guarding the given store
+     *
+     * @param store - the guarded store
+     */
+    public static void unwatch(HeapGuardedCacheStore store) {
+        stores.remove(store);
+    }
+
+    /**
+     * This method checks whether the heap is under pressure. The pressure is released once a collection leaves the
+     * watched pool below the low-water mark, which is checked at most once per
+     * {@link CachingConstants#HEAP_PRESSURE_CHECK_MILLIS}.
+     *
+     * @return boolean true if the heap is under pressure and false if not
+     */
+    public static boolean isUnderPressure() {
+        if (!underPressure) {
+            return false;
+        }
+        long now = CoarseClock.currentTimeMillis();
+        if (now - lastCheck >= CachingConstants.HEAP_PRESSURE_CHECK_MILLIS) {
+            lastCheck = now;
+            MemoryUsage usage = pool.getCollectionUsage();
+            if (usage != null && usage.getUsed() < lowWater(usage)) {
+                underPressure = false;
+                log.info("Heap usage is back under the low-water mark, the caches store large responses again");
+            }
+        }
+        return underPressure;
+    }
+
+    /**
+     * Sets the collection usage threshold of the largest heap pool and registers the notification listener
+     */
+    private static void register() {
+        for (MemoryPoolMXBean candidate : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (candidate.getType() == MemoryType.HEAP && candidate.isCollectionUsageThresholdSupported() &&
+                    candidate.getUsage().getMax() > 0 &&
+                    (pool == null || candidate.getUsage().getMax() > pool.getUsage().getMax())) {
+                pool = candidate;
+            }
+        }
+        if (pool == null) {
+            log.warn("No heap memory pool supports collection usage thresholds, the caches are not guarded " +
+                             "against heap pressure");
+            return;
+        }
+        long threshold = (long) (pool.getUsage().getMax() * CachingConstants.HEAP_HIGH_WATER);
+        // a lower threshold set by someone else is kept, the notifications below the high-water mark are ignored
+        if (pool.getCollectionUsageThreshold() == 0 || pool.getCollectionUsageThreshold() > threshold) {
+            pool.setCollectionUsageThreshold(threshold);
+        }
+        ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener(
+                new NotificationListener() {
+                    public void handleNotification(Notification notification, Object handback) {
+                        if (!MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(
+                                notification.getType())) {
+                            return;
+                        }
+                        MemoryNotificationInfo info =
+                                MemoryNotificationInfo.from((CompositeData) notification.getUserData());
+                        if (pool.getName().equals(info.getPoolName())) {
+                            relieve(info.getUsage());
+                        }
+                    }
+                }, null, null);
+    }
+
+    /**
+     * Sheds the responses of the guarded stores if the given usage is above the high-water mark
+     *
+     * @param usage - the usage of the watched pool after a collection
+     */
+    private static void relieve(MemoryUsage usage) {
+        if (usage.getUsed() < usage.getMax() * CachingConstants.HEAP_HIGH_WATER) {
+            return;
+        }
+        underPressure = true;
+        lastCheck = CoarseClock.currentTimeMillis();
+        long excess = usage.getUsed() - lowWater(usage);
+        long total = 0;
+        for (HeapGuardedCacheStore store : stores) {
+            // the charge of the responses a store let go without discarding them is dropped
+            total += store.reconcile();
+        }
+        if (total <= 0) {
+            return;
+        }
+        long freed = 0;
+        for (HeapGuardedCacheStore store : stores) {
+            long bytes = store.getBytes();
+            long target = total > excess ? (long) ((double) excess * bytes / total) : bytes;
+            if (target > 0) {
+                freed += store.shed(target);
+            }
+        }
+        log.warn("Heap usage of " + usage.getUsed() + " bytes is above the high-water mark, shed " + freed +
+                         " bytes of cached responses");
+    }
+
+    private static long lowWater(MemoryUsage usage) {
+        return (long) (usage.getMax() * CachingConstants.HEAP_LOW_WATER);
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import org.apache.axis2.context.ConfigurationContext;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link CacheStore} decorator serving the hottest keys of a remote backed store from a small local replica.
+ * Every lookup is recorded by a {@link HotKeyDetector}; the responses of the keys it reports as hot are pinned in
+ * the replica for at most {@link CachingConstants#HOT_KEY_TTL_MILLIS} milliseconds, so that the traffic of a few
+ * very popular keys does not saturate the member owning them. Every update of a key through this store drops its
+ * pinned copy, and the short time to live bounds the staleness after updates made on other nodes.
+ */
+public class HotKeyCacheStore implements EnumerableCacheStore, MultiGetCacheStore {
+
+    /**
+     * The store which is decorated
+     */
+    private final CacheStore backing;
+
+    /**
+     * Detector of the hot keys among the lookups
+     */
+    private final HotKeyDetector detector;
+
+    /**
+     * Local copies of the responses of the hot keys
+     */
+    private final ConcurrentCacheStore replica = new ConcurrentCacheStore();
+
+    /**
+     * Creates a decorator of the given store replicating the given number of hot keys
+     *
+     * @param backing  - the store which is decorated
+     * @param capacity - maximum number of hot keys
+     */
+    public HotKeyCacheStore(CacheStore backing, int capacity) {
+        this.backing = backing;
+        this.detector = new HotKeyDetector(capacity);
+        this.replica.init(null, capacity, null);
+    }
+
+    public void init(String cacheName, int maxSize, ConfigurationContext cfgCtx) throws CachingException {
+        // the decorated store is initialized by the cache store manager
+    }
+
+    public CachableResponse get(String key) {
+        boolean hot = detector.record(key);
+        if (hot) {
+            CachableResponse pinned = replica.get(key);
+            if (pinned != null && !pinned.isExpired()) {
+                return pinned;
+            }
+        }
+        CachableResponse response = backing.get(key);
+        if (hot && isPinnable(response)) {
+            replica.put(key, pin(response));
+        }
+        return response;
+    }
+
+    public Map<String, CachableResponse> getAll(Collection<String> keys) {
+        Map<String, CachableResponse> found = new HashMap<String, CachableResponse>();
+        List<String> remaining = new ArrayList<String>(keys.size());
+        List<String> hotKeys = new ArrayList<String>();
+        for (String key : keys) {
+            if (detector.record(key)) {
+                CachableResponse pinned = replica.get(key);
+                if (pinned != null && !pinned.isExpired()) {
+                    found.put(key, pinned);
+                    continue;
+                }
+                hotKeys.add(key);
+            }
+            remaining.add(key);
+        }
+        if (backing instanceof MultiGetCacheStore) {
+            found.putAll(((MultiGetCacheStore) backing).getAll(remaining));
+        } else {
+            for (String key : remaining) {
+                CachableResponse response = backing.get(key);
+                if (response != null) {
+                    found.put(key, response);
+                }
+            }
+        }
+        for (String key : hotKeys) {
+            CachableResponse response = found.get(key);
+            if (isPinnable(response)) {
+                replica.put(key, pin(response));
+            }
+        }
+        return found;
+    }
+
+    public void put(String key, CachableResponse response) {
+        replica.remove(key);
+        backing.put(key, response);
+    }
+
+    public boolean putIfAbsent(String key, CachableResponse response) {
+        replica.remove(key);
+        return backing.putIfAbsent(key, response);
+    }
+
+    public boolean replace(String key, CachableResponse expected, CachableResponse response) {
+        replica.remove(key);
+        return backing.replace(key, expected, response);
+    }
+
+    public boolean remove(String key) {
+        replica.remove(key);
+        return backing.remove(key);
+    }
+
+    public boolean remove(String key, CachableResponse response) {
+        replica.remove(key);
+        return backing.remove(key, response);
+    }
+
+    public void clear() {
+        replica.clear();
+        backing.clear();
+    }
+
+    public void destroy() {
+        // the decorated store is destroyed by the cache store manager
+        replica.destroy();
+    }
+
+    public Iterable<CachableResponse> localResponses() {
+        if (backing instanceof EnumerableCacheStore) {
+            return ((EnumerableCacheStore) backing).localResponses();
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Tells whether the given response of a hot key can be pinned. A spooled payload is owned by the response in
+     * the decorated store and is already read from the local disk, so a spooled response is not pinned.
+     *
+     * @param response - the response of the hot key
+     * @return boolean true if the response can be pinned and false if not
+     */
+    private static boolean isPinnable(CachableResponse response) {
+        return response != null && response.hasContent() && response.getSpooledPayload() == null &&
+                !response.isExpired();
+    }
+
+    /**
+     * Copies a response of a hot key with an expiry time bounded by the time to live of pinned responses
+     *
+     * @param response - the response of the hot key
+     * @return CachableResponse the copy to be pinned
+     */
+    private static CachableResponse pin(CachableResponse response) {
+        CachableResponse pinned = new CachableResponse(response);
+        pinned.setExpireTimeMillis(Math.min(response.getExpireTimeMillis(),
+                                            CoarseClock.currentTimeMillis() + CachingConstants.HOT_KEY_TTL_MILLIS));
+        return pinned;
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A streaming heavy hitter detector over the looked up cache keys. Occurrences are counted in a
+ * {@link CountMinSketch}, and the keys with the highest estimates are kept in a bounded min-heap, so only the
+ * keys whose estimate beats the coldest tracked key take the lock of the heap.
+ */
+public class HotKeyDetector {
+
+    /**
+     * Recent occurrences a key needs before it can be considered hot. The sketch is sized to the capacity, so
+     * this keeps keys with a negligible share of the lookups out of a heap which is not yet full.
+     */
+    private static final int MIN_OCCURRENCES = 64;
+
+    /**
+     * Occurrence counts of the keys
+     */
+    private final CountMinSketch sketch;
+
+    /**
+     * Maximum number of hot keys
+     */
+    private final int capacity;
+
+    /**
+     * The tracked keys ordered by their estimate, coldest first
+     */
+    private final PriorityQueue<Candidate> heap = new PriorityQueue<Candidate>();
+
+    /**
+     * The tracked keys indexed by key, for the lock free hot check
+     */
+    private final Map<String, Candidate> tracked = new HashMap<String, Candidate>();
+
+    /**
+     * The current hot keys
+     */
+    private final Set<String> hotKeys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * Estimate a key needs to enter the heap, which is the estimate of its coldest key once the heap is full
+     */
+    private volatile int admission = MIN_OCCURRENCES;
+
+    /**
+     * Generation of the sketch the estimates of the heap belong to
+     */
+    private volatile int generation;
+
+    /**
+     * Creates a detector tracking the given number of hot keys
+     *
+     * @param capacity - maximum number of hot keys
+     */
+    public HotKeyDetector(int capacity) {
+        this.capacity = capacity;
+        this.sketch = new CountMinSketch(capacity * 64);
+    }
+
+    /**
+     * This method records a lookup of the given key
+     *
+     * @param key - the looked up key
+     * @return boolean true if the key is currently hot and false if not
+     */
+    public boolean record(String key) {
+        int estimate = sketch.add(key);
+        if (estimate >= admission || generation != sketch.getGeneration()) {
+            offer(key, estimate);
+        }
+        return hotKeys.contains(key);
+    }
+
+    /**
+     * Updates the heap with a new estimate of a key, evicting the coldest key if the heap is full
+     *
+     * @param key      - the looked up key
+     * @param estimate - the new estimate of the key
+     */
+    private synchronized void offer(String key, int estimate) {
+        if (generation != sketch.getGeneration()) {
+            age();
+        }
+        if (estimate < admission) {
+            return;
+        }
+        Candidate candidate = tracked.get(key);
+        if (candidate != null) {
+            heap.remove(candidate);
+            candidate.estimate = estimate;
+            heap.add(candidate);
+        } else {
+            if (heap.size() >= capacity) {
+                Candidate coldest = heap.peek();
+                if (coldest.estimate >= estimate) {
+                    return;
+                }
+                heap.poll();
+                tracked.remove(coldest.key);
+                hotKeys.remove(coldest.key);
+            }
+            candidate = new Candidate(key, estimate);
+            heap.add(candidate);
+            tracked.put(key, candidate);
+            hotKeys.add(key);
+        }
+        if (heap.size() >= capacity) {
+            admission = Math.max(MIN_OCCURRENCES, heap.peek().estimate);
+        }
+    }
+
+    /**
+     * Halves the estimates of the tracked keys along with the counters of the sketch, so that keys which cooled
+     * down can be replaced by newly hot keys
+     */
+    private void age() {
+        generation = sketch.getGeneration();
+        // halving keeps the order of the estimates, so the heap stays valid
+        for (Candidate candidate : tracked.values()) {
+            candidate.estimate >>>= 1;
+        }
+        admission = heap.size() >= capacity ? Math.max(MIN_OCCURRENCES, heap.peek().estimate) : MIN_OCCURRENCES;
+    }
+
+    /**
+     * A tracked key with its last estimate
+     */
+    private static final class Candidate implements Comparable<Candidate> {
+
+        private final String key;
+
+        private int estimate;
+
+        private Candidate(String key, int estimate) {
+            this.key = key;
+            this.estimate = estimate;
+        }
+
+        public int compareTo(Candidate other) {
+            return estimate < other.estimate ? -1 : (estimate == other.estimate ? 0 : 1);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import org.apache.axis2.context.ConfigurationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.cache.Cache;
+import javax.cache.CacheBuilder;
+import javax.cache.CacheConfiguration;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+/**
+ * The default {@link CacheStore} which keeps the cached responses in a javax.cache cache of the carbon cache
+ * manager. The cache handle is looked up once on initialization instead of on every request.
+ */
+public class JCacheStore implements EnumerableCacheStore {
+
+    /**
+     * The javax.cache cache holding the cached responses
+     */
+    private Cache<String, CachableResponse> cache;
+
+    public void init(String cacheName, int maxSize, ConfigurationContext cfgCtx) throws CachingException {
+        CacheManager cacheManager = Caching.getCacheManagerFactory().getCacheManager(CachingConstants.CACHE_MANAGER);
+        Cache<String, CachableResponse> existing = cacheManager.getCache(cacheName);
+        if (existing != null) {
+            cache = existing;
+            return;
+        }
+        CacheBuilder<String, CachableResponse> cacheBuilder = cacheManager.createCacheBuilder(cacheName);
+        cache = cacheBuilder.setExpiry(CacheConfiguration.ExpiryType.MODIFIED,
+                                       new CacheConfiguration.Duration(TimeUnit.SECONDS,
+                                                                       CachingConstants.CACHE_INVALIDATION_TIME))
+                .setExpiry(CacheConfiguration.ExpiryType.ACCESSED,
+                           new CacheConfiguration.Duration(TimeUnit.SECONDS,
+                                                           CachingConstants.CACHE_INVALIDATION_TIME))
+                .setStoreByValue(false).build();
+    }
+
+    public CachableResponse get(String key) {
+        return cache.get(key);
+    }
+
+    public void put(String key, CachableResponse response) {
+        CachableResponse previous = cache.get(key);
+        cache.put(key, response);
+        if (previous != null && previous != response) {
+            previous.discard();
+        }
+        ExpiryTask.schedule(this, response);
+    }
+
+    public boolean putIfAbsent(String key, CachableResponse response) {
+        if (!cache.putIfAbsent(key, response)) {
+            return false;
+        }
+        ExpiryTask.schedule(this, response);
+        return true;
+    }
+
+    public boolean replace(String key, CachableResponse expected, CachableResponse response) {
+        if (!cache.replace(key, expected, response)) {
+            return false;
+        }
+        if (expected != response) {
+            expected.discard();
+        }
+        ExpiryTask.schedule(this, response);
+        return true;
+    }
+
+    public boolean remove(String key) {
+        CachableResponse response = cache.get(key);
+        if (!cache.remove(key)) {
+            return false;
+        }
+        if (response != null) {
+            response.discard();
+        }
+        return true;
+    }
+
+    public boolean remove(String key, CachableResponse response) {
+        if (!cache.remove(key, response)) {
+            return false;
+        }
+        response.discard();
+        return true;
+    }
+
+    public void clear() {
+        for (Cache.Entry<String, CachableResponse> entry : cache) {
+            entry.getValue().discard();
+        }
+        cache.removeAll();
+    }
+
+    public void destroy() {
+        // the cache is owned by the carbon cache manager and is left for its invalidation time
+    }
+
+    public Iterable<CachableResponse> localResponses() {
+        List<CachableResponse> responses = new ArrayList<CachableResponse>();
+        for (Cache.Entry<String, CachableResponse> entry : cache) {
+            responses.add(entry.getValue());
+        }
+        return responses;
+    }
+}
@@ -1,9 +1,10 @@
 package org.wso2.carbon.mediator.cache.json;
 
 import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.util.AXIOMUtil;
+import org.apache.axiom.soap.SOAPBody;
+import org.apache.axis2.AxisFault;
 import org.apache.axis2.Constants;
-import org.apache.axis2.clustering.ClusteringFault;
-import org.apache.axis2.clustering.state.Replicator;
 import org.apache.axis2.context.ConfigurationContext;
 import org.apache.axis2.context.OperationContext;
 import org.apache.synapse.ManagedLifecycle;
@@ -16,19 +17,26 @@ import org.apache.synapse.continuation.ContinuationStackManager;
 import org.apache.synapse.core.SynapseEnvironment;
 import org.apache.synapse.core.axis2.Axis2MessageContext;
 import org.apache.synapse.core.axis2.Axis2Sender;
+import org.apache.synapse.core.axis2.Axis2SynapseEnvironment;
 import org.apache.synapse.debug.constructs.EnclosedInlinedSequence;
 import org.apache.synapse.mediators.AbstractMediator;
 import org.apache.synapse.mediators.base.SequenceMediator;
-
+import org.apache.synapse.transport.passthru.util.RelayUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
-import javax.cache.Cache;
-import javax.cache.CacheBuilder;
-import javax.cache.CacheConfiguration;
-import javax.cache.CacheManager;
-import javax.cache.Caching;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.xml.stream.XMLStreamException;
 
 /**
  * Created by riyafa on 7/10/17.
@@ -50,6 +58,28 @@ public class JSONCacheMediator extends AbstractMediator implements ManagedLifecy
      */
     private boolean collector = false;
 
+    /**
+     * This specifies whether a collector stores the responses from a background pipeline instead of the response
+     * path.
+     */
+    private boolean asyncCollector = false;
+
+    /**
+     * This specifies whether the mediator invalidates the cached responses carrying its tags instead of caching.
+     */
+    private boolean invalidator = false;
+
+    /**
+     * The tags of the cached responses separated by commas, which may refer to message context properties as
+     * {name}. An invalidating mediator also accepts tags ending with * to invalidate all the tags with a prefix.
+     */
+    private String tags = null;
+
+    /**
+     * The tags of the cached responses split into individual templates.
+     */
+    private List<String> tagTemplates = null;
+
     /**
      * This is used to define the logic used by the mediator to evaluate the hash values of incoming messages.
      */
@@ -71,6 +101,114 @@ public class JSONCacheMediator extends AbstractMediator implements ManagedLifecy
      */
     private long timeout = 0L;
 
+    /**
+     * The lower bound of the adaptive timeouts of the keys, used when the timeouts are adaptive.
+     */
+    private long minTimeout = 0L;
+
+    /**
+     * The upper bound of the adaptive timeouts of the keys, or 0 if every key has the fixed timeout.
+     */
+    private long maxTimeout = 0L;
+
+    /**
+     * The adaptive timeout of the mediator, or null if every key has the fixed timeout.
+     */
+    private AdaptiveTimeout adaptiveTimeout = null;
+
+    /**
+     * This specifies whether the output of the onCacheHit sequence is memoized with the cached response, so that
+     * later hits of the response replay it instead of running the sequence.
+     */
+    private boolean memoizeOnCacheHit = false;
+
+    /**
+     * The name of the query parameter selecting the fields of the response, or null if responses are not projected.
+     */
+    private String projectionParameter = null;
+
+    /**
+     * The comma separated XML message types the responses are also served in, or null if they are served as JSON
+     * only.
+     */
+    private String representationTypes = null;
+
+    /**
+     * This specifies whether the representations of a response are produced when it is stored rather than on the
+     * first request negotiating them.
+     */
+    private boolean eagerRepresentations = false;
+
+    /**
+     * The representations the responses are served in, or null if they are served as JSON only.
+     */
+    private Representations representations = null;
+
+    /**
+     * This specifies whether the cache sheds responses and stores only small ones while the heap is under pressure.
+     */
+    private boolean heapGuarded = false;
+
+    /**
+     * The size in bytes above which responses are not stored while the heap is under pressure.
+     */
+    private long heapPressureMaxMessageSize = CachingConstants.DEFAULT_HEAP_PRESSURE_MAX_MESSAGE_SIZE;
+
+    /**
+     * The store of the cache guarded against heap pressure, or null if the cache is not guarded.
+     */
+    private HeapGuardedCacheStore heapGuard = null;
+
+    /**
+     * The fraction of the keys initially sampled to estimate the miss ratio curve, or 0 if it is not estimated.
+     */
+    private double missRatioCurveSamplingRate = 0;
+
+    /**
+     * The maximum number of keys sampled to estimate the miss ratio curve.
+     */
+    private int missRatioCurveSampleSize = CachingConstants.DEFAULT_MISS_RATIO_CURVE_SAMPLE_SIZE;
+
+    /**
+     * The miss ratio curve estimated from the lookups of the cache, or null if it is not estimated.
+     */
+    private MissRatioCurve missRatioCurve = null;
+
+    /**
+     * The size in bytes above which response payloads are spooled to files, or 0 if they are kept on the heap.
+     */
+    private long spoolThreshold = 0;
+
+    /**
+     * The directory of the spool files, or null to use the temporary directory.
+     */
+    private String spoolDirectory = null;
+
+    /**
+     * The spool of the large response payloads, or null if they are kept on the heap.
+     */
+    private ResponseSpool responseSpool = null;
+
+    /**
+     * The path of the array of items in batch requests, or null if requests are cached as a whole.
+     */
+    private String batchPath = null;
+
+    /**
+     * The path of the array of items in the responses to batch requests.
+     */
+    private String batchResponsePath = CachingConstants.DEFAULT_BATCH_RESPONSE_PATH;
+
+    /**
+     * The array of items in batch requests, or null if requests are cached as a whole.
+     */
+    private JsonArrayPath batchItems = null;
+
+    /**
+     * The array of items in the responses to batch requests.
+     */
+    private JsonArrayPath batchResponseItems = null;
+
     /**
      * The SequenceMediator to the onCacheHit sequence to be executed when an incoming message is identified as an
      * equivalent to a previously received message based on the value defined for the Hash Generator field.
@@ -88,6 +226,54 @@ public class JSONCacheMediator extends AbstractMediator implements ManagedLifecy
      */
     private int maxMessageSize = 0;
 
+    /**
+     * The number of hot keys replicated locally in the distributed scope, or 0 to disable the local replica.
+     */
+    private int hotKeys = 0;
+
+    /**
+     * The number of requests of a key after which its response is cached, 1 to cache the response of every request.
+     */
+    private int admitAfter = 1;
+
+    /**
+     * The percentage by which the timeout of a new response is randomly shortened, so that responses cached together
+     * do not expire together.
+     */
+    private int jitter = 0;
+
+    /**
+     * The weight of the fetch cost in the probability of refreshing a response ahead of its expiry, or 0 to refresh
+     * responses only once they expire.
+     */
+    private double earlyRefresh = 0;
+
+    /**
+     * The admission policy of the mediator, or null if every response is cached.
+     */
+    private AdmissionPolicy admissionPolicy = null;
+
+    /**
+     * This specifies whether identical response payloads are stored once in the payload pool of the cache.
+     */
+    private boolean dedupPayloads = false;
+
+    /**
+     * The file the cached responses are written into when the mediator is destroyed and restored from when it is
+     * initialized, or null to start with an empty cache.
+     */
+    private String snapshotFile = null;
+
+    /**
+     * The maximum number of uncompressed snapshot bytes restored when the mediator is initialized.
+     */
+    private long snapshotRestoreBudget = CachingConstants.DEFAULT_SNAPSHOT_RESTORE_BUDGET;
+
+    /**
+     * The thread restoring the snapshot of the cache, if a restore is in progress.
+     */
+    private Thread snapshotRestorer = null;
+
     /**
      * Prefix of the cache key
      */
@@ -98,6 +284,26 @@ public class JSONCacheMediator extends AbstractMediator implements ManagedLifecy
      */
     private static final String NO_ENTITY_BODY = "NO_ENTITY_BODY";
 
+    /**
+     * Variable to represent 'REST_URL_POSTFIX' property of synapse
+     */
+    private static final String REST_URL_POSTFIX = "REST_URL_POSTFIX";
+
+    /**
+     * The request header negotiating the message type of the response
+     */
+    private static final String ACCEPT_HEADER = "Accept";
+
+    /**
+     * Charset of the JSON payloads
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Variable to represent 'message.builder.invoked' property of the pass through transport
+     */
+    private static final String MESSAGE_BUILDER_INVOKED = "message.builder.invoked";
+
     /**
      * String variable representing SOAP Header element
      */
@@ -109,14 +315,86 @@ public class JSONCacheMediator extends AbstractMediator implements ManagedLifecy
     private String cacheKey = "mediation.cache_key";
 
     /**
-     * This holds whether the global cache already initialized or not.
+     * Class name of the CacheStore implementation backing the cache, or null to use the default store.
+     */
+    private String cacheStoreClass = null;
+
+    /**
+     * The store holding the cached responses, resolved once when the mediator is initialized.
+     */
+    private CacheStore cacheStore = null;
+
+    /**
+     * The tag index of the cache, resolved once when the mediator is initialized.
+     */
+    private TagIndex tagIndex = null;
+
+    /**
+     * The payload pool of the cache, or null if payloads are not deduplicated.
      */
-    private static AtomicBoolean mediatorCacheInit = new AtomicBoolean(false);
+    private PayloadPool payloadPool = null;
     private static final String ORG_APACHE_SYNAPSE_COMMONS_JSON_JSON_INPUT_STREAM =
             "org.apache.synapse.commons.json.JsonInputStream";
 
 
     public void init(SynapseEnvironment se) {
+        ExpiryTask.start();
+        if (!collector) {
+            ConfigurationContext cfgCtx = se instanceof Axis2SynapseEnvironment ?
+                    ((Axis2SynapseEnvironment) se).getAxis2ConfigurationContext() : null;
+            cacheStore = CacheStoreManager.acquire(getCacheName(), getCacheStoreImplementation(), inMemoryCacheSize,
+                                                   cfgCtx);
+            tagIndex = CacheStoreManager.getTagIndex(getCacheName());
+            if (heapGuarded && !CachingConstants.SCOPE_DISTRIBUTED.equals(scope)) {
+                heapGuard = CacheStoreManager.getHeapGuardedStore(getCacheName());
+                if (heapGuard != null) {
+                    heapGuard.limitMessageSize(heapPressureMaxMessageSize);
+                    cacheStore = heapGuard;
+                } else {
+                    log.warn("Cache : " + getCacheName() + " cannot be enumerated, it is not guarded against heap " +
+                                     "pressure");
+                }
+            }
+            if (dedupPayloads && !CacheStoreManager.discardsResponses(getCacheName())) {
+                // a pooled payload is only released when the response holding it is discarded
+                log.warn("Cache : " + getCacheName() + " may evict responses without discarding them, payloads " +
+                                 "are not deduplicated");
+            } else if (dedupPayloads) {
+                payloadPool = CacheStoreManager.getPayloadPool(getCacheName());
+            }
+            if (missRatioCurveSamplingRate > 0) {
+                missRatioCurve = CacheStoreManager.getMissRatioCurve(getCacheName(), missRatioCurveSamplingRate,
+                                                                     missRatioCurveSampleSize);
+            }
+            admissionPolicy = newAdmissionPolicy();
+            if (representationTypes != null) {
+                representations = new Representations(representationTypes, eagerRepresentations);
+            }
+            if (spoolThreshold > 0 && !CacheStoreManager.discardsResponses(getCacheName())) {
+                // the spool file of a response evicted without being discarded would never be deleted
+                log.warn("Cache : " + getCacheName() + " may evict responses without discarding them, large " +
+                                 "responses are kept on the heap instead of being spooled");
+            } else if (spoolThreshold > 0) {
+                responseSpool = new ResponseSpool(spoolDirectory, spoolThreshold);
+            }
+            if (batchPath != null) {
+                batchItems = new JsonArrayPath(batchPath);
+                batchResponseItems = new JsonArrayPath(batchResponsePath);
+            }
+            if (maxTimeout > 0) {
+                adaptiveTimeout = new AdaptiveTimeout(minTimeout > 0 ? minTimeout : Math.min(timeout, maxTimeout),
+                                                      maxTimeout,
+                                                      Math.max(inMemoryCacheSize, CachingConstants.DEFAULT_CACHE_SIZE) *
+                                                              CachingConstants.ADAPTIVE_HISTORY_KEYS_PER_ENTRY);
+            }
+            if (hotKeys > 0 && CachingConstants.SCOPE_DISTRIBUTED.equals(scope)) {
+                cacheStore = CacheStoreManager.getHotKeyStore(getCacheName(), hotKeys);
+            }
+            if (snapshotFile != null && !invalidator) {
+                snapshotRestorer = CacheSnapshot.restore(new File(snapshotFile), cacheStore, tagIndex,
+                                                         snapshotRestoreBudget);
+            }
+        }
         if (onCacheHitSequence != null) {
             onCacheHitSequence.init(se);
         }
@@ -126,6 +404,61 @@ public class JSONCacheMediator extends AbstractMediator implements ManagedLifecy
         if (onCacheHitSequence != null) {
             onCacheHitSequence.destroy();
         }
+        if (cacheStore != null) {
+            if (snapshotFile != null && !invalidator) {
+                writeSnapshot();
+            }
+            CacheStoreManager.release(getCacheName());
+            cacheStore = null;
+            tagIndex = null;
+            payloadPool = null;
+            missRatioCurve = null;
+        }
+    }
+
+    /**
+     * Creates the admission policy matching the number of requests after which responses are cached. The second
+     * request is detected with a Bloom filter doorkeeper, and later ones with a count-min sketch.
+     *
+     * @return the admission policy, or null if every response is cached.
+     */
+    private AdmissionPolicy newAdmissionPolicy() {
+        int keys = Math.max(inMemoryCacheSize, CachingConstants.DEFAULT_CACHE_SIZE) *
+                CachingConstants.ADMISSION_KEYS_PER_ENTRY;
+        if (admitAfter == 2) {
+            return new DoorkeeperAdmission(keys);
+        } else if (admitAfter > 2) {
+            return new FrequencyAdmission(keys, admitAfter);
+        }
+        return null;
+    }
+
+    /**
+     * Stops a restore in progress and writes the responses of the cache into the snapshot file.
+     */
+    private void writeSnapshot() {
+        if (snapshotRestorer != null) {
+            snapshotRestorer.interrupt();
+            try {
+                snapshotRestorer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            snapshotRestorer = null;
+        }
+        if (!(cacheStore instanceof EnumerableCacheStore)) {
+            log.warn("Cache : " + getCacheName() + " cannot be enumerated, skipping the snapshot : " + snapshotFile);
+            return;
+        }
+        try {
+            int written = CacheSnapshot.write(new File(snapshotFile),
+                                              ((EnumerableCacheStore) cacheStore).localResponses());
+            if (log.isDebugEnabled()) {
+                log.debug("Wrote " + written + " cached responses into the snapshot : " + snapshotFile);
+            }
+        } catch (IOException e) {
+            log.warn("Unable to write the cache snapshot : " + snapshotFile, e);
+        }
     }
 
     public boolean mediate(MessageContext synCtx) {
@@ -156,16 +489,14 @@ public class JSONCacheMediator extends AbstractMediator implements ManagedLifecy
         }
 
         boolean result = true;
-        try {
-            if (synCtx.isResponse()) {
-                processResponseMessage(synCtx, cfgCtx, synLog);
+        if (invalidator) {
+            processInvalidation(synCtx, synLog);
 
-            } else {
-                result = processRequestMessage(synCtx, synLog);
-            }
+        } else if (synCtx.isResponse()) {
+            processResponseMessage(synCtx, cfgCtx, synLog);
 
-        } catch (ClusteringFault clusteringFault) {
-            synLog.traceOrDebug("Unable to replicate Cache mediator state among the cluster");
+        } else {
+            result = processRequestMessage(synCtx, synLog);
         }
 
         synLog.traceOrDebug("End : Cache mediator");
@@ -174,12 +505,13 @@ public class JSONCacheMediator extends AbstractMediator implements ManagedLifecy
         return true;
     }
 
-    private boolean processRequestMessage(MessageContext synCtx, SynapseLog synLog) throws ClusteringFault {
+    private boolean processRequestMessage(MessageContext synCtx, SynapseLog synLog) {
         if (collector) {
             handleException("Request messages cannot be handled in a collector cache", synCtx);
         }
         OperationContext opCtx = ((Axis2MessageContext) synCtx).getAxis2MessageContext().getOperationContext();
         String requestHash = null;
+        JsonProjection projection = projectionParameter != null ? removeProjection(synCtx, synLog) : null;
 
         try {
             requestHash = digestGenerator.getDigest(((Axis2MessageContext) synCtx).getAxis2MessageContext());
@@ -193,175 +525,1032 @@ public class JSONCacheMediator extends AbstractMediator implements ManagedLifecy
         }
 
         RequestHash hash = new RequestHash(requestHash);
-        CachableResponse cachedResponse = getMediatorCache().get(requestHash);
         org.apache.axis2.context.MessageContext msgCtx = ((Axis2MessageContext) synCtx).getAxis2MessageContext();
         opCtx.setProperty(CachingConstants.REQUEST_HASH, requestHash);
+        opCtx.setProperty(CachingConstants.CACHE_STORE, cacheStore);
+        opCtx.setProperty(CachingConstants.TAG_INDEX, tagIndex);
+        opCtx.setProperty(CachingConstants.PAYLOAD_POOL, payloadPool);
+        opCtx.setProperty(CachingConstants.ADAPTIVE_TIMEOUT, adaptiveTimeout);
+        opCtx.setProperty(CachingConstants.JITTER, jitter);
+        opCtx.setProperty(CachingConstants.PROJECTION, projection);
+        opCtx.setProperty(CachingConstants.REPRESENTATIONS, representations);
+        opCtx.setProperty(CachingConstants.RESPONSE_SPOOL, responseSpool);
+        opCtx.setProperty(CachingConstants.HEAP_GUARD, heapGuard);
+        opCtx.setProperty(CachingConstants.MISS_RATIO_CURVE, missRatioCurve);
+        if (batchItems != null && processBatchRequest(synCtx, synLog, requestHash)) {
+            return true;
+        }
 
-        String responsePayload;
-        Map<String, Object> headerProperties;
-        if (cachedResponse != null && (responsePayload = cachedResponse.getResponsePayload()) != null) {
-            if (!cachedResponse.isExpired()) {
+        CachableResponse cachedResponse = cacheStore.get(requestHash);
+        if (missRatioCurve != null) {
+            missRatioCurve.record(requestHash,
+                                  cachedResponse != null ? HeapGuardedCacheStore.sizeOf(cachedResponse) : 0);
+        }
+        Map<String, Object> requestHeaders =
+                (Map) msgCtx.getProperty(org.apache.axis2.context.MessageContext.TRANSPORT_HEADERS);
+        VariantTable variants = cachedResponse != null ? cachedResponse.getVariants() : null;
+        if (variants != null) {
+            // the response varies on request headers, the variant is selected by the headers of this request
+            cachedResponse = variants.get(variants.keyOf(requestHeaders));
+        }
+        if (cachedResponse != null && cachedResponse.hasContent()) {
+            // the payload is null if it is spooled, spooling is not combined with projections and representations.
+            // The spool file is opened before the hit is decided, as the response may be discarded meanwhile.
+            String responsePayload = cachedResponse.getResponsePayload();
+            boolean expired = cachedResponse.isExpired();
+            InputStream spooledPayload = responsePayload == null && !expired ? openSpooled(cachedResponse) : null;
+            // a live response whose spool file has been released has left the cache, it is fetched again as if it
+            // was refreshed ahead of its expiry
+            boolean hit = !expired && (responsePayload != null || spooledPayload != null) &&
+                    !refreshesEarly(cachedResponse);
+            if (!hit && spooledPayload != null) {
+                closeQuietly(spooledPayload);
+            }
+            if (hit) {
                 if (synLog.isTraceOrDebugEnabled()) {
                     synLog.traceOrDebug("Cache-hit for message ID : " + synCtx.getMessageID());
                 }
-                cachedResponse.setInUse(true);
-                // mark as a response and replace envelope from cache
-                synCtx.setResponse(true);
-                opCtx.setProperty(CachingConstants.CACHED_OBJECT, cachedResponse);
-                byte[] bytes = responsePayload.getBytes();
-                try {
-                    OMElement response = JsonUtil.getNewJsonPayload(msgCtx, bytes, 0, bytes.length, true, true);
-                    if ((headerProperties = cachedResponse.getHeaderProperties()) != null) {
-
-                        msgCtx.removeProperty(NO_ENTITY_BODY);
-                        msgCtx.removeProperty(Constants.Configuration.CONTENT_TYPE);
-                        msgCtx.setProperty(org.apache.axis2.context.MessageContext.TRANSPORT_HEADERS,
-                                           headerProperties);
-                        msgCtx.setProperty(Constants.Configuration.MESSAGE_TYPE,
-                                           headerProperties.get(Constants.Configuration.MESSAGE_TYPE));
-                    }
-                } catch (Exception ex) {
-                    handleException("Error setting response envelope from cache : " + cacheKey, synCtx);
-                }
-                // take specified action on cache hit
-                if (onCacheHitSequence != null) {
-                    // if there is an onCacheHit use that for the mediation
-                    synLog.traceOrDebug("Delegating message to the onCachingHit "
-                                                + "Anonymous sequence");
-                    ContinuationStackManager.addReliantContinuationState(synCtx, 0, getMediatorPosition());
-                    if (onCacheHitSequence.mediate(synCtx)) {
-                        ContinuationStackManager.removeReliantContinuationState(synCtx);
-                    }
-
-                } else if (onCacheHitRef != null) {
-                    if (synLog.isTraceOrDebugEnabled()) {
-                        synLog.traceOrDebug("Delegating message to the onCachingHit " +
-                                                    "sequence : " + onCacheHitRef);
-                    }
-                    ContinuationStackManager.updateSeqContinuationState(synCtx, getMediatorPosition());
-                    synCtx.getSequence(onCacheHitRef).mediate(synCtx);
-
-                } else {
-
-                    if (synLog.isTraceOrDebugEnabled()) {
-                        synLog.traceOrDebug("Request message " + synCtx.getMessageID() +
-                                                    " was served from the cache : " + cacheKey);
-                    }
-                    // send the response back if there is not onCacheHit is specified
-                    synCtx.setTo(null);
-                    Axis2Sender.sendBack(synCtx);
-
+                cachedResponse.recordHit();
+                String projected = projection != null ? projection.project(responsePayload) : null;
+                String messageType = representations != null && projection == null ?
+                        representations.negotiate(getHeader(requestHeaders, ACCEPT_HEADER)) : null;
+                Representation representation =
+                        messageType != null ? representations.get(cachedResponse, messageType) : null;
+                replyFromCache(synCtx, synLog, cachedResponse, projected != null ? projected : responsePayload,
+                               spooledPayload, representation, projection == null && responsePayload != null);
+            } else if (!expired) {
+                if (synLog.isTraceOrDebugEnabled()) {
+                    synLog.traceOrDebug("Refreshing the cached response ahead of its expiry");
                 }
+                // the live response stays in the cache for the other requests, the collector replaces it
+                opCtx.setProperty(CachingConstants.CACHED_OBJECT, cachedResponse);
+                opCtx.setProperty(CachingConstants.REQUEST_TIME, System.currentTimeMillis());
+                opCtx.setProperty(CachingConstants.REQUEST_HEADERS, copyRequestHeaders(msgCtx));
             } else {
-                cachedResponse.reincarnate(timeout);
+                CachableResponse placeholder =
+                        cachedResponse.reincarnate(adaptiveTimeout != null ? cachedResponse.getTimeout() : timeout);
+                placeholder.setExpireTimeMillis(
+                        CoarseClock.currentTimeMillis() + jitter(placeholder.getTimeout(), jitter));
+                placeholder.setTags(evaluateTags(synCtx));
                 if (synLog.isTraceOrDebugEnabled()) {
                     synLog.traceOrDebug("Existing cached response has expired. Resetting cache element");
                 }
-                getMediatorCache().put(hash.getRequestHash(), cachedResponse);
-                opCtx.setProperty(CachingConstants.CACHED_OBJECT, cachedResponse);
-                Replicator.replicate(opCtx);
+                // another request may have replaced the expired response already, the collector fills the
+                // placeholder found at the time the response arrives. An expired variant stays in its table
+                // until the collector stores the new variant.
+                if (variants == null) {
+                    cacheStore.replace(hash.getRequestHash(), cachedResponse, placeholder);
+                }
+                opCtx.setProperty(CachingConstants.CACHED_OBJECT, placeholder);
+                opCtx.setProperty(CachingConstants.REQUEST_TIME, System.currentTimeMillis());
+                opCtx.setProperty(CachingConstants.REQUEST_HEADERS, copyRequestHeaders(msgCtx));
             }
-        } else {
-            cacheNewResponse(msgCtx, hash);
+        } else if (cachedResponse != null || variants != null || admissionPolicy == null ||
+                admissionPolicy.admit(requestHash)) {
+            cacheNewResponse(msgCtx, hash, evaluateTags(synCtx), cachedResponse == null && variants == null);
+
+        } else if (synLog.isTraceOrDebugEnabled()) {
+            synLog.traceOrDebug("Request hash : " + requestHash + " is not admitted yet, the response will not be " +
+                                        "cached");
         }
 
         return true;
     }
 
-    private void cacheNewResponse(org.apache.axis2.context.MessageContext msgContext, RequestHash requestHash)
-            throws ClusteringFault {
-        OperationContext opCtx = msgContext.getOperationContext();
-        CachableResponse response = new CachableResponse();
-        response.setRequestHash(requestHash.getRequestHash());
-        response.setTimeout(timeout);
-        getMediatorCache().put(requestHash.getRequestHash(), response);
-        opCtx.setProperty(CachingConstants.CACHED_OBJECT, response);
-        Replicator.replicate(opCtx);
-    }
-
-    private void processResponseMessage(MessageContext synCtx, ConfigurationContext cfgCtx, SynapseLog synLog) {
-        if (!collector) {
-            handleException("Response messages cannot be handled in a non collector cache", synCtx);
-        }
+    /**
+     * Serves a batch request from the cached items where possible. When the envelope and every item of the batch
+     * are cached the request is replied from the cache, otherwise only the missing items are forwarded to the
+     * backend and the collector merges them with the cached items.
+     *
+     * @param synCtx      the request message.
+     * @param synLog      the log of the mediation.
+     * @param requestHash the hash of the request.
+     * @return boolean true if the request was handled as a batch and false if it holds no batch.
+     */
+    private boolean processBatchRequest(MessageContext synCtx, SynapseLog synLog, String requestHash) {
         org.apache.axis2.context.MessageContext msgCtx = ((Axis2MessageContext) synCtx).getAxis2MessageContext();
-        OperationContext operationContext = msgCtx.getOperationContext();
-        CachableResponse response = (CachableResponse) operationContext.getProperty(CachingConstants.CACHED_OBJECT);
-
-        if (response != null) {
+        JsonArrayPath.Split split = batchItems.split(JsonUtil.jsonPayloadToString(msgCtx));
+        if (split == null) {
             if (synLog.isTraceOrDebugEnabled()) {
-                synLog.traceOrDebug("Storing the response message into the cache at scope : " + scope + " with ID : "
-                                            + cacheKey + " for request hash : " + response.getRequestHash());
+                synLog.traceOrDebug("Request holds no batch at : " + batchItems.getPath() + ", the request is " +
+                                            "cached as a whole");
             }
+            return false;
+        }
+        BatchRequest batch = new BatchRequest(requestHash, split.getItems(), batchResponseItems);
+        CachableResponse envelope = batch.lookup(cacheStore);
+        JsonArrayPath.Split envelopeSplit = envelope != null ?
+                batchResponseItems.split(envelope.getResponsePayload()) : null;
+        if (envelopeSplit != null && batch.getMissingCount() == 0) {
             if (synLog.isTraceOrDebugEnabled()) {
-                synLog.traceOrDebug("Storing the response for the message with ID : " + synCtx.getMessageID() + " " +
-                                            "with request hash ID : " + response.getRequestHash() + " in the cache : " +
-                                            cacheKey);
+                synLog.traceOrDebug("Cache-hit of all the " + batch.size() + " items of the batch for message ID : " +
+                                            synCtx.getMessageID());
             }
-            Object o = synCtx.getProperty(ORG_APACHE_SYNAPSE_COMMONS_JSON_JSON_INPUT_STREAM);
-
-            if (maxMessageSize > 0) {
+            envelope.recordHit();
+            replyFromCache(synCtx, synLog, envelope, envelopeSplit.join(batch.merge(Collections.<String>emptyList())),
+                           null, null, false);
+            return true;
+        }
+        if (batch.getMissingCount() < batch.size()) {
+            // only the missing items are sent to the backend
+            byte[] bytes = split.join(batch.getMissingItems()).getBytes(UTF_8);
+            try {
+                JsonUtil.getNewJsonPayload(msgCtx, bytes, 0, bytes.length, true, true);
+            } catch (AxisFault e) {
+                handleException("Error setting the missing items of the batch as the request payload", e, synCtx);
+            }
+        }
+        if (synLog.isTraceOrDebugEnabled()) {
+            synLog.traceOrDebug("Forwarding " + batch.getMissingCount() + " of the " + batch.size() +
+                                        " items of the batch for message ID : " + synCtx.getMessageID());
+        }
+        CachableResponse placeholder = new CachableResponse();
+        placeholder.setRequestHash(batch.getEnvelopeKey());
+        placeholder.setTags(evaluateTags(synCtx));
+        placeholder.setTimeout(adaptiveTimeout != null ? adaptiveTimeout.bound(timeout) : timeout);
+        if (adaptiveTimeout != null) {
+            adaptiveTimeout.recall(placeholder);
+        }
+        OperationContext opCtx = msgCtx.getOperationContext();
+        opCtx.setProperty(CachingConstants.CACHED_OBJECT, placeholder);
+        opCtx.setProperty(CachingConstants.BATCH_REQUEST, batch);
+        opCtx.setProperty(CachingConstants.REQUEST_TIME, System.currentTimeMillis());
+        return true;
+    }
 
-                if (JsonUtil.jsonPayloadToByteArray(msgCtx).length > maxMessageSize) {
-                    synLog.traceOrDebug(
-                            "Message size exceeds the upper bound for caching, request will not be cached");
-                    return;
-                }
+    /**
+     * Replies to the request with the given cached response, or hands the response to the onCacheHit sequence.
+     *
+     * @param synCtx          the request message.
+     * @param synLog          the log of the mediation.
+     * @param cachedResponse  the cached response served to the request.
+     * @param responsePayload the payload replying to the request, or null to reply with the spooled payload.
+     * @param spooledPayload  the opened spooled payload replying to the request, or null if it is not spooled.
+     * @param representation  the representation replying to the request instead of the payload, or null to reply
+     *                        with the JSON payload.
+     * @param memoizable      whether the payload is the cached payload, of which the output can be memoized.
+     */
+    private void replyFromCache(MessageContext synCtx, SynapseLog synLog, CachableResponse cachedResponse,
+                                String responsePayload, InputStream spooledPayload, Representation representation,
+                                boolean memoizable) {
+        org.apache.axis2.context.MessageContext msgCtx = ((Axis2MessageContext) synCtx).getAxis2MessageContext();
+        OperationContext opCtx = msgCtx.getOperationContext();
+        // the memoized output is JSON, a client negotiating another message type gets its representation
+        boolean memoize = memoizeOnCacheHit && memoizable && representation == null;
+        if (memoize) {
+            Mediator hitSequence = onCacheHitSequence != null ? onCacheHitSequence :
+                    onCacheHitRef != null ? synCtx.getSequence(onCacheHitRef) : null;
+            MemoizedHit memoizedHit = cachedResponse.getMemoizedHit();
+            if (memoizedHit != null && memoizedHit.isOutputOf(hitSequence)) {
+                replayMemoizedHit(synCtx, synLog, cachedResponse, memoizedHit);
+                return;
+            }
+        }
+        // mark as a response and replace envelope from cache
+        synCtx.setResponse(true);
+        opCtx.setProperty(CachingConstants.CACHED_OBJECT, cachedResponse);
+        try {
+            discardUnbuiltRequest(msgCtx);
+            if (representation != null) {
+                setXmlPayload(msgCtx, representation.getPayload());
+            } else if (responsePayload != null) {
+                byte[] bytes = responsePayload.getBytes();
+                OMElement response = JsonUtil.getNewJsonPayload(msgCtx, bytes, 0, bytes.length, true, true);
+            } else {
+                // the spooled payload is streamed from its file to the client
+                JsonUtil.getNewJsonPayload(msgCtx, spooledPayload, true, true);
+            }
+            // the transport has to write the cached payload instead of relaying the request body
+            msgCtx.setProperty(MESSAGE_BUILDER_INVOKED, Boolean.TRUE);
+            setHeaderProperties(msgCtx, representation != null ?
+                    representation.getHeaderProperties() : cachedResponse.getHeaderProperties());
+        } catch (Exception ex) {
+            handleException("Error setting response envelope from cache : " + cacheKey, synCtx);
+        }
+        // take specified action on cache hit
+        if (onCacheHitSequence != null) {
+            // if there is an onCacheHit use that for the mediation
+            synLog.traceOrDebug("Delegating message to the onCachingHit "
+                                        + "Anonymous sequence");
+            ContinuationStackManager.addReliantContinuationState(synCtx, 0, getMediatorPosition());
+            boolean continued = onCacheHitSequence.mediate(synCtx);
+            if (continued) {
+                ContinuationStackManager.removeReliantContinuationState(synCtx);
+            }
+            if (memoize) {
+                memoize(cachedResponse, onCacheHitSequence, continued, msgCtx);
+            }
 
+        } else if (onCacheHitRef != null) {
+            if (synLog.isTraceOrDebugEnabled()) {
+                synLog.traceOrDebug("Delegating message to the onCachingHit " +
+                                            "sequence : " + onCacheHitRef);
+            }
+            ContinuationStackManager.updateSeqContinuationState(synCtx, getMediatorPosition());
+            SequenceMediator hitSequence = synCtx.getSequence(onCacheHitRef);
+            boolean continued = hitSequence.mediate(synCtx);
+            if (memoize) {
+                memoize(cachedResponse, hitSequence, continued, msgCtx);
             }
 
-            response.setResponsePayload(JsonUtil.jsonPayloadToString(msgCtx));
+        } else {
 
-            if (msgCtx.isDoingREST()) {
-                Map<String, String> headers =
-                        (Map) msgCtx.getProperty(org.apache.axis2.context.MessageContext.TRANSPORT_HEADERS);
-                String messageType = (String) msgCtx.getProperty(Constants.Configuration.MESSAGE_TYPE);
-                Map<String, Object> headerProperties = new HashMap<String, Object>();
-                //Individually copying All TRANSPORT_HEADERS to headerProperties Map instead putting whole
-                //TRANSPORT_HEADERS map as single Key/Value pair to fix hazelcast serialization issue.
-                for (Map.Entry<String, String> entry : headers.entrySet()) {
-                    headerProperties.put(entry.getKey(), entry.getValue());
-                }
-                headerProperties.put(Constants.Configuration.MESSAGE_TYPE, messageType);
-                response.setHeaderProperties(headerProperties);
+            if (synLog.isTraceOrDebugEnabled()) {
+                synLog.traceOrDebug("Request message " + synCtx.getMessageID() +
+                                            " was served from the cache : " + cacheKey);
             }
+            // send the response back if there is not onCacheHit is specified
+            synCtx.setTo(null);
+            Axis2Sender.sendBack(synCtx);
 
         }
     }
 
-    public Mediator getInlineSequence(SynapseConfiguration synapseConfiguration, int inlinedSeqIdentifier) {
-        if (inlinedSeqIdentifier == 0) {
-            if (onCacheHitSequence != null) {
-                return onCacheHitSequence;
-            }
+    /**
+     * Removes the projection parameter from the address of the request, so that all the projections of a resource
+     * have the same hash and the backend returns the whole document, which is projected for the client.
+     *
+     * @param synCtx the request message.
+     * @param synLog the log of the mediation.
+     * @return JsonProjection requested by the client, or null if the request selects no fields.
+     */
+    private JsonProjection removeProjection(MessageContext synCtx, SynapseLog synLog) {
+        org.apache.axis2.context.MessageContext msgCtx = ((Axis2MessageContext) synCtx).getAxis2MessageContext();
+        String address = msgCtx.getTo() != null ? msgCtx.getTo().getAddress() : null;
+        String postfix = (String) msgCtx.getProperty(REST_URL_POSTFIX);
+        String fields = JsonProjection.getQueryParameter(address, projectionParameter);
+        if (fields == null) {
+            fields = JsonProjection.getQueryParameter(postfix, projectionParameter);
+        }
+        if (fields == null) {
+            return null;
+        }
+        if (address != null) {
+            msgCtx.getTo().setAddress(JsonProjection.removeQueryParameter(address, projectionParameter));
+        }
+        if (postfix != null) {
+            msgCtx.setProperty(REST_URL_POSTFIX, JsonProjection.removeQueryParameter(postfix, projectionParameter));
+        }
+        try {
+            return new JsonProjection(fields);
+        } catch (CachingException e) {
+            if (synLog.isTraceOrDebugEnabled()) {
+                synLog.traceOrDebug("Request selects no fields, the whole document is returned");
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the payload of the response with its projection requested by the client.
+     *
+     * @param synCtx     the response message.
+     * @param projection the projection requested by the client.
+     * @param payload    the bytes of the response payload.
+     */
+    private void projectResponse(MessageContext synCtx, JsonProjection projection, byte[] payload) {
+        String projected = payload != null ? projection.project(new String(payload, UTF_8)) : null;
+        if (projected == null) {
+            return;
+        }
+        byte[] bytes = projected.getBytes(UTF_8);
+        try {
+            JsonUtil.getNewJsonPayload(((Axis2MessageContext) synCtx).getAxis2MessageContext(), bytes, 0,
+                                       bytes.length, true, true);
+        } catch (AxisFault e) {
+            handleException("Error setting the projection of the response", e, synCtx);
+        }
+    }
+
+    /**
+     * Replaces the message with the memoized output of the onCacheHit sequence, without running the sequence. As
+     * after the sequence itself, the mediation continues with the output if the sequence continued it, and the
+     * output is sent back to the client if the sequence ended the mediation by responding.
+     *
+     * @param synCtx         the request message.
+     * @param synLog         the log of the mediation.
+     * @param cachedResponse the cached response served to the request.
+     * @param memoizedHit    the memoized output of the sequence.
+     */
+    private void replayMemoizedHit(MessageContext synCtx, SynapseLog synLog, CachableResponse cachedResponse,
+                                   MemoizedHit memoizedHit) {
+        org.apache.axis2.context.MessageContext msgCtx = ((Axis2MessageContext) synCtx).getAxis2MessageContext();
+        synCtx.setResponse(true);
+        msgCtx.getOperationContext().setProperty(CachingConstants.CACHED_OBJECT, cachedResponse);
+        byte[] bytes = memoizedHit.getPayload();
+        try {
+            discardUnbuiltRequest(msgCtx);
+            JsonUtil.getNewJsonPayload(msgCtx, bytes, 0, bytes.length, true, true);
+            msgCtx.setProperty(MESSAGE_BUILDER_INVOKED, Boolean.TRUE);
+            setHeaderProperties(msgCtx, memoizedHit.getHeaderProperties());
+        } catch (AxisFault e) {
+            handleException("Error setting the memoized output of the onCacheHit sequence : " + cacheKey, e, synCtx);
+        }
+        if (memoizedHit.continuesMediation()) {
+            if (synLog.isTraceOrDebugEnabled()) {
+                synLog.traceOrDebug("Continuing the mediation of message " + synCtx.getMessageID() + " with the " +
+                                            "memoized output of the onCacheHit sequence : " + cacheKey);
+            }
+            return;
+        }
+        if (synLog.isTraceOrDebugEnabled()) {
+            synLog.traceOrDebug("Request message " + synCtx.getMessageID() + " was served with the memoized " +
+                                        "output of the onCacheHit sequence : " + cacheKey);
+        }
+        synCtx.setTo(null);
+        Axis2Sender.sendBack(synCtx);
+    }
+
+    /**
+     * Reads and discards the body of a request which has not been built, so that the body is not left unread on the
+     * connection of the client when the cached payload is sent back.
+     *
+     * @param msgCtx the request message.
+     * @throws AxisFault if the body of the request cannot be read.
+     */
+    private static void discardUnbuiltRequest(org.apache.axis2.context.MessageContext msgCtx) throws AxisFault {
+        if (!Boolean.TRUE.equals(msgCtx.getProperty(MESSAGE_BUILDER_INVOKED))) {
+            RelayUtils.consumeAndDiscardMessage(msgCtx);
+        }
+    }
+
+    /**
+     * Replaces the payload of the message with the given XML payload of a representation.
+     *
+     * @param msgCtx  the message.
+     * @param payload the XML payload.
+     * @throws XMLStreamException if the payload cannot be parsed.
+     */
+    private static void setXmlPayload(org.apache.axis2.context.MessageContext msgCtx, String payload)
+            throws XMLStreamException {
+        OMElement element = AXIOMUtil.stringToOM(payload);
+        JsonUtil.removeJsonPayload(msgCtx);
+        SOAPBody body = msgCtx.getEnvelope().getBody();
+        OMElement first = body.getFirstElement();
+        if (first != null) {
+            first.detach();
+        }
+        body.addChild(element);
+    }
+
+    /**
+     * Sets the given cached header properties as the transport headers of the message.
+     *
+     * @param msgCtx           the message.
+     * @param headerProperties the cached header properties, or null if there are none.
+     */
+    private static void setHeaderProperties(org.apache.axis2.context.MessageContext msgCtx,
+                                            Map<String, Object> headerProperties) {
+        if (headerProperties == null) {
+            return;
+        }
+        msgCtx.removeProperty(NO_ENTITY_BODY);
+        msgCtx.removeProperty(Constants.Configuration.CONTENT_TYPE);
+        // the stored headers are shared by the hits, the transport gets a copy on write view
+        msgCtx.setProperty(org.apache.axis2.context.MessageContext.TRANSPORT_HEADERS,
+                           headerProperties instanceof HeaderSet ?
+                                   ((HeaderSet) headerProperties).view() : headerProperties);
+        msgCtx.setProperty(Constants.Configuration.MESSAGE_TYPE,
+                           headerProperties.get(Constants.Configuration.MESSAGE_TYPE));
+    }
+
+    /**
+     * Memoizes the JSON output of the onCacheHit sequence with the cached response it was computed from. The output
+     * is taken whether the sequence continued the mediation or ended it by responding, together with its result.
+     *
+     * @param cachedResponse the cached response served to the request.
+     * @param sequence       the sequence which produced the output.
+     * @param continued      whether the sequence continued the mediation.
+     * @param msgCtx         the message after the sequence.
+     */
+    private static void memoize(CachableResponse cachedResponse, Mediator sequence, boolean continued,
+                                org.apache.axis2.context.MessageContext msgCtx) {
+        if (!JsonUtil.hasAJsonPayload(msgCtx)) {
+            return;
+        }
+        Map<String, Object> headerProperties = null;
+        Map<String, Object> headers =
+                (Map) msgCtx.getProperty(org.apache.axis2.context.MessageContext.TRANSPORT_HEADERS);
+        if (headers != null) {
+            headerProperties = new HashMap<String, Object>(headers);
+            headerProperties.put(Constants.Configuration.MESSAGE_TYPE,
+                                 msgCtx.getProperty(Constants.Configuration.MESSAGE_TYPE));
+        }
+        cachedResponse.setMemoizedHit(
+                new MemoizedHit(sequence, continued, JsonUtil.jsonPayloadToByteArray(msgCtx), headerProperties));
+    }
+
+    private void cacheNewResponse(org.apache.axis2.context.MessageContext msgContext, RequestHash requestHash,
+                                  Set<String> responseTags, boolean absent) {
+        OperationContext opCtx = msgContext.getOperationContext();
+        CachableResponse response = new CachableResponse();
+        response.setRequestHash(requestHash.getRequestHash());
+        response.setTags(responseTags);
+        response.setTimeout(adaptiveTimeout != null ? adaptiveTimeout.bound(timeout) : timeout);
+        if (adaptiveTimeout != null) {
+            // the expired response of the key is removed by the expiry wheel, its history seeds the placeholder
+            adaptiveTimeout.recall(response);
+        }
+        // the jitter only shortens the expiry, the timeout which the next one is adapted from is kept as it is
+        response.setExpireTimeMillis(CoarseClock.currentTimeMillis() + jitter(response.getTimeout(), jitter));
+        if (absent) {
+            // a placeholder of a request in progress is left in place, the first response fills the key
+            cacheStore.putIfAbsent(requestHash.getRequestHash(), response);
+        }
+        opCtx.setProperty(CachingConstants.CACHED_OBJECT, response);
+        opCtx.setProperty(CachingConstants.REQUEST_TIME, System.currentTimeMillis());
+        opCtx.setProperty(CachingConstants.REQUEST_HEADERS, copyRequestHeaders(msgContext));
+    }
+
+    /**
+     * Copies the transport headers of the request, which select the variant of a response varying on request
+     * headers once the response arrives.
+     *
+     * @param msgCtx the axis2 message context of the request.
+     * @return the copy of the headers, or null if the request has none.
+     */
+    private static Map<String, Object> copyRequestHeaders(org.apache.axis2.context.MessageContext msgCtx) {
+        Map<String, Object> headers =
+                (Map) msgCtx.getProperty(org.apache.axis2.context.MessageContext.TRANSPORT_HEADERS);
+        return headers != null ? new HashMap<String, Object>(headers) : null;
+    }
+
+    /**
+     * Randomly shortens the given timeout by up to the given jitter percentage
+     *
+     * @param keyTimeout timeout of the key in milliseconds
+     * @param jitter     jitter percentage of the timeouts, 0 to use the timeouts as they are
+     * @return long timeout of the key after the jitter is applied
+     */
+    private static long jitter(long keyTimeout, int jitter) {
+        if (jitter <= 0) {
+            return keyTimeout;
+        }
+        return keyTimeout - (long) (ThreadLocalRandom.current().nextDouble() * keyTimeout * jitter / 100);
+    }
+
+    /**
+     * Decides whether the request refreshes the given live response ahead of its expiry. The probability rises as
+     * the expiry comes closer and with the time the backend took to produce the response, following the XFetch
+     * algorithm, and a single request is elected to refresh the response.
+     *
+     * @param response the live response found in the cache
+     * @return boolean true if the request is forwarded to refresh the response and false if it is served
+     */
+    private boolean refreshesEarly(CachableResponse response) {
+        if (earlyRefresh <= 0 || response.getFetchCost() <= 0) {
+            return false;
+        }
+        double gap = -response.getFetchCost() * earlyRefresh * Math.log(ThreadLocalRandom.current().nextDouble());
+        return CoarseClock.currentTimeMillis() + gap >= response.getExpireTimeMillis() && response.claimRefresh();
+    }
+
+    /**
+     * Opens the spooled payload of the given cached response. The spool file is kept until the stream is closed,
+     * even if the response is discarded in the meantime.
+     *
+     * @param response the cached response found in the cache
+     * @return InputStream of the payload, or null if the payload is not spooled or has been released
+     */
+    private static InputStream openSpooled(CachableResponse response) {
+        SpooledPayload spooled = response.getSpooledPayload();
+        if (spooled == null) {
+            return null;
+        }
+        try {
+            return spooled.open();
+        } catch (IOException e) {
+            // the response has left the cache since it was looked up, the request is forwarded to the backend
+            return null;
+        }
+    }
+
+    private void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException e) {
+            log.debug("Error while closing a spooled payload", e);
+        }
+    }
+
+    private void processResponseMessage(MessageContext synCtx, ConfigurationContext cfgCtx, SynapseLog synLog) {
+        if (!collector) {
+            handleException("Response messages cannot be handled in a non collector cache", synCtx);
+        }
+        org.apache.axis2.context.MessageContext msgCtx = ((Axis2MessageContext) synCtx).getAxis2MessageContext();
+        OperationContext operationContext = msgCtx.getOperationContext();
+        CachableResponse response = (CachableResponse) operationContext.getProperty(CachingConstants.CACHED_OBJECT);
+        CacheStore store = (CacheStore) operationContext.getProperty(CachingConstants.CACHE_STORE);
+        TagIndex index = (TagIndex) operationContext.getProperty(CachingConstants.TAG_INDEX);
+        PayloadPool pool = (PayloadPool) operationContext.getProperty(CachingConstants.PAYLOAD_POOL);
+        AdaptiveTimeout adaptive = (AdaptiveTimeout) operationContext.getProperty(CachingConstants.ADAPTIVE_TIMEOUT);
+        Integer jitterProperty = (Integer) operationContext.getProperty(CachingConstants.JITTER);
+        final int keyJitter = jitterProperty != null ? jitterProperty : 0;
+        final BatchRequest batch = (BatchRequest) operationContext.getProperty(CachingConstants.BATCH_REQUEST);
+        JsonProjection projection = (JsonProjection) operationContext.getProperty(CachingConstants.PROJECTION);
+        Representations representations =
+                (Representations) operationContext.getProperty(CachingConstants.REPRESENTATIONS);
+        ResponseSpool spool = (ResponseSpool) operationContext.getProperty(CachingConstants.RESPONSE_SPOOL);
+        HeapGuardedCacheStore heapGuard =
+                (HeapGuardedCacheStore) operationContext.getProperty(CachingConstants.HEAP_GUARD);
+        MissRatioCurve missRatioCurve =
+                (MissRatioCurve) operationContext.getProperty(CachingConstants.MISS_RATIO_CURVE);
+        // only eager representations are produced by the collector, the others by the first hit requesting them
+        final Representations eager = representations != null && representations.isEager() ? representations : null;
+
+        if (response != null && store != null) {
+            if (synLog.isTraceOrDebugEnabled()) {
+                synLog.traceOrDebug("Storing the response message into the cache at scope : " + scope + " with ID : "
+                                            + cacheKey + " for request hash : " + response.getRequestHash());
+            }
+            if (synLog.isTraceOrDebugEnabled()) {
+                synLog.traceOrDebug("Storing the response for the message with ID : " + synCtx.getMessageID() + " " +
+                                            "with request hash ID : " + response.getRequestHash() + " in the cache : " +
+                                            cacheKey);
+            }
+            Object o = synCtx.getProperty(ORG_APACHE_SYNAPSE_COMMONS_JSON_JSON_INPUT_STREAM);
+
+            Long requestTime = (Long) operationContext.getProperty(CachingConstants.REQUEST_TIME);
+            final long fetchCost = requestTime != null ? System.currentTimeMillis() - requestTime : 0L;
+            // a large payload which is neither rewritten for the client nor varying is spooled to a file instead
+            SpooledPayload spooledPayload = null;
+            if (spool != null && batch == null && projection == null && getHeader(
+                    (Map) msgCtx.getProperty(org.apache.axis2.context.MessageContext.TRANSPORT_HEADERS),
+                    CachingConstants.VARY_HEADER) == null) {
+                try {
+                    spooledPayload = spool.capture(msgCtx);
+                } catch (CachingException e) {
+                    synLog.traceOrDebug("Unable to spool the response, the response will not be cached : " +
+                                                e.getMessage());
+                    return;
+                }
+            }
+            final SpooledPayload spooled = spooledPayload;
+            // the payload is captured once, the rest of the work can be done off the response path
+            final byte[] payload = spooled == null ? JsonUtil.jsonPayloadToByteArray(msgCtx) : null;
+            final JsonArrayPath.Split split =
+                    batch != null ? batch.getResponsePath().split(new String(payload, UTF_8)) : null;
+            if (batch != null) {
+                if (split == null || split.getItems().size() != batch.getMissingCount()) {
+                    synLog.traceOrDebug("Response does not hold an item for every forwarded item of the batch, " +
+                                                "the response will not be cached");
+                    return;
+                }
+                if (batch.getMissingCount() < batch.size()) {
+                    // the client gets the cached items merged with the fetched ones in the order of its request
+                    byte[] merged = split.join(batch.merge(split.getItems())).getBytes(UTF_8);
+                    try {
+                        JsonUtil.getNewJsonPayload(msgCtx, merged, 0, merged.length, true, true);
+                    } catch (AxisFault e) {
+                        handleException("Error setting the merged response of the batch", e, synCtx);
+                    }
+                }
+            } else if (projection != null) {
+                // the whole document is cached, the client gets the fields it selected
+                projectResponse(synCtx, projection, payload);
+            }
+            if (maxMessageSize > 0 && (spooled != null ? spooled.getLength() : payload.length) > maxMessageSize) {
+                synLog.traceOrDebug("Message size exceeds the upper bound for caching, request will not be cached");
+                if (spooled != null) {
+                    spooled.release();
+                }
+                return;
+            }
+            if (heapGuard != null && payload != null && !heapGuard.admits(payload.length)) {
+                synLog.traceOrDebug("The heap is under pressure and the message size exceeds the upper bound for " +
+                                            "caching under pressure, request will not be cached");
+                return;
+            }
+            if (missRatioCurve != null && payload != null && batch == null) {
+                // the size of a missed response is only known once it is fetched
+                missRatioCurve.resize(response.getRequestHash(), 2L * payload.length);
+            }
+
+            Map<String, Object> headerProperties = null;
+            String headerTags = null;
+            if (msgCtx.isDoingREST()) {
+                Map<String, String> headers =
+                        (Map) msgCtx.getProperty(org.apache.axis2.context.MessageContext.TRANSPORT_HEADERS);
+                String messageType = (String) msgCtx.getProperty(Constants.Configuration.MESSAGE_TYPE);
+                headerProperties = new HashMap<String, Object>();
+                //Individually copying All TRANSPORT_HEADERS to headerProperties Map instead putting whole
+                //TRANSPORT_HEADERS map as single Key/Value pair to fix hazelcast serialization issue.
+                for (Map.Entry<String, String> entry : headers.entrySet()) {
+                    headerProperties.put(entry.getKey(), entry.getValue());
+                }
+                headerProperties.put(Constants.Configuration.MESSAGE_TYPE, messageType);
+                headerTags = headers.get(CachingConstants.CACHE_TAGS_HEADER);
+            }
+            String variantKey = null;
+            if (headerProperties != null && batch == null) {
+                String[] vary = VariantTable.parseVary(getHeader(headerProperties, CachingConstants.VARY_HEADER));
+                if (vary == null) {
+                    synLog.traceOrDebug("Response varies on more than the request headers, the response will not " +
+                                                "be cached");
+                    return;
+                } else if (vary.length > 0) {
+                    variantKey = VariantTable.keyOf(
+                            vary, (Map) operationContext.getProperty(CachingConstants.REQUEST_HEADERS));
+                }
+            }
+
+            if (asyncCollector) {
+                final CachableResponse cached = response;
+                final Map<String, Object> cachedHeaders = headerProperties;
+                final String cachedHeaderTags = headerTags;
+                final CacheStore cachedStore = store;
+                final TagIndex cachedIndex = index;
+                final PayloadPool cachedPool = pool;
+                final AdaptiveTimeout cachedAdaptive = adaptive;
+                final String cachedVariantKey = variantKey;
+                boolean accepted = CollectorPipeline.submit(new Runnable() {
+                    public void run() {
+                        if (batch != null) {
+                            storeBatch(cached, batch, split, fetchCost, cachedHeaders, cachedHeaderTags, cachedStore,
+                                       cachedIndex, cachedPool, cachedAdaptive, keyJitter);
+                        } else {
+                            storeResponse(cached, payload, spooled, fetchCost, cachedHeaders, cachedHeaderTags,
+                                          cachedStore, cachedIndex, cachedPool, cachedAdaptive, keyJitter,
+                                          cachedVariantKey, eager);
+                        }
+                    }
+                });
+                if (!accepted) {
+                    synLog.traceOrDebug("The cache collector pipeline is saturated, the response will not be cached");
+                    if (spooled != null) {
+                        spooled.release();
+                    }
+                }
+            } else if (batch != null) {
+                storeBatch(response, batch, split, fetchCost, headerProperties, headerTags, store, index, pool,
+                           adaptive, keyJitter);
+            } else {
+                storeResponse(response, payload, spooled, fetchCost, headerProperties, headerTags, store, index,
+                              pool, adaptive, keyJitter, variantKey, eager);
+            }
+        } else if (projection != null) {
+            projectResponse(synCtx, projection, JsonUtil.jsonPayloadToByteArray(msgCtx));
         }
-        return null;
+    }
+
+    /**
+     * Stores the envelope and the fetched items of a batch captured by the collector into the cache. The items are
+     * tagged with the tags of the batch, including the tags sent in the headers of the response.
+     *
+     * @param placeholder      the placeholder of the batch, holding the timeout and the tags of the items.
+     * @param batch            the batch request.
+     * @param split            the response split around its items.
+     * @param fetchCost        the time taken by the backend to produce the response in milliseconds.
+     * @param headerProperties the header properties of the response, or null if the response has none.
+     * @param headerTags       the value of the tags header of the response, or null if there is none.
+     * @param store            the store of the cache.
+     * @param index            the tag index of the cache, or null if tags are not indexed.
+     * @param pool             the payload pool of the cache, or null if payloads are not deduplicated.
+     * @param adaptive         the adaptive timeout of the cache, or null if the timeouts are fixed.
+     * @param jitter           the jitter percentage of the expiry of the responses.
+     */
+    private static void storeBatch(CachableResponse placeholder, BatchRequest batch, JsonArrayPath.Split split,
+                                   long fetchCost, Map<String, Object> headerProperties, String headerTags,
+                                   CacheStore store, TagIndex index, PayloadPool pool, AdaptiveTimeout adaptive,
+                                   int jitter) {
+        byte[] envelope = split.join(Collections.<String>emptyList()).getBytes(UTF_8);
+        storeResponse(placeholder, envelope, null, fetchCost, headerProperties, headerTags, store, index, pool,
+                      adaptive, jitter, null, null);
+        List<String> fetched = split.getItems();
+        for (int n = 0; n < fetched.size(); n++) {
+            CachableResponse item = new CachableResponse();
+            item.setRequestHash(batch.getMissingKey(n));
+            item.setTags(placeholder.getTags());
+            item.setTimeout(placeholder.getTimeout());
+            if (adaptive != null) {
+                adaptive.recall(item);
+            }
+            addHeaderTags(item, headerTags);
+            storeResponse(item, fetched.get(n).getBytes(UTF_8), null, fetchCost, null, null, store, index, pool,
+                          adaptive, jitter, null, null);
+        }
+    }
+
+    /**
+     * Stores a response captured by the collector into the cache.
+     *
+     * @param placeholder      the placeholder of the request, which is replaced by the response.
+     * @param payload          the bytes of the response payload, or null if the payload is spooled.
+     * @param spooled          the spooled payload of the response, or null if the payload is in memory.
+     * @param fetchCost        the time taken by the backend to produce the response in milliseconds.
+     * @param headerProperties the header properties of the response, or null if the response has none.
+     * @param headerTags       the value of the tags header of the response, or null if there is none.
+     * @param store            the store of the cache.
+     * @param index            the tag index of the cache, or null if tags are not indexed.
+     * @param pool             the payload pool of the cache, or null if payloads are not deduplicated.
+     * @param adaptive         the adaptive timeout of the cache, or null if the timeouts are fixed.
+     * @param jitter           the jitter percentage of the expiry of the response.
+     * @param variantKey       the key of the variant if the response varies on request headers, or null if not.
+     * @param representations  the representations produced before the response is stored, or null if none are.
+     */
+    private static void storeResponse(CachableResponse placeholder, byte[] payload, SpooledPayload spooled,
+                                      long fetchCost, Map<String, Object> headerProperties, String headerTags,
+                                      CacheStore store, TagIndex index, PayloadPool pool, AdaptiveTimeout adaptive,
+                                      int jitter, String variantKey, Representations representations) {
+        String key = placeholder.getRequestHash();
+        CachableResponse response = new CachableResponse();
+        response.setRequestHash(key);
+        response.setTags(placeholder.getTags());
+        response.setTimeout(placeholder.getTimeout());
+        response.setFetchCost(fetchCost);
+        if (headerProperties != null) {
+            response.setHeaderProperties(HeaderSet.of(headerProperties));
+            addHeaderTags(response, headerTags);
+        }
+        if (spooled != null) {
+            // a spooled payload is not read back, its timeout is not adapted to its changes
+            response.setSpooledPayload(spooled);
+        } else {
+            String body = adaptive != null || pool == null || variantKey != null ? new String(payload, UTF_8) : null;
+            if (adaptive != null) {
+                response.setFingerprint(AdaptiveTimeout.fingerprint(body));
+                if (placeholder.getFingerprint() != 0) {
+                    response.setTimeout(adaptive.next(placeholder.getTimeout(),
+                                                      response.getFingerprint() != placeholder.getFingerprint()));
+                }
+                if (variantKey == null) {
+                    // the variants of a key share its request hash, they are only adapted while they are stored
+                    adaptive.remember(key, response.getFingerprint(), response.getTimeout());
+                }
+            }
+            if (pool != null && variantKey == null) {
+                // the pool digests the captured bytes, and only decodes a payload it does not hold yet
+                response.setPooledPayload(pool.acquire(payload, body));
+            } else {
+                response.setResponsePayload(body);
+            }
+        }
+        response.setExpireTimeMillis(CoarseClock.currentTimeMillis() + jitter(response.getTimeout(), jitter));
+        if (representations != null) {
+            representations.produce(response);
+        }
+        if (variantKey != null) {
+            // variants are kept out of the payload pool, a table is copied whenever one of its variants changes
+            response = storeVariant(placeholder, response, variantKey, store);
+            if (response != null && index != null && response.getTags() != null && !response.getTags().isEmpty()) {
+                index.tag(key, response);
+            }
+            return;
+        }
+
+        // the response fills an empty key, a placeholder or an expired response, but never replaces a live
+        // response which has been stored since the request was made, unless it is the one being refreshed
+        boolean missed = false;
+        while (true) {
+            CachableResponse current = store.get(key);
+            if (current == null) {
+                if (missed) {
+                    // the key is held where the store cannot see it, such as by an unreachable member
+                    response.discard();
+                    return;
+                }
+                if (store.putIfAbsent(key, response)) {
+                    break;
+                }
+                missed = true;
+            } else if (!isSameResponse(current, placeholder) && current.hasContent() && !current.isExpired()) {
+                response.discard();
+                return;
+            } else if (store.replace(key, current, response)) {
+                break;
+            }
+        }
+        if (index != null && response.getTags() != null && !response.getTags().isEmpty()) {
+            index.tag(key, response);
+        }
+    }
+
+    /**
+     * Tells whether the response found in the store is the one the request was made for. A store handing out copies
+     * of its responses, such as a partitioned store looking up a key owned by another member, is compared by version.
+     *
+     * @param current     the response found in the store.
+     * @param placeholder the placeholder of the request, or the live response being refreshed.
+     * @return boolean true if both are the same response and false if not.
+     */
+    private static boolean isSameResponse(CachableResponse current, CachableResponse placeholder) {
+        return current == placeholder || current.getVersion() != 0 && current.getVersion() == placeholder.getVersion();
+    }
+
+    /**
+     * Stores a response varying on request headers into the variant table of its request hash. The variant fills an
+     * empty slot, its placeholder or an expired variant, but never replaces a live variant which has been stored
+     * since the request was made. A table varying on other headers, or a response which does not vary, is replaced
+     * by a new table.
+     *
+     * @param placeholder the placeholder of the request, which is replaced by the variant.
+     * @param variant     the response to be stored.
+     * @param variantKey  the key of the variant.
+     * @param store       the store of the cache.
+     * @return the stored table, or null if a live variant of the key is already stored.
+     */
+    private static CachableResponse storeVariant(CachableResponse placeholder, CachableResponse variant,
+                                                 String variantKey, CacheStore store) {
+        String key = variant.getRequestHash();
+        String[] vary = VariantTable.parseVary(getHeader(variant.getHeaderProperties(), CachingConstants.VARY_HEADER));
+        boolean missed = false;
+        while (true) {
+            CachableResponse current = store.get(key);
+            if (current == null && missed) {
+                return null;
+            }
+            missed = current == null;
+            VariantTable variants = current != null ? current.getVariants() : null;
+            if (variants != null && variants.variesOn(vary)) {
+                CachableResponse existing = variants.get(variantKey);
+                if (existing != null && !isSameResponse(existing, placeholder) && existing.hasContent() &&
+                        !existing.isExpired()) {
+                    return null;
+                }
+                variants = variants.with(variantKey, variant, CachingConstants.MAX_VARIANTS);
+            } else {
+                variants = VariantTable.of(vary, variantKey, variant);
+            }
+            CachableResponse table = new CachableResponse();
+            table.setRequestHash(key);
+            table.setTags(variant.getTags());
+            table.setTimeout(variant.getTimeout());
+            table.setVariants(variants);
+            table.setExpireTimeMillis(variants.getExpireTimeMillis());
+            if (current == null ? store.putIfAbsent(key, table) : store.replace(key, current, table)) {
+                return table;
+            }
+        }
+    }
+
+    /**
+     * Gives the value of a header, matching its name without regard to case.
+     *
+     * @param headers the headers, or null if there are none.
+     * @param name    the name of the header.
+     * @return the value of the header, or null if there is no such header.
+     */
+    private static Object getHeader(Map<String, Object> headers, String name) {
+        if (headers == null) {
+            return null;
+        }
+        for (Map.Entry<String, Object> header : headers.entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey())) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes the cached responses carrying the tags of the mediator. Tags ending with * remove the responses of all
+     * the tags starting with the rest of the tag.
+     *
+     * @param synCtx the message the tags are evaluated against.
+     * @param synLog the Synapse log to use.
+     */
+    private void processInvalidation(MessageContext synCtx, SynapseLog synLog) {
+        if (tagTemplates == null) {
+            return;
+        }
+        Set<String> invalidated = new HashSet<String>();
+        Set<String> prefixes = new HashSet<String>();
+        for (String template : tagTemplates) {
+            String tag = evaluateTag(template, synCtx);
+            if (tag == null) {
+                continue;
+            }
+            if (tag.endsWith("*")) {
+                prefixes.add(tag.substring(0, tag.length() - 1));
+            } else {
+                invalidated.add(tag);
+            }
+        }
+        // the hot key replica of the cache is shared by its mediators, the invalidator need not configure it
+        int removed = CacheInvalidator.invalidate(getCacheName(), CacheStoreManager.getStore(getCacheName()), tagIndex,
+                                                  invalidated, prefixes);
+        if (synLog.isTraceOrDebugEnabled()) {
+            synLog.traceOrDebug("Invalidated " + removed + " cached responses of the cache : " + cacheKey);
+        }
+    }
+
+    /**
+     * Evaluates the tag templates of the mediator against the given message.
+     *
+     * @param synCtx the message the tags are taken from.
+     * @return the evaluated tags, or null if the mediator has no tags.
+     */
+    private Set<String> evaluateTags(MessageContext synCtx) {
+        if (tagTemplates == null) {
+            return null;
+        }
+        Set<String> evaluated = new HashSet<String>();
+        for (String template : tagTemplates) {
+            String tag = evaluateTag(template, synCtx);
+            if (tag != null) {
+                evaluated.add(tag);
+            }
+        }
+        return evaluated;
+    }
+
+    /**
+     * Replaces the {name} references of a tag template by the values of the message context properties.
+     *
+     * @param template the tag template.
+     * @param synCtx   the message the property values are taken from.
+     * @return the evaluated tag, or null if a referred property is not set.
+     */
+    private static String evaluateTag(String template, MessageContext synCtx) {
+        int open = template.indexOf('{');
+        if (open < 0) {
+            return template;
+        }
+        StringBuilder tag = new StringBuilder();
+        int start = 0;
+        while (open >= 0) {
+            int close = template.indexOf('}', open);
+            if (close < 0) {
+                break;
+            }
+            Object value = synCtx.getProperty(template.substring(open + 1, close));
+            if (value == null) {
+                return null;
+            }
+            tag.append(template, start, open).append(value);
+            start = close + 1;
+            open = template.indexOf('{', start);
+        }
+        return tag.append(template, start, template.length()).toString();
+    }
+
+    /**
+     * Adds the tags listed by the backend in the response header to the cached response.
+     *
+     * @param response   the cached response.
+     * @param headerTags the value of the tags header, separated by commas.
+     */
+    private static void addHeaderTags(CachableResponse response, String headerTags) {
+        if (headerTags == null) {
+            return;
+        }
+        Set<String> responseTags = response.getTags() != null ?
+                new HashSet<String>(response.getTags()) : new HashSet<String>();
+        for (String tag : headerTags.split(",")) {
+            if (!tag.trim().isEmpty()) {
+                responseTags.add(tag.trim());
+            }
+        }
+        response.setTags(responseTags);
+    }
+
+    public Mediator getInlineSequence(SynapseConfiguration synapseConfiguration, int inlinedSeqIdentifier) {
+        if (inlinedSeqIdentifier == 0) {
+            if (onCacheHitSequence != null) {
+                return onCacheHitSequence;
+            }
+        }
+        return null;
     }
 
     @Override
     public boolean isContentAware() {
-        return true;
+        if (collector || batchPath != null) {
+            return true;
+        } else if (invalidator) {
+            return false;
+        }
+        return !(digestGenerator instanceof ContentAwareDigestGenerator) ||
+                ((ContentAwareDigestGenerator) digestGenerator).isContentAware();
     }
 
-    public static Cache<String, CachableResponse> getMediatorCache() {
-        if (mediatorCacheInit.get()) {
-            return Caching.getCacheManagerFactory().getCacheManager(CachingConstants.CACHE_MANAGER)
-                    .getCache(CachingConstants.MEDIATOR_CACHE);
-        } else {
-            CacheManager cacheManager = Caching.getCacheManagerFactory().getCacheManager(
-                    CachingConstants.CACHE_MANAGER);
-            mediatorCacheInit.getAndSet(true);
-            CacheBuilder<String, CachableResponse>
-                    mediatorCacheBuilder = cacheManager.createCacheBuilder(CachingConstants.MEDIATOR_CACHE);
-            Cache<String, CachableResponse> cache = mediatorCacheBuilder.setExpiry(
-                    CacheConfiguration.ExpiryType.MODIFIED,
-                    new CacheConfiguration.Duration(
-                            TimeUnit.SECONDS, CachingConstants.CACHE_INVALIDATION_TIME))
-                    .setExpiry(CacheConfiguration.ExpiryType.ACCESSED,
-                               new CacheConfiguration.Duration(TimeUnit.SECONDS,
-                                                               CachingConstants.CACHE_INVALIDATION_TIME))
-                    .setStoreByValue(false).build();
-            return cache;
+    /**
+     * This method gives the name of the cache used by the mediator, which depends on the scope of the cache.
+     *
+     * @return name of the cache.
+     */
+    private String getCacheName() {
+        if (CachingConstants.SCOPE_PER_MEDIATOR.equals(scope)) {
+            return cacheKey;
+        } else if (CachingConstants.SCOPE_DISTRIBUTED.equals(scope)) {
+            return CachingConstants.DISTRIBUTED_MEDIATOR_CACHE;
+        }
+        return CachingConstants.MEDIATOR_CACHE;
+    }
+
+    /**
+     * This method gives the class name of the CacheStore to be used, which defaults to a store replicating the
+     * cache among the cluster for the distributed scope.
+     *
+     * @return class name of the cache store.
+     */
+    private String getCacheStoreImplementation() {
+        if (cacheStoreClass != null) {
+            return cacheStoreClass;
+        } else if (CachingConstants.SCOPE_DISTRIBUTED.equals(scope)) {
+            return DistributedCacheStore.class.getName();
         }
+        return CachingConstants.DEFAULT_CACHE_STORE;
     }
 
     /**
@@ -421,6 +1610,71 @@ public class JSONCacheMediator extends AbstractMediator implements ManagedLifecy
         this.collector = collector;
     }
 
+    /**
+     * This method gives whether the collector stores the responses from a background pipeline.
+     *
+     * @return boolean true if the responses are stored asynchronously.
+     */
+    public boolean isAsyncCollector() {
+        return asyncCollector;
+    }
+
+    /**
+     * This method sets whether the collector stores the responses from a background pipeline. A collector storing into
+     * a partitioned cache should be asynchronous, as storing a response of a key owned by another member waits for
+     * the replies of that member.
+     *
+     * @param asyncCollector boolean value to be set as asyncCollector.
+     */
+    public void setAsyncCollector(boolean asyncCollector) {
+        this.asyncCollector = asyncCollector;
+    }
+
+    /**
+     * This method gives whether the mediator invalidates tagged responses instead of caching.
+     *
+     * @return boolean true if the mediator invalidates tagged responses.
+     */
+    public boolean isInvalidator() {
+        return invalidator;
+    }
+
+    /**
+     * This method sets whether the mediator invalidates tagged responses instead of caching.
+     *
+     * @param invalidator boolean value to be set as invalidator.
+     */
+    public void setInvalidator(boolean invalidator) {
+        this.invalidator = invalidator;
+    }
+
+    /**
+     * This method gives the tags of the cached responses separated by commas.
+     *
+     * @return tags of the cached responses, or null if the responses are not tagged.
+     */
+    public String getTags() {
+        return tags;
+    }
+
+    /**
+     * This method sets the tags of the cached responses separated by commas.
+     *
+     * @param tags tags to be set.
+     */
+    public void setTags(String tags) {
+        this.tags = tags;
+        List<String> templates = new ArrayList<String>();
+        if (tags != null) {
+            for (String tag : tags.split(",")) {
+                if (!tag.trim().isEmpty()) {
+                    templates.add(tag.trim());
+                }
+            }
+        }
+        this.tagTemplates = templates.isEmpty() ? null : templates;
+    }
+
     /**
      * This method gives the DigestGenerator to evaluate the hash values of incoming messages.
      *
@@ -493,6 +1747,43 @@ public class JSONCacheMediator extends AbstractMediator implements ManagedLifecy
         this.timeout = timeout * 1000;
     }
 
+    /**
+     * This method gives the lower bound of the adaptive timeouts of the keys in seconds.
+     *
+     * @return lower bound of the timeouts in seconds.
+     */
+    public long getMinTimeout() {
+        return minTimeout / 1000;
+    }
+
+    /**
+     * This method sets the lower bound of the adaptive timeouts of the keys in seconds.
+     *
+     * @param minTimeout lower bound of the timeouts in seconds.
+     */
+    public void setMinTimeout(long minTimeout) {
+        this.minTimeout = minTimeout * 1000;
+    }
+
+    /**
+     * This method gives the upper bound of the adaptive timeouts of the keys in seconds.
+     *
+     * @return upper bound of the timeouts in seconds, or 0 if the timeouts are fixed.
+     */
+    public long getMaxTimeout() {
+        return maxTimeout / 1000;
+    }
+
+    /**
+     * This method sets the upper bound of the adaptive timeouts of the keys in seconds, which makes the timeouts
+     * adaptive.
+     *
+     * @param maxTimeout upper bound of the timeouts in seconds, or 0 to use the fixed timeout.
+     */
+    public void setMaxTimeout(long maxTimeout) {
+        this.maxTimeout = maxTimeout * 1000;
+    }
+
     /**
      * This method gives SequenceMediator to be executed.
      *
@@ -546,4 +1837,383 @@ public class JSONCacheMediator extends AbstractMediator implements ManagedLifecy
     public void setMaxMessageSize(int maxMessageSize) {
         this.maxMessageSize = maxMessageSize;
     }
+
+    /**
+     * This method gives the number of hot keys replicated locally in the distributed scope.
+     *
+     * @return number of hot keys, 0 if the local replica is disabled.
+     */
+    public int getHotKeys() {
+        return hotKeys;
+    }
+
+    /**
+     * This method sets the number of hot keys replicated locally in the distributed scope.
+     *
+     * @param hotKeys number of hot keys to be set, 0 to disable the local replica.
+     */
+    public void setHotKeys(int hotKeys) {
+        this.hotKeys = hotKeys;
+    }
+
+    /**
+     * This method gives the percentage by which the timeout of a new response is randomly shortened.
+     *
+     * @return jitter percentage of the timeouts.
+     */
+    public int getJitter() {
+        return jitter;
+    }
+
+    /**
+     * This method sets the percentage by which the timeout of a new response is randomly shortened.
+     *
+     * @param jitter jitter percentage to be set, 0 to use the timeouts as they are.
+     */
+    public void setJitter(int jitter) {
+        this.jitter = jitter;
+    }
+
+    /**
+     * This method gives the weight of the fetch cost in the probability of refreshing a response early.
+     *
+     * @return weight of the fetch cost, or 0 if responses are refreshed only once they expire.
+     */
+    public double getEarlyRefresh() {
+        return earlyRefresh;
+    }
+
+    /**
+     * This method sets the weight of the fetch cost in the probability of refreshing a response early. The responses
+     * of a partitioned cache owned by other members are refreshed only on expiry.
+     *
+     * @param earlyRefresh weight to be set, 1 for the usual behaviour and 0 to refresh responses only on expiry.
+     */
+    public void setEarlyRefresh(double earlyRefresh) {
+        this.earlyRefresh = earlyRefresh;
+    }
+
+    /**
+     * This method gives the name of the query parameter selecting the fields of the response.
+     *
+     * @return name of the parameter, or null if responses are not projected.
+     */
+    public String getProjectionParameter() {
+        return projectionParameter;
+    }
+
+    /**
+     * This method sets the name of the query parameter selecting the fields of the response. The parameter is left
+     * out of the request hash and of the request sent to the backend, and the cached document is projected on the
+     * selected fields for every client.
+     *
+     * @param projectionParameter name of the parameter to be set, or null to not project the responses.
+     */
+    public void setProjectionParameter(String projectionParameter) {
+        this.projectionParameter = projectionParameter;
+    }
+
+    /**
+     * This method gives whether the cache is guarded against heap pressure.
+     *
+     * @return boolean true if the cache sheds responses and stores only small ones under heap pressure.
+     */
+    public boolean isHeapGuarded() {
+        return heapGuarded;
+    }
+
+    /**
+     * This method sets whether the cache is guarded against heap pressure. A guarded cache accounts for the heap
+     * taken by its payloads, sheds its least valuable responses when a collection leaves the heap above its
+     * high-water mark and does not store large responses until the heap is back under its low-water mark. Caches
+     * of the distributed scope are not guarded.
+     *
+     * @param heapGuarded boolean true to guard the cache against heap pressure.
+     */
+    public void setHeapGuarded(boolean heapGuarded) {
+        this.heapGuarded = heapGuarded;
+    }
+
+    /**
+     * This method gives the size above which responses are not stored while the heap is under pressure.
+     *
+     * @return the size in bytes.
+     */
+    public long getHeapPressureMaxMessageSize() {
+        return heapPressureMaxMessageSize;
+    }
+
+    /**
+     * This method sets the size above which responses are not stored while the heap is under pressure.
+     *
+     * @param heapPressureMaxMessageSize the size in bytes to be set.
+     */
+    public void setHeapPressureMaxMessageSize(long heapPressureMaxMessageSize) {
+        this.heapPressureMaxMessageSize = heapPressureMaxMessageSize;
+    }
+
+    /**
+     * This method gives the fraction of the keys initially sampled to estimate the miss ratio curve.
+     *
+     * @return the sampling rate, or 0 if the miss ratio curve is not estimated.
+     */
+    public double getMissRatioCurveSamplingRate() {
+        return missRatioCurveSamplingRate;
+    }
+
+    /**
+     * This method sets the fraction of the keys initially sampled to estimate the miss ratio curve of the cache.
+     * The curve predicts the hit ratio of the cache at other capacities and byte budgets and is registered in the
+     * platform MBean server under the name of the cache. The rate is lowered as the number of distinct keys grows
+     * beyond the sample size.
+     *
+     * @param missRatioCurveSamplingRate the sampling rate between 0 and 1, or 0 not to estimate the curve.
+     */
+    public void setMissRatioCurveSamplingRate(double missRatioCurveSamplingRate) {
+        this.missRatioCurveSamplingRate = missRatioCurveSamplingRate;
+    }
+
+    /**
+     * This method gives the maximum number of keys sampled to estimate the miss ratio curve.
+     *
+     * @return the number of keys.
+     */
+    public int getMissRatioCurveSampleSize() {
+        return missRatioCurveSampleSize;
+    }
+
+    /**
+     * This method sets the maximum number of keys sampled to estimate the miss ratio curve.
+     *
+     * @param missRatioCurveSampleSize the number of keys to be set.
+     */
+    public void setMissRatioCurveSampleSize(int missRatioCurveSampleSize) {
+        this.missRatioCurveSampleSize = missRatioCurveSampleSize;
+    }
+
+    /**
+     * This method gives the size above which response payloads are spooled to files.
+     *
+     * @return the threshold in bytes, or 0 if the payloads are kept on the heap.
+     */
+    public long getSpoolThreshold() {
+        return spoolThreshold;
+    }
+
+    /**
+     * This method sets the size above which response payloads are spooled to files of the local disk instead of
+     * being kept on the heap. Payloads are only spooled into stores which discard every response they evict, see
+     * {@link DiscardingCacheStore}.
+     *
+     * @param spoolThreshold the threshold in bytes to be set, or 0 to keep the payloads on the heap.
+     */
+    public void setSpoolThreshold(long spoolThreshold) {
+        this.spoolThreshold = spoolThreshold;
+    }
+
+    /**
+     * This method gives the directory of the spool files.
+     *
+     * @return path of the directory, or null if the temporary directory is used.
+     */
+    public String getSpoolDirectory() {
+        return spoolDirectory;
+    }
+
+    /**
+     * This method sets the directory of the spool files.
+     *
+     * @param spoolDirectory path of the directory to be set, or null to use the temporary directory.
+     */
+    public void setSpoolDirectory(String spoolDirectory) {
+        this.spoolDirectory = spoolDirectory;
+    }
+
+    /**
+     * This method gives the XML message types the responses are also served in.
+     *
+     * @return comma separated message types, or null if the responses are served as JSON only.
+     */
+    public String getRepresentationTypes() {
+        return representationTypes;
+    }
+
+    /**
+     * This method sets the XML message types the responses are also served in. A client negotiating one of them
+     * with the Accept header of its request gets the XML form of the cached response, which is converted once
+     * instead of on every hit.
+     *
+     * @param representationTypes comma separated message types to be set, or null to serve the responses as JSON
+     *                            only.
+     */
+    public void setRepresentationTypes(String representationTypes) {
+        this.representationTypes = representationTypes;
+    }
+
+    /**
+     * This method gives whether the representations of a response are produced when it is stored.
+     *
+     * @return boolean true if the representations are produced when the response is stored.
+     */
+    public boolean isEagerRepresentations() {
+        return eagerRepresentations;
+    }
+
+    /**
+     * This method sets whether the representations of a response are produced when it is stored rather than on the
+     * first request negotiating them.
+     *
+     * @param eagerRepresentations boolean true to produce the representations when the response is stored.
+     */
+    public void setEagerRepresentations(boolean eagerRepresentations) {
+        this.eagerRepresentations = eagerRepresentations;
+    }
+
+    /**
+     * This method gives whether the output of the onCacheHit sequence is memoized with the cached responses.
+     *
+     * @return boolean true if the output of the sequence is memoized.
+     */
+    public boolean isMemoizeOnCacheHit() {
+        return memoizeOnCacheHit;
+    }
+
+    /**
+     * This method sets whether the output of the onCacheHit sequence is memoized with the cached responses. The
+     * sequence must not depend on anything but the cached response, and has to either continue the mediation with
+     * its output or end it by responding to the client; a sequence which drops the message or sends it on to an
+     * endpoint is not supported, as its output would be replayed as the response.
+     *
+     * @param memoizeOnCacheHit boolean true to memoize the output of the sequence.
+     */
+    public void setMemoizeOnCacheHit(boolean memoizeOnCacheHit) {
+        this.memoizeOnCacheHit = memoizeOnCacheHit;
+    }
+
+    /**
+     * This method gives the path of the array of items in batch requests.
+     *
+     * @return path of the items, or null if requests are cached as a whole.
+     */
+    public String getBatchPath() {
+        return batchPath;
+    }
+
+    /**
+     * This method sets the path of the array of items in batch requests, which caches the items one by one.
+     *
+     * @param batchPath path of the items to be set, $ or $.field.field.
+     */
+    public void setBatchPath(String batchPath) {
+        this.batchPath = batchPath;
+    }
+
+    /**
+     * This method gives the path of the array of items in the responses to batch requests.
+     *
+     * @return path of the items in the responses.
+     */
+    public String getBatchResponsePath() {
+        return batchResponsePath;
+    }
+
+    /**
+     * This method sets the path of the array of items in the responses to batch requests.
+     *
+     * @param batchResponsePath path of the items in the responses to be set, $ or $.field.field.
+     */
+    public void setBatchResponsePath(String batchResponsePath) {
+        this.batchResponsePath = batchResponsePath;
+    }
+
+    /**
+     * This method gives the number of requests of a key after which its response is cached.
+     *
+     * @return number of requests after which responses are cached.
+     */
+    public int getAdmitAfter() {
+        return admitAfter;
+    }
+
+    /**
+     * This method sets the number of requests of a key after which its response is cached.
+     *
+     * @param admitAfter number of requests to be set, 1 to cache the response of every request.
+     */
+    public void setAdmitAfter(int admitAfter) {
+        this.admitAfter = admitAfter;
+    }
+
+    /**
+     * This method gives whether identical response payloads are stored once in the payload pool of the cache.
+     *
+     * @return boolean true if the payloads are deduplicated.
+     */
+    public boolean isDedupPayloads() {
+        return dedupPayloads;
+    }
+
+    /**
+     * This method sets whether identical response payloads are stored once in the payload pool of the cache. The
+     * setting only takes effect on caches whose store discards the responses it evicts.
+     *
+     * @param dedupPayloads boolean value to be set as dedupPayloads.
+     */
+    public void setDedupPayloads(boolean dedupPayloads) {
+        this.dedupPayloads = dedupPayloads;
+    }
+
+    /**
+     * This method gives the file the cache is written into on destruction and restored from on initialization.
+     *
+     * @return path of the snapshot file, or null if snapshots are disabled.
+     */
+    public String getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    /**
+     * This method sets the file the cache is written into on destruction and restored from on initialization.
+     *
+     * @param snapshotFile path of the snapshot file to be set.
+     */
+    public void setSnapshotFile(String snapshotFile) {
+        this.snapshotFile = snapshotFile;
+    }
+
+    /**
+     * This method gives the maximum number of uncompressed snapshot bytes restored on initialization.
+     *
+     * @return maximum number of bytes restored.
+     */
+    public long getSnapshotRestoreBudget() {
+        return snapshotRestoreBudget;
+    }
+
+    /**
+     * This method sets the maximum number of uncompressed snapshot bytes restored on initialization.
+     *
+     * @param snapshotRestoreBudget maximum number of bytes to be restored.
+     */
+    public void setSnapshotRestoreBudget(long snapshotRestoreBudget) {
+        this.snapshotRestoreBudget = snapshotRestoreBudget;
+    }
+
+    /**
+     * This method gives the class name of the CacheStore implementation backing the cache.
+     *
+     * @return class name of the cache store, or null if the default store is used.
+     */
+    public String getCacheStoreClass() {
+        return cacheStoreClass;
+    }
+
+    /**
+     * This method sets the class name of the CacheStore implementation backing the cache.
+     *
+     * @param cacheStoreClass class name of the cache store to be set.
+     */
+    public void setCacheStoreClass(String cacheStoreClass) {
+        this.cacheStoreClass = cacheStoreClass;
+    }
 }
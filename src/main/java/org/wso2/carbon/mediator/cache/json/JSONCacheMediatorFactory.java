@@ -27,11 +27,26 @@ public class JSONCacheMediatorFactory extends AbstractMediatorFactory {
      */
     private static final QName ATT_ID = new QName("id");
 
+    /**
+     * QName of the action of the mediator
+     */
+    private static final QName ATT_ACTION = new QName("action");
+
+    /**
+     * QName of the tags of the cached responses
+     */
+    private static final QName ATT_TAGS = new QName("tags");
+
     /**
      * QName of the collector
      */
     private static final QName ATT_COLLECTOR = new QName("collector");
 
+    /**
+     * QName of the asynchronous collector flag
+     */
+    private static final QName ATT_ASYNC = new QName("async");
+
     /**
      * QName of the digest generator
      */
@@ -47,6 +62,41 @@ public class JSONCacheMediatorFactory extends AbstractMediatorFactory {
      */
     private static final QName ATT_TIMEOUT = new QName("timeout");
 
+    /**
+     * QName of the lower bound of the adaptive timeouts
+     */
+    private static final QName ATT_MIN_TIMEOUT = new QName("minTimeout");
+
+    /**
+     * QName of the upper bound of the adaptive timeouts
+     */
+    private static final QName ATT_MAX_TIMEOUT = new QName("maxTimeout");
+
+    /**
+     * QName of the number of hot keys replicated locally
+     */
+    private static final QName ATT_HOT_KEYS = new QName("hotKeys");
+
+    /**
+     * QName of the percentage by which the timeouts are randomly shortened
+     */
+    private static final QName ATT_JITTER = new QName("jitter");
+
+    /**
+     * QName of the weight of the fetch cost in refreshing responses early
+     */
+    private static final QName ATT_EARLY_REFRESH = new QName("earlyRefresh");
+
+    /**
+     * QName of the number of requests after which responses are cached
+     */
+    private static final QName ATT_ADMIT_AFTER = new QName("admitAfter");
+
+    /**
+     * QName of the payload deduplication flag
+     */
+    private static final QName ATT_DEDUP_PAYLOADS = new QName("dedupPayloads");
+
     /**
      * QName of the cache scope
      */
@@ -67,6 +117,51 @@ public class JSONCacheMediatorFactory extends AbstractMediatorFactory {
      */
     private static final QName ATT_SIZE = new QName("maxSize");
 
+    /**
+     * QName of the cache store implementation class
+     */
+    private static final QName ATT_CLASS = new QName("class");
+
+    /**
+     * QName of the snapshot file
+     */
+    private static final QName ATT_FILE = new QName("file");
+
+    /**
+     * QName of the maximum number of snapshot bytes restored
+     */
+    private static final QName ATT_RESTORE_BUDGET = new QName("restoreBudget");
+
+    /**
+     * QName of the query parameter selecting the fields of the response
+     */
+    private static final QName ATT_PROJECTION_PARAMETER = new QName("projectionParameter");
+
+    /**
+     * QName of the XML message types the responses are also served in
+     */
+    private static final QName ATT_REPRESENTATIONS = new QName("representations");
+
+    /**
+     * QName of the production of the representations when the responses are stored
+     */
+    private static final QName ATT_EAGER_REPRESENTATIONS = new QName("eagerRepresentations");
+
+    /**
+     * QName of the memoization of the onCacheHit sequence output
+     */
+    private static final QName ATT_MEMOIZE = new QName("memoize");
+
+    /**
+     * QName of the path of the items of a batch request
+     */
+    private static final QName ATT_PATH = new QName("path");
+
+    /**
+     * QName of the path of the items of the response to a batch request
+     */
+    private static final QName ATT_RESPONSE_PATH = new QName("responsePath");
+
     /**
      * QName of the onCacheHit mediator sequence reference
      */
@@ -77,6 +172,52 @@ public class JSONCacheMediatorFactory extends AbstractMediatorFactory {
      */
     private static final QName IMPLEMENTATION_Q = new QName(XMLConfigConstants.SYNAPSE_NAMESPACE, "implementation");
 
+    /**
+     * QName of the cache snapshot
+     */
+    private static final QName SNAPSHOT_Q = new QName(XMLConfigConstants.SYNAPSE_NAMESPACE, "snapshot");
+
+    /**
+     * QName of the batch requests
+     */
+    private static final QName BATCH_Q = new QName(XMLConfigConstants.SYNAPSE_NAMESPACE, "batch");
+
+    /**
+     * QName of the guard of the cache against heap pressure
+     */
+    private static final QName HEAP_PRESSURE_Q = new QName(XMLConfigConstants.SYNAPSE_NAMESPACE, "heapPressure");
+
+    /**
+     * QName of the spool of large responses
+     */
+    private static final QName SPOOL_Q = new QName(XMLConfigConstants.SYNAPSE_NAMESPACE, "spool");
+
+    /**
+     * QName of the size above which responses are spooled
+     */
+    private static final QName ATT_THRESHOLD = new QName("threshold");
+
+    /**
+     * QName of the directory of the spool files
+     */
+    private static final QName ATT_DIRECTORY = new QName("directory");
+
+    /**
+     * QName of the estimation of the miss ratio curve
+     */
+    private static final QName MISS_RATIO_CURVE_Q =
+            new QName(XMLConfigConstants.SYNAPSE_NAMESPACE, "missRatioCurve");
+
+    /**
+     * QName of the fraction of the keys initially sampled
+     */
+    private static final QName ATT_SAMPLING_RATE = new QName("samplingRate");
+
+    /**
+     * QName of the maximum number of sampled keys
+     */
+    private static final QName ATT_SAMPLE_SIZE = new QName("sampleSize");
+
     /**
      * This holds the default timeout of the mediator cache
      */
@@ -118,10 +259,32 @@ public class JSONCacheMediatorFactory extends AbstractMediatorFactory {
                 "true".equals(collectorAttr.getAttributeValue())) {
 
             cache.setCollector(true);
+
+            OMAttribute asyncAttr = elem.getAttribute(ATT_ASYNC);
+            if (asyncAttr != null && asyncAttr.getAttributeValue() != null) {
+                cache.setAsyncCollector(Boolean.parseBoolean(asyncAttr.getAttributeValue()));
+            }
         } else {
 
             cache.setCollector(false);
 
+            OMAttribute actionAttr = elem.getAttribute(ATT_ACTION);
+            if (actionAttr != null && actionAttr.getAttributeValue() != null) {
+                if (CachingConstants.ACTION_INVALIDATE.equals(actionAttr.getAttributeValue())) {
+                    cache.setInvalidator(true);
+                } else {
+                    handleException("Unknown action " + actionAttr.getAttributeValue() + " for the Cache mediator");
+                }
+            }
+
+            OMAttribute tagsAttr = elem.getAttribute(ATT_TAGS);
+            if (tagsAttr != null && tagsAttr.getAttributeValue() != null) {
+                cache.setTags(tagsAttr.getAttributeValue());
+            } else if (cache.isInvalidator()) {
+                handleException("Tags are required for a cache mediator with action : " +
+                                        CachingConstants.ACTION_INVALIDATE);
+            }
+
             OMAttribute hashGeneratorAttr = elem.getAttribute(ATT_HASH_GENERATOR);
             if (hashGeneratorAttr != null && hashGeneratorAttr.getAttributeValue() != null) {
                 try {
@@ -150,11 +313,75 @@ public class JSONCacheMediatorFactory extends AbstractMediatorFactory {
                 cache.setTimeout(DEFAULT_TIMEOUT);
             }
 
+            OMAttribute minTimeoutAttr = elem.getAttribute(ATT_MIN_TIMEOUT);
+            if (minTimeoutAttr != null && minTimeoutAttr.getAttributeValue() != null) {
+                cache.setMinTimeout(Long.parseLong(minTimeoutAttr.getAttributeValue()));
+            }
+
+            OMAttribute maxTimeoutAttr = elem.getAttribute(ATT_MAX_TIMEOUT);
+            if (maxTimeoutAttr != null && maxTimeoutAttr.getAttributeValue() != null) {
+                cache.setMaxTimeout(Long.parseLong(maxTimeoutAttr.getAttributeValue()));
+                if (cache.getMaxTimeout() < cache.getMinTimeout()) {
+                    handleException("maxTimeout of the Cache mediator must not be less than its minTimeout");
+                }
+            }
+
+            OMAttribute jitterAttr = elem.getAttribute(ATT_JITTER);
+            if (jitterAttr != null && jitterAttr.getAttributeValue() != null) {
+                cache.setJitter(Integer.parseInt(jitterAttr.getAttributeValue()));
+                if (cache.getJitter() < 0 || cache.getJitter() > 100) {
+                    handleException("jitter of the Cache mediator must be a percentage between 0 and 100");
+                }
+            }
+
+            OMAttribute earlyRefreshAttr = elem.getAttribute(ATT_EARLY_REFRESH);
+            if (earlyRefreshAttr != null && earlyRefreshAttr.getAttributeValue() != null) {
+                cache.setEarlyRefresh(Double.parseDouble(earlyRefreshAttr.getAttributeValue()));
+                if (cache.getEarlyRefresh() < 0) {
+                    handleException("earlyRefresh of the Cache mediator must not be negative");
+                }
+            }
+
+            OMAttribute projectionParameterAttr = elem.getAttribute(ATT_PROJECTION_PARAMETER);
+            if (projectionParameterAttr != null && projectionParameterAttr.getAttributeValue() != null) {
+                cache.setProjectionParameter(projectionParameterAttr.getAttributeValue());
+            }
+
+            OMAttribute representationsAttr = elem.getAttribute(ATT_REPRESENTATIONS);
+            if (representationsAttr != null && representationsAttr.getAttributeValue() != null) {
+                if (representationsAttr.getAttributeValue().trim().isEmpty()) {
+                    handleException("representations of the Cache mediator must name at least one message type");
+                }
+                cache.setRepresentationTypes(representationsAttr.getAttributeValue());
+            }
+
+            OMAttribute eagerRepresentationsAttr = elem.getAttribute(ATT_EAGER_REPRESENTATIONS);
+            if (eagerRepresentationsAttr != null && eagerRepresentationsAttr.getAttributeValue() != null) {
+                cache.setEagerRepresentations(Boolean.parseBoolean(eagerRepresentationsAttr.getAttributeValue()));
+            }
+
             OMAttribute maxMessageSizeAttr = elem.getAttribute(ATT_MAX_MSG_SIZE);
             if (maxMessageSizeAttr != null && maxMessageSizeAttr.getAttributeValue() != null) {
                 cache.setMaxMessageSize(Integer.parseInt(maxMessageSizeAttr.getAttributeValue()));
             }
 
+            OMAttribute hotKeysAttr = elem.getAttribute(ATT_HOT_KEYS);
+            if (hotKeysAttr != null && hotKeysAttr.getAttributeValue() != null) {
+                cache.setHotKeys(Integer.parseInt(hotKeysAttr.getAttributeValue()));
+            } else if (CachingConstants.SCOPE_DISTRIBUTED.equals(cache.getScope())) {
+                cache.setHotKeys(CachingConstants.DEFAULT_HOT_KEYS);
+            }
+
+            OMAttribute admitAfterAttr = elem.getAttribute(ATT_ADMIT_AFTER);
+            if (admitAfterAttr != null && admitAfterAttr.getAttributeValue() != null) {
+                cache.setAdmitAfter(Integer.parseInt(admitAfterAttr.getAttributeValue()));
+            }
+
+            OMAttribute dedupPayloadsAttr = elem.getAttribute(ATT_DEDUP_PAYLOADS);
+            if (dedupPayloadsAttr != null && dedupPayloadsAttr.getAttributeValue() != null) {
+                cache.setDedupPayloads(Boolean.parseBoolean(dedupPayloadsAttr.getAttributeValue()));
+            }
+
             OMElement onCacheHitElem = elem.getFirstChildWithName(ON_CACHE_HIT_Q);
             if (onCacheHitElem != null) {
                 OMAttribute sequenceAttr = onCacheHitElem.getAttribute(ATT_SEQUENCE);
@@ -164,17 +391,126 @@ public class JSONCacheMediatorFactory extends AbstractMediatorFactory {
                     cache.setOnCacheHitSequence(new SequenceMediatorFactory()
                                                         .createAnonymousSequence(onCacheHitElem, properties));
                 }
+                OMAttribute memoizeAttr = onCacheHitElem.getAttribute(ATT_MEMOIZE);
+                if (memoizeAttr != null && memoizeAttr.getAttributeValue() != null) {
+                    cache.setMemoizeOnCacheHit(Boolean.parseBoolean(memoizeAttr.getAttributeValue()));
+                }
+            }
+
+            OMElement snapshotElem = elem.getFirstChildWithName(SNAPSHOT_Q);
+            if (snapshotElem != null) {
+                OMAttribute fileAttr = snapshotElem.getAttribute(ATT_FILE);
+                if (fileAttr != null && fileAttr.getAttributeValue() != null) {
+                    cache.setSnapshotFile(fileAttr.getAttributeValue());
+                } else {
+                    handleException("File is required for the snapshot of the Cache mediator");
+                }
+                OMAttribute restoreBudgetAttr = snapshotElem.getAttribute(ATT_RESTORE_BUDGET);
+                if (restoreBudgetAttr != null && restoreBudgetAttr.getAttributeValue() != null) {
+                    cache.setSnapshotRestoreBudget(Long.parseLong(restoreBudgetAttr.getAttributeValue()));
+                }
+            }
+
+            OMElement batchElem = elem.getFirstChildWithName(BATCH_Q);
+            if (batchElem != null) {
+                OMAttribute pathAttr = batchElem.getAttribute(ATT_PATH);
+                if (pathAttr != null && pathAttr.getAttributeValue() != null) {
+                    cache.setBatchPath(pathAttr.getAttributeValue());
+                } else {
+                    handleException("Path is required for the batch of the Cache mediator");
+                }
+                OMAttribute responsePathAttr = batchElem.getAttribute(ATT_RESPONSE_PATH);
+                if (responsePathAttr != null && responsePathAttr.getAttributeValue() != null) {
+                    cache.setBatchResponsePath(responsePathAttr.getAttributeValue());
+                }
+                try {
+                    new JsonArrayPath(cache.getBatchPath());
+                    new JsonArrayPath(cache.getBatchResponsePath());
+                } catch (CachingException e) {
+                    handleException("Invalid path for the batch of the Cache mediator", e);
+                }
+            }
+
+            OMElement heapPressureElem = elem.getFirstChildWithName(HEAP_PRESSURE_Q);
+            if (heapPressureElem != null) {
+                cache.setHeapGuarded(true);
+                OMAttribute pressureMaxMessageSizeAttr = heapPressureElem.getAttribute(ATT_MAX_MSG_SIZE);
+                if (pressureMaxMessageSizeAttr != null && pressureMaxMessageSizeAttr.getAttributeValue() != null) {
+                    cache.setHeapPressureMaxMessageSize(
+                            Long.parseLong(pressureMaxMessageSizeAttr.getAttributeValue()));
+                    if (cache.getHeapPressureMaxMessageSize() < 0) {
+                        handleException("maxMessageSize of the heapPressure of the Cache mediator must not be " +
+                                                "negative");
+                    }
+                }
+            }
+
+            OMElement missRatioCurveElem = elem.getFirstChildWithName(MISS_RATIO_CURVE_Q);
+            if (missRatioCurveElem != null) {
+                cache.setMissRatioCurveSamplingRate(CachingConstants.DEFAULT_MISS_RATIO_CURVE_SAMPLING_RATE);
+                OMAttribute samplingRateAttr = missRatioCurveElem.getAttribute(ATT_SAMPLING_RATE);
+                if (samplingRateAttr != null && samplingRateAttr.getAttributeValue() != null) {
+                    cache.setMissRatioCurveSamplingRate(Double.parseDouble(samplingRateAttr.getAttributeValue()));
+                }
+                if (cache.getMissRatioCurveSamplingRate() <= 0 || cache.getMissRatioCurveSamplingRate() > 1) {
+                    handleException("samplingRate of the missRatioCurve of the Cache mediator must be greater " +
+                                            "than 0 and not greater than 1");
+                }
+                OMAttribute sampleSizeAttr = missRatioCurveElem.getAttribute(ATT_SAMPLE_SIZE);
+                if (sampleSizeAttr != null && sampleSizeAttr.getAttributeValue() != null) {
+                    cache.setMissRatioCurveSampleSize(Integer.parseInt(sampleSizeAttr.getAttributeValue()));
+                }
+                if (cache.getMissRatioCurveSampleSize() <= 0) {
+                    handleException("sampleSize of the missRatioCurve of the Cache mediator must be positive");
+                }
+            }
+
+            OMElement spoolElem = elem.getFirstChildWithName(SPOOL_Q);
+            if (spoolElem != null) {
+                OMAttribute thresholdAttr = spoolElem.getAttribute(ATT_THRESHOLD);
+                if (thresholdAttr != null && thresholdAttr.getAttributeValue() != null) {
+                    cache.setSpoolThreshold(Long.parseLong(thresholdAttr.getAttributeValue()));
+                }
+                if (cache.getSpoolThreshold() <= 0) {
+                    handleException("A positive threshold is required for the spool of the Cache mediator");
+                }
+                OMAttribute directoryAttr = spoolElem.getAttribute(ATT_DIRECTORY);
+                if (directoryAttr != null && directoryAttr.getAttributeValue() != null) {
+                    cache.setSpoolDirectory(directoryAttr.getAttributeValue());
+                }
+                // spool files are local to the node, and projections and representations read the whole payload
+                if (CachingConstants.SCOPE_DISTRIBUTED.equals(cache.getScope()) ||
+                        cache.getProjectionParameter() != null || cache.getRepresentationTypes() != null) {
+                    handleException("The spool of the Cache mediator cannot be used with the distributed scope, " +
+                                            "projections or representations");
+                }
             }
 
             for (Iterator<OMElement> itr = elem.getChildrenWithName(IMPLEMENTATION_Q); itr.hasNext(); ) {
                 OMElement implElem = itr.next();
                 OMAttribute typeAttr = implElem.getAttribute(ATT_TYPE);
                 OMAttribute sizeAttr = implElem.getAttribute(ATT_SIZE);
+                OMAttribute classAttr = implElem.getAttribute(ATT_CLASS);
+                if (classAttr != null && classAttr.getAttributeValue() != null) {
+                    try {
+                        Class storeClass = Class.forName(classAttr.getAttributeValue());
+                        if (CacheStore.class.isAssignableFrom(storeClass)) {
+                            cache.setCacheStoreClass(storeClass.getName());
+                        } else {
+                            handleException("Specified class for the cache implementation is not a " +
+                                                    "CacheStore. It *must* implement " +
+                                                    "org.wso2.carbon.mediator.cache.json.CacheStore interface");
+                        }
+                    } catch (ClassNotFoundException e) {
+                        handleException("Unable to load the cache implementation class", e);
+                    }
+                }
                 if (typeAttr != null && typeAttr.getAttributeValue() != null) {
                     String type = typeAttr.getAttributeValue();
-                    if (CachingConstants.TYPE_MEMORY.equals(type) && sizeAttr != null &&
-                            sizeAttr.getAttributeValue() != null) {
-                        cache.setInMemoryCacheSize(Integer.parseInt(sizeAttr.getAttributeValue()));
+                    if (CachingConstants.TYPE_MEMORY.equals(type)) {
+                        if (sizeAttr != null && sizeAttr.getAttributeValue() != null) {
+                            cache.setInMemoryCacheSize(Integer.parseInt(sizeAttr.getAttributeValue()));
+                        }
                     } else if (CachingConstants.TYPE_DISK.equals(type)) {
                         log.warn("Disk based and hierarchical caching is not implemented yet");
                         if (sizeAttr != null && sizeAttr.getAttributeValue() != null) {
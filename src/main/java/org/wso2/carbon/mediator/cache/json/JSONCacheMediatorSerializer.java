@@ -32,10 +32,21 @@ public class JSONCacheMediatorSerializer extends AbstractMediatorSerializer {
 
         if (mediator.isCollector()) {
             cache.addAttribute(fac.createOMAttribute("collector", nullNS, "true"));
+            if (mediator.isAsyncCollector()) {
+                cache.addAttribute(fac.createOMAttribute("async", nullNS, "true"));
+            }
         } else {
 
             cache.addAttribute(fac.createOMAttribute("collector", nullNS, "false"));
 
+            if (mediator.isInvalidator()) {
+                cache.addAttribute(fac.createOMAttribute("action", nullNS, CachingConstants.ACTION_INVALIDATE));
+            }
+
+            if (mediator.getTags() != null) {
+                cache.addAttribute(fac.createOMAttribute("tags", nullNS, mediator.getTags()));
+            }
+
             if (mediator.getDigestGenerator() != null) {
                 cache.addAttribute(fac.createOMAttribute("hashGenerator", nullNS,
                                                          mediator.getDigestGenerator().getClass().getName()));
@@ -46,32 +57,144 @@ public class JSONCacheMediatorSerializer extends AbstractMediatorSerializer {
                         fac.createOMAttribute("timeout", nullNS, Long.toString(mediator.getTimeout())));
             }
 
+            if (mediator.getMinTimeout() != 0) {
+                cache.addAttribute(
+                        fac.createOMAttribute("minTimeout", nullNS, Long.toString(mediator.getMinTimeout())));
+            }
+
+            if (mediator.getMaxTimeout() != 0) {
+                cache.addAttribute(
+                        fac.createOMAttribute("maxTimeout", nullNS, Long.toString(mediator.getMaxTimeout())));
+            }
+
+            if (mediator.getJitter() != 0) {
+                cache.addAttribute(fac.createOMAttribute("jitter", nullNS, Integer.toString(mediator.getJitter())));
+            }
+
+            if (mediator.getEarlyRefresh() != 0) {
+                cache.addAttribute(
+                        fac.createOMAttribute("earlyRefresh", nullNS, Double.toString(mediator.getEarlyRefresh())));
+            }
+
+            if (mediator.getProjectionParameter() != null) {
+                cache.addAttribute(
+                        fac.createOMAttribute("projectionParameter", nullNS, mediator.getProjectionParameter()));
+            }
+
+            if (mediator.getRepresentationTypes() != null) {
+                cache.addAttribute(
+                        fac.createOMAttribute("representations", nullNS, mediator.getRepresentationTypes()));
+            }
+
+            if (mediator.isEagerRepresentations()) {
+                cache.addAttribute(fac.createOMAttribute("eagerRepresentations", nullNS, "true"));
+            }
+
             if (mediator.getMaxMessageSize() != 0) {
                 cache.addAttribute(
                         fac.createOMAttribute("maxMessageSize", nullNS,
                                               Integer.toString(mediator.getMaxMessageSize())));
             }
 
+            if (mediator.getHotKeys() != 0 || CachingConstants.SCOPE_DISTRIBUTED.equals(mediator.getScope())) {
+                cache.addAttribute(
+                        fac.createOMAttribute("hotKeys", nullNS, Integer.toString(mediator.getHotKeys())));
+            }
+
+            if (mediator.getAdmitAfter() > 1) {
+                cache.addAttribute(
+                        fac.createOMAttribute("admitAfter", nullNS, Integer.toString(mediator.getAdmitAfter())));
+            }
+
+            if (mediator.isDedupPayloads()) {
+                cache.addAttribute(fac.createOMAttribute("dedupPayloads", nullNS, "true"));
+            }
+
             if (mediator.getOnCacheHitRef() != null) {
                 OMElement onCacheHit = fac.createOMElement("onCacheHit", synNS);
                 onCacheHit.addAttribute(
                         fac.createOMAttribute("sequence", nullNS, mediator.getOnCacheHitRef()));
+                if (mediator.isMemoizeOnCacheHit()) {
+                    onCacheHit.addAttribute(fac.createOMAttribute("memoize", nullNS, "true"));
+                }
                 cache.addChild(onCacheHit);
             } else if (mediator.getOnCacheHitSequence() != null) {
                 OMElement onCacheHit = fac.createOMElement("onCacheHit", synNS);
                 new JSONCacheMediatorSerializer()
                         .serializeChildren(onCacheHit, mediator.getOnCacheHitSequence().getList());
+                if (mediator.isMemoizeOnCacheHit()) {
+                    onCacheHit.addAttribute(fac.createOMAttribute("memoize", nullNS, "true"));
+                }
                 cache.addChild(onCacheHit);
             }
 
-            if (mediator.getInMemoryCacheSize() != 0) {
+            if (mediator.getInMemoryCacheSize() != 0 || mediator.getCacheStoreClass() != null) {
                 OMElement implElem = fac.createOMElement("implementation", synNS);
                 implElem.addAttribute(fac.createOMAttribute("type", nullNS, "memory"));
-                implElem.addAttribute(fac.createOMAttribute("maxSize", nullNS,
-                                                            Integer.toString(mediator.getInMemoryCacheSize())));
+                if (mediator.getInMemoryCacheSize() != 0) {
+                    implElem.addAttribute(fac.createOMAttribute("maxSize", nullNS,
+                                                                Integer.toString(mediator.getInMemoryCacheSize())));
+                }
+                if (mediator.getCacheStoreClass() != null) {
+                    implElem.addAttribute(fac.createOMAttribute("class", nullNS, mediator.getCacheStoreClass()));
+                }
                 cache.addChild(implElem);
             }
 
+            if (mediator.getSnapshotFile() != null) {
+                OMElement snapshotElem = fac.createOMElement("snapshot", synNS);
+                snapshotElem.addAttribute(fac.createOMAttribute("file", nullNS, mediator.getSnapshotFile()));
+                if (mediator.getSnapshotRestoreBudget() != CachingConstants.DEFAULT_SNAPSHOT_RESTORE_BUDGET) {
+                    snapshotElem.addAttribute(fac.createOMAttribute(
+                            "restoreBudget", nullNS, Long.toString(mediator.getSnapshotRestoreBudget())));
+                }
+                cache.addChild(snapshotElem);
+            }
+
+            if (mediator.getBatchPath() != null) {
+                OMElement batchElem = fac.createOMElement("batch", synNS);
+                batchElem.addAttribute(fac.createOMAttribute("path", nullNS, mediator.getBatchPath()));
+                if (!CachingConstants.DEFAULT_BATCH_RESPONSE_PATH.equals(mediator.getBatchResponsePath())) {
+                    batchElem.addAttribute(
+                            fac.createOMAttribute("responsePath", nullNS, mediator.getBatchResponsePath()));
+                }
+                cache.addChild(batchElem);
+            }
+
+            if (mediator.isHeapGuarded()) {
+                OMElement heapPressureElem = fac.createOMElement("heapPressure", synNS);
+                if (mediator.getHeapPressureMaxMessageSize() !=
+                        CachingConstants.DEFAULT_HEAP_PRESSURE_MAX_MESSAGE_SIZE) {
+                    heapPressureElem.addAttribute(fac.createOMAttribute(
+                            "maxMessageSize", nullNS, Long.toString(mediator.getHeapPressureMaxMessageSize())));
+                }
+                cache.addChild(heapPressureElem);
+            }
+
+            if (mediator.getMissRatioCurveSamplingRate() > 0) {
+                OMElement missRatioCurveElem = fac.createOMElement("missRatioCurve", synNS);
+                if (mediator.getMissRatioCurveSamplingRate() !=
+                        CachingConstants.DEFAULT_MISS_RATIO_CURVE_SAMPLING_RATE) {
+                    missRatioCurveElem.addAttribute(fac.createOMAttribute(
+                            "samplingRate", nullNS, Double.toString(mediator.getMissRatioCurveSamplingRate())));
+                }
+                if (mediator.getMissRatioCurveSampleSize() != CachingConstants.DEFAULT_MISS_RATIO_CURVE_SAMPLE_SIZE) {
+                    missRatioCurveElem.addAttribute(fac.createOMAttribute(
+                            "sampleSize", nullNS, Integer.toString(mediator.getMissRatioCurveSampleSize())));
+                }
+                cache.addChild(missRatioCurveElem);
+            }
+
+            if (mediator.getSpoolThreshold() > 0) {
+                OMElement spoolElem = fac.createOMElement("spool", synNS);
+                spoolElem.addAttribute(
+                        fac.createOMAttribute("threshold", nullNS, Long.toString(mediator.getSpoolThreshold())));
+                if (mediator.getSpoolDirectory() != null) {
+                    spoolElem.addAttribute(fac.createOMAttribute("directory", nullNS, mediator.getSpoolDirectory()));
+                }
+                cache.addChild(spoolElem);
+            }
+
             if (mediator.getDiskCacheSize() != 0) {
                 OMElement implElem = fac.createOMElement("implementation", synNS);
                 implElem.addAttribute(fac.createOMAttribute("type", nullNS, "disk"));
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A path to an array inside a JSON document, used to split batch requests and responses into their items. Paths
+ * are written as $ for a document which is an array, or as $.field.field for an array nested in objects. The
+ * document is scanned without being parsed into objects, and the items are kept as the JSON text they had, so that
+ * a document can be rebuilt around a different list of items.
+ */
+public final class JsonArrayPath {
+
+    /**
+     * The path as it was configured
+     */
+    private final String path;
+
+    /**
+     * The names of the fields leading to the array
+     */
+    private final String[] fields;
+
+    /**
+     * Creates a path from its configured form
+     *
+     * @param path - the path, $ or $.field.field
+     * @throws CachingException if the path is not supported
+     */
+    public JsonArrayPath(String path) throws CachingException {
+        if ("$".equals(path)) {
+            this.fields = new String[0];
+        } else if (path != null && path.startsWith("$.") && !path.endsWith(".") && !path.contains("..")) {
+            this.fields = path.substring(2).split("\\.");
+        } else {
+            throw new CachingException("Unsupported JSON path : " + path + ", expected $ or $.field.field");
+        }
+        this.path = path;
+    }
+
+    /**
+     * This method gives the path as it was configured
+     *
+     * @return String the path
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * This method splits the given document into the items of the array found at this path
+     *
+     * @param json - the JSON document
+     * @return Split of the document, or null if the document holds no array at this path
+     */
+    public Split split(String json) {
+        if (json == null) {
+            return null;
+        }
+        int pos = JsonScanner.skipWhitespace(json, 0);
+        for (String field : fields) {
+            if (JsonScanner.charAt(json, pos) != '{') {
+                return null;
+            }
+            pos = findField(json, pos, field);
+            if (pos < 0) {
+                return null;
+            }
+        }
+        if (JsonScanner.charAt(json, pos) != '[') {
+            return null;
+        }
+        int start = pos;
+        List<String> items = new ArrayList<String>();
+        pos = JsonScanner.skipWhitespace(json, pos + 1);
+        if (JsonScanner.charAt(json, pos) != ']') {
+            while (true) {
+                int end = JsonScanner.skipValue(json, pos);
+                if (end < 0) {
+                    return null;
+                }
+                items.add(json.substring(pos, end));
+                pos = JsonScanner.skipWhitespace(json, end);
+                if (JsonScanner.charAt(json, pos) == ']') {
+                    break;
+                } else if (JsonScanner.charAt(json, pos) != ',') {
+                    return null;
+                }
+                pos = JsonScanner.skipWhitespace(json, pos + 1);
+            }
+        }
+        return new Split(json.substring(0, start), items, json.substring(pos + 1));
+    }
+
+    /**
+     * Finds the value of the given field of the object starting at the given position
+     *
+     * @param json  - the JSON document
+     * @param pos   - position of the opening brace of the object
+     * @param field - name of the field
+     * @return int position of the value of the field, or -1 if the object has no such field
+     */
+    private static int findField(String json, int pos, String field) {
+        pos = JsonScanner.skipWhitespace(json, pos + 1);
+        while (JsonScanner.charAt(json, pos) == '"') {
+            int end = JsonScanner.skipString(json, pos);
+            if (end < 0) {
+                return -1;
+            }
+            boolean match = json.regionMatches(pos + 1, field, 0, field.length()) && end - pos - 2 == field.length();
+            pos = JsonScanner.skipWhitespace(json, end);
+            if (JsonScanner.charAt(json, pos) != ':') {
+                return -1;
+            }
+            pos = JsonScanner.skipWhitespace(json, pos + 1);
+            if (match) {
+                return pos;
+            }
+            pos = JsonScanner.skipValue(json, pos);
+            if (pos < 0) {
+                return -1;
+            }
+            pos = JsonScanner.skipWhitespace(json, pos);
+            if (JsonScanner.charAt(json, pos) != ',') {
+                return -1;
+            }
+            pos = JsonScanner.skipWhitespace(json, pos + 1);
+        }
+        return -1;
+    }
+
+    /**
+     * A document split around the array found at a path
+     */
+    public static final class Split {
+
+        private final String prefix;
+
+        private final List<String> items;
+
+        private final String suffix;
+
+        private Split(String prefix, List<String> items, String suffix) {
+            this.prefix = prefix;
+            this.items = Collections.unmodifiableList(items);
+            this.suffix = suffix;
+        }
+
+        /**
+         * This method gives the items of the array as JSON text, in the order of the array
+         *
+         * @return List of the items
+         */
+        public List<String> getItems() {
+            return items;
+        }
+
+        /**
+         * This method rebuilds the document with the given items in place of the items of the array
+         *
+         * @param replacement - the items of the rebuilt array as JSON text
+         * @return String the rebuilt document
+         */
+        public String join(List<String> replacement) {
+            StringBuilder json = new StringBuilder(prefix).append('[');
+            for (int i = 0; i < replacement.size(); i++) {
+                if (i > 0) {
+                    json.append(',');
+                }
+                json.append(replacement.get(i));
+            }
+            return json.append(']').append(suffix).toString();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A projection of a JSON document on a subset of its fields, used to serve the field selections requested by the
+ * clients from a single cached document. Fields are selected with comma separated paths of dotted names, such as
+ * id,name,address.city. A path selects the whole value of its last field; the fields of objects nested in arrays
+ * are selected from every element of the array. The projection is a single pass filter over the text of the
+ * document which copies the selected values as they are and skips the others, without building a tree.
+ */
+public final class JsonProjection {
+
+    /**
+     * The fields selected at the root of the document
+     */
+    private final Selection root = new Selection();
+
+    /**
+     * Creates a projection on the given fields
+     *
+     * @param fields - comma separated paths of the selected fields
+     * @throws CachingException if no field is selected
+     */
+    public JsonProjection(String fields) throws CachingException {
+        boolean selected = false;
+        for (String path : fields.split(",")) {
+            path = path.trim();
+            if (path.isEmpty()) {
+                continue;
+            }
+            Selection selection = root;
+            for (String field : path.split("\\.")) {
+                Selection child = selection.fields.get(field);
+                if (child == null) {
+                    child = new Selection();
+                    selection.fields.put(field, child);
+                }
+                selection = child;
+            }
+            selection.whole = true;
+            selected = true;
+        }
+        if (!selected) {
+            throw new CachingException("No field is selected by the projection : " + fields);
+        }
+    }
+
+    /**
+     * This method projects the given document on the selected fields
+     *
+     * @param json - the JSON document
+     * @return String the projected document, or null if the document could not be scanned
+     */
+    public String project(String json) {
+        StringBuilder projected = new StringBuilder(json.length());
+        int pos = JsonScanner.skipWhitespace(json, 0);
+        return project(json, pos, root, projected) < 0 ? null : projected.toString();
+    }
+
+    /**
+     * This method gives the decoded value of a query parameter of the given URI
+     *
+     * @param uri  - the URI
+     * @param name - name of the query parameter
+     * @return String value of the first occurrence of the parameter, or null if the URI has no such parameter
+     */
+    public static String getQueryParameter(String uri, String name) {
+        int query = uri != null ? uri.indexOf('?') : -1;
+        if (query < 0) {
+            return null;
+        }
+        for (String parameter : uri.substring(query + 1).split("&")) {
+            int eq = parameter.indexOf('=');
+            String parameterName = eq < 0 ? parameter : parameter.substring(0, eq);
+            if (name.equals(parameterName)) {
+                try {
+                    return eq < 0 ? "" : URLDecoder.decode(parameter.substring(eq + 1), "UTF-8");
+                } catch (UnsupportedEncodingException e) {
+                    throw new CachingException("UTF-8 encoding is not available", e);
+                } catch (IllegalArgumentException e) {
+                    return parameter.substring(eq + 1);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * This method removes every occurrence of a query parameter from the given URI
+     *
+     * @param uri  - the URI
+     * @param name - name of the query parameter
+     * @return String the URI without the parameter
+     */
+    public static String removeQueryParameter(String uri, String name) {
+        int query = uri != null ? uri.indexOf('?') : -1;
+        if (query < 0) {
+            return uri;
+        }
+        StringBuilder stripped = new StringBuilder(uri.length()).append(uri, 0, query);
+        char separator = '?';
+        for (String parameter : uri.substring(query + 1).split("&")) {
+            int eq = parameter.indexOf('=');
+            if (parameter.isEmpty() || name.equals(eq < 0 ? parameter : parameter.substring(0, eq))) {
+                continue;
+            }
+            stripped.append(separator).append(parameter);
+            separator = '&';
+        }
+        return stripped.toString();
+    }
+
+    /**
+     * Copies the selected parts of the value starting at the given position
+     *
+     * @param json      - the JSON document
+     * @param pos       - position of the value
+     * @param selection - the fields selected in the value
+     * @param projected - the projected document
+     * @return int position following the value, or -1 if the value is not terminated
+     */
+    private static int project(String json, int pos, Selection selection, StringBuilder projected) {
+        char c = JsonScanner.charAt(json, pos);
+        if (selection.whole || (c != '{' && c != '[')) {
+            int end = JsonScanner.skipValue(json, pos);
+            if (end > 0) {
+                projected.append(json, pos, end);
+            }
+            return end;
+        }
+        boolean object = c == '{';
+        projected.append(c);
+        boolean first = true;
+        pos = JsonScanner.skipWhitespace(json, pos + 1);
+        while (JsonScanner.charAt(json, pos) != (object ? '}' : ']')) {
+            if (!first) {
+                if (JsonScanner.charAt(json, pos) != ',') {
+                    return -1;
+                }
+                pos = JsonScanner.skipWhitespace(json, pos + 1);
+            }
+            first = false;
+            if (!object) {
+                if (projected.charAt(projected.length() - 1) != '[') {
+                    projected.append(',');
+                }
+                pos = project(json, pos, selection, projected);
+            } else {
+                int keyEnd = JsonScanner.skipString(json, pos);
+                if (JsonScanner.charAt(json, pos) != '"' || keyEnd < 0) {
+                    return -1;
+                }
+                int valuePos = JsonScanner.skipWhitespace(json, keyEnd);
+                if (JsonScanner.charAt(json, valuePos) != ':') {
+                    return -1;
+                }
+                valuePos = JsonScanner.skipWhitespace(json, valuePos + 1);
+                Selection child = selection.fields.get(json.substring(pos + 1, keyEnd - 1));
+                if (child != null) {
+                    if (projected.charAt(projected.length() - 1) != '{') {
+                        projected.append(',');
+                    }
+                    projected.append(json, pos, keyEnd).append(':');
+                    pos = project(json, valuePos, child, projected);
+                } else {
+                    pos = JsonScanner.skipValue(json, valuePos);
+                }
+            }
+            if (pos < 0) {
+                return -1;
+            }
+            pos = JsonScanner.skipWhitespace(json, pos);
+        }
+        projected.append(object ? '}' : ']');
+        return pos + 1;
+    }
+
+    /**
+     * The fields selected in a value
+     */
+    private static final class Selection {
+
+        /**
+         * The selected fields of the value indexed by name
+         */
+        private final Map<String, Selection> fields = new HashMap<String, Selection>();
+
+        /**
+         * Whether the whole value is selected
+         */
+        private boolean whole;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+/**
+ * Scanning primitives over JSON text, shared by {@link JsonArrayPath} and {@link JsonProjection}. Values are
+ * located by their positions in the text without being parsed into objects, and the text is not validated beyond
+ * what is needed to find where a value ends.
+ */
+final class JsonScanner {
+
+    private JsonScanner() {
+    }
+
+    /**
+     * Removes the whitespace between the tokens of the given JSON text, so that equal values written
+     * differently have the same text
+     *
+     * @param json - the JSON text
+     * @return String the compacted text
+     */
+    static String compact(String json) {
+        StringBuilder compacted = new StringBuilder(json.length());
+        boolean inString = false;
+        for (int i = 0; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (inString) {
+                compacted.append(c);
+                if (c == '\\' && i + 1 < json.length()) {
+                    compacted.append(json.charAt(++i));
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (!Character.isWhitespace(c)) {
+                compacted.append(c);
+                inString = c == '"';
+            }
+        }
+        return compacted.toString();
+    }
+
+    /**
+     * Skips the value starting at the given position
+     *
+     * @param json - the JSON document
+     * @param pos  - position of the first character of the value
+     * @return int position following the value, or -1 if the value is not terminated
+     */
+    static int skipValue(String json, int pos) {
+        char c = charAt(json, pos);
+        if (c == '"') {
+            return skipString(json, pos);
+        } else if (c == '{' || c == '[') {
+            int depth = 0;
+            while (pos < json.length()) {
+                c = json.charAt(pos);
+                if (c == '"') {
+                    pos = skipString(json, pos);
+                    if (pos < 0) {
+                        return -1;
+                    }
+                    continue;
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if ((c == '}' || c == ']') && --depth == 0) {
+                    return pos + 1;
+                }
+                pos++;
+            }
+            return -1;
+        }
+        int start = pos;
+        while (pos < json.length() && ",]}".indexOf(json.charAt(pos)) < 0 &&
+                !Character.isWhitespace(json.charAt(pos))) {
+            pos++;
+        }
+        return pos > start ? pos : -1;
+    }
+
+    /**
+     * Skips the string starting at the given position
+     *
+     * @param json - the JSON document
+     * @param pos  - position of the opening quote of the string
+     * @return int position following the closing quote, or -1 if the string is not terminated
+     */
+    static int skipString(String json, int pos) {
+        for (int i = pos + 1; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '"') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Skips the whitespace starting at the given position
+     *
+     * @param json - the JSON document
+     * @param pos  - the position to start from
+     * @return int position of the next character which is not whitespace, or the length of the document
+     */
+    static int skipWhitespace(String json, int pos) {
+        while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Gives the character at the given position
+     *
+     * @param json - the JSON document
+     * @param pos  - the position of the character
+     * @return char the character, or 0 past the end of the document
+     */
+    static char charAt(String json, int pos) {
+        return pos >= 0 && pos < json.length() ? json.charAt(pos) : 0;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link PartitionTransport} simulating a network between the stores created in the same JVM under the same
+ * group name. Every message is copied through serialization and delayed by the configured latency, and the
+ * number of messages sent is counted, so that partitioning, batching and rebalancing can be observed within a
+ * single process. This transport is a test harness: the stores of a server reach each other through the
+ * {@link ClusteringPartitionTransport}.
+ */
+public class LoopbackPartitionTransport implements PartitionTransport {
+
+    /**
+     * The members of every group indexed by group name and member name
+     */
+    private static final ConcurrentMap<String, ConcurrentMap<String, LoopbackPartitionTransport>> groups =
+            new ConcurrentHashMap<String, ConcurrentMap<String, LoopbackPartitionTransport>>();
+
+    /**
+     * Name of the group this transport belongs to
+     */
+    private final String group;
+
+    /**
+     * Name of the local member
+     */
+    private final String member;
+
+    /**
+     * Simulated latency of a message exchange in milliseconds, covering the reply of the requests which have one
+     */
+    private final long latencyMillis;
+
+    /**
+     * Number of messages sent by this transport
+     */
+    private final AtomicLong messageCount = new AtomicLong();
+
+    /**
+     * Handler of the store connected to this transport
+     */
+    private volatile Handler handler;
+
+    /**
+     * Creates a transport for a member of the given group of nodes
+     *
+     * @param group         - name of the group of nodes
+     * @param member        - name of the local member
+     * @param latencyMillis - simulated latency of a message exchange in milliseconds
+     */
+    public LoopbackPartitionTransport(String group, String member, long latencyMillis) {
+        this.group = group;
+        this.member = member;
+        this.latencyMillis = latencyMillis;
+    }
+
+    public String getLocalMember() {
+        return member;
+    }
+
+    public void start(String cacheName, Handler handler) throws CachingException {
+        this.handler = handler;
+        ConcurrentMap<String, LoopbackPartitionTransport> members =
+                new ConcurrentHashMap<String, LoopbackPartitionTransport>();
+        ConcurrentMap<String, LoopbackPartitionTransport> existing = groups.putIfAbsent(group, members);
+        members = existing != null ? existing : members;
+        members.put(member, this);
+        notifyMembers(members);
+    }
+
+    public Map<String, CachableResponse> get(String member, Collection<String> keys) throws CachingException {
+        Handler target = getTarget(member);
+        ArrayList<String> request = LoopbackTransport.copy(new ArrayList<String>(keys));
+        HashMap<String, CachableResponse> found = new HashMap<String, CachableResponse>(target.onGet(request));
+        return LoopbackTransport.copy(found);
+    }
+
+    public boolean putIfAbsent(String member, String key, CachableResponse response) throws CachingException {
+        return getTarget(member).onPutIfAbsent(key, LoopbackTransport.copy(response));
+    }
+
+    public boolean replace(String member, String key, long expectedVersion, CachableResponse response)
+            throws CachingException {
+        return getTarget(member).onReplace(key, expectedVersion, LoopbackTransport.copy(response));
+    }
+
+    public void send(String member, ReplicationBatch batch) throws CachingException {
+        getTarget(member).onBatch(LoopbackTransport.copy(batch));
+    }
+
+    public void stop() {
+        ConcurrentMap<String, LoopbackPartitionTransport> members = groups.get(group);
+        handler = null;
+        if (members != null && members.remove(member, this)) {
+            notifyMembers(members);
+        }
+    }
+
+    /**
+     * This method gives the number of messages sent by this transport
+     *
+     * @return long number of messages sent
+     */
+    public long getMessageCount() {
+        return messageCount.get();
+    }
+
+    private Handler getTarget(String name) throws CachingException {
+        messageCount.incrementAndGet();
+        ConcurrentMap<String, LoopbackPartitionTransport> members = groups.get(group);
+        LoopbackPartitionTransport target = members != null ? members.get(name) : null;
+        Handler targetHandler = target != null ? target.handler : null;
+        if (targetHandler == null) {
+            throw new CachingException("Member : " + name + " of group : " + group + " is not reachable");
+        }
+        delay();
+        return targetHandler;
+    }
+
+    private void delay() {
+        if (latencyMillis > 0) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void notifyMembers(ConcurrentMap<String, LoopbackPartitionTransport> members) {
+        Set<String> names = new HashSet<String>(members.keySet());
+        for (LoopbackPartitionTransport transport : members.values()) {
+            Handler target = transport.handler;
+            if (target != null) {
+                target.onMembershipChange(names);
+            }
+        }
+    }
+}
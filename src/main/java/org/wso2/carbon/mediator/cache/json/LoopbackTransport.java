@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A {@link ReplicationTransport} connecting the stores created in the same JVM under the same group name. Batches
+ * are serialized and deserialized on delivery, like on a network, so that the nodes never share response objects.
+ * This allows a cluster of several nodes to be exercised within a single process.
+ */
+public class LoopbackTransport implements ReplicationTransport {
+
+    /**
+     * The members of every group indexed by group name
+     */
+    private static final ConcurrentMap<String, List<LoopbackTransport>> groups =
+            new ConcurrentHashMap<String, List<LoopbackTransport>>();
+
+    /**
+     * Name of the group this transport belongs to
+     */
+    private final String group;
+
+    /**
+     * Listener of the store connected to this transport
+     */
+    private volatile Listener listener;
+
+    /**
+     * Creates a transport for the given group of nodes
+     *
+     * @param group - name of the group of nodes
+     */
+    public LoopbackTransport(String group) {
+        this.group = group;
+    }
+
+    public void start(String cacheName, Listener listener) throws CachingException {
+        this.listener = listener;
+        List<LoopbackTransport> members = new CopyOnWriteArrayList<LoopbackTransport>();
+        List<LoopbackTransport> existing = groups.putIfAbsent(group, members);
+        (existing != null ? existing : members).add(this);
+    }
+
+    public void send(ReplicationBatch batch) throws CachingException {
+        List<LoopbackTransport> members = groups.get(group);
+        if (members == null) {
+            return;
+        }
+        byte[] bytes = serialize(batch);
+        for (LoopbackTransport member : members) {
+            Listener target = member.listener;
+            if (member != this && target != null) {
+                target.onBatch((ReplicationBatch) deserialize(bytes));
+            }
+        }
+    }
+
+    public void stop() {
+        List<LoopbackTransport> members = groups.get(group);
+        if (members != null) {
+            members.remove(this);
+        }
+        listener = null;
+    }
+
+    /**
+     * Copies the given object through java serialization, as if it was sent over the network
+     *
+     * @param object - the object to be copied
+     * @return the copy of the object
+     * @throws CachingException if the object cannot be serialized
+     */
+    @SuppressWarnings("unchecked")
+    static <T extends Serializable> T copy(T object) throws CachingException {
+        return (T) deserialize(serialize(object));
+    }
+
+    private static byte[] serialize(Serializable object) throws CachingException {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(object);
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new CachingException("Unable to serialize the replication message", e);
+        }
+    }
+
+    private static Object deserialize(byte[] bytes) throws CachingException {
+        try {
+            ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+            return in.readObject();
+        } catch (IOException e) {
+            throw new CachingException("Unable to deserialize the replication message", e);
+        } catch (ClassNotFoundException e) {
+            throw new CachingException("Unable to deserialize the replication message", e);
+        }
+    }
+}
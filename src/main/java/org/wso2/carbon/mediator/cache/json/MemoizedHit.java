@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import org.apache.synapse.Mediator;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+
+/**
+ * The output of the onCacheHit sequence for a cached response, which later hits of the response replay instead of
+ * running the sequence again. A memoized hit is held by the cached response it was computed from, and cached
+ * responses are replaced rather than updated, so the memoized output is dropped together with the response it
+ * belongs to. It also remembers the sequence which produced it, and a redeployed sequence, being a new instance,
+ * does not match it.
+ * <p/>
+ * The result of the sequence is kept with its output, so that a replay continues the mediation when the sequence
+ * continued it and replies to the client when the sequence ended the mediation by responding.
+ */
+public final class MemoizedHit {
+
+    /**
+     * The sequence which produced the output, weakly held so that an undeployed sequence can be collected
+     */
+    private final WeakReference<Mediator> sequence;
+
+    /**
+     * Whether the sequence continued the mediation
+     */
+    private final boolean continued;
+
+    /**
+     * The payload produced by the sequence
+     */
+    private final byte[] payload;
+
+    /**
+     * The header properties produced by the sequence, or null if the message has none
+     */
+    private final Map<String, Object> headerProperties;
+
+    /**
+     * Creates the memoized output of the given sequence
+     *
+     * @param sequence         - the sequence which produced the output
+     * @param continued        - whether the sequence continued the mediation
+     * @param payload          - the payload produced by the sequence
+     * @param headerProperties - the header properties produced by the sequence, or null if there are none
+     */
+    public MemoizedHit(Mediator sequence, boolean continued, byte[] payload, Map<String, Object> headerProperties) {
+        this.sequence = new WeakReference<Mediator>(sequence);
+        this.continued = continued;
+        this.payload = payload;
+        this.headerProperties = headerProperties != null ? HeaderSet.of(headerProperties) : null;
+    }
+
+    /**
+     * This method checks whether this output was produced by the given sequence
+     *
+     * @param sequence - the sequence currently configured for the hits
+     * @return boolean true if the output can be replayed for the sequence and false if not
+     */
+    public boolean isOutputOf(Mediator sequence) {
+        return sequence != null && this.sequence.get() == sequence;
+    }
+
+    /**
+     * This method checks whether the sequence continued the mediation with its output
+     *
+     * @return boolean true if the mediation continues with the output and false if the output is sent back
+     */
+    public boolean continuesMediation() {
+        return continued;
+    }
+
+    /**
+     * This method gives the payload produced by the sequence, which must not be modified
+     *
+     * @return byte[] the payload
+     */
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    /**
+     * This method gives the header properties produced by the sequence
+     *
+     * @return Map of the header properties, or null if there are none
+     */
+    public Map<String, Object> getHeaderProperties() {
+        return headerProperties;
+    }
+}
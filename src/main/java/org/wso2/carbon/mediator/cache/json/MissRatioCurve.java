@@ -0,0 +1,363 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * An online estimate of the miss ratio curve of a cache, built from the lookups of the cache with spatially hashed
+ * sampling (SHARDS). A key is sampled if its hash falls below a threshold, so every lookup of a sampled key is seen
+ * and the reuse distances among the sampled keys, scaled by the sampling rate, estimate the reuse distances of the
+ * whole key stream. The reuse distance of a lookup is the number of distinct keys, and the heap taken by their
+ * payloads, looked up since the previous lookup of the same key; an LRU cache of that size would have served the
+ * lookup. At most a fixed number of keys is sampled: beyond it, the key with the highest hash is dropped and the
+ * threshold is lowered to its hash, which lowers the sampling rate as the number of distinct keys grows.
+ * Lookups of keys which are not sampled only hash the key, the sampled ones take the lock of the curve.
+ */
+public class MissRatioCurve implements MissRatioCurveMBean {
+
+    /**
+     * Size of the space the keys are hashed into
+     */
+    private static final long HASH_SPACE = 1L << 24;
+
+    /**
+     * Number of histogram buckets per doubling of the reuse distance
+     */
+    private static final int BUCKETS_PER_DOUBLING = 4;
+
+    /**
+     * Number of histogram buckets, covering reuse distances up to 2^63
+     */
+    private static final int BUCKETS = 63 * BUCKETS_PER_DOUBLING;
+
+    /**
+     * Smallest byte budget reported by the byte curve
+     */
+    private static final long MIN_REPORTED_BYTES = 1024;
+
+    /**
+     * Maximum number of sampled keys
+     */
+    private final int sampleSize;
+
+    /**
+     * Keys with a hash below the threshold are sampled
+     */
+    private volatile long threshold;
+
+    /**
+     * The sampled keys
+     */
+    private final Map<String, Sample> samples = new HashMap<String, Sample>();
+
+    /**
+     * The sampled keys, highest hash first
+     */
+    private final PriorityQueue<Sample> byHash = new PriorityQueue<Sample>(16, new Comparator<Sample>() {
+        public int compare(Sample a, Sample b) {
+            return a.hash < b.hash ? 1 : a.hash > b.hash ? -1 : 0;
+        }
+    });
+
+    /**
+     * Fenwick tree over the logical time of the last lookup of each sampled key, counting the keys
+     */
+    private final long[] keyTree;
+
+    /**
+     * Fenwick tree over the logical time of the last lookup of each sampled key, summing their payload sizes
+     */
+    private final long[] byteTree;
+
+    /**
+     * The logical time of the last sampled lookup
+     */
+    private int clock;
+
+    /**
+     * Estimated lookups by reuse distance in number of keys
+     */
+    private final double[] keyHistogram = new double[BUCKETS];
+
+    /**
+     * Estimated lookups by reuse distance in bytes
+     */
+    private final double[] byteHistogram = new double[BUCKETS];
+
+    /**
+     * Estimated number of lookups
+     */
+    private double lookups;
+
+    /**
+     * Creates a curve sampling the given fraction of the keys, up to the given number of keys
+     *
+     * @param samplingRate - the initial fraction of the keys to be sampled, between 0 and 1
+     * @param sampleSize   - the maximum number of sampled keys
+     */
+    public MissRatioCurve(double samplingRate, int sampleSize) {
+        this.sampleSize = sampleSize;
+        this.threshold = Math.max(1L, (long) (HASH_SPACE * Math.min(samplingRate, 1.0)));
+        this.keyTree = new long[4 * sampleSize + 1];
+        this.byteTree = new long[4 * sampleSize + 1];
+    }
+
+    /**
+     * This method records a lookup of the given key
+     *
+     * @param key  - the request hash looked up
+     * @param size - the heap taken by the payload cached for the key, or 0 if it is not known
+     */
+    public void record(String key, long size) {
+        long hash = hash(key);
+        if (hash >= threshold) {
+            return;
+        }
+        synchronized (this) {
+            if (hash >= threshold) {
+                return;
+            }
+            double weight = (double) HASH_SPACE / threshold;
+            lookups += weight;
+            Sample sample = samples.get(key);
+            if (sample == null) {
+                // a first lookup misses at any size
+                sample = new Sample(key, hash);
+                samples.put(key, sample);
+                byHash.add(sample);
+            } else {
+                long keys = sum(keyTree, clock) - sum(keyTree, sample.time) + 1;
+                long bytes = sum(byteTree, clock) - sum(byteTree, sample.time) + sample.size;
+                keyHistogram[bucket(keys * weight)] += weight;
+                byteHistogram[bucket(bytes * weight)] += weight;
+                add(keyTree, sample.time, -1);
+                add(byteTree, sample.time, -sample.size);
+            }
+            if (size > 0) {
+                sample.size = size;
+            }
+            if (clock + 1 >= keyTree.length) {
+                compact();
+            }
+            sample.time = ++clock;
+            add(keyTree, sample.time, 1);
+            add(byteTree, sample.time, sample.size);
+            while (samples.size() > sampleSize) {
+                drop(byHash.poll());
+            }
+        }
+    }
+
+    /**
+     * This method records the size of the payload cached for the given key, once it is known
+     *
+     * @param key  - the request hash
+     * @param size - the heap taken by the payload in bytes
+     */
+    public void resize(String key, long size) {
+        if (hash(key) >= threshold) {
+            return;
+        }
+        synchronized (this) {
+            Sample sample = samples.get(key);
+            if (sample != null && sample.time > 0) {
+                add(byteTree, sample.time, size - sample.size);
+                sample.size = size;
+            }
+        }
+    }
+
+    public double getSamplingRate() {
+        return (double) threshold / HASH_SPACE;
+    }
+
+    public synchronized int getSampledKeys() {
+        return samples.size();
+    }
+
+    public synchronized long getEstimatedLookups() {
+        return (long) lookups;
+    }
+
+    public synchronized String[] getCapacityCurve() {
+        return curve(keyHistogram, 1);
+    }
+
+    public synchronized String[] getByteCurve() {
+        return curve(byteHistogram, MIN_REPORTED_BYTES);
+    }
+
+    public synchronized double predictHitRatio(long capacity) {
+        return hitRatio(keyHistogram, capacity);
+    }
+
+    public synchronized double predictHitRatioForBytes(long bytes) {
+        return hitRatio(byteHistogram, bytes);
+    }
+
+    /**
+     * Gives the predicted hit ratio at sizes doubling from the given size to the largest reuse distance observed
+     *
+     * @param histogram - the histogram of the reuse distances
+     * @param from      - the smallest size reported
+     * @return String[] lines of the form size=hit ratio
+     */
+    private String[] curve(double[] histogram, long from) {
+        int last = BUCKETS - 1;
+        while (last > 0 && histogram[last] == 0) {
+            last--;
+        }
+        long largest = (long) Math.ceil(upperBound(last));
+        List<String> lines = new ArrayList<String>();
+        for (long size = from; size > 0; size *= 2) {
+            lines.add(size + "=" + hitRatio(histogram, size));
+            if (size >= largest) {
+                break;
+            }
+        }
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    /**
+     * Gives the fraction of the lookups with a reuse distance within the given size, interpolating linearly in the
+     * bucket holding the size
+     *
+     * @param histogram - the histogram of the reuse distances
+     * @param size      - the size of the cache
+     * @return double the predicted hit ratio
+     */
+    private double hitRatio(double[] histogram, long size) {
+        if (lookups <= 0 || size <= 0) {
+            return 0;
+        }
+        double hits = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            double lower = lowerBound(i);
+            if (lower > size) {
+                break;
+            }
+            double upper = upperBound(i);
+            hits += size >= upper ? histogram[i] : histogram[i] * (size - lower) / (upper - lower);
+        }
+        return Math.min(hits / lookups, 1.0);
+    }
+
+    /**
+     * Renumbers the logical times of the sampled keys from 1 in the order of their last lookups, once the clock
+     * reaches the end of the trees
+     */
+    private void compact() {
+        List<Sample> live = new ArrayList<Sample>(samples.values());
+        Collections.sort(live, new Comparator<Sample>() {
+            public int compare(Sample a, Sample b) {
+                return a.time < b.time ? -1 : a.time > b.time ? 1 : 0;
+            }
+        });
+        Arrays.fill(keyTree, 0);
+        Arrays.fill(byteTree, 0);
+        clock = 0;
+        for (Sample sample : live) {
+            sample.time = ++clock;
+            add(keyTree, sample.time, 1);
+            add(byteTree, sample.time, sample.size);
+        }
+    }
+
+    /**
+     * Stops sampling the given key, lowering the threshold to its hash
+     *
+     * @param sample - the sampled key with the highest hash
+     */
+    private void drop(Sample sample) {
+        samples.remove(sample.key);
+        add(keyTree, sample.time, -1);
+        add(byteTree, sample.time, -sample.size);
+        threshold = sample.hash;
+    }
+
+    private static int bucket(double distance) {
+        int bucket = (int) (BUCKETS_PER_DOUBLING * Math.log(Math.max(distance, 1)) / Math.log(2));
+        return Math.min(bucket, BUCKETS - 1);
+    }
+
+    private static double lowerBound(int bucket) {
+        return Math.pow(2, (double) bucket / BUCKETS_PER_DOUBLING);
+    }
+
+    private static double upperBound(int bucket) {
+        return Math.pow(2, (double) (bucket + 1) / BUCKETS_PER_DOUBLING);
+    }
+
+    private static void add(long[] tree, int time, long delta) {
+        for (int i = time; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    private static long sum(long[] tree, int time) {
+        long sum = 0;
+        for (int i = time; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Hashes the given key uniformly into the hash space, mixing the bits of its string hash
+     *
+     * @param key - the key
+     * @return long the hash of the key
+     */
+    private static long hash(String key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h & (HASH_SPACE - 1);
+    }
+
+    /**
+     * A sampled key with the logical time of its last lookup and the size of its payload
+     */
+    private static final class Sample {
+
+        private final String key;
+
+        private final long hash;
+
+        private int time;
+
+        private long size;
+
+        private Sample(String key, long hash) {
+            this.key = key;
+            this.hash = hash;
+        }
+    }
+}
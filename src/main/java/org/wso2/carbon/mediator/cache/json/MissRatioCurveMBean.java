@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+/**
+ * The management interface of the {@link MissRatioCurve} of a cache, registered in the platform MBean server.
+ */
+public interface MissRatioCurveMBean {
+
+    /**
+     * This method gives the current rate at which the keys are sampled
+     *
+     * @return double the sampling rate, between 0 and 1
+     */
+    double getSamplingRate();
+
+    /**
+     * This method gives the number of keys currently sampled
+     *
+     * @return int the number of sampled keys
+     */
+    int getSampledKeys();
+
+    /**
+     * This method gives the estimated number of lookups of the cache since the estimation started
+     *
+     * @return long the estimated number of lookups
+     */
+    long getEstimatedLookups();
+
+    /**
+     * This method gives the predicted hit ratio at capacities doubling from one entry to the largest reuse
+     * distance observed
+     *
+     * @return String[] lines of the form capacity=hit ratio
+     */
+    String[] getCapacityCurve();
+
+    /**
+     * This method gives the predicted hit ratio at byte budgets doubling from one kilobyte to the largest reuse
+     * distance observed
+     *
+     * @return String[] lines of the form bytes=hit ratio
+     */
+    String[] getByteCurve();
+
+    /**
+     * This method predicts the hit ratio of an LRU cache holding the given number of entries
+     *
+     * @param capacity - the number of entries
+     * @return double the predicted hit ratio, between 0 and 1
+     */
+    double predictHitRatio(long capacity);
+
+    /**
+     * This method predicts the hit ratio of an LRU cache holding the given number of payload bytes
+     *
+     * @param bytes - the heap taken by the payloads in bytes
+     * @return double the predicted hit ratio, between 0 and 1
+     */
+    double predictHitRatioForBytes(long bytes);
+}
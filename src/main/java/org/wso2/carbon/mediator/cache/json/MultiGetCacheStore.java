@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * A {@link CacheStore} which can look up several keys at once. The cache mediator uses it to look up the items of
+ * a batch request, see {@link BatchRequest}, and looks up the keys one by one in stores which do not implement it.
+ */
+public interface MultiGetCacheStore extends CacheStore {
+
+    /**
+     * This method gives the cached responses stored against the given keys
+     *
+     * @param keys - request hashes of the cached responses
+     * @return Map of the found responses indexed by key, which leaves out the keys having no response
+     */
+    Map<String, CachableResponse> getAll(Collection<String> keys);
+}
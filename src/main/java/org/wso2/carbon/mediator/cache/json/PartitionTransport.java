@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The channel used by a {@link PartitionedCacheStore} to reach the owners of the partitions of the cache. Unlike a
+ * {@link ReplicationTransport}, messages are addressed to a single member, and remote gets and conditional updates
+ * wait for a reply. Remote gets are made on the request path, so a transport gives up on a get after
+ * {@link CachingConstants#REMOTE_LOOKUP_TIMEOUT_MILLIS} and the request misses.
+ */
+public interface PartitionTransport {
+
+    /**
+     * This method gives the name of the local member
+     *
+     * @return String name of the local member
+     */
+    String getLocalMember();
+
+    /**
+     * This method connects the transport for the given cache. The handler is notified of the current members
+     * before this method returns.
+     *
+     * @param cacheName - name of the partitioned cache
+     * @param handler   - handler serving the requests of the other members
+     * @throws CachingException if the transport cannot be connected
+     */
+    void start(String cacheName, Handler handler) throws CachingException;
+
+    /**
+     * This method gets the responses of the given keys from the given member
+     *
+     * @param member - name of the member owning the keys
+     * @param keys   - the keys to be looked up
+     * @return Map of the found responses indexed by key
+     * @throws CachingException if the member cannot be reached or does not reply in time
+     */
+    Map<String, CachableResponse> get(String member, Collection<String> keys) throws CachingException;
+
+    /**
+     * This method stores a response on the given member only if the member holds no response of the key
+     *
+     * @param member   - name of the member owning the key
+     * @param key      - request hash of the response
+     * @param response - the response to be stored
+     * @return boolean true if the member stored the response and false if not
+     * @throws CachingException if the member cannot be reached or does not reply in time
+     */
+    boolean putIfAbsent(String member, String key, CachableResponse response) throws CachingException;
+
+    /**
+     * This method replaces the response of a key on the given member only if the member holds the expected
+     * version of the response. Responses are copied between members, so the expected response is matched by its
+     * version.
+     *
+     * @param member          - name of the member owning the key
+     * @param key             - request hash of the response
+     * @param expectedVersion - version of the response expected to be stored against the key
+     * @param response        - the response to be stored
+     * @return boolean true if the member replaced the response and false if not
+     * @throws CachingException if the member cannot be reached or does not reply in time
+     */
+    boolean replace(String member, String key, long expectedVersion, CachableResponse response)
+            throws CachingException;
+
+    /**
+     * This method sends a batch of updates to the given member
+     *
+     * @param member - name of the member owning the keys of the batch
+     * @param batch  - the batch to be sent
+     * @throws CachingException if the member cannot be reached
+     */
+    void send(String member, ReplicationBatch batch) throws CachingException;
+
+    /**
+     * This method disconnects the transport
+     */
+    void stop();
+
+    /**
+     * Receiver of the requests of the other members and of membership changes
+     */
+    interface Handler {
+
+        /**
+         * This method looks up keys owned by the local member for another member
+         *
+         * @param keys - the keys to be looked up
+         * @return Map of the found responses indexed by key
+         */
+        Map<String, CachableResponse> onGet(Collection<String> keys);
+
+        /**
+         * This method applies a batch of updates sent by another member
+         *
+         * @param batch - the received batch
+         */
+        void onBatch(ReplicationBatch batch);
+
+        /**
+         * This method stores a response sent by another member only if no response of the key is stored
+         *
+         * @param key      - request hash of the response
+         * @param response - the received response
+         * @return boolean true if the response was stored and false if not
+         */
+        boolean onPutIfAbsent(String key, CachableResponse response);
+
+        /**
+         * This method replaces the response of a key for another member only if the stored response has the
+         * expected version
+         *
+         * @param key             - request hash of the response
+         * @param expectedVersion - version of the response expected to be stored against the key
+         * @param response        - the received response
+         * @return boolean true if the response was replaced and false if not
+         */
+        boolean onReplace(String key, long expectedVersion, CachableResponse response);
+
+        /**
+         * This method is notified whenever a member joins or leaves
+         *
+         * @param members - names of all the current members, including the local member
+         */
+        void onMembershipChange(Set<String> members);
+    }
+}
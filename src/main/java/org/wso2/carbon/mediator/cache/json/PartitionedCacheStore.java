@@ -0,0 +1,618 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import org.apache.axis2.context.ConfigurationContext;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link CacheStore} for the distributed scope which partitions the cache among the members instead of
+ * replicating it, so that the capacity of the cache grows with the number of nodes. Keys are assigned to members
+ * with a {@link ConsistentHashRing}. A node keeps the keys it owns in a local store, looks up the other keys from
+ * their owners and sends the responses of those keys to their owners asynchronously.
+ * <p/>
+ * Concurrent lookups of keys owned by the same member are combined: while a lookup is in flight to a member, the
+ * lookups arriving for that member are collected and sent together as the next lookup. A lookup which gets no
+ * reply within {@link CachingConstants#REMOTE_LOOKUP_TIMEOUT_MILLIS} misses, and the request goes to the backend.
+ * Conditional updates of keys owned by another member are applied by the owner, which replies whether the update
+ * took place; placeholders of requests in progress are not sent to the owners. The collector stores a response
+ * with such lookups and conditional updates, each waiting up to a reply timeout, so a collector which is not
+ * asynchronous holds the response to the client for those round trips. When the membership
+ * changes, a node hands over the keys it no longer owns to their new owners, which with consistent hashing are
+ * only the keys of the arcs gained by a joining member. A node being destroyed hands over all its keys.
+ * <p/>
+ * A response looked up from another member is a copy, so it is matched with the response it was copied from by
+ * version, and it is not refreshed ahead of its expiry.
+ * <p/>
+ * The owner of a key indexes its response by tag when it receives it, so a tag invalidation is sent to all the
+ * members, each removing the responses it indexed under the tags.
+ * <p/>
+ * The members are reached through a {@link PartitionTransport}. The no argument constructor, used when the store
+ * is selected in the mediator configuration, reaches the members through the axis2 clustering agent of the server
+ * with a {@link ClusteringPartitionTransport}; another transport is provided by extending this class and passing
+ * the transport to {@link #PartitionedCacheStore(PartitionTransport)}.
+ */
+public class PartitionedCacheStore implements EnumerableCacheStore, MultiGetCacheStore, ClusteredCacheStore,
+                                              PartitionTransport.Handler {
+
+    /**
+     * Log object to use when logging is required in this class.
+     */
+    private static final Log log = LogFactory.getLog(PartitionedCacheStore.class);
+
+    /**
+     * The responses of the keys owned by the local member
+     */
+    private final ConcurrentCacheStore local = new ConcurrentCacheStore();
+
+    /**
+     * Clock issuing the versions of the updates of this node
+     */
+    private final VersionClock versionClock = new VersionClock();
+
+    /**
+     * The index of the received responses by tag, or null if they are not indexed
+     */
+    private volatile TagIndex tagIndex;
+
+    /**
+     * Combined lookups indexed by the member they are sent to
+     */
+    private final ConcurrentMap<String, RemoteLookups> lookups = new ConcurrentHashMap<String, RemoteLookups>();
+
+    /**
+     * Updates waiting to be sent to their owners
+     */
+    private final BlockingQueue<ReplicationBatch.Operation> outbound =
+            new LinkedBlockingQueue<ReplicationBatch.Operation>(CachingConstants.REPLICATION_QUEUE_SIZE);
+
+    /**
+     * The ring of the current members
+     */
+    private volatile ConsistentHashRing ring;
+
+    /**
+     * The transport connecting this node to the other members
+     */
+    private PartitionTransport transport;
+
+    /**
+     * Name of the local member
+     */
+    private String localMember;
+
+    /**
+     * Name of the partitioned cache
+     */
+    private String cacheName;
+
+    /**
+     * Thread sending the queued updates
+     */
+    private Thread sender;
+
+    /**
+     * Whether the sender thread should keep running
+     */
+    private volatile boolean running;
+
+    /**
+     * Creates a store partitioning the cache among the members of the axis2 cluster of the server
+     */
+    public PartitionedCacheStore() {
+    }
+
+    /**
+     * Creates a store partitioning the cache among the members reached through the given transport
+     *
+     * @param transport - transport connecting this node to the other members
+     */
+    public PartitionedCacheStore(PartitionTransport transport) {
+        this.transport = transport;
+    }
+
+    public void init(String cacheName, int maxSize, ConfigurationContext cfgCtx) throws CachingException {
+        this.cacheName = cacheName;
+        local.init(cacheName, maxSize, cfgCtx);
+        if (transport == null) {
+            transport = new ClusteringPartitionTransport(cfgCtx);
+        }
+        localMember = transport.getLocalMember();
+        ring = new ConsistentHashRing(Collections.singleton(localMember), CachingConstants.VIRTUAL_NODES);
+        running = true;
+        sender = new Thread(new Runnable() {
+            public void run() {
+                sendUpdates();
+            }
+        }, "json-cache-partition-sender-" + cacheName);
+        sender.setDaemon(true);
+        sender.start();
+        transport.start(cacheName, this);
+    }
+
+    public CachableResponse get(String key) {
+        String owner = ring.ownerOf(key);
+        if (localMember.equals(owner)) {
+            return local.get(key);
+        }
+        RemoteLookups remote = lookups.get(owner);
+        if (remote == null) {
+            RemoteLookups created = new RemoteLookups(owner);
+            remote = lookups.putIfAbsent(owner, created);
+            if (remote == null) {
+                remote = created;
+            }
+        }
+        CachableResponse response = remote.get(key);
+        if (response != null) {
+            // every lookup gives a new copy, whose refresh claim cannot elect a single request, so a remote key is
+            // refreshed on its expiry instead of ahead of it
+            response.claimRefresh();
+        }
+        return response;
+    }
+
+    public Map<String, CachableResponse> getAll(Collection<String> keys) {
+        ConsistentHashRing current = ring;
+        Map<String, CachableResponse> found = new HashMap<String, CachableResponse>();
+        Map<String, List<String>> remoteKeys = new HashMap<String, List<String>>();
+        for (String key : keys) {
+            String owner = current.ownerOf(key);
+            if (localMember.equals(owner)) {
+                CachableResponse response = local.get(key);
+                if (response != null) {
+                    found.put(key, response);
+                }
+                continue;
+            }
+            List<String> ownerKeys = remoteKeys.get(owner);
+            if (ownerKeys == null) {
+                ownerKeys = new ArrayList<String>();
+                remoteKeys.put(owner, ownerKeys);
+            }
+            ownerKeys.add(key);
+        }
+        // a single lookup is sent to every owner, keys of an unreachable owner are missing
+        for (Map.Entry<String, List<String>> entry : remoteKeys.entrySet()) {
+            try {
+                found.putAll(transport.get(entry.getKey(), entry.getValue()));
+            } catch (CachingException e) {
+                log.warn("Unable to look up " + entry.getValue().size() + " keys of the cache : " + cacheName +
+                                 " from member : " + entry.getKey(), e);
+            }
+        }
+        return found;
+    }
+
+    public void put(String key, CachableResponse response) {
+        response.setVersion(versionClock.next());
+        if (isLocal(key)) {
+            local.put(key, response);
+        } else {
+            publish(key, response);
+        }
+    }
+
+    public boolean putIfAbsent(String key, CachableResponse response) {
+        response.setVersion(versionClock.next());
+        String owner = ring.ownerOf(key);
+        if (localMember.equals(owner)) {
+            return local.putIfAbsent(key, response);
+        }
+        if (!response.hasContent()) {
+            return false;
+        }
+        try {
+            return transport.putIfAbsent(owner, key, response);
+        } catch (CachingException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Unable to store the response of : " + key + " on member : " + owner, e);
+            }
+            return false;
+        }
+    }
+
+    public boolean replace(String key, CachableResponse expected, CachableResponse response) {
+        response.setVersion(versionClock.next());
+        String owner = ring.ownerOf(key);
+        if (localMember.equals(owner)) {
+            return local.replace(key, expected, response);
+        }
+        // the owner never holds a placeholder, which is not sent, nor the responses it has not sent
+        if (!response.hasContent() || !expected.hasContent()) {
+            return false;
+        }
+        try {
+            return transport.replace(owner, key, expected.getVersion(), response);
+        } catch (CachingException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Unable to replace the response of : " + key + " on member : " + owner, e);
+            }
+            return false;
+        }
+    }
+
+    public boolean remove(String key) {
+        if (isLocal(key)) {
+            return local.remove(key);
+        }
+        publish(key, null);
+        return true;
+    }
+
+    public boolean remove(String key, CachableResponse response) {
+        if (isLocal(key)) {
+            return local.remove(key, response);
+        }
+        if (!response.isExpired()) {
+            publish(key, null);
+        }
+        return true;
+    }
+
+    public void clear() {
+        local.clear();
+    }
+
+    public void destroy() {
+        running = false;
+        if (sender != null) {
+            sender.interrupt();
+            try {
+                sender.join(CachingConstants.REPLICATION_LINGER_MILLIS * 10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            sender = null;
+        }
+        // hand over the local keys before leaving
+        Set<String> remaining = new HashSet<String>(ring.getMembers());
+        remaining.remove(localMember);
+        if (!remaining.isEmpty()) {
+            onMembershipChange(remaining);
+        }
+        transport.stop();
+        local.destroy();
+    }
+
+    public Iterable<CachableResponse> localResponses() {
+        return local.localResponses();
+    }
+
+    public void setTagIndex(TagIndex tagIndex) {
+        this.tagIndex = tagIndex;
+    }
+
+    public void invalidateTags(Collection<String> tags, Collection<String> prefixes) {
+        for (String member : ring.getMembers()) {
+            if (!localMember.equals(member)) {
+                ReplicationBatch batch = new ReplicationBatch(cacheName);
+                batch.invalidateTags(tags, prefixes);
+                send(member, batch);
+            }
+        }
+    }
+
+    public Map<String, CachableResponse> onGet(Collection<String> keys) {
+        Map<String, CachableResponse> found = new HashMap<String, CachableResponse>();
+        for (String key : keys) {
+            CachableResponse response = local.get(key);
+            if (response != null && response.hasContent() && !response.isExpired()) {
+                found.put(key, response);
+            }
+        }
+        return found;
+    }
+
+    public void onBatch(ReplicationBatch batch) {
+        for (ReplicationBatch.Operation operation : batch.getOperations()) {
+            versionClock.observe(operation.getVersion());
+            applyUpdate(operation);
+        }
+        TagIndex index = tagIndex;
+        if (index != null) {
+            index.invalidate(local, batch.getInvalidatedTags());
+            for (String prefix : batch.getInvalidatedPrefixes()) {
+                index.invalidatePrefix(local, prefix);
+            }
+        }
+    }
+
+    public boolean onPutIfAbsent(String key, CachableResponse response) {
+        versionClock.observe(response.getVersion());
+        return local.putIfAbsent(key, response) && indexed(key, response);
+    }
+
+    public boolean onReplace(String key, long expectedVersion, CachableResponse response) {
+        versionClock.observe(response.getVersion());
+        CachableResponse current = local.get(key);
+        return current != null && current.getVersion() == expectedVersion && local.replace(key, current, response)
+                && indexed(key, response);
+    }
+
+    public void onMembershipChange(Set<String> members) {
+        ConsistentHashRing updated = new ConsistentHashRing(members, CachingConstants.VIRTUAL_NODES);
+        ring = updated;
+        Map<String, ReplicationBatch> handOver = new HashMap<String, ReplicationBatch>();
+        for (String key : local.keySet()) {
+            String owner = updated.ownerOf(key);
+            if (localMember.equals(owner)) {
+                continue;
+            }
+            CachableResponse response = local.get(key);
+            if (response == null || !local.remove(key, response) || !response.hasContent() ||
+                    response.isExpired()) {
+                continue;
+            }
+            ReplicationBatch batch = handOver.get(owner);
+            if (batch == null) {
+                batch = new ReplicationBatch(cacheName);
+                handOver.put(owner, batch);
+            }
+            batch.add(new ReplicationBatch.Operation(key, response.getVersion(), response));
+        }
+        for (Map.Entry<String, ReplicationBatch> entry : handOver.entrySet()) {
+            send(entry.getKey(), entry.getValue());
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Members of the partitioned cache : " + cacheName + " changed to " + updated.getMembers());
+        }
+    }
+
+    /**
+     * This method gives the number of entries held by the local member
+     *
+     * @return int number of local entries
+     */
+    public int localSize() {
+        return local.size();
+    }
+
+    /**
+     * Applies an update of a key owned by the local member, indexing the received response by tag
+     *
+     * @param operation - the update
+     */
+    private void applyUpdate(ReplicationBatch.Operation operation) {
+        if (local.applyUpdate(operation.getKey(), operation.getResponse(), operation.getVersion()) &&
+                operation.getResponse() != null) {
+            indexed(operation.getKey(), operation.getResponse());
+        }
+    }
+
+    /**
+     * Indexes a response received for a key owned by the local member under its tags
+     *
+     * @param key      - request hash of the response
+     * @param response - the response, as held by the local store
+     * @return boolean true, so that it can follow a successful update
+     */
+    private boolean indexed(String key, CachableResponse response) {
+        TagIndex index = tagIndex;
+        if (index != null && response.getTags() != null && !response.getTags().isEmpty()) {
+            index.tag(key, response);
+        }
+        return true;
+    }
+
+    private boolean isLocal(String key) {
+        return localMember.equals(ring.ownerOf(key));
+    }
+
+    /**
+     * Queues an update of a key owned by another member. Placeholders of a request in progress are not sent.
+     *
+     * @param key      - request hash of the update
+     * @param response - the stored response, or null if the key was invalidated
+     */
+    private void publish(String key, CachableResponse response) {
+        ReplicationBatch.Operation operation;
+        if (response == null) {
+            operation = new ReplicationBatch.Operation(key, versionClock.next(), null);
+        } else if (response.hasContent()) {
+            operation = new ReplicationBatch.Operation(key, response.getVersion(), response);
+        } else {
+            return;
+        }
+        if (!outbound.offer(operation) && log.isDebugEnabled()) {
+            log.debug("Update queue of the cache : " + cacheName + " is full, dropping the update of : " + key);
+        }
+    }
+
+    /**
+     * Body of the sender thread, which sends the queued updates grouped by owner until the store is destroyed
+     */
+    private void sendUpdates() {
+        List<ReplicationBatch.Operation> pending =
+                new ArrayList<ReplicationBatch.Operation>(CachingConstants.REPLICATION_BATCH_SIZE);
+        while (running) {
+            try {
+                ReplicationBatch.Operation first = outbound.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                pending.add(first);
+                if (outbound.size() < CachingConstants.REPLICATION_BATCH_SIZE) {
+                    // linger to let the batches fill up
+                    Thread.sleep(CachingConstants.REPLICATION_LINGER_MILLIS);
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+            outbound.drainTo(pending, CachingConstants.REPLICATION_BATCH_SIZE - pending.size());
+            sendToOwners(pending);
+            pending.clear();
+        }
+        outbound.drainTo(pending);
+        sendToOwners(pending);
+    }
+
+    /**
+     * Groups the given updates by the current owner of their keys and sends a batch to every owner. Updates of
+     * keys which moved to the local member in the meantime are applied locally.
+     *
+     * @param operations - the updates to be sent
+     */
+    private void sendToOwners(List<ReplicationBatch.Operation> operations) {
+        ConsistentHashRing current = ring;
+        Map<String, ReplicationBatch> batches = new HashMap<String, ReplicationBatch>();
+        for (ReplicationBatch.Operation operation : operations) {
+            String owner = current.ownerOf(operation.getKey());
+            if (localMember.equals(owner)) {
+                applyUpdate(operation);
+                continue;
+            }
+            ReplicationBatch batch = batches.get(owner);
+            if (batch == null) {
+                batch = new ReplicationBatch(cacheName);
+                batches.put(owner, batch);
+            }
+            batch.add(operation);
+        }
+        for (Map.Entry<String, ReplicationBatch> entry : batches.entrySet()) {
+            send(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void send(String member, ReplicationBatch batch) {
+        try {
+            transport.send(member, batch);
+        } catch (CachingException e) {
+            log.warn("Unable to send " + batch.getOperations().size() + " updates of the cache : " + cacheName +
+                             " to member : " + member, e);
+        }
+    }
+
+    /**
+     * Combines the concurrent lookups sent to a single member. The first thread adding a key to an open round
+     * becomes its leader; it waits until the previous round to the member completes, closes its round and sends
+     * all the keys collected meanwhile as one lookup, while the other threads of the round wait for the result.
+     */
+    private final class RemoteLookups {
+
+        private final String member;
+
+        private final Semaphore inFlight = new Semaphore(1);
+
+        private Round open;
+
+        private RemoteLookups(String member) {
+            this.member = member;
+        }
+
+        /**
+         * Looks up a key, waiting at most about twice the remote lookup timeout: once for the lookup in flight to
+         * the member and once for the lookup of the round
+         *
+         * @param key - the key to be looked up
+         * @return CachableResponse of the key, or null if the member does not hold it or does not reply in time
+         */
+        private CachableResponse get(String key) {
+            Round round;
+            boolean leader;
+            synchronized (this) {
+                leader = open == null;
+                if (leader) {
+                    open = new Round();
+                }
+                round = open;
+                round.keys.add(key);
+                if (round.keys.size() >= CachingConstants.REPLICATION_BATCH_SIZE) {
+                    open = null;
+                }
+            }
+            if (leader) {
+                lookup(round);
+            } else {
+                try {
+                    if (!round.done.await(2 * CachingConstants.REMOTE_LOOKUP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                        return null;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+            return round.found.get(key);
+        }
+
+        private void lookup(Round round) {
+            boolean acquired = false;
+            try {
+                acquired = inFlight.tryAcquire(CachingConstants.REMOTE_LOOKUP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (!acquired) {
+                    // the previous lookup is stuck, the keys of this round miss
+                    return;
+                }
+                synchronized (this) {
+                    if (open == round) {
+                        open = null;
+                    }
+                }
+                round.found = transport.get(member, round.keys);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (CachingException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Unable to look up " + round.keys.size() + " keys of the cache : " + cacheName +
+                                      " from member : " + member, e);
+                }
+            } finally {
+                if (acquired) {
+                    inFlight.release();
+                }
+                synchronized (this) {
+                    if (open == round) {
+                        open = null;
+                    }
+                }
+                round.done.countDown();
+            }
+        }
+    }
+
+    /**
+     * The keys of a combined lookup and its result
+     */
+    private static final class Round {
+
+        private final List<String> keys = new ArrayList<String>();
+
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private volatile Map<String, CachableResponse> found = Collections.emptyMap();
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.mediator.cache.json;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A content addressed pool of response payloads. Payloads are indexed by the SHA-256 digest of their bytes, so the
+ * responses of keys which differ only in parameters that do not change the response, like tracking parameters,
+ * share a single payload. Each cached response holding a pooled payload keeps a reference to it, and the payload
+ * leaves the pool when the last of these responses leaves its store.
+ */
+public class PayloadPool {
+
+    /**
+     * Charset of the payloads
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Digest of the current thread, created on first use
+     */
+    private static final ThreadLocal<MessageDigest> digests = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new CachingException("SHA-256 digest is not available", e);
+            }
+        }
+    };
+
+    /**
+     * Hexadecimal digits used to encode the digests
+     */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * The pooled payloads indexed by digest
+     */
+    private final ConcurrentHashMap<String, Payload> payloads = new ConcurrentHashMap<String, Payload>();
+
+    /**
+     * This method gives the pooled payload with the given content, adding it to the pool if it is not pooled yet.
+     * The caller holds a reference to the payload until it releases it.
+     *
+     * @param bytes - content of the payload in UTF-8
+     * @param body  - content of the payload, or null if it has not been decoded from the bytes
+     * @return Payload the pooled payload
+     */
+    public Payload acquire(byte[] bytes, String body) {
+        String digest = digest(bytes);
+        while (true) {
+            Payload payload = payloads.get(digest);
+            if (payload == null) {
+                if (body == null) {
+                    body = new String(bytes, UTF_8);
+                }
+                Payload created = new Payload(this, digest, body);
+                payload = payloads.putIfAbsent(digest, created);
+                if (payload == null) {
+                    return created;
+                }
+            }
+            if (payload.retain()) {
+                return payload;
+            }
+            // the last reference was released concurrently
+            payloads.remove(digest, payload);
+        }
+    }
+
+    /**
+     * This method gives the number of payloads in the pool
+     *
+     * @return int number of pooled payloads
+     */
+    public int size() {
+        return payloads.size();
+    }
+
+    /**
+     * Drops a reference to the given payload and removes it from the pool once it is no longer referenced
+     *
+     * @param payload the payload which is released
+     */
+    void release(Payload payload) {
+        if (payload.references.decrementAndGet() == 0) {
+            payloads.remove(payload.digest, payload);
+        }
+    }
+
+    /**
+     * Computes the hexadecimal SHA-256 digest of the given payload
+     *
+     * @param body the payload
+     * @return String digest of the payload
+     */
+    static String digest(String body) {
+        return digest(body.getBytes(UTF_8));
+    }
+
+    /**
+     * Computes the hexadecimal SHA-256 digest of the given payload bytes
+     *
+     * @param bytes the payload in UTF-8
+     * @return String digest of the payload
+     */
+    static String digest(byte[] bytes) {
+        byte[] hash = digests.get().digest(bytes);
+        char[] chars = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            chars[i * 2] = HEX[(hash[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[hash[i] & 0xf];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * A payload of the pool together with the number of cached responses referring to it
+     */
+    public static final class Payload {
+
+        private final PayloadPool pool;
+
+        private final String digest;
+
+        private final String body;
+
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private Payload(PayloadPool pool, String digest, String body) {
+            this.pool = pool;
+            this.digest = digest;
+            this.body = body;
+        }
+
+        /**
+         * This method gives the content of the payload
+         *
+         * @return String content of the payload
+         */
+        public String getBody() {
+            return body;
+        }
+
+        /**
+         * This method releases the reference held by the caller
+         */
+        public void release() {
+            pool.release(this);
+        }
+
+        /**
+         * Adds a reference unless the payload has already been released by all its references
+         *
+         * @return boolean true if a reference was added and false if not
+         */
+        private boolean retain() {
+            while (true) {
+                int current = references.get();
+                if (current <= 0) {
+                    return false;
+                }
+                if (references.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
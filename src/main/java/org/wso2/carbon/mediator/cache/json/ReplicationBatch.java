@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A batch of cache updates sent from one node to the other nodes of the cluster. Every operation carries the
+ * version of the update so that the receiving nodes only apply updates newer than what they hold.
+ */
+public class ReplicationBatch implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Name of the cache the operations belong to
+     */
+    private final String cacheName;
+
+    /**
+     * The operations of the batch, in the order they were issued
+     */
+    private final List<Operation> operations = new ArrayList<Operation>();
+
+    /**
+     * The tags invalidated by the batch
+     */
+    private final List<String> invalidatedTags = new ArrayList<String>();
+
+    /**
+     * The prefixes of the tags invalidated by the batch
+     */
+    private final List<String> invalidatedPrefixes = new ArrayList<String>();
+
+    /**
+     * Creates an empty batch of the given cache
+     *
+     * @param cacheName - name of the cache the operations belong to
+     */
+    public ReplicationBatch(String cacheName) {
+        this.cacheName = cacheName;
+    }
+
+    /**
+     * This method gives the name of the cache the operations belong to
+     *
+     * @return String name of the cache
+     */
+    public String getCacheName() {
+        return cacheName;
+    }
+
+    /**
+     * This method gives the operations of the batch
+     *
+     * @return List of operations in the order they were issued
+     */
+    public List<Operation> getOperations() {
+        return operations;
+    }
+
+    /**
+     * This method adds an operation to the batch
+     *
+     * @param operation - the operation to be added
+     */
+    public void add(Operation operation) {
+        operations.add(operation);
+    }
+
+    /**
+     * This method adds a tag invalidation to the batch, which the receiving nodes apply to the responses they
+     * indexed under the tags
+     *
+     * @param tags     - the tags invalidated
+     * @param prefixes - the prefixes of the tags invalidated
+     */
+    public void invalidateTags(Collection<String> tags, Collection<String> prefixes) {
+        invalidatedTags.addAll(tags);
+        invalidatedPrefixes.addAll(prefixes);
+    }
+
+    /**
+     * This method gives the tags invalidated by the batch
+     *
+     * @return List of the invalidated tags
+     */
+    public List<String> getInvalidatedTags() {
+        return invalidatedTags;
+    }
+
+    /**
+     * This method gives the prefixes of the tags invalidated by the batch
+     *
+     * @return List of the invalidated prefixes
+     */
+    public List<String> getInvalidatedPrefixes() {
+        return invalidatedPrefixes;
+    }
+
+    /**
+     * A single replicated update. An operation without a response invalidates the key.
+     */
+    public static class Operation implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String key;
+
+        private final long version;
+
+        private final CachableResponse response;
+
+        /**
+         * Creates an operation storing or invalidating a key
+         *
+         * @param key      - request hash of the updated response
+         * @param version  - version of the update
+         * @param response - the new cached response, or null to invalidate the key
+         */
+        public Operation(String key, long version, CachableResponse response) {
+            this.key = key;
+            this.version = version;
+            this.response = response;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public CachableResponse getResponse() {
+            return response;
+        }
+
+        /**
+         * This method checks whether the operation invalidates the key
+         *
+         * @return boolean true if the key is invalidated and false if a response is stored
+         */
+        public boolean isInvalidation() {
+            return response == null;
+        }
+    }
+}
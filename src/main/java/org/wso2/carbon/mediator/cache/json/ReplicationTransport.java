@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+/**
+ * The channel used by a {@link DistributedCacheStore} to exchange replication batches with the other nodes of the
+ * cluster. Batches are sent from the replicator thread of the store, never from a mediation thread.
+ */
+public interface ReplicationTransport {
+
+    /**
+     * This method connects the transport for the given cache
+     *
+     * @param cacheName - name of the replicated cache
+     * @param listener  - listener receiving the batches sent by the other nodes
+     * @throws CachingException if the transport cannot be connected
+     */
+    void start(String cacheName, Listener listener) throws CachingException;
+
+    /**
+     * This method sends the given batch to all the other nodes of the cluster
+     *
+     * @param batch - the batch to be sent
+     * @throws CachingException if the batch cannot be sent
+     */
+    void send(ReplicationBatch batch) throws CachingException;
+
+    /**
+     * This method disconnects the transport
+     */
+    void stop();
+
+    /**
+     * Receiver of the batches sent by the other nodes
+     */
+    interface Listener {
+
+        /**
+         * This method applies a batch received from another node
+         *
+         * @param batch - the received batch
+         */
+        void onBatch(ReplicationBatch batch);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import java.util.Map;
+
+/**
+ * A cached response converted to another message type, which is served as it is to the clients negotiating that
+ * message type. A representation is held by the cached response it was converted from and is dropped with it.
+ */
+public final class Representation {
+
+    /**
+     * The message type of the representation
+     */
+    private final String messageType;
+
+    /**
+     * The payload of the representation
+     */
+    private final String payload;
+
+    /**
+     * The header properties of the representation, announcing its message type
+     */
+    private final Map<String, Object> headerProperties;
+
+    /**
+     * Creates a representation of the given message type
+     *
+     * @param messageType      - the message type of the representation
+     * @param payload          - the payload of the representation
+     * @param headerProperties - the header properties of the representation
+     */
+    public Representation(String messageType, String payload, Map<String, Object> headerProperties) {
+        this.messageType = messageType;
+        this.payload = payload;
+        this.headerProperties = HeaderSet.of(headerProperties);
+    }
+
+    /**
+     * This method gives the message type of the representation
+     *
+     * @return String the message type
+     */
+    public String getMessageType() {
+        return messageType;
+    }
+
+    /**
+     * This method gives the payload of the representation
+     *
+     * @return String the payload
+     */
+    public String getPayload() {
+        return payload;
+    }
+
+    /**
+     * This method gives the header properties of the representation
+     *
+     * @return Map the header properties, which are shared by the hits and must not be modified
+     */
+    public Map<String, Object> getHeaderProperties() {
+        return headerProperties;
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import org.apache.axiom.om.OMElement;
+import org.apache.axis2.AxisFault;
+import org.apache.axis2.Constants;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.commons.json.JsonUtil;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The XML message types a cache serves its JSON responses in besides JSON. A client negotiating one of them with
+ * the Accept header of its request gets the XML form of the cached response, which is converted once and kept with
+ * the response, instead of the JSON payload being converted by the message formatter on every hit. The
+ * representations are produced when the response is stored if the representations are eager, and otherwise on the
+ * first request negotiating them.
+ */
+public final class Representations {
+
+    /**
+     * Log object to use when logging is required in this class.
+     */
+    private static final Log log = LogFactory.getLog(Representations.class);
+
+    /**
+     * The message type of the cached payloads
+     */
+    private static final String JSON_MESSAGE_TYPE = "application/json";
+
+    /**
+     * Charset of the cached payloads
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * The configured message types, in lower case and in the order of preference
+     */
+    private final String[] messageTypes;
+
+    /**
+     * Whether the representations are produced when the response is stored
+     */
+    private final boolean eager;
+
+    /**
+     * Creates the representations of the given message types
+     *
+     * @param messageTypes - comma separated message types, such as application/xml,text/xml
+     * @param eager        - true to produce the representations when the responses are stored
+     * @throws CachingException if no message type is given
+     */
+    public Representations(String messageTypes, boolean eager) throws CachingException {
+        List<String> types = new ArrayList<String>();
+        for (String type : messageTypes.split(",")) {
+            type = type.trim().toLowerCase(Locale.ENGLISH);
+            if (!type.isEmpty() && !types.contains(type)) {
+                types.add(type);
+            }
+        }
+        if (types.isEmpty()) {
+            throw new CachingException("No message type is given for the representations : " + messageTypes);
+        }
+        this.messageTypes = types.toArray(new String[types.size()]);
+        this.eager = eager;
+    }
+
+    /**
+     * This method checks whether the representations are produced when the responses are stored
+     *
+     * @return boolean true if the representations are eager and false if they are produced on demand
+     */
+    public boolean isEager() {
+        return eager;
+    }
+
+    /**
+     * This method gives the message type negotiated by the given Accept header of a request
+     *
+     * @param accept - value of the Accept header of the request, or null if there is none
+     * @return String the negotiated message type, or null if the client gets the JSON payload
+     */
+    public String negotiate(Object accept) {
+        if (accept == null) {
+            return null;
+        }
+        String[] ranges = accept.toString().split(",");
+        String negotiated = null;
+        float best = quality(ranges, JSON_MESSAGE_TYPE);
+        for (String type : messageTypes) {
+            // JSON wins the ties, it is served without any conversion
+            float quality = quality(ranges, type);
+            if (quality > best) {
+                negotiated = type;
+                best = quality;
+            }
+        }
+        return negotiated;
+    }
+
+    /**
+     * This method gives the representation of the given cached response in the given message type, converting the
+     * response if it is not held yet
+     *
+     * @param response    - the cached response
+     * @param messageType - one of the configured message types
+     * @return Representation the representation, or null if the response cannot be converted
+     */
+    public Representation get(CachableResponse response, String messageType) {
+        Representation representation = response.getRepresentation(messageType);
+        if (representation == null) {
+            representation = convert(response, messageType);
+            if (representation != null) {
+                response.addRepresentation(representation);
+            }
+        }
+        return representation;
+    }
+
+    /**
+     * This method produces the representations of the given cached response in all the configured message types,
+     * before the response is stored
+     *
+     * @param response - the cached response
+     */
+    public void produce(CachableResponse response) {
+        for (String type : messageTypes) {
+            get(response, type);
+        }
+    }
+
+    /**
+     * This method converts the JSON payload of the given cached response into its XML form
+     *
+     * @param response    - the cached response
+     * @param messageType - the message type of the representation
+     * @return Representation the representation, or null if the payload cannot be converted
+     */
+    private static Representation convert(CachableResponse response, String messageType) {
+        String payload = response.getResponsePayload();
+        if (payload == null) {
+            return null;
+        }
+        OMElement xml;
+        try {
+            xml = JsonUtil.toXml(new ByteArrayInputStream(payload.getBytes(UTF_8)), false);
+        } catch (AxisFault e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Cached response : " + response.getRequestHash() + " cannot be converted to : " +
+                                  messageType, e);
+            }
+            return null;
+        }
+        Map<String, Object> headers = new HashMap<String, Object>();
+        if (response.getHeaderProperties() != null) {
+            headers.putAll(response.getHeaderProperties());
+        }
+        for (Iterator<String> names = headers.keySet().iterator(); names.hasNext(); ) {
+            String name = names.next();
+            if ("Content-Type".equalsIgnoreCase(name) || "Content-Length".equalsIgnoreCase(name)) {
+                names.remove();
+            }
+        }
+        headers.put("Content-Type", messageType);
+        headers.put(Constants.Configuration.MESSAGE_TYPE, messageType);
+        return new Representation(messageType, xml.toString(), headers);
+    }
+
+    /**
+     * This method gives the quality the given media ranges of an Accept header assign to the given message type,
+     * taken from the most specific range matching the message type
+     *
+     * @param ranges      - the media ranges of the Accept header
+     * @param messageType - the message type in lower case
+     * @return float the quality, or 0 if no range matches the message type
+     */
+    private static float quality(String[] ranges, String messageType) {
+        float quality = 0;
+        int specificity = -1;
+        for (String range : ranges) {
+            String[] params = range.split(";");
+            String type = params[0].trim().toLowerCase(Locale.ENGLISH);
+            int matched;
+            if (type.equals(messageType)) {
+                matched = 2;
+            } else if (type.endsWith("/*") && messageType.startsWith(type.substring(0, type.length() - 1))) {
+                matched = 1;
+            } else if (type.equals("*/*") || type.equals("*")) {
+                matched = 0;
+            } else {
+                continue;
+            }
+            if (matched > specificity) {
+                specificity = matched;
+                quality = 1;
+                for (int i = 1; i < params.length; i++) {
+                    String param = params[i].trim();
+                    if (param.startsWith("q=")) {
+                        try {
+                            quality = Float.parseFloat(param.substring(2));
+                        } catch (NumberFormatException e) {
+                            quality = 0;
+                        }
+                    }
+                }
+            }
+        }
+        return quality;
+    }
+}
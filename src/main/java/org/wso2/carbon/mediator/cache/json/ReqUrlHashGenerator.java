@@ -8,7 +8,7 @@ import java.io.UnsupportedEncodingException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
-public class ReqUrlHashGenerator implements DigestGenerator{
+public class ReqUrlHashGenerator implements ContentAwareDigestGenerator {
 
     private static final Log log = LogFactory.getLog(ReqUrlHashGenerator.class);
 
@@ -25,6 +25,11 @@ public class ReqUrlHashGenerator implements DigestGenerator{
         return digest != null ? getStringRepresentation(digest) : null;
     }
 
+    public boolean isContentAware() {
+        // only the To address is read
+        return false;
+    }
+
     public byte[] getDigest(String toAddress, String digestAlgorithm) throws CachingException {
 
         byte[] digest = new byte[0];
@@ -17,12 +17,24 @@
  */
 package org.wso2.carbon.mediator.cache.json;
 
-import java.io.Serializable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 
 /**
- * Represents a SOAP Request Hash
+ * Represents a SOAP Request Hash. The binary form is a format version followed by the
+ * hash as a length prefixed UTF-8 string, if the hash is not null.
  */
-public class RequestHash implements Serializable {
+public class RequestHash implements Externalizable {
+
+	private static final long serialVersionUID = 2L;
+
+	/**
+	 * Version of the binary form written by this class
+	 */
+	private static final int FORMAT_VERSION = 1;
 
 	/**
 	 * This holds the hash value of the request payload which is calculated form the specified DigestGenerator,
@@ -30,6 +42,12 @@ public class RequestHash implements Serializable {
 	 */
 	public String requestHash;
 
+	/**
+	 * RequestHash constructor used by the deserialization
+	 */
+	public RequestHash() {
+	}
+
 	/**
 	 * RequestHash constructor sets the hash of the request to the cache
 	 *
@@ -48,6 +66,23 @@ public class RequestHash implements Serializable {
 		return requestHash;
 	}
 
+	public void writeExternal(ObjectOutput out) throws IOException {
+		out.writeByte(FORMAT_VERSION);
+		out.writeBoolean(requestHash != null);
+		if (requestHash != null) {
+			BinaryCodec.writeString(out, requestHash);
+		}
+	}
+
+	public void readExternal(ObjectInput in) throws IOException {
+		int formatVersion = in.readUnsignedByte();
+		if (formatVersion > FORMAT_VERSION) {
+			throw new InvalidClassException(RequestHash.class.getName(),
+					"Unsupported format version : " + formatVersion);
+		}
+		requestHash = in.readBoolean() ? BinaryCodec.readString(in) : null;
+	}
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import org.apache.axis2.AxisFault;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.commons.json.JsonUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The spool of a cache, which keeps the payloads of responses larger than a threshold in files of a local directory
+ * instead of on the heap. The payload of a response is read in chunks into memory up to the threshold; a larger
+ * payload is then copied chunk by chunk into a spool file and the message is given a stream of the file, so that
+ * the payload is never held whole by the cache. Spool files are local to the node and do not outlive the process;
+ * the files left behind by a previous process are deleted when a directory is first used.
+ */
+public final class ResponseSpool {
+
+    /**
+     * Log object to use when logging is required in this class.
+     */
+    private static final Log log = LogFactory.getLog(ResponseSpool.class);
+
+    /**
+     * Prefix of the names of the spool files
+     */
+    private static final String FILE_PREFIX = "json-cache-";
+
+    /**
+     * Suffix of the names of the spool files
+     */
+    private static final String FILE_SUFFIX = ".spool";
+
+    /**
+     * Name of the spool directory in the temporary directory, used if no directory is configured
+     */
+    private static final String DEFAULT_DIRECTORY = "json-cache-spool";
+
+    /**
+     * Size of the chunks the payloads are copied in
+     */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * The directories which have been cleared of the files of a previous process
+     */
+    private static final Set<File> sweptDirectories = new HashSet<File>();
+
+    /**
+     * The directory of the spool files
+     */
+    private final File directory;
+
+    /**
+     * The size in bytes above which payloads are spooled
+     */
+    private final long threshold;
+
+    /**
+     * Creates the spool of the given directory
+     *
+     * @param directory - path of the directory of the spool files, or null to use the temporary directory
+     * @param threshold - the size in bytes above which payloads are spooled
+     * @throws CachingException if the directory cannot be created
+     */
+    public ResponseSpool(String directory, long threshold) throws CachingException {
+        this.directory = directory != null ?
+                new File(directory) : new File(System.getProperty("java.io.tmpdir"), DEFAULT_DIRECTORY);
+        this.threshold = threshold;
+        if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+            throw new CachingException("Unable to create the spool directory : " + this.directory);
+        }
+        sweep(this.directory.getAbsoluteFile());
+    }
+
+    /**
+     * This method gives the size above which payloads are spooled
+     *
+     * @return long the threshold in bytes
+     */
+    public long getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * This method spools the JSON payload of the given message if it is larger than the threshold, in which case
+     * the message is given a stream of the spool file. A smaller payload is given back to the message as it was
+     * read. If the payload cannot be spooled, the message is given back the payload read so far followed by the
+     * rest of it before the error is reported.
+     *
+     * @param msgCtx - the axis2 message context of the response
+     * @return SpooledPayload the spooled payload, or null if the payload is not larger than the threshold
+     * @throws CachingException if the payload cannot be spooled
+     */
+    public SpooledPayload capture(org.apache.axis2.context.MessageContext msgCtx) throws CachingException {
+        InputStream in = JsonUtil.getJsonPayload(msgCtx);
+        if (in == null) {
+            return null;
+        }
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        byte[] chunk = new byte[CHUNK_SIZE];
+        int read = 0;
+        try {
+            while (head.size() <= threshold && (read = in.read(chunk)) != -1) {
+                head.write(chunk, 0, read);
+            }
+        } catch (IOException e) {
+            restore(msgCtx, null, 0, head.toByteArray(), head.size(), in);
+            throw new CachingException("Error while reading the response payload", e);
+        }
+        byte[] pending = head.toByteArray();
+        if (read == -1) {
+            // the whole payload is within the threshold, it is kept in memory
+            setPayload(msgCtx, new ByteArrayInputStream(pending));
+            return null;
+        }
+
+        File file = null;
+        OutputStream out = null;
+        long written = 0;
+        int pendingLength = pending.length;
+        try {
+            file = File.createTempFile(FILE_PREFIX, FILE_SUFFIX, directory);
+            out = new FileOutputStream(file);
+            out.write(pending, 0, pendingLength);
+            written = pendingLength;
+            pending = chunk;
+            pendingLength = 0;
+            int n;
+            while ((n = in.read(chunk)) != -1) {
+                pendingLength = n;
+                out.write(chunk, 0, n);
+                written += n;
+                pendingLength = 0;
+            }
+            out.close();
+        } catch (IOException e) {
+            closeQuietly(out);
+            restore(msgCtx, file, written, pending, pendingLength, in);
+            throw new CachingException("Error while spooling the response payload into : " + directory, e);
+        }
+        SpooledPayload spooled = new SpooledPayload(file, written);
+        try {
+            setPayload(msgCtx, spooled.open());
+        } catch (IOException e) {
+            spooled.release();
+            throw new CachingException("Error while reading the spooled response payload : " + file, e);
+        }
+        return spooled;
+    }
+
+    /**
+     * Gives the message back the part of its payload which has been read and the rest of it, after a failure to
+     * spool the payload. The part which has been read is in the spool file, if any, and in the pending bytes which
+     * were being written when the failure happened.
+     *
+     * @param msgCtx        - the axis2 message context of the response
+     * @param file          - the spool file, or null if it has not been created
+     * @param written       - number of bytes written to the file before the pending bytes
+     * @param pending       - the bytes being written when the failure happened
+     * @param pendingLength - number of pending bytes
+     * @param rest          - the stream of the rest of the payload
+     * @throws CachingException if the payload cannot be given back
+     */
+    private static void restore(org.apache.axis2.context.MessageContext msgCtx, File file, long written,
+                                byte[] pending, int pendingLength, InputStream rest) throws CachingException {
+        List<InputStream> parts = new ArrayList<InputStream>(3);
+        SpooledPayload partial = file != null ? new SpooledPayload(file, file.length()) : null;
+        int skip = 0;
+        try {
+            if (partial != null && partial.getLength() > 0) {
+                // a failed write may have left part of the pending bytes in the file
+                skip = (int) Math.min(Math.max(partial.getLength() - written, 0), pendingLength);
+                parts.add(partial.open());
+            }
+            parts.add(new ByteArrayInputStream(pending, skip, pendingLength - skip));
+            parts.add(rest);
+            setPayload(msgCtx, new SequenceInputStream(Collections.enumeration(parts)));
+        } catch (IOException e) {
+            throw new CachingException("Error while restoring the response payload", e);
+        } finally {
+            if (partial != null) {
+                // the file is deleted once the message has read it
+                partial.release();
+            }
+        }
+    }
+
+    /**
+     * Sets the given stream as the JSON payload of the message
+     *
+     * @param msgCtx  - the axis2 message context of the response
+     * @param payload - the stream of the payload
+     * @throws CachingException if the payload cannot be set
+     */
+    private static void setPayload(org.apache.axis2.context.MessageContext msgCtx, InputStream payload)
+            throws CachingException {
+        try {
+            JsonUtil.getNewJsonPayload(msgCtx, payload, true, true);
+        } catch (AxisFault e) {
+            throw new CachingException("Error while setting the response payload", e);
+        }
+    }
+
+    private static void closeQuietly(OutputStream out) {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                log.debug("Error while closing a spool file", e);
+            }
+        }
+    }
+
+    /**
+     * Deletes the spool files left in the given directory by a previous process, once per directory
+     *
+     * @param directory - the absolute path of the spool directory
+     */
+    private static void sweep(File directory) {
+        synchronized (sweptDirectories) {
+            if (!sweptDirectories.add(directory)) {
+                return;
+            }
+        }
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        int deleted = 0;
+        for (File file : files) {
+            String name = file.getName();
+            if (name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX) && file.delete()) {
+                deleted++;
+            }
+        }
+        if (deleted > 0 && log.isDebugEnabled()) {
+            log.debug("Deleted " + deleted + " spool files of a previous process from : " + directory);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A response payload kept in a spool file on the local disk rather than on the heap. The file belongs to the cached
+ * response holding it and is released once the response leaves its store. A hit opens the file for reading, and the
+ * file is counted as referenced by each open stream, so that it is deleted when the last stream reading it is closed
+ * after it was released, and a hit which opened it before it was released still reads it whole.
+ */
+public final class SpooledPayload {
+
+    /**
+     * Log object to use when logging is required in this class.
+     */
+    private static final Log log = LogFactory.getLog(SpooledPayload.class);
+
+    /**
+     * The spool file holding the payload
+     */
+    private final File file;
+
+    /**
+     * The length of the payload in bytes
+     */
+    private final long length;
+
+    /**
+     * The number of references to the spool file, which are the owner of the payload until it releases it and the
+     * streams which have not been closed yet
+     */
+    private int references = 1;
+
+    /**
+     * Whether the owner of the payload has released it
+     */
+    private boolean released;
+
+    /**
+     * Creates a payload held by the given spool file
+     *
+     * @param file   - the spool file holding the payload
+     * @param length - the length of the payload in bytes
+     */
+    SpooledPayload(File file, long length) {
+        this.file = file;
+        this.length = length;
+    }
+
+    /**
+     * This method gives the length of the payload
+     *
+     * @return long the length of the payload in bytes
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * This method checks whether the payload can still be read
+     *
+     * @return boolean true if the payload can be read and false if it has been released or its file has been removed
+     */
+    public synchronized boolean exists() {
+        return !released && file.isFile();
+    }
+
+    /**
+     * This method opens the payload for reading. The stream closes itself once it is read to its end, and the spool
+     * file is kept until the stream is closed.
+     *
+     * @return InputStream the stream of the payload
+     * @throws IOException if the payload has been released or the spool file cannot be opened
+     */
+    public InputStream open() throws IOException {
+        synchronized (this) {
+            if (released) {
+                throw new FileNotFoundException("The spooled payload has been released : " + file);
+            }
+            references++;
+        }
+        try {
+            return new ClosingInputStream(new FileInputStream(file));
+        } catch (IOException e) {
+            unreference();
+            throw e;
+        }
+    }
+
+    /**
+     * This method releases the payload on behalf of its owner. The spool file is deleted at once if no stream is
+     * reading it, or else when the last of them is closed. Releasing a released payload has no effect.
+     */
+    void release() {
+        synchronized (this) {
+            if (released) {
+                return;
+            }
+            released = true;
+        }
+        unreference();
+    }
+
+    /**
+     * Drops a reference to the spool file, deleting the file if it was the last one
+     */
+    private void unreference() {
+        synchronized (this) {
+            if (--references > 0) {
+                return;
+            }
+        }
+        if (!file.delete() && file.exists()) {
+            log.warn("Unable to delete the spool file : " + file);
+        }
+    }
+
+    /**
+     * A stream which closes the stream it reads once its end is reached, as the streams handed to the message are
+     * not closed by their readers, and drops its reference to the spool file when it is closed.
+     */
+    private final class ClosingInputStream extends FilterInputStream {
+
+        /**
+         * Whether the stream has been closed
+         */
+        private boolean closed;
+
+        private ClosingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() throws IOException {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            try {
+                super.close();
+            } finally {
+                unreference();
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read == -1) {
+                close();
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read == -1) {
+                close();
+            }
+            return read;
+        }
+    }
+}
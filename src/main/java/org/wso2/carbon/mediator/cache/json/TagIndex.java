@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The secondary index of a cache mapping tags to the keys of the cached responses carrying them. Invalidating a
+ * tag removes the keys found in its index entry from the store, which costs O(matches) instead of a scan of the
+ * cache. Tags are kept sorted so that all the tags starting with a prefix can be invalidated together.
+ * <p/>
+ * Keys are indexed together with the response which carried the tags, and invalidating a tag removes a key only
+ * if the store still holds that response, so a newer response of the key which does not carry the tag survives.
+ * The response is only weakly referenced, so the index never keeps a response alive after the store has evicted
+ * it; such a key is skipped on invalidation since the store can no longer hold that response. Keys whose response
+ * has expired or been collected are pruned from a tag whenever its entry has doubled in size since it was last
+ * pruned, so tags which are never invalidated do not grow without bound.
+ */
+public class TagIndex {
+
+    /**
+     * Minimum size of a tag entry before it is pruned
+     */
+    private static final int MIN_PRUNE_SIZE = 64;
+
+    /**
+     * The index entries indexed by tag
+     */
+    private final ConcurrentSkipListMap<String, Entry> tags = new ConcurrentSkipListMap<String, Entry>();
+
+    /**
+     * This method indexes the given key under the tags of the given response
+     *
+     * @param key      - request hash of the cached response
+     * @param response - the cached response, as held by the store
+     */
+    public void tag(String key, CachableResponse response) {
+        for (String tag : response.getTags()) {
+            while (true) {
+                Entry entry = tags.get(tag);
+                if (entry == null) {
+                    Entry created = new Entry();
+                    entry = tags.putIfAbsent(tag, created);
+                    if (entry == null) {
+                        entry = created;
+                    }
+                }
+                entry.keys.put(key, new WeakReference<CachableResponse>(response));
+                if (!entry.invalidated) {
+                    entry.pruneIfNeeded();
+                    break;
+                }
+                // the tag was invalidated concurrently, index the key under a new entry
+            }
+        }
+    }
+
+    /**
+     * This method removes the responses carrying any of the given tags from the given store
+     *
+     * @param store       - the store of the cache
+     * @param invalidated - the tags to be invalidated
+     * @return int number of responses removed
+     */
+    public int invalidate(CacheStore store, Collection<String> invalidated) {
+        int removed = 0;
+        for (String tag : invalidated) {
+            removed += invalidate(store, tags.remove(tag));
+        }
+        return removed;
+    }
+
+    /**
+     * This method removes the responses carrying any tag starting with the given prefix from the given store
+     *
+     * @param store  - the store of the cache
+     * @param prefix - prefix of the tags to be invalidated
+     * @return int number of responses removed
+     */
+    public int invalidatePrefix(CacheStore store, String prefix) {
+        ConcurrentNavigableMap<String, Entry> matching =
+                tags.subMap(prefix, true, prefix + Character.MAX_VALUE, true);
+        List<String> matchingTags = new ArrayList<String>(matching.keySet());
+        return invalidate(store, matchingTags);
+    }
+
+    /**
+     * This method gives the number of indexed tags
+     *
+     * @return int number of tags
+     */
+    public int size() {
+        return tags.size();
+    }
+
+    private static int invalidate(CacheStore store, Entry entry) {
+        if (entry == null) {
+            return 0;
+        }
+        entry.invalidated = true;
+        int removed = 0;
+        for (Map.Entry<String, WeakReference<CachableResponse>> key : entry.keys.entrySet()) {
+            CachableResponse response = key.getValue().get();
+            if (response != null && store.remove(key.getKey(), response)) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * The keys indexed under a tag with weak references to the responses which carried the tag
+     */
+    private static final class Entry {
+
+        private final ConcurrentHashMap<String, WeakReference<CachableResponse>> keys =
+                new ConcurrentHashMap<String, WeakReference<CachableResponse>>();
+
+        private volatile int pruneAt = MIN_PRUNE_SIZE;
+
+        private volatile boolean invalidated;
+
+        private void pruneIfNeeded() {
+            if (keys.size() < pruneAt) {
+                return;
+            }
+            synchronized (this) {
+                if (keys.size() < pruneAt) {
+                    return;
+                }
+                long now = CoarseClock.currentTimeMillis();
+                for (Map.Entry<String, WeakReference<CachableResponse>> key : keys.entrySet()) {
+                    CachableResponse response = key.getValue().get();
+                    if (response == null || response.getExpireTimeMillis() < now) {
+                        keys.remove(key.getKey(), key.getValue());
+                    }
+                }
+                pruneAt = Math.max(MIN_PRUNE_SIZE, keys.size() * 2);
+            }
+        }
+    }
+}
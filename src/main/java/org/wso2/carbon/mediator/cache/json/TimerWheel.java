@@ -0,0 +1,309 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A hierarchical timer wheel used to actively expire cached responses. Timeouts are kept in doubly linked slot
+ * lists, so scheduling and cancelling are O(1). Each level covers {@link #WHEEL_SIZE} times the range of the level
+ * below it, and a slot of a higher level is cascaded into the lower levels when the lower level wraps around.
+ * Timeouts further away than the range of the top level are parked in its last slot and re-inserted when reached.
+ */
+public class TimerWheel {
+
+    /**
+     * Log object to use when logging is required in this class.
+     */
+    private static final Log log = LogFactory.getLog(TimerWheel.class);
+
+    /**
+     * Number of bits used to index the slots of a single level
+     */
+    private static final int WHEEL_BITS = 6;
+
+    /**
+     * Number of slots in a single level
+     */
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+
+    /**
+     * Mask to get the slot index of a level from a tick
+     */
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    /**
+     * Number of levels of the wheel
+     */
+    private static final int LEVELS = 4;
+
+    /**
+     * Number of ticks covered by all the levels together
+     */
+    private static final long MAX_TICKS = 1L << (WHEEL_BITS * LEVELS);
+
+    /**
+     * Duration of a single tick in milliseconds
+     */
+    private final long tickMillis;
+
+    /**
+     * Time at which tick 0 started, in the standard java system time format
+     */
+    private final long startTime;
+
+    /**
+     * Sentinel heads of the slot lists, indexed by level and slot
+     */
+    private final Timeout[][] wheels = new Timeout[LEVELS][WHEEL_SIZE];
+
+    /**
+     * The last tick which has been processed
+     */
+    private long currentTick;
+
+    /**
+     * Thread which advances the wheel, created on {@link #start()}
+     */
+    private ScheduledExecutorService ticker;
+
+    /**
+     * Creates a timer wheel advancing by the given tick duration
+     *
+     * @param tickMillis duration of a single tick in milliseconds
+     */
+    public TimerWheel(long tickMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("Tick duration must be positive : " + tickMillis);
+        }
+        this.tickMillis = tickMillis;
+        this.startTime = System.currentTimeMillis();
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < WHEEL_SIZE; slot++) {
+                Timeout head = new Sentinel();
+                head.prev = head;
+                head.next = head;
+                wheels[level][slot] = head;
+            }
+        }
+    }
+
+    /**
+     * Starts the daemon thread which advances this wheel once per tick. Calling this on a started wheel has no
+     * effect.
+     */
+    public synchronized void start() {
+        if (ticker != null) {
+            return;
+        }
+        ticker = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "json-cache-expiry-wheel");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        ticker.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                advance(System.currentTimeMillis());
+            }
+        }, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the thread which advances this wheel. Scheduled timeouts are kept and fire after a restart.
+     */
+    public synchronized void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+            ticker = null;
+        }
+    }
+
+    /**
+     * Schedules the given timeout to fire at the given time. A timeout which is already scheduled is moved to the
+     * new time.
+     *
+     * @param timeout        the timeout to be scheduled
+     * @param deadlineMillis time at which the timeout fires in the standard java system time format
+     */
+    public synchronized void schedule(Timeout timeout, long deadlineMillis) {
+        if (timeout.next != null) {
+            timeout.unlink();
+        }
+        long deadlineTick = (deadlineMillis - startTime + tickMillis - 1) / tickMillis;
+        timeout.deadlineTick = Math.max(deadlineTick, currentTick + 1);
+        timeout.wheel = this;
+        insert(timeout);
+    }
+
+    /**
+     * Processes all the ticks up to the given time and fires the timeouts which became due. The timeouts are fired
+     * outside the lock of the wheel so that they can schedule or cancel other timeouts.
+     *
+     * @param nowMillis current time in the standard java system time format
+     */
+    public void advance(long nowMillis) {
+        long targetTick = (nowMillis - startTime) / tickMillis;
+        List<Timeout> expired = null;
+        synchronized (this) {
+            while (currentTick < targetTick) {
+                currentTick++;
+                for (int level = 1; level < LEVELS; level++) {
+                    int shift = WHEEL_BITS * level;
+                    if ((currentTick & ((1L << shift) - 1)) != 0) {
+                        break;
+                    }
+                    cascade(wheels[level][(int) ((currentTick >>> shift) & WHEEL_MASK)]);
+                }
+                Timeout head = wheels[0][(int) (currentTick & WHEEL_MASK)];
+                while (head.next != head) {
+                    Timeout timeout = head.next;
+                    timeout.unlink();
+                    if (timeout.deadlineTick > currentTick) {
+                        // parked beyond the range of the wheel
+                        insert(timeout);
+                    } else {
+                        if (expired == null) {
+                            expired = new ArrayList<Timeout>();
+                        }
+                        expired.add(timeout);
+                    }
+                }
+            }
+        }
+        if (expired != null) {
+            for (Timeout timeout : expired) {
+                try {
+                    timeout.expire();
+                } catch (RuntimeException e) {
+                    log.warn("Error while expiring a cache timeout", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves all the timeouts of the given slot into the levels matching their remaining ticks
+     *
+     * @param head sentinel head of the slot to be cascaded
+     */
+    private void cascade(Timeout head) {
+        while (head.next != head) {
+            Timeout timeout = head.next;
+            timeout.unlink();
+            insert(timeout);
+        }
+    }
+
+    /**
+     * Links the given timeout into the slot matching its remaining ticks
+     *
+     * @param timeout the timeout to be linked
+     */
+    private void insert(Timeout timeout) {
+        long slotTick = timeout.deadlineTick;
+        long delta = slotTick - currentTick;
+        if (delta >= MAX_TICKS) {
+            slotTick = currentTick + MAX_TICKS - 1;
+            delta = MAX_TICKS - 1;
+        }
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (WHEEL_BITS * (level + 1)))) {
+            level++;
+        }
+        Timeout head = wheels[level][(int) ((slotTick >>> (WHEEL_BITS * level)) & WHEEL_MASK)];
+        timeout.prev = head.prev;
+        timeout.next = head;
+        head.prev.next = timeout;
+        head.prev = timeout;
+    }
+
+    /**
+     * An entry of the timer wheel. Implementations define the action taken when the timeout fires.
+     */
+    public abstract static class Timeout {
+
+        private Timeout prev;
+
+        private Timeout next;
+
+        private long deadlineTick;
+
+        private TimerWheel wheel;
+
+        /**
+         * This method is invoked by the ticker thread when the timeout fires
+         */
+        protected abstract void expire();
+
+        /**
+         * This method moves this timeout to a new time on the wheel it was last scheduled in
+         *
+         * @param deadlineMillis time at which the timeout fires in the standard java system time format
+         */
+        protected void reschedule(long deadlineMillis) {
+            wheel.schedule(this, deadlineMillis);
+        }
+
+        /**
+         * This method removes this timeout from the wheel it is scheduled in
+         *
+         * @return boolean true if the timeout was scheduled and false if not
+         */
+        public boolean cancel() {
+            TimerWheel owner = wheel;
+            if (owner == null) {
+                return false;
+            }
+            synchronized (owner) {
+                if (next == null) {
+                    return false;
+                }
+                unlink();
+                return true;
+            }
+        }
+
+        private void unlink() {
+            prev.next = next;
+            next.prev = prev;
+            prev = null;
+            next = null;
+        }
+    }
+
+    /**
+     * Head of a slot list which is never fired
+     */
+    private static final class Sentinel extends Timeout {
+
+        @Override
+        protected void expire() {
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The variants of a response which varies on request headers, as announced by the Vary header of the backend. The
+ * table is held by the cached response stored against the request hash, so all the variants share the key, the
+ * tags and the expiry of that response and leave the cache together with it. A variant is selected by the values
+ * of the varying headers in the request. The table is immutable and keeps its variants in two parallel arrays;
+ * storing a variant creates a new table, which drops the expired variants and, beyond the maximum number of
+ * variants, the variant expiring first.
+ */
+public final class VariantTable {
+
+    /**
+     * Separator of the header values in the key of a variant
+     */
+    private static final char VALUE_SEPARATOR = '\n';
+
+    /**
+     * Names of the varying headers, in lower case and in ascending order
+     */
+    private final String[] vary;
+
+    /**
+     * Keys of the variants
+     */
+    private final String[] keys;
+
+    /**
+     * Variants in the order of their keys
+     */
+    private final CachableResponse[] variants;
+
+    /**
+     * Creates a table of the given variants
+     *
+     * @param vary     - names of the varying headers, in lower case and in ascending order
+     * @param keys     - keys of the variants
+     * @param variants - variants in the order of their keys
+     */
+    VariantTable(String[] vary, String[] keys, CachableResponse[] variants) {
+        this.vary = vary;
+        this.keys = keys;
+        this.variants = variants;
+    }
+
+    /**
+     * This method gives the names of the headers named by the given Vary header
+     *
+     * @param varyHeader - value of the Vary header of a response
+     * @return String[] names of the headers in lower case and in ascending order, empty if the response does not
+     * vary, or null if the response varies on something else than request headers and cannot be cached
+     */
+    public static String[] parseVary(Object varyHeader) {
+        if (varyHeader == null) {
+            return new String[0];
+        }
+        List<String> names = new ArrayList<String>();
+        for (String name : varyHeader.toString().split(",")) {
+            name = name.trim().toLowerCase(Locale.ENGLISH);
+            if ("*".equals(name)) {
+                return null;
+            } else if (!name.isEmpty() && !names.contains(name)) {
+                names.add(name);
+            }
+        }
+        String[] sorted = names.toArray(new String[names.size()]);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * This method creates a table holding a single variant
+     *
+     * @param vary    - names of the varying headers, as given by {@link #parseVary(Object)}
+     * @param key     - key of the variant
+     * @param variant - the variant
+     * @return VariantTable the table
+     */
+    public static VariantTable of(String[] vary, String key, CachableResponse variant) {
+        return new VariantTable(vary, new String[]{key}, new CachableResponse[]{variant});
+    }
+
+    /**
+     * This method gives the key of the variant selected by the given request headers
+     *
+     * @param vary           - names of the varying headers, as given by {@link #parseVary(Object)}
+     * @param requestHeaders - the headers of the request, or null if there are none
+     * @return String key of the variant
+     */
+    public static String keyOf(String[] vary, Map<String, ?> requestHeaders) {
+        StringBuilder key = new StringBuilder();
+        for (String name : vary) {
+            Object value = requestHeaders != null ? requestHeaders.get(name) : null;
+            if (value == null && requestHeaders != null) {
+                for (Map.Entry<String, ?> header : requestHeaders.entrySet()) {
+                    if (name.equalsIgnoreCase(header.getKey())) {
+                        value = header.getValue();
+                        break;
+                    }
+                }
+            }
+            if (value != null) {
+                key.append(value.toString().trim());
+            }
+            key.append(VALUE_SEPARATOR);
+        }
+        return key.toString();
+    }
+
+    /**
+     * This method gives the key of the variant selected by the given request headers in this table
+     *
+     * @param requestHeaders - the headers of the request, or null if there are none
+     * @return String key of the variant
+     */
+    public String keyOf(Map<String, ?> requestHeaders) {
+        return keyOf(vary, requestHeaders);
+    }
+
+    /**
+     * This method checks whether the variants of this table vary on the given headers
+     *
+     * @param names - names of the varying headers, as given by {@link #parseVary(Object)}
+     * @return boolean true if the table varies on the same headers and false if not
+     */
+    public boolean variesOn(String[] names) {
+        return Arrays.equals(vary, names);
+    }
+
+    /**
+     * This method gives the variant of the given key
+     *
+     * @param key - key of the variant
+     * @return CachableResponse the variant, or null if the table has no variant of the key
+     */
+    public CachableResponse get(String key) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i].equals(key)) {
+                return variants[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * This method creates a table holding the variants of this table and the given variant, which replaces the
+     * variant of the same key
+     *
+     * @param key         - key of the variant
+     * @param variant     - the variant
+     * @param maxVariants - maximum number of variants of the table
+     * @return VariantTable the new table
+     */
+    public VariantTable with(String key, CachableResponse variant, int maxVariants) {
+        List<String> newKeys = new ArrayList<String>(keys.length + 1);
+        List<CachableResponse> newVariants = new ArrayList<CachableResponse>(keys.length + 1);
+        for (int i = 0; i < keys.length; i++) {
+            if (!keys[i].equals(key) && !variants[i].isExpired()) {
+                newKeys.add(keys[i]);
+                newVariants.add(variants[i]);
+            }
+        }
+        while (!newKeys.isEmpty() && newKeys.size() >= maxVariants) {
+            int first = 0;
+            for (int i = 1; i < newVariants.size(); i++) {
+                if (newVariants.get(i).getExpireTimeMillis() < newVariants.get(first).getExpireTimeMillis()) {
+                    first = i;
+                }
+            }
+            newKeys.remove(first);
+            newVariants.remove(first);
+        }
+        newKeys.add(key);
+        newVariants.add(variant);
+        return new VariantTable(vary, newKeys.toArray(new String[newKeys.size()]),
+                                newVariants.toArray(new CachableResponse[newVariants.size()]));
+    }
+
+    /**
+     * This method gives the latest expiry time of the variants, which is the expiry time of the table
+     *
+     * @return long expiry time in the standard java system time format
+     */
+    public long getExpireTimeMillis() {
+        long expireTimeMillis = 0L;
+        for (CachableResponse variant : variants) {
+            expireTimeMillis = Math.max(expireTimeMillis, variant.getExpireTimeMillis());
+        }
+        return expireTimeMillis;
+    }
+
+    /**
+     * This method gives the names of the varying headers
+     *
+     * @return String[] names of the headers, which must not be modified
+     */
+    String[] getVary() {
+        return vary;
+    }
+
+    /**
+     * This method gives the keys of the variants
+     *
+     * @return String[] keys of the variants, which must not be modified
+     */
+    String[] getKeys() {
+        return keys;
+    }
+
+    /**
+     * This method gives the variants in the order of their keys
+     *
+     * @return CachableResponse[] the variants, which must not be modified
+     */
+    CachableResponse[] getVariants() {
+        return variants;
+    }
+}
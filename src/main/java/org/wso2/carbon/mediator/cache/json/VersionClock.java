@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A hybrid logical clock issuing the versions of the cache updates exchanged between nodes. Versions follow the
+ * wall clock in their high order bits and a logical counter in the low order bits, and a node moves its clock past
+ * every version it receives, so a version issued after observing an update is always greater than that update.
+ */
+public class VersionClock {
+
+    /**
+     * Number of low order bits of a version used as a logical counter within the same millisecond
+     */
+    private static final int LOGICAL_BITS = 16;
+
+    /**
+     * The last version issued or observed
+     */
+    private final AtomicLong lastVersion = new AtomicLong();
+
+    /**
+     * This method issues a version greater than every version issued or observed by this clock
+     *
+     * @return long the new version
+     */
+    public long next() {
+        while (true) {
+            long last = lastVersion.get();
+            long next = Math.max(last + 1, System.currentTimeMillis() << LOGICAL_BITS);
+            if (lastVersion.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * This method moves the clock past a version received from another node
+     *
+     * @param version - the received version
+     */
+    public void observe(long version) {
+        while (true) {
+            long last = lastVersion.get();
+            if (version <= last || lastVersion.compareAndSet(last, version)) {
+                return;
+            }
+        }
+    }
+}
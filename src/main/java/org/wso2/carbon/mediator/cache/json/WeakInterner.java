@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.mediator.cache.json;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Canonicalizes equal objects to a single shared instance. Instances are held weakly, so they are dropped from the
+ * interner once nothing else refers to them and values which are seen once do not accumulate. The instances are
+ * spread over stripes by hash code, each with its own lock, so that concurrent collectors rarely wait on each other.
+ *
+ * @param <T> type of the interned objects
+ */
+final class WeakInterner<T> {
+
+    /**
+     * Number of stripes, a power of two
+     */
+    private static final int STRIPES = 16;
+
+    /**
+     * The canonical instances indexed by themselves, in the stripe of their hash code
+     */
+    private final Map<T, WeakReference<T>>[] stripes;
+
+    @SuppressWarnings("unchecked")
+    WeakInterner() {
+        stripes = new Map[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new WeakHashMap<T, WeakReference<T>>();
+        }
+    }
+
+    /**
+     * This method gives the canonical instance equal to the given object, making the object canonical if there is
+     * none
+     *
+     * @param object - the object to be interned
+     * @return T the canonical instance, or null if the object is null
+     */
+    T intern(T object) {
+        if (object == null) {
+            return null;
+        }
+        int h = object.hashCode();
+        Map<T, WeakReference<T>> instances = stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+        synchronized (instances) {
+            WeakReference<T> reference = instances.get(object);
+            T canonical = reference != null ? reference.get() : null;
+            if (canonical == null) {
+                instances.put(object, new WeakReference<T>(object));
+                canonical = object;
+            }
+            return canonical;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the adaptation of the timeouts by {@link AdaptiveTimeout}
+ */
+public class AdaptiveTimeoutTest {
+
+    private final AdaptiveTimeout adaptive = new AdaptiveTimeout(1000, 60000, 2);
+
+    @Test
+    public void testTimeoutsAreBounded() throws Exception {
+        assertEquals(1000, adaptive.bound(10));
+        assertEquals(5000, adaptive.bound(5000));
+        assertEquals(60000, adaptive.bound(600000));
+    }
+
+    @Test
+    public void testStableKeyGrowsAndChangingKeyShrinks() throws Exception {
+        assertEquals(15000, adaptive.next(10000, false));
+        assertEquals(5000, adaptive.next(10000, true));
+        assertEquals(60000, adaptive.next(50000, false));
+        assertEquals(1000, adaptive.next(1500, true));
+    }
+
+    @Test
+    public void testRepeatedAdaptationStaysWithinTheBounds() throws Exception {
+        long timeout = adaptive.bound(2000);
+        for (int i = 0; i < 20; i++) {
+            timeout = adaptive.next(timeout, false);
+        }
+        assertEquals(60000, timeout);
+        for (int i = 0; i < 20; i++) {
+            timeout = adaptive.next(timeout, true);
+        }
+        assertEquals(1000, timeout);
+        // the smallest timeout still grows
+        assertEquals(2, new AdaptiveTimeout(1, 10, 1).next(1, false));
+    }
+
+    @Test
+    public void testPlaceholderRecallsTheLastResponse() throws Exception {
+        adaptive.remember("key", 42, 8000);
+        CachableResponse placeholder = placeholder("key");
+
+        adaptive.recall(placeholder);
+
+        assertEquals(42, placeholder.getFingerprint());
+        assertEquals(8000, placeholder.getTimeout());
+    }
+
+    @Test
+    public void testUnknownKeyLeavesThePlaceholder() throws Exception {
+        CachableResponse placeholder = placeholder("unknown");
+
+        adaptive.recall(placeholder);
+
+        assertEquals(0, placeholder.getFingerprint());
+        assertEquals(5000, placeholder.getTimeout());
+    }
+
+    @Test
+    public void testHistoryForgetsTheLeastRecentlyUsedKey() throws Exception {
+        adaptive.remember("a", 1, 2000);
+        adaptive.remember("b", 2, 2000);
+        adaptive.recall(placeholder("a"));
+        adaptive.remember("c", 3, 2000);
+
+        CachableResponse a = placeholder("a");
+        CachableResponse b = placeholder("b");
+        adaptive.recall(a);
+        adaptive.recall(b);
+        assertEquals(1, a.getFingerprint());
+        assertEquals(0, b.getFingerprint());
+    }
+
+    @Test
+    public void testFingerprint() throws Exception {
+        assertEquals(AdaptiveTimeout.fingerprint("{\"a\":1}"), AdaptiveTimeout.fingerprint("{\"a\":1}"));
+        assertFalse(AdaptiveTimeout.fingerprint("{\"a\":1}") == AdaptiveTimeout.fingerprint("{\"a\":2}"));
+        assertFalse(AdaptiveTimeout.fingerprint("") == 0);
+    }
+
+    @Test
+    public void testInvalidBounds() throws Exception {
+        long[][] bounds = {{0, 1000}, {-1, 1000}, {2000, 1000}};
+        for (long[] bound : bounds) {
+            try {
+                new AdaptiveTimeout(bound[0], bound[1], 10);
+                fail("bounds are accepted : " + bound[0] + " - " + bound[1]);
+            } catch (IllegalArgumentException expected) {
+                // the bounds are invalid
+            }
+        }
+    }
+
+    private static CachableResponse placeholder(String key) {
+        CachableResponse placeholder = new CachableResponse();
+        placeholder.setRequestHash(key);
+        placeholder.setTimeout(5000);
+        return placeholder;
+    }
+}
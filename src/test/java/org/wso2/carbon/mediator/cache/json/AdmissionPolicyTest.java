@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the admission policies and of the {@link CountMinSketch} they count with
+ */
+public class AdmissionPolicyTest {
+
+    @Test
+    public void testDoorkeeperAdmitsTheSecondRequest() throws Exception {
+        DoorkeeperAdmission doorkeeper = new DoorkeeperAdmission(1000);
+
+        assertFalse(doorkeeper.admit("key"));
+        assertTrue(doorkeeper.admit("key"));
+        assertTrue(doorkeeper.admit("key"));
+    }
+
+    @Test
+    public void testDoorkeeperForgetsOnceFull() throws Exception {
+        DoorkeeperAdmission doorkeeper = new DoorkeeperAdmission(100);
+        doorkeeper.admit("key");
+        for (int i = 0; i < 99; i++) {
+            doorkeeper.admit("other-" + i);
+        }
+
+        assertFalse(doorkeeper.admit("key"));
+    }
+
+    @Test
+    public void testDoorkeeperFalsePositiveRate() throws Exception {
+        DoorkeeperAdmission doorkeeper = new DoorkeeperAdmission(10000);
+        for (int i = 0; i < 5000; i++) {
+            doorkeeper.admit("seen-" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (doorkeeper.admit("new-" + i)) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue("false positives : " + falsePositives, falsePositives < 100);
+    }
+
+    @Test
+    public void testFrequencyAdmitsAtTheThreshold() throws Exception {
+        FrequencyAdmission frequency = new FrequencyAdmission(1000, 3);
+
+        assertFalse(frequency.admit("key"));
+        assertFalse(frequency.admit("key"));
+        assertTrue(frequency.admit("key"));
+        assertFalse(frequency.admit("other"));
+    }
+
+    @Test
+    public void testSketchNeverUnderestimates() throws Exception {
+        CountMinSketch sketch = new CountMinSketch(256);
+        int[] counts = new int[50];
+        for (int round = 0; round < 10; round++) {
+            for (int key = 0; key < counts.length; key++) {
+                if (key % (round + 1) == 0) {
+                    counts[key]++;
+                    assertTrue(sketch.add("key-" + key) >= counts[key]);
+                }
+            }
+        }
+        assertEquals(0, sketch.getGeneration());
+    }
+
+    @Test
+    public void testSketchIsHalvedAfterEverySamplePeriod() throws Exception {
+        // 64 counters per row are halved every 640 additions
+        CountMinSketch sketch = new CountMinSketch(64);
+        for (int i = 0; i < 639; i++) {
+            sketch.add("hot");
+        }
+        assertEquals(0, sketch.getGeneration());
+        assertEquals(640, sketch.add("hot"));
+        assertEquals(1, sketch.getGeneration());
+
+        assertEquals(321, sketch.add("hot"));
+    }
+}
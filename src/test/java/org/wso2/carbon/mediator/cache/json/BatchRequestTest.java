@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests of the lookup and the merge of the items of a {@link BatchRequest}
+ */
+public class BatchRequestTest {
+
+    private static final List<String> ITEMS = Arrays.asList("{\"id\":1}", "{\"id\":2}", "{\"id\":3}");
+
+    private ConcurrentCacheStore store;
+
+    private JsonArrayPath responsePath;
+
+    @Before
+    public void setUp() throws Exception {
+        store = new ConcurrentCacheStore();
+        store.init("batch-request-test", 1000, null);
+        responsePath = new JsonArrayPath("$.results");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        store.destroy();
+    }
+
+    @Test
+    public void testEveryItemIsMissingWithoutTheEnvelope() throws Exception {
+        BatchRequest first = new BatchRequest("hash", ITEMS, responsePath);
+        first.lookup(store);
+        store.put(first.getMissingKey(0), response("{\"r\":1}"));
+        BatchRequest batch = new BatchRequest("hash", ITEMS, responsePath);
+
+        assertNull(batch.lookup(store));
+        assertEquals(3, batch.getMissingCount());
+        assertEquals(ITEMS, batch.getMissingItems());
+    }
+
+    @Test
+    public void testOnlyMissingItemsAreForwardedAndMergedInOrder() throws Exception {
+        BatchRequest first = new BatchRequest("hash", ITEMS, responsePath);
+        first.lookup(store);
+        store.put(first.getEnvelopeKey(), response("{\"results\":[]}"));
+        store.put(first.getMissingKey(1), response("{\"r\":2}"));
+
+        // the items are matched whatever their whitespace
+        BatchRequest batch = new BatchRequest("hash", Arrays.asList("{ \"id\" : 1 }", "{\"id\":2}", "{\"id\":3}"),
+                                              responsePath);
+        assertNotNull(batch.lookup(store));
+
+        assertEquals(2, batch.getMissingCount());
+        assertEquals(Arrays.asList("{ \"id\" : 1 }", "{\"id\":3}"), batch.getMissingItems());
+        assertEquals(first.getMissingKey(0), batch.getMissingKey(0));
+        assertEquals(first.getMissingKey(2), batch.getMissingKey(1));
+        assertEquals(Arrays.asList("{\"r\":1}", "{\"r\":2}", "{\"r\":3}"),
+                     batch.merge(Arrays.asList("{\"r\":1}", "{\"r\":3}")));
+    }
+
+    @Test
+    public void testExpiredItemsAreMissing() throws Exception {
+        BatchRequest first = new BatchRequest("hash", ITEMS, responsePath);
+        first.lookup(store);
+        store.put(first.getEnvelopeKey(), response("{\"results\":[]}"));
+        CachableResponse expired = response("{\"r\":1}");
+        expired.setExpireTimeMillis(System.currentTimeMillis() - 1000);
+        store.put(first.getMissingKey(0), expired);
+
+        BatchRequest batch = new BatchRequest("hash", ITEMS, responsePath);
+        batch.lookup(store);
+
+        assertEquals(3, batch.getMissingCount());
+        assertEquals(ITEMS, batch.merge(ITEMS));
+    }
+
+    @Test
+    public void testItemsOfAnotherRequestHaveOtherKeys() throws Exception {
+        BatchRequest batch = new BatchRequest("hash", ITEMS, responsePath);
+        BatchRequest other = new BatchRequest("other", ITEMS, responsePath);
+        batch.lookup(store);
+        other.lookup(store);
+
+        assertEquals(3, batch.size());
+        assertEquals("hash#", batch.getEnvelopeKey());
+        assertFalse(batch.getMissingKey(0).equals(other.getMissingKey(0)));
+        assertFalse(batch.getMissingKey(0).equals(batch.getMissingKey(1)));
+        assertEquals(Collections.<String>emptyList(), new BatchRequest("hash", Collections.<String>emptyList(),
+                                                                       responsePath).merge(ITEMS.subList(0, 0)));
+    }
+
+    private static CachableResponse response(String payload) {
+        CachableResponse response = new CachableResponse();
+        response.setResponsePayload(payload);
+        response.setTimeout(60000);
+        response.setExpireTimeMillis(System.currentTimeMillis() + 60000);
+        return response;
+    }
+}
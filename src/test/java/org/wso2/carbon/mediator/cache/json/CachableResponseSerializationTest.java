@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the binary form of {@link CachableResponse}, which round trips every replicated field, keeps its layout
+ * and is more compact than the default serialization it replaced.
+ */
+public class CachableResponseSerializationTest {
+
+    @Test
+    public void testRoundTripOfFields() throws Exception {
+        CachableResponse response = newResponse("hash", "{\"name\":\"Zoë ✓\",\"values\":[1,2,3]}");
+        response.setExpireTimeMillis(1500000000123L);
+        response.setTimeout(60000);
+        response.setVersion(Long.MAX_VALUE / 3);
+        response.setFetchCost(250);
+        response.setFingerprint(-42L);
+
+        CachableResponse copy = roundTrip(response);
+
+        assertEquals("hash", copy.getRequestHash());
+        assertEquals(response.getResponsePayload(), copy.getResponsePayload());
+        assertEquals(1500000000123L, copy.getExpireTimeMillis());
+        assertEquals(60000, copy.getTimeout());
+        assertEquals(Long.MAX_VALUE / 3, copy.getVersion());
+        assertEquals(250, copy.getFetchCost());
+        assertEquals(-42L, copy.getFingerprint());
+        assertNull(copy.getHeaderProperties());
+        assertNull(copy.getTags());
+        assertNull(copy.getVariants());
+    }
+
+    @Test
+    public void testRoundTripOfPlaceholder() throws Exception {
+        CachableResponse copy = roundTrip(new CachableResponse());
+
+        assertNull(copy.getRequestHash());
+        assertNull(copy.getResponsePayload());
+        assertFalse(copy.hasContent());
+    }
+
+    @Test
+    public void testRoundTripOfHeaders() throws Exception {
+        Map<String, Object> headers = new HashMap<String, Object>();
+        headers.put("Content-Type", "application/json");
+        headers.put("messageType", "application/json");
+        headers.put("X-Request-Id", "7f1c");
+        headers.put("X-Empty", null);
+        headers.put("X-Retries", 3);
+        headers.put("X-Hosts", new ArrayList<String>(Arrays.asList("a", "b")));
+        CachableResponse response = newResponse("hash", "{}");
+        response.setHeaderProperties(HeaderSet.of(headers));
+
+        Map<String, Object> copied = roundTrip(response).getHeaderProperties();
+
+        assertTrue(copied instanceof HeaderSet);
+        assertEquals(headers.size(), copied.size());
+        for (Map.Entry<String, Object> header : headers.entrySet()) {
+            assertTrue(copied.containsKey(header.getKey()));
+            assertEquals(header.getValue(), copied.get(header.getKey()));
+        }
+    }
+
+    @Test
+    public void testRoundTripOfTags() throws Exception {
+        CachableResponse response = newResponse("hash", "{}");
+        response.setTags(new HashSet<String>(Arrays.asList("product:1", "catalog", "über")));
+
+        Set<String> tags = roundTrip(response).getTags();
+
+        assertEquals(new HashSet<String>(Arrays.asList("product:1", "catalog", "über")), tags);
+    }
+
+    @Test
+    public void testRoundTripOfVariants() throws Exception {
+        CachableResponse gzip = newResponse("hash", "{\"encoding\":\"gzip\"}");
+        gzip.setTags(new HashSet<String>(Arrays.asList("gzipped")));
+        CachableResponse identity = newResponse("hash", "{\"encoding\":\"identity\"}");
+        // a table only keeps the live variants
+        gzip.setTimeout(60000);
+        gzip.setExpireTimeMillis(System.currentTimeMillis() + 60000);
+        identity.setTimeout(60000);
+        identity.setExpireTimeMillis(System.currentTimeMillis() + 60000);
+        String[] vary = {"Accept-Encoding", "Accept-Language"};
+        VariantTable table = VariantTable.of(vary, "gzip|en", gzip).with("identity|en", identity, 10);
+        CachableResponse response = new CachableResponse();
+        response.setRequestHash("hash");
+        response.setVariants(table);
+
+        VariantTable copied = roundTrip(response).getVariants();
+
+        assertNotNull(copied);
+        assertArrayEquals(vary, copied.getVary());
+        assertArrayEquals(table.getKeys(), copied.getKeys());
+        assertEquals(gzip.getResponsePayload(), copied.get("gzip|en").getResponsePayload());
+        assertEquals(gzip.getTags(), copied.get("gzip|en").getTags());
+        assertEquals(identity.getResponsePayload(), copied.get("identity|en").getResponsePayload());
+    }
+
+    @Test
+    public void testSpooledPayloadIsLocalToTheNode() throws Exception {
+        File file = File.createTempFile("json-cache-", ".spool");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write("{\"large\":true}".getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        CachableResponse response = newResponse("hash", null);
+        response.setSpooledPayload(new SpooledPayload(file, file.length()));
+
+        CachableResponse copy = roundTrip(response);
+
+        // the spool file is not shipped, the copy is read back without content
+        assertNull(copy.getSpooledPayload());
+        assertNull(copy.getResponsePayload());
+        assertFalse(copy.hasContent());
+        assertTrue(response.getSpooledPayload().exists());
+        response.discard();
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testReadingTheBinaryForm() throws Exception {
+        CachableResponse copy = read(writeBinaryForm());
+
+        assertEquals("hash", copy.getRequestHash());
+        assertEquals("{\"v\":1}", copy.getResponsePayload());
+        assertEquals(1000, copy.getExpireTimeMillis());
+        assertEquals(500, copy.getTimeout());
+        assertEquals(7, copy.getVersion());
+        assertEquals(120, copy.getFetchCost());
+        assertEquals(99, copy.getFingerprint());
+        assertEquals("application/json", copy.getHeaderProperties().get("Content-Type"));
+        assertEquals("custom", copy.getHeaderProperties().get("X-Custom"));
+    }
+
+    @Test(expected = InvalidClassException.class)
+    public void testNewerFormatVersionIsRejected() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeByte(0xFF);
+        out.writeByte(0);
+        out.close();
+
+        read(bytes.toByteArray());
+    }
+
+    @Test
+    public void testCompactFormIsSmallerThanDefaultSerialization() throws Exception {
+        Map<String, Object> headers = new HashMap<String, Object>();
+        headers.put("Content-Type", "application/json; charset=UTF-8");
+        headers.put("Date", "Mon, 19 Oct 2026 05:01:21 GMT");
+        headers.put("Server", "WSO2-PassThrough-HTTP");
+        headers.put("Connection", "keep-alive");
+        headers.put("ETag", "\"5f2b\"");
+        CachableResponse response = newResponse("d41d8cd98f00b204e9800998ecf8427e",
+                                                "{\"id\":1,\"name\":\"widget\",\"price\":9.99,\"stock\":120}");
+        response.setHeaderProperties(HeaderSet.of(headers));
+        response.setTags(new HashSet<String>(Arrays.asList("product:1")));
+        response.setExpireTimeMillis(System.currentTimeMillis() + 60000);
+        response.setTimeout(60000);
+        response.setVersion(12345);
+        DefaultForm defaultForm = new DefaultForm(response, headers);
+
+        int compactSize = serialize(response).length;
+        int defaultSize = serialize(defaultForm).length;
+
+        assertTrue("compact form of " + compactSize + " bytes is not smaller than " + defaultSize + " bytes",
+                   compactSize < defaultSize);
+    }
+
+    /**
+     * Writes a response field by field as the binary form lays it out, so that a change of the layout is caught
+     */
+    private static byte[] writeBinaryForm() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeByte(1);
+        // request hash, payload and headers
+        out.writeByte(1 | 1 << 1 | 1 << 2);
+        BinaryCodec.writeString(out, "hash");
+        BinaryCodec.writeVarLong(out, 1000);
+        BinaryCodec.writeVarLong(out, 500);
+        BinaryCodec.writeVarLong(out, 7);
+        BinaryCodec.writeVarLong(out, 120);
+        out.writeLong(99);
+        BinaryCodec.writeString(out, "{\"v\":1}");
+        BinaryCodec.writeVarLong(out, 2);
+        BinaryCodec.writeHeaderValue(out, "Content-Type");
+        BinaryCodec.writeHeaderValue(out, "application/json");
+        BinaryCodec.writeHeaderValue(out, "X-Custom");
+        BinaryCodec.writeHeaderValue(out, "custom");
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static CachableResponse read(byte[] bytes) throws Exception {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        CachableResponse response = new CachableResponse();
+        response.readExternal(in);
+        assertEquals("the whole stream is read", -1, in.read());
+        return response;
+    }
+
+    private static CachableResponse newResponse(String hash, String payload) {
+        CachableResponse response = new CachableResponse();
+        response.setRequestHash(hash);
+        if (payload != null) {
+            response.setResponsePayload(payload);
+        }
+        return response;
+    }
+
+    private static CachableResponse roundTrip(CachableResponse response) throws Exception {
+        return (CachableResponse) deserialize(serialize(response));
+    }
+
+    private static byte[] serialize(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(object);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes) throws Exception {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+            return in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * The fields of a cached response as they were written by the default serialization
+     */
+    private static final class DefaultForm implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String responsePayload;
+
+        private final String requestHash;
+
+        private final long expireTimeMillis;
+
+        private final long timeout;
+
+        private final long version;
+
+        private final AtomicBoolean inUse = new AtomicBoolean();
+
+        private final Map<String, Object> headerProperties;
+
+        private final Set<String> tags;
+
+        private DefaultForm(CachableResponse response, Map<String, Object> headers) {
+            this.responsePayload = response.getResponsePayload();
+            this.requestHash = response.getRequestHash();
+            this.expireTimeMillis = response.getExpireTimeMillis();
+            this.timeout = response.getTimeout();
+            this.version = response.getVersion();
+            this.headerProperties = new LinkedHashMap<String, Object>(headers);
+            this.tags = new HashSet<String>(response.getTags());
+        }
+    }
+}
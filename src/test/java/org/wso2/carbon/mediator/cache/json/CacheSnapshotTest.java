@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of writing a cache into a {@link CacheSnapshot} and restoring it
+ */
+public class CacheSnapshotTest {
+
+    private File file;
+
+    private ConcurrentCacheStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("cache-snapshot-test", ".bin");
+        store = new ConcurrentCacheStore();
+        store.init("cache-snapshot-test", 1000, null);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        store.destroy();
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    @Test
+    public void testRoundTripOfResponses() throws Exception {
+        CachableResponse response = response("key", "{\"a\":1}", 60000);
+        Map<String, Object> headers = new HashMap<String, Object>();
+        headers.put("Content-Type", "application/json");
+        response.setHeaderProperties(headers);
+        response.setTags(Collections.singleton("orders"));
+        response.setFetchCost(120);
+
+        assertEquals(1, CacheSnapshot.write(file, Arrays.asList(response, response("old", "{}", -1000))));
+        assertEquals(1, CacheSnapshot.read(file, store, null, Long.MAX_VALUE));
+
+        CachableResponse restored = store.get("key");
+        assertEquals("{\"a\":1}", restored.getResponsePayload());
+        assertEquals(response.getExpireTimeMillis(), restored.getExpireTimeMillis());
+        assertEquals(120, restored.getFetchCost());
+        assertEquals("application/json", restored.getHeaderProperties().get("Content-Type"));
+        assertEquals(Collections.singleton("orders"), restored.getTags());
+        assertNull(store.get("old"));
+    }
+
+    @Test
+    public void testRoundTripOfVariants() throws Exception {
+        String[] vary = VariantTable.parseVary("Accept");
+        CachableResponse table = response("key", null, 60000);
+        table.setVariants(VariantTable.of(vary, "json", response("key", "{\"a\":1}", 60000))
+                                  .with("xml", response("key", "{\"a\":2}", 60000), CachingConstants.MAX_VARIANTS));
+
+        assertEquals(1, CacheSnapshot.write(file, Collections.singletonList(table)));
+        assertEquals(1, CacheSnapshot.read(file, store, null, Long.MAX_VALUE));
+
+        VariantTable restored = store.get("key").getVariants();
+        assertNotNull(restored);
+        assertTrue(restored.variesOn(vary));
+        assertEquals("{\"a\":1}", restored.get("json").getResponsePayload());
+        assertEquals("{\"a\":2}", restored.get("xml").getResponsePayload());
+    }
+
+    @Test
+    public void testTableOfExpiredVariantsIsSkipped() throws Exception {
+        CachableResponse table = response("key", null, 60000);
+        table.setVariants(VariantTable.of(VariantTable.parseVary("Accept"), "json", response("key", "{}", -1000)));
+
+        assertEquals(1, CacheSnapshot.write(file, Collections.singletonList(table)));
+        assertEquals(0, CacheSnapshot.read(file, store, null, Long.MAX_VALUE));
+        assertNull(store.get("key"));
+    }
+
+    private static CachableResponse response(String key, String payload, long timeToLive) {
+        CachableResponse response = new CachableResponse();
+        response.setRequestHash(key);
+        response.setResponsePayload(payload);
+        response.setTimeout(60000);
+        response.setExpireTimeMillis(System.currentTimeMillis() + timeToLive);
+        return response;
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the compare-and-swap updates of the {@link ConcurrentCacheStore}, which let exactly one of the racing
+ * writers of a response win and discard every response leaving the store exactly once.
+ */
+public class ConcurrentCacheStoreTest {
+
+    private static final int THREADS = 8;
+
+    private static final int ROUNDS = 500;
+
+    private ConcurrentCacheStore store;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        store = new ConcurrentCacheStore();
+        store.init("concurrent-cache-store-test", 1000, null);
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        store.destroy();
+    }
+
+    @Test
+    public void testStaleReplaceNeverOverwritesNewerResponse() throws Exception {
+        CountingResponse first = newResponse("key");
+        CountingResponse second = newResponse("key");
+        CountingResponse stale = newResponse("key");
+        store.put("key", first);
+
+        assertTrue(store.replace("key", first, second));
+        assertFalse(store.replace("key", first, stale));
+        assertSame(second, store.get("key"));
+        assertEquals(1, first.discards.get());
+        assertEquals(0, second.discards.get());
+    }
+
+    @Test
+    public void testRacingPutIfAbsentHasOneWinner() throws Exception {
+        for (int round = 0; round < ROUNDS; round++) {
+            final String key = "key-" + round;
+            List<Callable<Boolean>> writers = new ArrayList<Callable<Boolean>>();
+            final CountDownLatch start = new CountDownLatch(1);
+            for (int i = 0; i < THREADS; i++) {
+                final CountingResponse response = newResponse(key);
+                writers.add(new Callable<Boolean>() {
+                    public Boolean call() throws Exception {
+                        start.await();
+                        return store.putIfAbsent(key, response);
+                    }
+                });
+            }
+            assertEquals(1, countWinners(writers, start));
+        }
+    }
+
+    @Test
+    public void testRacingReplaceHasOneWinner() throws Exception {
+        for (int round = 0; round < ROUNDS; round++) {
+            final String key = "key-" + round;
+            final CountingResponse expected = newResponse(key);
+            store.put(key, expected);
+            final List<CountingResponse> responses = new ArrayList<CountingResponse>();
+            List<Callable<Boolean>> writers = new ArrayList<Callable<Boolean>>();
+            final CountDownLatch start = new CountDownLatch(1);
+            for (int i = 0; i < THREADS; i++) {
+                final CountingResponse response = newResponse(key);
+                responses.add(response);
+                writers.add(new Callable<Boolean>() {
+                    public Boolean call() throws Exception {
+                        start.await();
+                        return store.replace(key, expected, response);
+                    }
+                });
+            }
+
+            assertEquals(1, countWinners(writers, start));
+            assertTrue(responses.contains(store.get(key)));
+            assertEquals(1, expected.discards.get());
+        }
+    }
+
+    @Test
+    public void testRemoveRacingReplaceHasOneWinner() throws Exception {
+        for (int round = 0; round < ROUNDS; round++) {
+            final String key = "key-" + round;
+            final CountingResponse expected = newResponse(key);
+            final CountingResponse replacement = newResponse(key);
+            store.put(key, expected);
+            final CountDownLatch start = new CountDownLatch(1);
+            Future<Boolean> removed = executor.submit(new Callable<Boolean>() {
+                public Boolean call() throws Exception {
+                    start.await();
+                    return store.remove(key, expected);
+                }
+            });
+            Future<Boolean> replaced = executor.submit(new Callable<Boolean>() {
+                public Boolean call() throws Exception {
+                    start.await();
+                    return store.replace(key, expected, replacement);
+                }
+            });
+            start.countDown();
+
+            assertTrue(removed.get() ^ replaced.get());
+            if (replaced.get()) {
+                assertSame(replacement, store.get(key));
+            } else {
+                assertNull(store.get(key));
+            }
+            assertEquals(1, expected.discards.get());
+            assertEquals(0, replacement.discards.get());
+        }
+    }
+
+    @Test
+    public void testOlderReplicatedUpdateIsIgnored() throws Exception {
+        // replicated responses carry the version of their update
+        CountingResponse newer = newResponse("key");
+        newer.setVersion(2);
+        CountingResponse older = newResponse("key");
+        older.setVersion(1);
+
+        assertTrue(store.applyUpdate("key", newer, 2));
+        assertFalse(store.applyUpdate("key", older, 1));
+        assertSame(newer, store.get("key"));
+        assertFalse(store.applyUpdate("key", null, 1));
+        assertTrue(store.applyUpdate("key", null, 3));
+        assertNull(store.get("key"));
+        assertEquals(1, newer.discards.get());
+    }
+
+    private int countWinners(List<Callable<Boolean>> writers, CountDownLatch start) throws Exception {
+        List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+        for (Callable<Boolean> writer : writers) {
+            results.add(executor.submit(writer));
+        }
+        start.countDown();
+        int winners = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get()) {
+                winners++;
+            }
+        }
+        return winners;
+    }
+
+    private static CountingResponse newResponse(String key) {
+        CountingResponse response = new CountingResponse();
+        response.setRequestHash(key);
+        response.setResponsePayload("{\"key\":\"" + key + "\"}");
+        response.setTimeout(60000);
+        response.setExpireTimeMillis(System.currentTimeMillis() + 60000);
+        return response;
+    }
+
+    /**
+     * A response counting the times it is discarded by the store
+     */
+    private static final class CountingResponse extends CachableResponse {
+
+        private final AtomicInteger discards = new AtomicInteger();
+
+        @Override
+        synchronized void discard() {
+            discards.incrementAndGet();
+            super.discard();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the replication of the {@link DistributedCacheStore} among several nodes of the same JVM connected by a
+ * {@link LoopbackTransport}
+ */
+public class DistributedCacheStoreTest {
+
+    private static final int NODES = 3;
+
+    /**
+     * Time given to the replication of an update to reach the other nodes
+     */
+    private static final long REPLICATION_TIMEOUT_MILLIS = 5000;
+
+    private final List<DistributedCacheStore> nodes = new ArrayList<DistributedCacheStore>();
+
+    @Before
+    public void setUp() throws Exception {
+        String group = UUID.randomUUID().toString();
+        for (int i = 0; i < NODES; i++) {
+            DistributedCacheStore node = new DistributedCacheStore(new LoopbackTransport(group));
+            node.init("distributed-cache-store-test", 1000, null);
+            nodes.add(node);
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (DistributedCacheStore node : nodes) {
+            node.destroy();
+        }
+    }
+
+    @Test
+    public void testStoredResponseReachesEveryNode() throws Exception {
+        CachableResponse response = newResponse("key", "{\"v\":1}");
+        assertTrue(nodes.get(0).putIfAbsent("key", response));
+
+        for (DistributedCacheStore node : nodes) {
+            CachableResponse replicated = awaitPayload(node, "key", "{\"v\":1}");
+            assertEquals(response.getVersion(), replicated.getVersion());
+        }
+        // the other nodes hold copies of the response
+        assertNotSame(response, nodes.get(1).get("key"));
+    }
+
+    @Test
+    public void testRemovalReachesEveryNode() throws Exception {
+        nodes.get(0).put("key", newResponse("key", "{\"v\":1}"));
+        awaitPayload(nodes.get(2), "key", "{\"v\":1}");
+
+        assertTrue(nodes.get(2).remove("key"));
+
+        for (DistributedCacheStore node : nodes) {
+            awaitPayload(node, "key", null);
+        }
+    }
+
+    @Test
+    public void testNewerUpdateOfAnotherNodeWins() throws Exception {
+        nodes.get(0).put("key", newResponse("key", "{\"v\":1}"));
+        CachableResponse first = awaitPayload(nodes.get(1), "key", "{\"v\":1}");
+
+        assertTrue(nodes.get(1).replace("key", first, newResponse("key", "{\"v\":2}")));
+
+        for (DistributedCacheStore node : nodes) {
+            awaitPayload(node, "key", "{\"v\":2}");
+        }
+    }
+
+    @Test
+    public void testDelayedUpdateNeverOverwritesNewerResponse() throws Exception {
+        CachableResponse older = newResponse("key", "{\"v\":1}");
+        nodes.get(0).put("key", older);
+        nodes.get(0).put("key", newResponse("key", "{\"v\":2}"));
+        awaitPayload(nodes.get(1), "key", "{\"v\":2}");
+
+        // the first update is delivered again, as if it was delayed by the network
+        ReplicationBatch delayed = new ReplicationBatch("distributed-cache-store-test");
+        delayed.add(new ReplicationBatch.Operation("key", older.getVersion(), LoopbackTransport.copy(older)));
+        nodes.get(1).onBatch(delayed);
+
+        assertEquals("{\"v\":2}", nodes.get(1).get("key").getResponsePayload());
+    }
+
+    @Test
+    public void testPlaceholderIsNotReplicated() throws Exception {
+        CachableResponse placeholder = new CachableResponse();
+        placeholder.setRequestHash("pending");
+        placeholder.setTimeout(60000);
+        placeholder.setExpireTimeMillis(System.currentTimeMillis() + 60000);
+        assertTrue(nodes.get(0).putIfAbsent("pending", placeholder));
+        nodes.get(0).put("marker", newResponse("marker", "{}"));
+
+        // updates are sent in order, the placeholder would have arrived with the marker
+        awaitPayload(nodes.get(1), "marker", "{}");
+        assertNull(nodes.get(1).get("pending"));
+        assertFalse(nodes.get(0).putIfAbsent("pending", newResponse("pending", "{}")));
+    }
+
+    /**
+     * Waits until the given node holds the given payload for the key
+     *
+     * @return the response holding the payload, or null if the payload is null
+     */
+    private static CachableResponse awaitPayload(CacheStore node, String key, String payload) throws Exception {
+        long deadline = System.currentTimeMillis() + REPLICATION_TIMEOUT_MILLIS;
+        while (true) {
+            CachableResponse response = node.get(key);
+            String current = response != null ? response.getResponsePayload() : null;
+            if (payload == null ? response == null : payload.equals(current)) {
+                return response;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                fail("Payload of " + key + " is " + current + " instead of " + payload);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static CachableResponse newResponse(String key, String payload) {
+        CachableResponse response = new CachableResponse();
+        response.setRequestHash(key);
+        response.setResponsePayload(payload);
+        response.setTimeout(60000);
+        response.setExpireTimeMillis(System.currentTimeMillis() + 60000);
+        return response;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the shared header sets of the cached responses and of the views handed to the transport
+ */
+public class HeaderSetTest {
+
+    @Test
+    public void testEqualHeadersShareOneSet() {
+        Map<String, Object> first = headers("Thu, 01 Jan 2026 00:00:00 GMT", "120");
+        Map<String, Object> second = headers("Fri, 02 Jan 2026 00:00:00 GMT", "240");
+
+        // the date and the content length are left out, they do not make the sets differ
+        assertSame(HeaderSet.of(first), HeaderSet.of(second));
+        assertFalse(HeaderSet.of(first).containsKey("Date"));
+        assertFalse(HeaderSet.of(first).containsKey("Content-Length"));
+        assertEquals("application/json", HeaderSet.of(first).get("Content-Type"));
+    }
+
+    @Test
+    public void testViewRemovesThroughTheKeySetIterator() {
+        HeaderSet shared = HeaderSet.of(headers("Thu, 01 Jan 2026 00:00:00 GMT", "120"));
+        Map<String, Object> view = shared.view();
+
+        // the way the transport removes the headers it writes itself
+        for (Iterator<String> names = view.keySet().iterator(); names.hasNext(); ) {
+            String name = names.next();
+            if ("Content-Type".equalsIgnoreCase(name) || "Connection".equalsIgnoreCase(name)) {
+                names.remove();
+            }
+        }
+
+        assertEquals(1, view.size());
+        assertNull(view.get("Content-Type"));
+        assertEquals("\"5f2b\"", view.get("ETag"));
+        assertEquals(3, shared.size());
+        assertEquals("application/json", shared.get("Content-Type"));
+    }
+
+    @Test
+    public void testViewCopiesOnWrite() {
+        HeaderSet shared = HeaderSet.of(headers("Thu, 01 Jan 2026 00:00:00 GMT", "120"));
+        Map<String, Object> view = shared.view();
+
+        view.put("X-Cache", "HIT");
+        view.remove("ETag");
+        view.entrySet().iterator().next().setValue("changed");
+
+        assertTrue(view.containsKey("X-Cache"));
+        assertFalse(view.containsKey("ETag"));
+        assertEquals(3, shared.size());
+        assertFalse(shared.containsKey("X-Cache"));
+        assertFalse(shared.containsValue("changed"));
+    }
+
+    @Test
+    public void testSetValueThroughSharedIteratorCopies() {
+        HeaderSet shared = HeaderSet.of(headers("Thu, 01 Jan 2026 00:00:00 GMT", "120"));
+        Map<String, Object> view = shared.view();
+
+        Map.Entry<String, Object> first = view.entrySet().iterator().next();
+        first.setValue("changed");
+
+        assertEquals("changed", view.get(first.getKey()));
+        assertFalse(shared.containsValue("changed"));
+    }
+
+    private static Map<String, Object> headers(String date, String contentLength) {
+        Map<String, Object> headers = new HashMap<String, Object>();
+        headers.put("Content-Type", "application/json");
+        headers.put("Connection", "keep-alive");
+        headers.put("ETag", "\"5f2b\"");
+        headers.put("Date", date);
+        headers.put("Content-Length", contentLength);
+        return headers;
+    }
+}
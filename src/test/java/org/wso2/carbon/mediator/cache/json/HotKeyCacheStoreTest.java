@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests of the pinning of hot keys by the {@link HotKeyCacheStore}
+ */
+public class HotKeyCacheStoreTest {
+
+    /**
+     * Lookups made before a key is certainly detected as hot
+     */
+    private static final int LOOKUPS = 1000;
+
+    private ConcurrentCacheStore backing;
+
+    private HotKeyCacheStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        backing = new ConcurrentCacheStore();
+        backing.init("hot-key-cache-store-test", 1000, null);
+        store = new HotKeyCacheStore(backing, 4);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        store.destroy();
+        backing.destroy();
+    }
+
+    @Test
+    public void testPinnedCopyHoldsEveryField() throws Exception {
+        CachableResponse response = new CachableResponse();
+        response.setRequestHash("hot");
+        response.setResponsePayload("{\"hot\":true}");
+        Map<String, Object> headers = new HashMap<String, Object>();
+        headers.put("Content-Type", "application/json");
+        response.setHeaderProperties(headers);
+        response.setTags(Collections.singleton("orders"));
+        response.setTimeout(60000);
+        response.setExpireTimeMillis(System.currentTimeMillis() + 60000);
+        response.setFetchCost(250);
+        response.setFingerprint(42);
+        backing.put("hot", response);
+
+        CachableResponse pinned = null;
+        for (int i = 0; i < LOOKUPS && pinned == null; i++) {
+            CachableResponse found = store.get("hot");
+            if (found != response) {
+                pinned = found;
+            }
+        }
+
+        assertNotNull("the key was never pinned", pinned);
+        assertNotSame(response, pinned);
+        assertEquals(response.getRequestHash(), pinned.getRequestHash());
+        assertEquals(response.getResponsePayload(), pinned.getResponsePayload());
+        assertSame(response.getHeaderProperties(), pinned.getHeaderProperties());
+        assertEquals(response.getTags(), pinned.getTags());
+        assertEquals(response.getTimeout(), pinned.getTimeout());
+        assertEquals(response.getVersion(), pinned.getVersion());
+        assertEquals(250, pinned.getFetchCost());
+        assertEquals(42, pinned.getFingerprint());
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of splitting JSON documents around an array with a {@link JsonArrayPath}
+ */
+public class JsonArrayPathTest {
+
+    @Test
+    public void testSplitOfRootArray() throws Exception {
+        JsonArrayPath.Split split = new JsonArrayPath("$").split(" [ {\"id\":1} , \"a,b\" ,[2,3], null ] ");
+
+        assertEquals(Arrays.asList("{\"id\":1}", "\"a,b\"", "[2,3]", "null"), split.getItems());
+        assertEquals(" [[2,3]] ", split.join(Collections.singletonList("[2,3]")));
+    }
+
+    @Test
+    public void testSplitOfNestedArray() throws Exception {
+        String json = "{\"meta\":{\"items\":\"no\"},\"data\" : { \"x\":[1], \"items\" :[{\"id\":1},{\"id\":2}]}," +
+                "\"n\":2}";
+        JsonArrayPath.Split split = new JsonArrayPath("$.data.items").split(json);
+
+        assertEquals(Arrays.asList("{\"id\":1}", "{\"id\":2}"), split.getItems());
+        assertEquals(json, split.join(split.getItems()));
+        assertEquals("{\"meta\":{\"items\":\"no\"},\"data\" : { \"x\":[1], \"items\" :[]},\"n\":2}",
+                     split.join(Collections.<String>emptyList()));
+    }
+
+    @Test
+    public void testEmptyArray() throws Exception {
+        JsonArrayPath.Split split = new JsonArrayPath("$.items").split("{\"items\":[ ]}");
+
+        assertEquals(0, split.getItems().size());
+        assertEquals("{\"items\":[1]}", split.join(Collections.singletonList("1")));
+    }
+
+    @Test
+    public void testDocumentWithoutTheArray() throws Exception {
+        JsonArrayPath path = new JsonArrayPath("$.items");
+
+        assertNull(path.split(null));
+        assertNull(path.split("[1,2]"));
+        assertNull(path.split("{\"items\":{}}"));
+        assertNull(path.split("{\"other\":[1]}"));
+        assertNull(path.split("{\"itemsx\":[1]}"));
+        assertNull(path.split("{\"items\":[1,]}"));
+        assertNull(path.split("{\"items\":[1 2]}"));
+        assertNull(path.split("{\"items\":[\"open]}"));
+    }
+
+    @Test
+    public void testUnsupportedPaths() throws Exception {
+        for (String path : new String[]{null, "", "items", "$.", "$..items", "$.items."}) {
+            try {
+                new JsonArrayPath(path);
+                fail("path is accepted : " + path);
+            } catch (CachingException expected) {
+                // the path is not supported
+            }
+        }
+    }
+}
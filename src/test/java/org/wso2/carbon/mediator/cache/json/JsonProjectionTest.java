@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the projection of JSON documents by a {@link JsonProjection}
+ */
+public class JsonProjectionTest {
+
+    @Test
+    public void testTopLevelFields() throws Exception {
+        JsonProjection projection = new JsonProjection("id, name");
+
+        assertEquals("{\"id\":1,\"name\":\"a\"}",
+                     projection.project("{\"id\":1,\"name\":\"a\",\"address\":{\"city\":\"b\"}}"));
+    }
+
+    @Test
+    public void testNestedFields() throws Exception {
+        JsonProjection projection = new JsonProjection("address.city,id");
+
+        assertEquals("{\"id\":1,\"address\":{\"city\":\"b\"}}",
+                     projection.project("{\"id\":1,\"address\":{\"street\":\"s\",\"city\":\"b\"}}"));
+    }
+
+    @Test
+    public void testFieldsOfObjectsNestedInArrays() throws Exception {
+        JsonProjection projection = new JsonProjection("items.id");
+
+        assertEquals("{\"items\":[{\"id\":1},{\"id\":2},{},[{\"id\":3}],7]}",
+                     projection.project("{\"items\":[{\"id\":1,\"x\":[1,2]},{\"x\":{},\"id\":2},{\"x\":null}," +
+                                                "[{\"id\":3}],7],\"other\":true}"));
+        assertEquals("[{\"id\":1},{\"id\":2}]", new JsonProjection("id").project("[{\"id\":1,\"x\":2},{\"id\":2}]"));
+    }
+
+    @Test
+    public void testWholeValueIsCopiedAsItIs() throws Exception {
+        JsonProjection projection = new JsonProjection("address");
+
+        assertEquals("{\"address\":{ \"city\" : \"b\" }}",
+                     projection.project("{\"id\":1,\"address\":{ \"city\" : \"b\" }}"));
+    }
+
+    @Test
+    public void testWhitespaceBetweenTokens() throws Exception {
+        JsonProjection projection = new JsonProjection("id,tags");
+
+        assertEquals("{\"id\":1,\"tags\":[ \"x\" , \"y\" ]}",
+                     projection.project(" \n{ \"id\" :\t1 ,\n \"name\" : \"a\" , \"tags\" : [ \"x\" , \"y\" ] }\n"));
+        assertEquals("{}", projection.project("{ }"));
+        assertEquals("[]", projection.project("[ ]"));
+    }
+
+    @Test
+    public void testEscapedKeysAndValues() throws Exception {
+        JsonProjection projection = new JsonProjection("id");
+
+        assertEquals("{\"id\":\"a\\\"},{\\\\\"}",
+                     projection.project("{\"a\\\"b\":\"}]\\\\\",\"id\":\"a\\\"},{\\\\\"}"));
+        // keys are matched as they are written, an escaped spelling of a selected key is not selected
+        assertEquals("{}", projection.project("{\"\\u0069d\":1}"));
+    }
+
+    @Test
+    public void testMalformedDocuments() throws Exception {
+        JsonProjection projection = new JsonProjection("id");
+
+        assertNull(projection.project("{\"id\":1"));
+        assertNull(projection.project("{\"id\" 1}"));
+        assertNull(projection.project("{\"id\":1 \"name\":2}"));
+        assertNull(projection.project("{id:1}"));
+        assertNull(projection.project("{\"id\":\"unterminated}"));
+        assertNull(projection.project("[{\"id\":1},"));
+        assertNull(projection.project(""));
+    }
+
+    @Test
+    public void testNoFieldSelected() throws Exception {
+        try {
+            new JsonProjection(" , ");
+            fail("a projection without fields was created");
+        } catch (CachingException expected) {
+            // no field is selected
+        }
+    }
+
+    @Test
+    public void testQueryParameters() throws Exception {
+        String uri = "/orders?fields=id%2Cname&x=1&fields=other";
+
+        assertEquals("id,name", JsonProjection.getQueryParameter(uri, "fields"));
+        assertEquals("1", JsonProjection.getQueryParameter(uri, "x"));
+        assertNull(JsonProjection.getQueryParameter(uri, "y"));
+        assertNull(JsonProjection.getQueryParameter("/orders", "fields"));
+        assertEquals("/orders?x=1", JsonProjection.removeQueryParameter(uri, "fields"));
+        assertEquals("/orders", JsonProjection.removeQueryParameter("/orders?fields=id", "fields"));
+    }
+}
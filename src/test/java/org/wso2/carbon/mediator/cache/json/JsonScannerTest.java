@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of the scanning primitives of {@link JsonScanner}
+ */
+public class JsonScannerTest {
+
+    @Test
+    public void testCompactKeepsWhitespaceInStrings() throws Exception {
+        assertEquals("{\"a b\":[1,\"c \\\" d\"],\"e\":{}}",
+                     JsonScanner.compact(" { \"a b\" : [ 1 ,\n\t\"c \\\" d\" ] , \"e\" : { } } "));
+    }
+
+    @Test
+    public void testSkipValue() throws Exception {
+        String json = "{\"a\":[{\"b\":\"]}\"},[1,2]],\"c\":-1.5e3 ,\"d\":null}";
+
+        assertEquals(json.length(), JsonScanner.skipValue(json, 0));
+        assertEquals(json.indexOf(",\"c\""), JsonScanner.skipValue(json, json.indexOf('[')));
+        assertEquals(json.indexOf(" ,"), JsonScanner.skipValue(json, json.indexOf("-1.5")));
+        assertEquals(json.length() - 1, JsonScanner.skipValue(json, json.indexOf("null")));
+    }
+
+    @Test
+    public void testSkipValueOfMalformedInput() throws Exception {
+        assertEquals(-1, JsonScanner.skipValue("{\"a\":[1,2}", 0));
+        assertEquals(-1, JsonScanner.skipValue("{\"a\":\"]}", 0));
+        assertEquals(-1, JsonScanner.skipValue("\"abc", 0));
+        assertEquals(-1, JsonScanner.skipValue("", 0));
+        assertEquals(-1, JsonScanner.skipValue("[1]", 3));
+    }
+
+    @Test
+    public void testSkipString() throws Exception {
+        assertEquals(8, JsonScanner.skipString("\"a\\\\\\\"b\",", 0));
+        assertEquals(4, JsonScanner.skipString("\"\\\\\"", 0));
+        assertEquals(-1, JsonScanner.skipString("\"a\\\"", 0));
+    }
+
+    @Test
+    public void testSkipWhitespaceAndCharAt() throws Exception {
+        assertEquals(3, JsonScanner.skipWhitespace(" \n\t1", 0));
+        assertEquals(2, JsonScanner.skipWhitespace("  ", 0));
+        assertEquals('1', JsonScanner.charAt("1", 0));
+        assertEquals(0, JsonScanner.charAt("1", 1));
+        assertEquals(0, JsonScanner.charAt("1", -1));
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the miss ratio curves estimated by {@link MissRatioCurve} on cyclic key streams, of which every lookup
+ * but the first of a key has a reuse distance of the number of keys in the cycle
+ */
+public class MissRatioCurveTest {
+
+    private static final int ROUNDS = 10;
+
+    @Test
+    public void testExactCurveOfCyclicStream() throws Exception {
+        MissRatioCurve curve = new MissRatioCurve(1.0, 1000);
+        cycle(curve, 100, 1000);
+
+        assertEquals(1.0, curve.getSamplingRate(), 0);
+        assertEquals(100, curve.getSampledKeys());
+        assertEquals(ROUNDS * 100, curve.getEstimatedLookups());
+        assertEquals(0.9, curve.predictHitRatio(200), 1e-9);
+        assertEquals(0.0, curve.predictHitRatio(50), 1e-9);
+        assertEquals(0.9, curve.predictHitRatioForBytes(200 * 1000), 1e-9);
+        assertEquals(0.0, curve.predictHitRatioForBytes(50 * 1000), 1e-9);
+    }
+
+    @Test
+    public void testCurveListsDoublingSizes() throws Exception {
+        MissRatioCurve curve = new MissRatioCurve(1.0, 1000);
+        cycle(curve, 100, 1000);
+
+        String[] lines = curve.getCapacityCurve();
+        assertEquals("1=0.0", lines[0]);
+        assertEquals("128=0.9", lines[lines.length - 1]);
+        assertTrue(curve.getByteCurve()[0].startsWith("1024="));
+    }
+
+    @Test
+    public void testSampledCurveOfCyclicStream() throws Exception {
+        MissRatioCurve curve = new MissRatioCurve(1.0, 500);
+        cycle(curve, 10000, 1000);
+
+        assertTrue(curve.getSampledKeys() <= 500);
+        assertTrue(curve.getSamplingRate() < 0.1);
+        assertEquals(ROUNDS * 10000, curve.getEstimatedLookups(), ROUNDS * 10000 * 0.2);
+        assertEquals(0.9, curve.predictHitRatio(20000), 0.05);
+        assertEquals(0.0, curve.predictHitRatio(5000), 0.05);
+    }
+
+    @Test
+    public void testDistancesSurviveTheCompactionOfTheClock() throws Exception {
+        MissRatioCurve curve = new MissRatioCurve(1.0, 10);
+        for (int round = 0; round < 1000; round++) {
+            for (int key = 0; key < 3; key++) {
+                curve.record("key-" + key, 1000);
+            }
+        }
+
+        assertEquals(0.999, curve.predictHitRatio(6), 1e-9);
+        assertEquals(0.0, curve.predictHitRatio(2), 1e-9);
+    }
+
+    @Test
+    public void testResizeCountsTheFetchedPayload() throws Exception {
+        MissRatioCurve curve = new MissRatioCurve(1.0, 1000);
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int key = 0; key < 100; key++) {
+                curve.record("key-" + key, 0);
+                if (round == 0) {
+                    curve.resize("key-" + key, 1000);
+                }
+            }
+        }
+
+        assertEquals(0.9, curve.predictHitRatioForBytes(200 * 1000), 1e-9);
+        assertEquals(0.0, curve.predictHitRatioForBytes(50 * 1000), 1e-9);
+    }
+
+    @Test
+    public void testEmptyCurve() throws Exception {
+        MissRatioCurve curve = new MissRatioCurve(0.01, 100);
+
+        assertEquals(0.0, curve.predictHitRatio(100), 0);
+        assertEquals(0, curve.getEstimatedLookups());
+    }
+
+    private static void cycle(MissRatioCurve curve, int keys, long size) {
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int key = 0; key < keys; key++) {
+                curve.record("key-" + key, size);
+            }
+        }
+    }
+}
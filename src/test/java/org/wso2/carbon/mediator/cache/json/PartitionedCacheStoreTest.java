@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the {@link PartitionedCacheStore} among several nodes of the same JVM connected by a
+ * {@link LoopbackPartitionTransport}
+ */
+public class PartitionedCacheStoreTest {
+
+    private static final int NODES = 3;
+
+    private static final int KEYS = 300;
+
+    /**
+     * Simulated latency of a message exchange between the nodes
+     */
+    private static final long LATENCY_MILLIS = 1;
+
+    /**
+     * Time given to the asynchronous updates to reach their owners
+     */
+    private static final long UPDATE_TIMEOUT_MILLIS = 5000;
+
+    private final List<PartitionedCacheStore> nodes = new ArrayList<PartitionedCacheStore>();
+
+    @Before
+    public void setUp() throws Exception {
+        String group = UUID.randomUUID().toString();
+        for (int i = 0; i < NODES; i++) {
+            PartitionedCacheStore node =
+                    new PartitionedCacheStore(new LoopbackPartitionTransport(group, "node-" + i, LATENCY_MILLIS));
+            node.init("partitioned-cache-store-test", 10000, null);
+            nodes.add(node);
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (PartitionedCacheStore node : nodes) {
+            node.destroy();
+        }
+    }
+
+    @Test
+    public void testEveryKeyIsHeldOnceAndFoundFromEveryNode() throws Exception {
+        for (int i = 0; i < KEYS; i++) {
+            assertTrue(nodes.get(i % NODES).putIfAbsent("key-" + i, newResponse("key-" + i, "{\"v\":" + i + "}")));
+        }
+
+        assertEquals(KEYS, totalLocalSize());
+        for (PartitionedCacheStore node : nodes) {
+            assertTrue("a node holds no partition", node.localSize() > 0);
+            for (int i = 0; i < KEYS; i++) {
+                CachableResponse response = node.get("key-" + i);
+                assertNotNull("key-" + i + " is not found", response);
+                assertEquals("{\"v\":" + i + "}", response.getResponsePayload());
+            }
+        }
+    }
+
+    @Test
+    public void testRemotePutIfAbsentGivesTheResultOfTheOwner() throws Exception {
+        for (int i = 0; i < KEYS; i++) {
+            String key = "key-" + i;
+            assertTrue(nodes.get(0).putIfAbsent(key, newResponse(key, "{\"v\":1}")));
+            assertFalse(nodes.get(1).putIfAbsent(key, newResponse(key, "{\"v\":2}")));
+            assertEquals("{\"v\":1}", nodes.get(2).get(key).getResponsePayload());
+        }
+    }
+
+    @Test
+    public void testRemoteReplaceGivesTheResultOfTheOwner() throws Exception {
+        for (int i = 0; i < KEYS; i++) {
+            String key = "key-" + i;
+            nodes.get(0).putIfAbsent(key, newResponse(key, "{\"v\":1}"));
+            CachableResponse current = nodes.get(1).get(key);
+
+            assertTrue(nodes.get(1).replace(key, current, newResponse(key, "{\"v\":2}")));
+            // the response the replace was based on has been replaced already
+            assertFalse(nodes.get(2).replace(key, current, newResponse(key, "{\"v\":3}")));
+            assertEquals("{\"v\":2}", nodes.get(0).get(key).getResponsePayload());
+        }
+    }
+
+    @Test
+    public void testRemoteCopiesKeepTheVersionAndAreNotRefreshedEarly() throws Exception {
+        int copies = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String key = "key-" + i;
+            nodes.get(0).putIfAbsent(key, newResponse(key, "{\"v\":1}"));
+            for (PartitionedCacheStore node : nodes) {
+                CachableResponse first = node.get(key);
+                CachableResponse second = node.get(key);
+                if (first == second) {
+                    // the key is owned by the node
+                    assertTrue(first.claimRefresh());
+                    continue;
+                }
+                copies++;
+                assertEquals(first.getVersion(), second.getVersion());
+                assertFalse(first.claimRefresh());
+                assertFalse(second.claimRefresh());
+            }
+        }
+        assertTrue(copies > 0);
+    }
+
+    @Test
+    public void testBatchedLookup() throws Exception {
+        List<String> keys = new ArrayList<String>();
+        for (int i = 0; i < KEYS; i++) {
+            nodes.get(0).putIfAbsent("key-" + i, newResponse("key-" + i, "{\"v\":" + i + "}"));
+            keys.add("key-" + i);
+        }
+        keys.add("missing");
+
+        Map<String, CachableResponse> found = nodes.get(1).getAll(keys);
+
+        assertEquals(KEYS, found.size());
+        assertEquals("{\"v\":7}", found.get("key-7").getResponsePayload());
+    }
+
+    @Test
+    public void testKeysAreHandedOverWhenAMemberLeaves() throws Exception {
+        for (int i = 0; i < KEYS; i++) {
+            nodes.get(0).putIfAbsent("key-" + i, newResponse("key-" + i, "{\"v\":" + i + "}"));
+        }
+        PartitionedCacheStore leaving = nodes.remove(NODES - 1);
+        assertTrue(leaving.localSize() > 0);
+
+        leaving.destroy();
+
+        awaitTotalLocalSize(KEYS);
+        for (int i = 0; i < KEYS; i++) {
+            CachableResponse response = nodes.get(i % nodes.size()).get("key-" + i);
+            assertNotNull("key-" + i + " is lost", response);
+            assertEquals("{\"v\":" + i + "}", response.getResponsePayload());
+        }
+    }
+
+    private int totalLocalSize() {
+        int size = 0;
+        for (PartitionedCacheStore node : nodes) {
+            size += node.localSize();
+        }
+        return size;
+    }
+
+    private void awaitTotalLocalSize(int expected) throws Exception {
+        long deadline = System.currentTimeMillis() + UPDATE_TIMEOUT_MILLIS;
+        while (totalLocalSize() != expected) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("The nodes hold " + totalLocalSize() + " keys instead of " + expected);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static CachableResponse newResponse(String key, String payload) {
+        CachableResponse response = new CachableResponse();
+        response.setRequestHash(key);
+        response.setResponsePayload(payload);
+        response.setTimeout(60000);
+        response.setExpireTimeMillis(System.currentTimeMillis() + 60000);
+        return response;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests of the content addressed {@link PayloadPool}
+ */
+public class PayloadPoolTest {
+
+    @Test
+    public void testEqualPayloadsAreShared() throws Exception {
+        PayloadPool pool = new PayloadPool();
+        String body = "{\"name\":\"Zoë\"}";
+
+        PayloadPool.Payload first = pool.acquire(body.getBytes("UTF-8"), null);
+        PayloadPool.Payload second = pool.acquire(body.getBytes("UTF-8"), body);
+
+        assertSame(first, second);
+        assertEquals(body, first.getBody());
+        assertEquals(1, pool.size());
+    }
+
+    @Test
+    public void testPayloadLeavesThePoolWithItsLastReference() throws Exception {
+        PayloadPool pool = new PayloadPool();
+        PayloadPool.Payload first = pool.acquire("{}".getBytes("UTF-8"), null);
+        PayloadPool.Payload second = pool.acquire("{}".getBytes("UTF-8"), null);
+
+        first.release();
+        assertEquals(1, pool.size());
+        second.release();
+        assertEquals(0, pool.size());
+        assertNotSame(first, pool.acquire("{}".getBytes("UTF-8"), null));
+    }
+
+    @Test
+    public void testDigestOfBytesMatchesDigestOfString() throws Exception {
+        String body = "{\"name\":\"Zoë\"}";
+
+        assertEquals(PayloadPool.digest(body), PayloadPool.digest(body.getBytes("UTF-8")));
+        assertEquals(64, PayloadPool.digest(body).length());
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests of the binary form of {@link RequestHash}
+ */
+public class RequestHashTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        RequestHash hash = new RequestHash("d41d8cd98f00b204e9800998ecf8427e");
+
+        RequestHash copy = roundTrip(hash);
+
+        assertEquals(hash.getRequestHash(), copy.getRequestHash());
+        assertEquals(hash, copy);
+        assertEquals(hash.hashCode(), copy.hashCode());
+    }
+
+    @Test
+    public void testRoundTripOfNonAsciiHash() throws Exception {
+        assertEquals("été", roundTrip(new RequestHash("été")).getRequestHash());
+    }
+
+    @Test
+    public void testRoundTripOfNullHash() throws Exception {
+        assertNull(roundTrip(new RequestHash()).getRequestHash());
+    }
+
+    @Test
+    public void testReadingTheBinaryForm() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeByte(1);
+        out.writeBoolean(true);
+        BinaryCodec.writeString(out, "hash");
+        out.close();
+
+        RequestHash hash = new RequestHash();
+        hash.readExternal(new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals("hash", hash.getRequestHash());
+    }
+
+    @Test(expected = InvalidClassException.class)
+    public void testNewerFormatVersionIsRejected() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeByte(2);
+        out.writeBoolean(false);
+        out.close();
+
+        new RequestHash().readExternal(new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    private static RequestHash roundTrip(RequestHash hash) throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(hash);
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        try {
+            return (RequestHash) in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+}
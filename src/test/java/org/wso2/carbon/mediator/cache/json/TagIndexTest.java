@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests of the tag invalidation through the {@link TagIndex}
+ */
+public class TagIndexTest {
+
+    private ConcurrentCacheStore store;
+
+    private TagIndex index;
+
+    @Before
+    public void setUp() throws Exception {
+        store = new ConcurrentCacheStore();
+        store.init("tag-index-test", 1000, null);
+        index = new TagIndex();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        store.destroy();
+    }
+
+    @Test
+    public void testInvalidateRemovesTaggedResponses() throws Exception {
+        cache("a", "orders", "customers");
+        cache("b", "orders");
+        CachableResponse untagged = cache("c", "customers");
+
+        assertEquals(2, index.invalidate(store, Collections.singleton("orders")));
+        assertNull(store.get("a"));
+        assertNull(store.get("b"));
+        assertSame(untagged, store.get("c"));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void testNewerResponseWithoutTheTagSurvives() throws Exception {
+        cache("a", "orders");
+        CachableResponse newer = newResponse("a");
+        store.put("a", newer);
+
+        assertEquals(0, index.invalidate(store, Collections.singleton("orders")));
+        assertSame(newer, store.get("a"));
+    }
+
+    @Test
+    public void testInvalidatePrefix() throws Exception {
+        cache("a", "orders/1");
+        cache("b", "orders/2");
+        CachableResponse other = cache("c", "ordersummary");
+
+        assertEquals(2, index.invalidatePrefix(store, "orders/"));
+        assertSame(other, store.get("c"));
+    }
+
+    private CachableResponse cache(String key, String... tags) {
+        CachableResponse response = newResponse(key);
+        response.setTags(new HashSet<String>(Arrays.asList(tags)));
+        store.put(key, response);
+        index.tag(key, response);
+        return response;
+    }
+
+    private static CachableResponse newResponse(String key) {
+        CachableResponse response = new CachableResponse();
+        response.setRequestHash(key);
+        response.setResponsePayload("{\"key\":\"" + key + "\"}");
+        response.setTimeout(60000);
+        response.setExpireTimeMillis(System.currentTimeMillis() + 60000);
+        return response;
+    }
+}
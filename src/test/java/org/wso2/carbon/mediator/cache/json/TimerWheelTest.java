@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the {@link TimerWheel}, advanced by hand rather than by its ticker thread
+ */
+public class TimerWheelTest {
+
+    private static final long TICK_MILLIS = 10;
+
+    private TimerWheel wheel;
+
+    /**
+     * A time not earlier than the start of the wheel
+     */
+    private long now;
+
+    @Before
+    public void setUp() throws Exception {
+        wheel = new TimerWheel(TICK_MILLIS);
+        now = System.currentTimeMillis();
+    }
+
+    @Test
+    public void testTimeoutFiresOnceAtItsDeadline() throws Exception {
+        CountingTimeout timeout = new CountingTimeout();
+        wheel.schedule(timeout, now + 1000);
+
+        wheel.advance(now + 1000 - 2 * TICK_MILLIS);
+        assertEquals(0, timeout.fired);
+        wheel.advance(now + 1000 + TICK_MILLIS);
+        assertEquals(1, timeout.fired);
+        wheel.advance(now + 100000);
+        assertEquals(1, timeout.fired);
+    }
+
+    @Test
+    public void testPastDeadlineFiresOnTheNextTick() throws Exception {
+        CountingTimeout timeout = new CountingTimeout();
+        wheel.advance(now + 1000);
+        wheel.schedule(timeout, now);
+
+        wheel.advance(now + 1000 + TICK_MILLIS);
+        assertEquals(1, timeout.fired);
+    }
+
+    @Test
+    public void testCancelledTimeoutNeverFires() throws Exception {
+        CountingTimeout timeout = new CountingTimeout();
+        assertFalse(timeout.cancel());
+        wheel.schedule(timeout, now + 1000);
+
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        wheel.advance(now + 100000);
+        assertEquals(0, timeout.fired);
+    }
+
+    @Test
+    public void testScheduledTimeoutIsMoved() throws Exception {
+        CountingTimeout timeout = new CountingTimeout();
+        wheel.schedule(timeout, now + 1000);
+        wheel.schedule(timeout, now + 5000);
+
+        wheel.advance(now + 2000);
+        assertEquals(0, timeout.fired);
+        wheel.advance(now + 5000 + TICK_MILLIS);
+        assertEquals(1, timeout.fired);
+    }
+
+    @Test
+    public void testTimeoutRescheduledWhileFiring() throws Exception {
+        CountingTimeout timeout = new CountingTimeout() {
+            @Override
+            protected void expire() {
+                super.expire();
+                if (fired == 1) {
+                    reschedule(now + 3000);
+                }
+            }
+        };
+        wheel.schedule(timeout, now + 1000);
+
+        wheel.advance(now + 2000);
+        assertEquals(1, timeout.fired);
+        wheel.advance(now + 3000 + TICK_MILLIS);
+        assertEquals(2, timeout.fired);
+    }
+
+    @Test
+    public void testTimeoutsOfEveryLevelFireInTime() throws Exception {
+        // deadlines spread over all the levels of the wheel and beyond its range
+        Random random = new Random(7);
+        List<CountingTimeout> timeouts = new ArrayList<CountingTimeout>();
+        long maxTicks = 1L << 25;
+        for (int i = 0; i < 2000; i++) {
+            CountingTimeout timeout = new CountingTimeout();
+            long ticks = (long) Math.pow(maxTicks, random.nextDouble());
+            timeout.deadline = now + ticks * TICK_MILLIS;
+            wheel.schedule(timeout, timeout.deadline);
+            timeouts.add(timeout);
+        }
+
+        long time = now;
+        while (time < now + maxTicks * TICK_MILLIS + TICK_MILLIS) {
+            time += TICK_MILLIS * (1 + random.nextInt(50000));
+            wheel.advance(time);
+            for (CountingTimeout timeout : timeouts) {
+                if (timeout.deadline + TICK_MILLIS <= time) {
+                    assertEquals("timeout due at " + (timeout.deadline - now) + " did not fire at " + (time - now),
+                                 1, timeout.fired);
+                } else if (timeout.deadline - TICK_MILLIS > time) {
+                    assertEquals("timeout due at " + (timeout.deadline - now) + " fired at " + (time - now),
+                                 0, timeout.fired);
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTickMustBePositive() throws Exception {
+        new TimerWheel(0);
+    }
+
+    /**
+     * A timeout counting the times it fires
+     */
+    private static class CountingTimeout extends TimerWheel.Timeout {
+
+        int fired;
+
+        long deadline;
+
+        @Override
+        protected void expire() {
+            fired++;
+        }
+    }
+}
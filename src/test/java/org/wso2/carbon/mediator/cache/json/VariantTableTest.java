@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.mediator.cache.json;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the selection and the replacement of variants in a {@link VariantTable}
+ */
+public class VariantTableTest {
+
+    @Test
+    public void testParseVary() throws Exception {
+        assertArrayEquals(new String[]{"accept", "accept-language"},
+                          VariantTable.parseVary(" Accept-Language, accept ,ACCEPT,"));
+        assertEquals(0, VariantTable.parseVary(null).length);
+        assertNull(VariantTable.parseVary("Accept, *"));
+    }
+
+    @Test
+    public void testKeyIsSelectedByHeadersWhateverTheirCase() throws Exception {
+        String[] vary = VariantTable.parseVary("Accept, Accept-Language");
+        Map<String, Object> headers = new HashMap<String, Object>();
+        headers.put("ACCEPT", "application/json ");
+        headers.put("accept-language", "en");
+        Map<String, Object> other = new HashMap<String, Object>();
+        other.put("Accept", "application/json");
+
+        assertEquals(VariantTable.keyOf(vary, headers), VariantTable.keyOf(vary, headers));
+        assertEquals("application/json\nen\n", VariantTable.keyOf(vary, headers));
+        assertNotEquals(VariantTable.keyOf(vary, headers), VariantTable.keyOf(vary, other));
+        assertEquals("\n\n", VariantTable.keyOf(vary, null));
+    }
+
+    @Test
+    public void testWithReplacesTheVariantOfTheKey() throws Exception {
+        String[] vary = VariantTable.parseVary("Accept");
+        CachableResponse json = variant(60000);
+        CachableResponse xml = variant(60000);
+        CachableResponse newer = variant(60000);
+        VariantTable table = VariantTable.of(vary, "json", json).with("xml", xml, CachingConstants.MAX_VARIANTS);
+
+        VariantTable updated = table.with("json", newer, CachingConstants.MAX_VARIANTS);
+
+        assertSame(json, table.get("json"));
+        assertSame(newer, updated.get("json"));
+        assertSame(xml, updated.get("xml"));
+        assertNull(updated.get("text"));
+        assertTrue(updated.variesOn(vary));
+    }
+
+    @Test
+    public void testWithDropsExpiredVariantsAndTheOneExpiringFirst() throws Exception {
+        String[] vary = VariantTable.parseVary("Accept");
+        CachableResponse expired = variant(-1000);
+        CachableResponse first = variant(1000);
+        CachableResponse second = variant(60000);
+        VariantTable table = VariantTable.of(vary, "expired", expired).with("first", first, 3)
+                .with("second", second, 3);
+
+        assertNull(table.get("expired"));
+        VariantTable full = table.with("third", variant(60000), 2);
+
+        assertNull(full.get("first"));
+        assertSame(second, full.get("second"));
+        assertEquals(second.getExpireTimeMillis(), table.getExpireTimeMillis());
+    }
+
+    private static CachableResponse variant(long timeToLive) {
+        CachableResponse variant = new CachableResponse();
+        variant.setResponsePayload("{}");
+        variant.setTimeout(60000);
+        variant.setExpireTimeMillis(System.currentTimeMillis() + timeToLive);
+        return variant;
+    }
+}